@@ -63,48 +63,60 @@ public abstract class AbstractConduitSelector implements ConduitSelector {
      */
     protected Conduit getSelectedConduit(Message message) {
         if (selectedConduit == null) {
-            Exchange exchange = message.getExchange();
-            EndpointInfo ei = endpoint.getEndpointInfo();
-            String transportID = ei.getTransportId();
-            try {
-                ConduitInitiatorManager conduitInitiatorMgr =
-                    getBus(exchange).getExtension(ConduitInitiatorManager.class);
-                if (conduitInitiatorMgr != null) {
-                    ConduitInitiator conduitInitiator =
-                        conduitInitiatorMgr.getConduitInitiator(transportID);
-                    if (conduitInitiator != null) {
-                        String add = (String)message.get(Message.ENDPOINT_ADDRESS);
-                        if (StringUtils.isEmpty(add)
-                            || add.equals(ei.getAddress())) {
-                            selectedConduit = conduitInitiator.getConduit(ei);
-                        } else {
-                            EndpointReferenceType epr = new EndpointReferenceType();
-                            AttributedURIType ad = new AttributedURIType();
-                            ad.setValue(add);
-                            epr.setAddress(ad);
-                            selectedConduit = conduitInitiator.getConduit(ei, epr);
-                        }
-                        MessageObserver observer = 
-                            exchange.get(MessageObserver.class);
-                        if (observer != null) {
-                            selectedConduit.setMessageObserver(observer);
-                        } else {
-                            getLogger().warning("MessageObserver not found");
-                        }
+            selectedConduit = createConduit(message, endpoint.getEndpointInfo());
+        }
+        return selectedConduit;
+    }
+
+    /**
+     * Gets a new Conduit for the endpoint from the ConduitInitiator.
+     * 
+     * @param message the current Message
+     * @param ei the endpoint to get the Conduit for
+     * @return the Conduit or null if no ConduitInitiator is available
+     */
+    protected Conduit createConduit(Message message, EndpointInfo ei) {
+        Conduit conduit = null;
+        Exchange exchange = message.getExchange();
+        String transportID = ei.getTransportId();
+        try {
+            ConduitInitiatorManager conduitInitiatorMgr =
+                getBus(exchange).getExtension(ConduitInitiatorManager.class);
+            if (conduitInitiatorMgr != null) {
+                ConduitInitiator conduitInitiator =
+                    conduitInitiatorMgr.getConduitInitiator(transportID);
+                if (conduitInitiator != null) {
+                    String add = (String)message.get(Message.ENDPOINT_ADDRESS);
+                    if (StringUtils.isEmpty(add)
+                        || add.equals(ei.getAddress())) {
+                        conduit = conduitInitiator.getConduit(ei);
                     } else {
-                        getLogger().warning("ConduitInitiator not found: "
-                                            + ei.getAddress());
+                        EndpointReferenceType epr = new EndpointReferenceType();
+                        AttributedURIType ad = new AttributedURIType();
+                        ad.setValue(add);
+                        epr.setAddress(ad);
+                        conduit = conduitInitiator.getConduit(ei, epr);
+                    }
+                    MessageObserver observer = 
+                        exchange.get(MessageObserver.class);
+                    if (observer != null) {
+                        conduit.setMessageObserver(observer);
+                    } else {
+                        getLogger().warning("MessageObserver not found");
                     }
                 } else {
-                    getLogger().warning("ConduitInitiatorManager not found");
+                    getLogger().warning("ConduitInitiator not found: "
+                                        + ei.getAddress());
                 }
-            } catch (BusException ex) {
-                throw new Fault(ex);
-            } catch (IOException ex) {
-                throw new Fault(ex);
+            } else {
+                getLogger().warning("ConduitInitiatorManager not found");
             }
+        } catch (BusException ex) {
+            throw new Fault(ex);
+        } catch (IOException ex) {
+            throw new Fault(ex);
         }
-        return selectedConduit;
+        return conduit;
     }
 
     /**
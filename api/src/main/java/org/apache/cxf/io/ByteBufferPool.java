@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size ByteBuffers, either on the heap or direct, that 
+ * {@link PooledBufferOutputStream} uses to hold cached content in chunks 
+ * instead of in a single growing array.  At most maxPooled free buffers are
+ * retained, so buffers that are released while the pool is full (or never 
+ * released at all) are simply left to the garbage collector.
+ */
+public class ByteBufferPool {
+    
+    private final int chunkSize;
+    private final boolean direct;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    
+    public ByteBufferPool(int chunkSize, int maxPooled, boolean direct) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+    }
+    
+    public ByteBuffer acquire() {
+        ByteBuffer buf = free.poll();
+        if (buf != null) {
+            pooled.decrementAndGet();
+            return buf;
+        }
+        return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+    
+    public void release(ByteBuffer buf) {
+        if (buf.capacity() != chunkSize || buf.isDirect() != direct) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buf.clear();
+        free.offer(buf);
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public boolean isDirect() {
+        return direct;
+    }
+    
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+    
+    public int getPooledCount() {
+        return pooled.get();
+    }
+}
@@ -31,6 +31,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -42,6 +46,7 @@ import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
 public class CachedOutputStream extends OutputStream {
     private static final File DEFAULT_TEMP_DIR;
     private static final int DEFAULT_THRESHOLD;
+    private static final ByteBufferPool DEFAULT_BUFFER_POOL;
     static {
         String s = System.getProperty("org.apache.cxf.io.CachedOutputStream.Threshold",
                                       "-1");
@@ -62,6 +67,11 @@ public class CachedOutputStream extends OutputStream {
         } else {
             DEFAULT_TEMP_DIR = null;
         }
+        
+        int chunkSize = Integer.getInteger("org.apache.cxf.io.CachedOutputStream.ChunkSize", 8 * 1024);
+        int poolSize = Integer.getInteger("org.apache.cxf.io.CachedOutputStream.PoolSize", 256);
+        boolean direct = Boolean.getBoolean("org.apache.cxf.io.CachedOutputStream.DirectBuffers");
+        DEFAULT_BUFFER_POOL = new ByteBufferPool(chunkSize, poolSize, direct);
     }
 
     protected boolean outputLocked;
@@ -76,6 +86,8 @@ public class CachedOutputStream extends OutputStream {
     private File tempFile;
 
     private File outputDir = DEFAULT_TEMP_DIR;
+    
+    private ByteBufferPool bufferPool = DEFAULT_BUFFER_POOL;
 
     private List<CachedOutputStreamCallback> callbacks;
     
@@ -87,13 +99,13 @@ public class CachedOutputStream extends OutputStream {
     }
 
     public CachedOutputStream() {
-        currentStream = new LoadingByteArrayOutputStream(2048);
+        currentStream = new PooledBufferOutputStream(bufferPool);
         inmem = true;
     }
 
     public CachedOutputStream(long threshold) {
         this.threshold = threshold; 
-        currentStream = new LoadingByteArrayOutputStream(2048);
+        currentStream = new PooledBufferOutputStream(bufferPool);
         inmem = true;
     }
 
@@ -177,6 +189,15 @@ public class CachedOutputStream extends OutputStream {
         doClose();
         currentStream.close();
         maybeDeleteTempFile(currentStream);
+        if (inmem && currentStream instanceof PooledBufferOutputStream) {
+            // the content stays readable after close, but the chunks go back to the pool,
+            // or to the InputStreams still reading them
+            PooledBufferOutputStream pooledOut = (PooledBufferOutputStream) currentStream;
+            LoadingByteArrayOutputStream bout = new LoadingByteArrayOutputStream(pooledOut.size());
+            pooledOut.writeTo(bout);
+            pooledOut.release();
+            currentStream = bout;
+        }
         postClose();
     }
 
@@ -206,7 +227,13 @@ public class CachedOutputStream extends OutputStream {
             IOUtils.copyAndCloseInput(in, out);
         } else {
             if (inmem) {
-                if (currentStream instanceof ByteArrayOutputStream) {
+                if (currentStream instanceof PooledBufferOutputStream) {
+                    PooledBufferOutputStream pooledOut = (PooledBufferOutputStream) currentStream;
+                    if (copyOldContent && pooledOut.size() > 0) {
+                        pooledOut.writeTo(out);
+                    }
+                    pooledOut.release();
+                } else if (currentStream instanceof ByteArrayOutputStream) {
                     ByteArrayOutputStream byteOut = (ByteArrayOutputStream) currentStream;
                     if (copyOldContent && byteOut.size() > 0) {
                         byteOut.writeTo(out);
@@ -220,9 +247,8 @@ public class CachedOutputStream extends OutputStream {
             } else {
                 // read the file
                 currentStream.close();
-                FileInputStream fin = new FileInputStream(tempFile);
                 if (copyOldContent) {
-                    IOUtils.copyAndCloseInput(fin, out);
+                    copyTempFileTo(out);
                 }
                 streamList.remove(currentStream);
                 tempFile.delete();
@@ -245,7 +271,9 @@ public class CachedOutputStream extends OutputStream {
     public byte[] getBytes() throws IOException {
         flush();
         if (inmem) {
-            if (currentStream instanceof ByteArrayOutputStream) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                return ((PooledBufferOutputStream)currentStream).toByteArray();
+            } else if (currentStream instanceof ByteArrayOutputStream) {
                 return ((ByteArrayOutputStream)currentStream).toByteArray();
             } else {
                 throw new IOException("Unknown format of currentStream");
@@ -253,24 +281,80 @@ public class CachedOutputStream extends OutputStream {
         } else {
             // read the file
             FileInputStream fin = new FileInputStream(tempFile);
-            return IOUtils.readBytesFromStream(fin);
+            try {
+                FileChannel channel = fin.getChannel();
+                ByteBuffer buf = ByteBuffer.allocate((int)channel.size());
+                while (buf.hasRemaining() && channel.read(buf) != -1) {
+                    // keep reading
+                }
+                return buf.array();
+            } finally {
+                fin.close();
+            }
         }
     }
     
     public void writeCacheTo(OutputStream out) throws IOException {
         flush();
         if (inmem) {
-            if (currentStream instanceof ByteArrayOutputStream) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                ((PooledBufferOutputStream)currentStream).writeTo(out);
+            } else if (currentStream instanceof ByteArrayOutputStream) {
                 ((ByteArrayOutputStream)currentStream).writeTo(out);
             } else {
                 throw new IOException("Unknown format of currentStream");
             }
         } else {
-            // read the file
-            FileInputStream fin = new FileInputStream(tempFile);
-            IOUtils.copyAndCloseInput(fin, out);
+            copyTempFileTo(out);
+        }
+    }
+    
+    /**
+     * Writes the cached content to the channel.  Content that has been moved to
+     * the temp file is transferred with FileChannel.transferTo, which avoids 
+     * copying it through the heap where the platform supports it.
+     */
+    public void writeCacheTo(WritableByteChannel out) throws IOException {
+        flush();
+        if (inmem) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                ((PooledBufferOutputStream)currentStream).writeTo(out);
+            } else if (currentStream instanceof ByteArrayOutputStream) {
+                ByteBuffer buf = ByteBuffer.wrap(((ByteArrayOutputStream)currentStream).toByteArray());
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            } else {
+                throw new IOException("Unknown format of currentStream");
+            }
+        } else {
+            transferTempFileTo(out);
+        }
+    }
+    
+    private void copyTempFileTo(OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream) {
+            transferTempFileTo(((FileOutputStream)out).getChannel());
+        } else {
+            out.flush();
+            transferTempFileTo(Channels.newChannel(out));
         }
     }
+    
+    private void transferTempFileTo(WritableByteChannel out) throws IOException {
+        FileInputStream fin = new FileInputStream(tempFile);
+        try {
+            FileChannel channel = fin.getChannel();
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                pos += channel.transferTo(pos, size - pos, out);
+            }
+        } finally {
+            fin.close();
+        }
+    }
+
     public void writeCacheTo(StringBuilder out, int limit) throws IOException {
         flush();
         if (totalLength < limit
@@ -281,7 +365,10 @@ public class CachedOutputStream extends OutputStream {
         
         int count = 0;
         if (inmem) {
-            if (currentStream instanceof ByteArrayOutputStream) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                byte bytes[] = ((PooledBufferOutputStream)currentStream).toByteArray();
+                out.append(IOUtils.newStringFromBytes(bytes, 0, limit));
+            } else if (currentStream instanceof ByteArrayOutputStream) {
                 byte bytes[] = ((ByteArrayOutputStream)currentStream).toByteArray();
                 out.append(IOUtils.newStringFromBytes(bytes, 0, limit));
             } else {
@@ -311,7 +398,10 @@ public class CachedOutputStream extends OutputStream {
     public void writeCacheTo(StringBuilder out) throws IOException {
         flush();
         if (inmem) {
-            if (currentStream instanceof ByteArrayOutputStream) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                byte[] bytes = ((PooledBufferOutputStream)currentStream).toByteArray();
+                out.append(IOUtils.newStringFromBytes(bytes));
+            } else if (currentStream instanceof ByteArrayOutputStream) {
                 byte[] bytes = ((ByteArrayOutputStream)currentStream).toByteArray();
                 out.append(IOUtils.newStringFromBytes(bytes));
             } else {
@@ -362,7 +452,7 @@ public class CachedOutputStream extends OutputStream {
         if (!outputLocked) {
             onWrite();
             this.totalLength += len;
-            if (inmem && totalLength > threshold && currentStream instanceof ByteArrayOutputStream) {
+            if (inmem && totalLength > threshold && isBuffering()) {
                 createFileOutputStream();
             }
             currentStream.write(b, off, len);
@@ -373,7 +463,7 @@ public class CachedOutputStream extends OutputStream {
         if (!outputLocked) {
             onWrite();
             this.totalLength += b.length;
-            if (inmem && totalLength > threshold && currentStream instanceof ByteArrayOutputStream) {
+            if (inmem && totalLength > threshold && isBuffering()) {
                 createFileOutputStream();
             }
             currentStream.write(b);
@@ -384,23 +474,36 @@ public class CachedOutputStream extends OutputStream {
         if (!outputLocked) {
             onWrite();
             this.totalLength++;
-            if (inmem && totalLength > threshold && currentStream instanceof ByteArrayOutputStream) {
+            if (inmem && totalLength > threshold && isBuffering()) {
                 createFileOutputStream();
             }
             currentStream.write(b);
         }
     }
 
+    private boolean isBuffering() {
+        return currentStream instanceof PooledBufferOutputStream
+            || currentStream instanceof ByteArrayOutputStream;
+    }
+
     private void createFileOutputStream() throws IOException {
-        ByteArrayOutputStream bout = (ByteArrayOutputStream)currentStream;
         if (outputDir == null) {
             tempFile = FileUtils.createTempFile("cos", "tmp");
         } else {
             tempFile = FileUtils.createTempFile("cos", "tmp", outputDir, false);
         }
         
-        currentStream = new BufferedOutputStream(new FileOutputStream(tempFile));
-        bout.writeTo(currentStream);
+        FileOutputStream fout = new FileOutputStream(tempFile);
+        if (currentStream instanceof PooledBufferOutputStream) {
+            PooledBufferOutputStream pooledOut = (PooledBufferOutputStream)currentStream;
+            pooledOut.writeTo(fout.getChannel());
+            pooledOut.release();
+            currentStream = new BufferedOutputStream(fout);
+        } else {
+            ByteArrayOutputStream bout = (ByteArrayOutputStream)currentStream;
+            currentStream = new BufferedOutputStream(fout);
+            bout.writeTo(currentStream);
+        }
         inmem = false;
         streamList.add(currentStream);
     }
@@ -412,7 +515,9 @@ public class CachedOutputStream extends OutputStream {
     public InputStream getInputStream() throws IOException {
         flush();
         if (inmem) {
-            if (currentStream instanceof LoadingByteArrayOutputStream) {
+            if (currentStream instanceof PooledBufferOutputStream) {
+                return ((PooledBufferOutputStream) currentStream).createInputStream();
+            } else if (currentStream instanceof LoadingByteArrayOutputStream) {
                 return ((LoadingByteArrayOutputStream) currentStream).createInputStream();
             } else if (currentStream instanceof ByteArrayOutputStream) {
                 return new ByteArrayInputStream(((ByteArrayOutputStream) currentStream).toByteArray());
@@ -450,7 +555,7 @@ public class CachedOutputStream extends OutputStream {
             }
             tempFile.delete();
             tempFile = null;
-            currentStream = new LoadingByteArrayOutputStream(1024);
+            currentStream = new PooledBufferOutputStream(bufferPool);
             inmem = true;
         }
     }
@@ -461,4 +566,23 @@ public class CachedOutputStream extends OutputStream {
     public void setThreshold(long threshold) {
         this.threshold = threshold;
     }
+    
+    /**
+     * Sets the pool the in-memory content is buffered in.  Only takes effect
+     * if nothing has been written yet.
+     */
+    public void setBufferPool(ByteBufferPool pool) {
+        bufferPool = pool;
+        if (inmem && totalLength == 0 && currentStream instanceof PooledBufferOutputStream) {
+            currentStream = new PooledBufferOutputStream(pool);
+        }
+    }
+    
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+    
+    public static ByteBufferPool getDefaultBufferPool() {
+        return DEFAULT_BUFFER_POOL;
+    }
 }
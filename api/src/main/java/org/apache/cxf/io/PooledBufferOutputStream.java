@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cxf.helpers.IOUtils;
+
+/**
+ * OutputStream that stores its content in fixed size chunks taken from a 
+ * {@link ByteBufferPool}.  Growing never copies what was already written, and
+ * the content can be written to a channel straight from the chunks.
+ * 
+ * An InputStream created from this stream reads the chunks directly.  Chunks 
+ * released while such an InputStream is still open go back to the pool only 
+ * once the last of them has been closed or read to the end.
+ */
+public class PooledBufferOutputStream extends OutputStream {
+    
+    private final ByteBufferPool pool;
+    private List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private Readers readers;
+    private ByteBuffer current;
+    private int count;
+    private byte[] transferBuffer;
+    
+    public PooledBufferOutputStream(ByteBufferPool pool) {
+        this.pool = pool;
+    }
+    
+    public ByteBufferPool getPool() {
+        return pool;
+    }
+
+    public int size() {
+        return count;
+    }
+    
+    public void write(int b) {
+        if (current == null || !current.hasRemaining()) {
+            nextChunk();
+        }
+        current.put((byte)b);
+        count++;
+    }
+    
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextChunk();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+            count += n;
+        }
+    }
+    
+    private void nextChunk() {
+        current = pool.acquire();
+        chunks.add(current);
+    }
+    
+    /**
+     * Returns a read-only view of each chunk, positioned at its content.
+     */
+    private ByteBuffer[] views() {
+        ByteBuffer[] views = new ByteBuffer[chunks.size()];
+        for (int i = 0; i < views.length; i++) {
+            ByteBuffer view = chunks.get(i).asReadOnlyBuffer();
+            view.flip();
+            views[i] = view;
+        }
+        return views;
+    }
+    
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        int pos = 0;
+        for (ByteBuffer view : views()) {
+            int n = view.remaining();
+            view.get(bytes, pos, n);
+            pos += n;
+        }
+        return bytes;
+    }
+    
+    public void writeTo(OutputStream out) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            if (chunk.hasArray()) {
+                out.write(chunk.array(), chunk.arrayOffset(), chunk.position());
+            } else {
+                if (transferBuffer == null) {
+                    transferBuffer = new byte[pool.getChunkSize()];
+                }
+                ByteBuffer view = chunk.duplicate();
+                view.flip();
+                int n = view.remaining();
+                view.get(transferBuffer, 0, n);
+                out.write(transferBuffer, 0, n);
+            }
+        }
+    }
+    
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer[] views = views();
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gather = (GatheringByteChannel)channel;
+            long remaining = count;
+            while (remaining > 0) {
+                remaining -= gather.write(views);
+            }
+        } else {
+            for (ByteBuffer view : views) {
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+        }
+    }
+    
+    public InputStream createInputStream() {
+        if (readers == null) {
+            readers = new Readers(pool, chunks);
+        }
+        readers.open();
+        return new ChunkInputStream(views(), readers);
+    }
+    
+    /**
+     * Hands the chunks back to the pool, or to the InputStreams still reading 
+     * them, and empties the stream.
+     */
+    public void release() {
+        if (readers == null || !readers.handOver()) {
+            for (ByteBuffer chunk : chunks) {
+                pool.release(chunk);
+            }
+        }
+        chunks = new ArrayList<ByteBuffer>();
+        readers = null;
+        current = null;
+        count = 0;
+    }
+    
+    public String toString() {
+        return IOUtils.newStringFromBytes(toByteArray());
+    }
+    
+    /**
+     * Counts the InputStreams reading a list of chunks.  Once the output stream
+     * has been released the chunks belong to them and the last one done with 
+     * them hands them back to the pool.
+     */
+    private static final class Readers {
+        private final ByteBufferPool pool;
+        private final List<ByteBuffer> chunks;
+        private int open;
+        private boolean released;
+        
+        Readers(ByteBufferPool pool, List<ByteBuffer> chunks) {
+            this.pool = pool;
+            this.chunks = chunks;
+        }
+        
+        synchronized void open() {
+            open++;
+        }
+        
+        synchronized void close() {
+            if (--open == 0 && released) {
+                for (ByteBuffer chunk : chunks) {
+                    pool.release(chunk);
+                }
+            }
+        }
+        
+        /**
+         * @return true if InputStreams are still open and will release the chunks
+         */
+        synchronized boolean handOver() {
+            released = open > 0;
+            return released;
+        }
+    }
+    
+    private static class ChunkInputStream extends InputStream {
+        private final ByteBuffer[] views;
+        private Readers readers;
+        private int index;
+        
+        ChunkInputStream(ByteBuffer[] views, Readers readers) {
+            this.views = views;
+            this.readers = readers;
+        }
+        
+        private ByteBuffer currentView() {
+            while (index < views.length && !views[index].hasRemaining()) {
+                index++;
+            }
+            if (index < views.length) {
+                return views[index];
+            }
+            // nothing is read from the chunks anymore
+            done();
+            return null;
+        }
+        
+        private void done() {
+            if (readers != null) {
+                readers.close();
+                readers = null;
+            }
+        }
+        
+        public void close() {
+            index = views.length;
+            done();
+        }
+        
+        public int read() {
+            ByteBuffer view = currentView();
+            return view == null ? -1 : view.get() & 0xFF;
+        }
+        
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int total = 0;
+            ByteBuffer view = currentView();
+            while (view != null && len > 0) {
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                off += n;
+                len -= n;
+                total += n;
+                view = len > 0 ? currentView() : null;
+            }
+            return total == 0 ? -1 : total;
+        }
+        
+        public int available() {
+            int n = 0;
+            for (int i = index; i < views.length; i++) {
+                n += views[i].remaining();
+            }
+            return n;
+        }
+    }
+}
@@ -22,7 +22,10 @@ package org.apache.cxf.phase;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.cxf.common.util.ModCountCopyOnWriteArrayList;
@@ -34,10 +37,32 @@ import org.apache.cxf.interceptor.Interceptor;
  * phases supplied in the get() methods of this class are defined by default
  * within org.apache.cxf.phase.PhaseManagerImpl.  For an example of this class 
  * in use, check the sourcecode of org.apache.cxf.endpoint.ClientImpl.
+ * <p>
+ * Several chains are kept at once, keyed by the identity and modification
+ * count of the interceptor provider lists, so that callers alternating between
+ * different sets of providers do not rebuild a chain on every message.  Once
+ * the cache holds more than maxSize chains the least recently used one is
+ * discarded.
  */
 public final class PhaseChainCache {
+    public static final int DEFAULT_MAX_SIZE = 16;
+    
     AtomicReference<ChainHolder> lastData = new AtomicReference<ChainHolder>();
     
+    private final Map<ChainKey, ChainHolder> chains = new ConcurrentHashMap<ChainKey, ChainHolder>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile int maxSize;
+    
+    public PhaseChainCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    public PhaseChainCache(int max) {
+        setMaxSize(max);
+    }
     
     @SuppressWarnings("unchecked")
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
@@ -76,11 +101,50 @@ public final class PhaseChainCache {
         return getChain(phaseList, p1, p2, p3, p4, p5);
     }
     
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public void setMaxSize(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + max);
+        }
+        maxSize = max;
+    }
+    
+    public int getSize() {
+        return chains.size();
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
+    }
+    
+    public void clear() {
+        lastData.set(null);
+        chains.clear();
+    }
+    
     private PhaseInterceptorChain getChain(SortedSet<Phase> phaseList, List<Interceptor> ... providers) {
         ChainHolder last = lastData.get();
         
-        if (last == null 
-            || !last.matches(providers)) {
+        if (last != null && last.matches(providers)) {
+            hits.incrementAndGet();
+            return last.chain.cloneChain();
+        }
+        
+        ChainKey key = new ChainKey(providers);
+        ChainHolder holder = chains.get(key);
+        if (holder == null || !holder.matches(providers)) {
+            misses.incrementAndGet();
             
             PhaseInterceptorChain chain = new PhaseInterceptorChain(phaseList);
             List<ModCountCopyOnWriteArrayList<Interceptor>> copy 
@@ -89,21 +153,124 @@ public final class PhaseChainCache {
                 copy.add(new ModCountCopyOnWriteArrayList<Interceptor>(p));
                 chain.add(p);
             }
-            last = new ChainHolder(chain, copy);
-            lastData.set(last);
+            holder = new ChainHolder(chain, copy, providers);
+            chains.put(key, holder);
+            if (chains.size() > maxSize) {
+                evict(holder);
+            }
+        } else {
+            hits.incrementAndGet();
+        }
+        holder.lastUsed = clock.incrementAndGet();
+        lastData.set(holder);
+        
+        return holder.chain.cloneChain();
+    }
+    
+    /**
+     * Drops least recently used chains until the cache is back within its
+     * bounds.  Only called on a miss, so the linear scan over the (small)
+     * map is not on the hot path.
+     */
+    private void evict(ChainHolder keep) {
+        while (chains.size() > maxSize) {
+            ChainKey oldestKey = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<ChainKey, ChainHolder> entry : chains.entrySet()) {
+                ChainHolder h = entry.getValue();
+                if (h != keep && h.lastUsed < oldest) {
+                    oldest = h.lastUsed;
+                    oldestKey = entry.getKey();
+                }
+            }
+            if (oldestKey == null) {
+                return;
+            }
+            if (chains.remove(oldestKey) != null) {
+                evictions.incrementAndGet();
+            }
         }
+    }
+    
+    /**
+     * Lookup key for a set of interceptor providers.  Lists which track their own
+     * modifications (ModCountCopyOnWriteArrayList) are keyed by identity and 
+     * modification count, other lists by the identity of the interceptors they hold.
+     */
+    private static final class ChainKey {
+        private final Object[] lists;
+        private final int[] modCounts;
+        private final int hash;
         
+        ChainKey(List<Interceptor> ... providers) {
+            lists = new Object[providers.length];
+            modCounts = new int[providers.length];
+            int h = providers.length;
+            for (int x = 0; x < providers.length; x++) {
+                List<Interceptor> p = providers[x];
+                if (p.getClass() == ModCountCopyOnWriteArrayList.class) {
+                    lists[x] = p;
+                    modCounts[x] = ((ModCountCopyOnWriteArrayList)p).getModCount();
+                    h = h * 31 + System.identityHashCode(p);
+                } else {
+                    Object[] snapshot = p.toArray();
+                    lists[x] = snapshot;
+                    modCounts[x] = -1;
+                    for (Object o : snapshot) {
+                        h = h * 31 + System.identityHashCode(o);
+                    }
+                }
+                h = h * 31 + modCounts[x];
+            }
+            hash = h;
+        }
         
-        return last.chain.cloneChain();
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object o) {
+            if (!(o instanceof ChainKey)) {
+                return false;
+            }
+            ChainKey other = (ChainKey)o;
+            if (hash != other.hash || lists.length != other.lists.length) {
+                return false;
+            }
+            for (int x = 0; x < lists.length; x++) {
+                if (modCounts[x] != other.modCounts[x]) {
+                    return false;
+                }
+                if (modCounts[x] == -1) {
+                    Object[] a1 = (Object[])lists[x];
+                    Object[] a2 = (Object[])other.lists[x];
+                    if (a1.length != a2.length) {
+                        return false;
+                    }
+                    for (int y = 0; y < a1.length; y++) {
+                        if (a1[y] != a2[y]) {
+                            return false;
+                        }
+                    }
+                } else if (lists[x] != other.lists[x]) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
     
     private static class ChainHolder {
         List<ModCountCopyOnWriteArrayList<Interceptor>> lists;
+        List<Interceptor>[] sources;
         PhaseInterceptorChain chain;
+        volatile long lastUsed;
         
-        ChainHolder(PhaseInterceptorChain c, List<ModCountCopyOnWriteArrayList<Interceptor>> l) {
+        ChainHolder(PhaseInterceptorChain c, List<ModCountCopyOnWriteArrayList<Interceptor>> l,
+                    List<Interceptor>[] s) {
             lists = l;
             chain = c;
+            sources = s;
         }
         
         boolean matches(List<Interceptor> ... providers) {
@@ -114,7 +281,8 @@ public final class PhaseChainCache {
                     }
                     
                     if (providers[x].getClass() == ModCountCopyOnWriteArrayList.class) {
-                        if (((ModCountCopyOnWriteArrayList)providers[x]).getModCount()
+                        if (providers[x] != sources[x]
+                            || ((ModCountCopyOnWriteArrayList)providers[x]).getModCount()
                             != lists.get(x).getModCount()) {
                             return false;
                         }
@@ -19,9 +19,11 @@
 
 package org.apache.cxf.phase;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -51,6 +53,9 @@ import org.apache.cxf.transport.MessageObserver;
  * has an ID. PhaseInterceptors can supply a Collection of IDs which they 
  * should run before or after, supplying fine grained ordering.
  * <p>
+ * Chains obtained through cloneChain() share a flattened, immutable copy of
+ * the interceptors of the chain they were cloned from and only copy the
+ * interceptor list once an interceptor is added or removed.
  *  
  */
 public class PhaseInterceptorChain implements InterceptorChain {
@@ -73,12 +78,18 @@ public class PhaseInterceptorChain implements InterceptorChain {
     // Note no hasBefores[] is needed because implementation adds subsequent
     // interceptors to the end of the list by default.
     private boolean hasAfters[];
+    
+    // if not null, this chain has not been modified since it was cloned and
+    // executes from this array which is shared with the other clones
+    private InterceptorHolder shared[];
+    // flattened form of the interceptors of this chain, handed out to clones
+    private volatile InterceptorHolder compiled[];
 
     
     private State state;
     private Message pausedMessage;
     private MessageObserver faultObserver;
-    private PhaseInterceptorIterator iterator;
+    private ListIterator<Interceptor<? extends Message>> iterator;
     
     // currently one chain for one request/response, use below as signal 
     // to avoid duplicate fault processing on nested calling of
@@ -95,31 +106,8 @@ public class PhaseInterceptorChain implements InterceptorChain {
         nameMap = src.nameMap;
         phases = src.phases;
         
-        int length = phases.length;
-        hasAfters = new boolean[length];
-        System.arraycopy(src.hasAfters, 0, hasAfters, 0, length);
-        
-        heads = new InterceptorHolder[length];
-        tails = new InterceptorHolder[length];
-        
-        InterceptorHolder last = null;
-        for (int x = 0; x < length; x++) {
-            InterceptorHolder ih = src.heads[x];
-            while (ih != null
-                && ih.phaseIdx == x) {
-                InterceptorHolder ih2 = new InterceptorHolder(ih);
-                ih2.prev = last;
-                if (last != null) {
-                    last.next = ih2;
-                }
-                if (heads[x] == null) {
-                    heads[x] = ih2;
-                }
-                tails[x] = ih2;
-                last = ih2;
-                ih = ih.next;
-            }
-        }
+        //the linked list is only copied if this chain gets modified
+        shared = src.compile();
     }
     
     public PhaseInterceptorChain(SortedSet<Phase> ps) {
@@ -154,9 +142,72 @@ public class PhaseInterceptorChain implements InterceptorChain {
         return new PhaseInterceptorChain(this);
     }
     
+    private InterceptorHolder[] compile() {
+        if (shared != null) {
+            return shared;
+        }
+        InterceptorHolder c[] = compiled;
+        if (c == null) {
+            List<InterceptorHolder> list = new ArrayList<InterceptorHolder>();
+            PhaseInterceptorIterator it = new PhaseInterceptorIterator(heads);
+            while (it.hasNext()) {
+                list.add(it.nextInterceptorHolder());
+            }
+            c = list.toArray(new InterceptorHolder[list.size()]);
+            compiled = c;
+        }
+        return c;
+    }
+    
+    /**
+     * Copies the shared interceptor array into a linked list owned by this
+     * chain so it can be modified.  If the chain is executing, the iterator
+     * is moved over to the same position in the new list.
+     */
+    private void materialize() {
+        InterceptorHolder src[] = shared;
+        if (src == null) {
+            return;
+        }
+        int length = phases.length;
+        heads = new InterceptorHolder[length];
+        tails = new InterceptorHolder[length];
+        hasAfters = new boolean[length];
+        
+        InterceptorHolder copies[] = new InterceptorHolder[src.length];
+        InterceptorHolder last = null;
+        for (int x = 0; x < src.length; x++) {
+            InterceptorHolder ih = new InterceptorHolder(src[x]);
+            int ph = ih.phaseIdx;
+            ih.prev = last;
+            if (last != null) {
+                last.next = ih;
+            }
+            if (heads[ph] == null) {
+                heads[ph] = ih;
+            }
+            tails[ph] = ih;
+            hasAfters[ph] |= !ih.interceptor.getAfter().isEmpty();
+            copies[x] = ih;
+            last = ih;
+        }
+        shared = null;
+        
+        if (iterator instanceof SharedInterceptorIterator) {
+            int pos = ((SharedInterceptorIterator)iterator).pos;
+            PhaseInterceptorIterator it = new PhaseInterceptorIterator(heads);
+            it.prev = pos == 0 ? null : copies[pos - 1];
+            iterator = it;
+        }
+    }
+    
     private void updateIterator() {
         if (iterator == null) {
-            iterator = new PhaseInterceptorIterator(heads);
+            if (shared != null) {
+                iterator = new SharedInterceptorIterator(shared);
+            } else {
+                iterator = new PhaseInterceptorIterator(heads);
+            }
             outputChainToLog(false);
             //System.out.println(toString());
         }
@@ -342,9 +393,11 @@ public class PhaseInterceptorChain implements InterceptorChain {
         updateIterator();
         if (state == State.COMPLETE) {
             state = State.EXECUTING;
-            iterator.reset();
+        }
+        if (iterator instanceof SharedInterceptorIterator) {
+            ((SharedInterceptorIterator)iterator).pos = 0;
         } else {
-            iterator.reset();
+            ((PhaseInterceptorIterator)iterator).reset();
         }
     }
     
@@ -369,6 +422,7 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
 
     public void remove(Interceptor i) {
+        materialize();
         PhaseInterceptorIterator it = new PhaseInterceptorIterator(heads);
         while (it.hasNext()) {
             InterceptorHolder holder = it.nextInterceptorHolder();
@@ -387,10 +441,15 @@ public class PhaseInterceptorChain implements InterceptorChain {
         return getIterator();
     }
     public ListIterator<Interceptor<? extends Message>> getIterator() {
+        InterceptorHolder s[] = shared;
+        if (s != null) {
+            return new SharedInterceptorIterator(s);
+        }
         return new PhaseInterceptorIterator(heads);
     }
 
     private void remove(InterceptorHolder i) {
+        compiled = null;
         if (i.prev != null) {
             i.prev.next = i.next;
         }
@@ -419,6 +478,8 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
     
     private void insertInterceptor(int phase, PhaseInterceptor interc, boolean force) {
+        materialize();
+        compiled = null;
         InterceptorHolder ih = new InterceptorHolder(interc, phase);
         if (heads[phase] == null) {
             // no interceptors yet in this phase
@@ -553,6 +614,26 @@ public class PhaseInterceptorChain implements InterceptorChain {
             .append(message)
             .append(". Current flow:\n");
         
+        InterceptorHolder s[] = shared;
+        if (s != null) {
+            int ph = -1;
+            for (InterceptorHolder ih : s) {
+                if (ih.phaseIdx != ph) {
+                    if (ph != -1) {
+                        chain.append("]\n");
+                    }
+                    ph = ih.phaseIdx;
+                    chain.append("  ").append(phases[ph].getName()).append(" [");
+                } else {
+                    chain.append(", ");
+                }
+                chain.append(ih.interceptor.getClass().getSimpleName());
+            }
+            if (ph != -1) {
+                chain.append("]\n");
+            }
+            return chain.toString();
+        }
         for (int x = 0; x < phases.length; x++) {
             if (heads[x] != null) {
                 chain.append("  ");
@@ -690,6 +771,58 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
 
     
+    /**
+     * Iterates over the flattened interceptors shared by unmodified clones.
+     * The only per-message state is the cursor position.
+     */
+    static final class SharedInterceptorIterator implements ListIterator<Interceptor<? extends Message>> {
+        final InterceptorHolder holders[];
+        int pos;
+        
+        public SharedInterceptorIterator(InterceptorHolder h[]) {
+            holders = h;
+        }
+        
+        public boolean hasNext() {
+            return pos < holders.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Interceptor<? extends Message> next() {
+            if (pos >= holders.length) {
+                throw new NoSuchElementException();
+            }
+            return holders[pos++].interceptor;
+        }
+        
+        public boolean hasPrevious() {
+            return pos > 0;
+        }
+        @SuppressWarnings("unchecked")
+        public Interceptor<? extends Message> previous() {
+            if (pos == 0) {
+                throw new NoSuchElementException();
+            }
+            return holders[--pos].interceptor;
+        }
+        
+        public int nextIndex() {
+            throw new UnsupportedOperationException();
+        }
+        public int previousIndex() {
+            throw new UnsupportedOperationException();
+        }
+        public void add(Interceptor o) {
+            throw new UnsupportedOperationException();
+        }
+        public void set(Interceptor o) {
+            throw new UnsupportedOperationException();
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
     static final class InterceptorHolder {
         PhaseInterceptor interceptor;
         InterceptorHolder next;
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.phase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.cxf.common.util.ModCountCopyOnWriteArrayList;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.message.Message;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhaseChainCacheTest extends Assert {
+
+    private SortedSet<Phase> phases;
+    
+    @Before
+    public void setUp() {
+        phases = new TreeSet<Phase>();
+        phases.add(new Phase("phase1", 1));
+        phases.add(new Phase("phase2", 2));
+    }
+    
+    @Test
+    public void testSameProvidersHit() {
+        PhaseChainCache cache = new PhaseChainCache();
+        List<Interceptor> l1 = createList("p1", "p2");
+        
+        PhaseInterceptorChain c1 = cache.get(phases, l1);
+        PhaseInterceptorChain c2 = cache.get(phases, l1);
+        assertNotSame(c1, c2);
+        assertEquals(2, count(c2));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+    }
+    
+    @Test
+    public void testAlternatingProvidersKeepBothChains() {
+        PhaseChainCache cache = new PhaseChainCache();
+        List<Interceptor> l1 = createList("p1");
+        List<Interceptor> l2 = createList("p1", "p2");
+        
+        for (int x = 0; x < 5; x++) {
+            assertEquals(1, count(cache.get(phases, l1)));
+            assertEquals(2, count(cache.get(phases, l2)));
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(8, cache.getHits());
+        assertEquals(2, cache.getSize());
+    }
+    
+    @Test
+    public void testModifiedProvidersMiss() {
+        PhaseChainCache cache = new PhaseChainCache();
+        List<Interceptor> l1 = createList("p1");
+        
+        assertEquals(1, count(cache.get(phases, l1)));
+        l1.add(new TestInterceptor("phase2", "p2"));
+        assertEquals(2, count(cache.get(phases, l1)));
+        assertEquals(2, cache.getMisses());
+        
+        List<Interceptor> plain = new ArrayList<Interceptor>(l1);
+        plain.remove(0);
+        assertEquals(1, count(cache.get(phases, plain)));
+        assertEquals(1, count(cache.get(phases, plain)));
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        
+        // plain lists are matched by content rather than identity
+        assertEquals(2, count(cache.get(phases, new ArrayList<Interceptor>(l1))));
+        assertEquals(1, count(cache.get(phases, new ArrayList<Interceptor>(plain))));
+        assertEquals(2, count(cache.get(phases, new ArrayList<Interceptor>(l1))));
+        assertEquals(4, cache.getMisses());
+        assertEquals(3, cache.getHits());
+    }
+    
+    @Test
+    public void testEviction() {
+        PhaseChainCache cache = new PhaseChainCache(2);
+        List<Interceptor> l1 = createList("p1");
+        List<Interceptor> l2 = createList("p2");
+        List<Interceptor> l3 = createList("p3");
+        
+        cache.get(phases, l1);
+        cache.get(phases, l2);
+        cache.get(phases, l1);
+        cache.get(phases, l3);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        
+        // l2 was the least recently used one
+        cache.get(phases, l1);
+        cache.get(phases, l3);
+        assertEquals(3, cache.getMisses());
+        cache.get(phases, l2);
+        assertEquals(4, cache.getMisses());
+    }
+    
+    private List<Interceptor> createList(String ... ids) {
+        List<Interceptor> list = new ModCountCopyOnWriteArrayList<Interceptor>();
+        for (String id : ids) {
+            list.add(new TestInterceptor("phase1", id));
+        }
+        return list;
+    }
+    
+    private int count(PhaseInterceptorChain chain) {
+        int i = 0;
+        for (Iterator<?> it = chain.iterator(); it.hasNext(); it.next()) {
+            i++;
+        }
+        return i;
+    }
+    
+    static class TestInterceptor extends AbstractPhaseInterceptor<Message> {
+        TestInterceptor(String phase, String id) {
+            super(id, phase);
+        }
+        
+        public void handleMessage(Message m) {
+        }
+    }
+}
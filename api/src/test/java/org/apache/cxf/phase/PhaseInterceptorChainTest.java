@@ -312,6 +312,51 @@ public class PhaseInterceptorChainTest extends Assert {
         assertEquals(0, p1.faultInvoked);
     }
 
+    @Test
+    public void testClonedChainInsertionDuringExecution() throws Exception {
+        CountingPhaseInterceptor p2 = new CountingPhaseInterceptor("phase2", "p2");
+        CountingPhaseInterceptor p3 = new CountingPhaseInterceptor("phase3", "p3");
+        ChainAddingPhaseInterceptor p1 = new ChainAddingPhaseInterceptor(p2, "phase1", "p1");
+        chain.add(p1);
+        chain.add(p3);
+        
+        PhaseInterceptorChain clone = chain.cloneChain();
+        message.getInterceptorChain();
+        EasyMock.expectLastCall().andReturn(clone).anyTimes();
+        control.replay();
+        
+        assertTrue(clone.doIntercept(message));
+        assertEquals(1, p2.invoked);
+        assertEquals(1, p3.invoked);
+        
+        // the chain the clone was created from must not see the addition
+        Iterator<?> it = chain.iterator();
+        assertSame(p1, it.next());
+        assertSame(p3, it.next());
+        assertFalse(it.hasNext());
+        
+        it = chain.cloneChain().iterator();
+        assertSame(p1, it.next());
+        assertSame(p3, it.next());
+        assertFalse(it.hasNext());
+    }
+    
+    @Test
+    public void testClonedChainUnwind() throws Exception {
+        AbstractPhaseInterceptor p1 = setUpPhaseInterceptor("phase1", "p1");
+        setUpPhaseInterceptorInvocations(p1, false, true);
+        AbstractPhaseInterceptor p2 = setUpPhaseInterceptor("phase2", "p2");
+        setUpPhaseInterceptorInvocations(p2, true, true);
+        control.replay();
+        chain.add(p1);
+        chain.add(p2);
+        
+        PhaseInterceptorChain clone = chain.cloneChain();
+        assertFalse(clone.doIntercept(message));
+        assertSame(InterceptorChain.State.ABORTED, clone.getState());
+        assertSame(InterceptorChain.State.EXECUTING, chain.getState());
+    }
+
     @Test
     public void testWrappedInvocation() throws Exception {
         CountingPhaseInterceptor p1 = new CountingPhaseInterceptor("phase1",
@@ -452,6 +497,20 @@ public class PhaseInterceptorChainTest extends Assert {
         }
     }
     
+    public class ChainAddingPhaseInterceptor extends CountingPhaseInterceptor {
+        private final Interceptor toAdd;
+        
+        public ChainAddingPhaseInterceptor(Interceptor i, String phase, String id) {
+            super(phase, id);
+            toAdd = i;
+        }
+
+        public void handleMessage(Message m) {
+            super.handleMessage(m);
+            m.getInterceptorChain().add(toAdd);
+        }
+    }
+
     public class WrapperingPhaseInterceptor extends CountingPhaseInterceptor {
         public WrapperingPhaseInterceptor(String phase, String id) {
             super(phase, id);
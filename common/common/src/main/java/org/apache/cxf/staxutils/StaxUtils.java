@@ -26,6 +26,10 @@ import java.io.Writer;
 //import java.util.HashMap;
 //import java.util.Map;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.NamespaceContext;
@@ -81,6 +85,35 @@ public final class StaxUtils {
     
     private static final String XML_NS = "http://www.w3.org/2000/xmlns/";
     
+    /**
+     * Input factory properties that can be set through system properties of the 
+     * same name prefixed with "org.apache.cxf.stax.", e.g. 
+     * -Dorg.apache.cxf.stax.supportDTD=false.  Only the standard StAX properties
+     * are listed as the limits of newer parsers are not available in Woodstox 3.2.
+     */
+    private static final String[][] SECURITY_PROPERTIES = {
+        {"supportDTD", XMLInputFactory.SUPPORT_DTD},
+        {"supportExternalEntities", XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES},
+    };
+    
+    private static final int POOL_SIZE = Integer.getInteger("org.apache.cxf.staxutils.pool-size", 20);
+    
+    /**
+     * Factories used to create the readers and writers.  Thread-safe 
+     * implementations (Woodstox) are shared and are the ones returned by
+     * getXMLInputFactory() and getXMLOutputFactory(), otherwise each caller 
+     * borrows a factory from the pool so that creating a reader or writer does
+     * not need a global lock.
+     */
+    private static final XMLInputFactory SAFE_INPUT_FACTORY;
+    private static final XMLOutputFactory SAFE_OUTPUT_FACTORY;
+    private static final BlockingQueue<XMLInputFactory> INPUT_FACTORY_POOL
+        = new ArrayBlockingQueue<XMLInputFactory>(POOL_SIZE);
+    private static final BlockingQueue<XMLOutputFactory> OUTPUT_FACTORY_POOL
+        = new ArrayBlockingQueue<XMLOutputFactory>(POOL_SIZE);
+    private static final AtomicLong FACTORY_POOL_HITS = new AtomicLong();
+    private static final AtomicLong FACTORY_POOL_MISSES = new AtomicLong();
+    
     static {
         try {
             XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
@@ -92,6 +125,21 @@ public final class StaxUtils {
         } catch (Exception ex) {
             //ignore
         }
+        setSecurityProperties(XML_INPUT_FACTORY);
+        setSecurityProperties(XML_NS_AWARE_INPUT_FACTORY);
+        
+        if (isThreadSafe(XML_NS_AWARE_INPUT_FACTORY)) {
+            SAFE_INPUT_FACTORY = XML_NS_AWARE_INPUT_FACTORY;
+        } else {
+            SAFE_INPUT_FACTORY = null;
+            INPUT_FACTORY_POOL.offer(createXMLInputFactory(true));
+        }
+        if (isThreadSafe(XML_OUTPUT_FACTORY)) {
+            SAFE_OUTPUT_FACTORY = XML_OUTPUT_FACTORY;
+        } else {
+            SAFE_OUTPUT_FACTORY = null;
+            OUTPUT_FACTORY_POOL.offer(XMLOutputFactory.newInstance());
+        }
     }
     
     private StaxUtils() {
@@ -114,7 +162,13 @@ public final class StaxUtils {
     }
     
     /**
-     * Return a cached, namespace-aware, factory.
+     * Return a cached, namespace-aware, factory.  With a thread-safe StAX 
+     * implementation (Woodstox) this is the factory the createXMLStreamReader 
+     * methods use, so properties set on it apply to them.  Otherwise those 
+     * methods use pooled factories configured the same way when they are 
+     * created, and properties set on this factory later only apply to readers
+     * created from it directly; use {@link #isUsingSharedFactories()} to tell 
+     * which is the case.
      * @return
      */
     public static XMLInputFactory getXMLInputFactory() {
@@ -138,18 +192,109 @@ public final class StaxUtils {
     public static XMLInputFactory createXMLInputFactory(boolean nsAware) {
         XMLInputFactory factory = XMLInputFactory.newInstance();
         factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, nsAware);
+        setSecurityProperties(factory);
         return factory;
     }
 
+    /**
+     * Return a cached factory.  As with {@link #getXMLInputFactory()}, this is
+     * the factory the createXMLStreamWriter methods use only if the StAX 
+     * implementation is thread-safe.
+     * @return
+     */
     public static XMLOutputFactory getXMLOutputFactory() {
         return XML_OUTPUT_FACTORY;
     }
+    
+    private static boolean isThreadSafe(Object factory) {
+        // Woodstox factories can be used concurrently once configured
+        return factory.getClass().getName().startsWith("com.ctc.wstx.");
+    }
+    
+    private static void setSecurityProperties(XMLInputFactory factory) {
+        for (String[] prop : SECURITY_PROPERTIES) {
+            String value = System.getProperty("org.apache.cxf.stax." + prop[0]);
+            if (value == null) {
+                continue;
+            }
+            try {
+                factory.setProperty(prop[1], Boolean.valueOf(value));
+            } catch (IllegalArgumentException ex) {
+                LOG.log(Level.FINE, "XMLInputFactory " + factory.getClass().getName()
+                        + " does not support " + prop[1]);
+            }
+        }
+    }
+    
+    private static XMLInputFactory getPooledXMLInputFactory() {
+        if (SAFE_INPUT_FACTORY != null) {
+            return SAFE_INPUT_FACTORY;
+        }
+        XMLInputFactory factory = INPUT_FACTORY_POOL.poll();
+        if (factory == null) {
+            FACTORY_POOL_MISSES.incrementAndGet();
+            return createXMLInputFactory(true);
+        }
+        FACTORY_POOL_HITS.incrementAndGet();
+        return factory;
+    }
+    
+    private static void returnXMLInputFactory(XMLInputFactory factory) {
+        if (factory != SAFE_INPUT_FACTORY) {
+            INPUT_FACTORY_POOL.offer(factory);
+        }
+    }
+    
+    private static XMLOutputFactory getPooledXMLOutputFactory() {
+        if (SAFE_OUTPUT_FACTORY != null) {
+            return SAFE_OUTPUT_FACTORY;
+        }
+        XMLOutputFactory factory = OUTPUT_FACTORY_POOL.poll();
+        if (factory == null) {
+            FACTORY_POOL_MISSES.incrementAndGet();
+            return XMLOutputFactory.newInstance();
+        }
+        FACTORY_POOL_HITS.incrementAndGet();
+        return factory;
+    }
+    
+    private static void returnXMLOutputFactory(XMLOutputFactory factory) {
+        if (factory != SAFE_OUTPUT_FACTORY) {
+            OUTPUT_FACTORY_POOL.offer(factory);
+        }
+    }
+    
+    /**
+     * @return true if readers and writers are created from shared, thread-safe
+     * factories rather than from pooled ones
+     */
+    public static boolean isUsingSharedFactories() {
+        return SAFE_INPUT_FACTORY != null && SAFE_OUTPUT_FACTORY != null;
+    }
+    
+    /**
+     * @return the number of times a pooled factory was available when a reader
+     * or writer was created
+     */
+    public static long getFactoryPoolHits() {
+        return FACTORY_POOL_HITS.get();
+    }
+    
+    /**
+     * @return the number of times all pooled factories were in use, so that a 
+     * new factory had to be created
+     */
+    public static long getFactoryPoolMisses() {
+        return FACTORY_POOL_MISSES.get();
+    }
 
     public static XMLStreamWriter createXMLStreamWriter(Writer out) {
         try {
-            XMLOutputFactory factory = getXMLOutputFactory();
-            synchronized (factory) {
+            XMLOutputFactory factory = getPooledXMLOutputFactory();
+            try {
                 return factory.createXMLStreamWriter(out);
+            } finally {
+                returnXMLOutputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Cant' create XMLStreamWriter", e);
@@ -166,9 +311,11 @@ public final class StaxUtils {
         }
 
         try {
-            XMLOutputFactory factory = getXMLOutputFactory();
-            synchronized (factory) {
+            XMLOutputFactory factory = getPooledXMLOutputFactory();
+            try {
                 return factory.createXMLStreamWriter(out, encoding);
+            } finally {
+                returnXMLOutputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Cant' create XMLStreamWriter", e);
@@ -177,9 +324,11 @@ public final class StaxUtils {
     
     public static XMLStreamWriter createXMLStreamWriter(Result r) {
         try {
-            XMLOutputFactory factory = getXMLOutputFactory();
-            synchronized (factory) {
+            XMLOutputFactory factory = getPooledXMLOutputFactory();
+            try {
                 return factory.createXMLStreamWriter(r);
+            } finally {
+                returnXMLOutputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Cant' create XMLStreamWriter", e);
@@ -188,9 +337,11 @@ public final class StaxUtils {
 
     public static XMLStreamReader createFilteredReader(XMLStreamReader reader, StreamFilter filter) {
         try {
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createFilteredReader(reader, filter);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Cant' create XMLStreamReader", e);
@@ -858,9 +1009,11 @@ public final class StaxUtils {
         }
 
         try {
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createXMLStreamReader(in, encoding);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Couldn't parse stream.", e);
@@ -873,9 +1026,11 @@ public final class StaxUtils {
      */
     public static XMLStreamReader createXMLStreamReader(InputStream in) {
         try {
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createXMLStreamReader(in);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Couldn't parse stream.", e);
@@ -883,9 +1038,11 @@ public final class StaxUtils {
     }
     public static XMLStreamReader createXMLStreamReader(String systemId, InputStream in) {
         try {
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createXMLStreamReader(systemId, in);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Couldn't parse stream.", e);
@@ -914,9 +1071,11 @@ public final class StaxUtils {
                     return new W3CDOMStreamReader(el);
                 }
             }
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createXMLStreamReader(source);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Couldn't parse stream.", e);
@@ -930,9 +1089,11 @@ public final class StaxUtils {
     public static XMLStreamReader createXMLStreamReader(Reader reader) {
 
         try {
-            XMLInputFactory factory = getXMLInputFactory();
-            synchronized (factory) {
+            XMLInputFactory factory = getPooledXMLInputFactory();
+            try {
                 return factory.createXMLStreamReader(reader);
+            } finally {
+                returnXMLInputFactory(factory);
             }
         } catch (XMLStreamException e) {
             throw new RuntimeException("Couldn't parse stream.", e);
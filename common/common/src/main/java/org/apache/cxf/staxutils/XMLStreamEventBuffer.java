@@ -0,0 +1,712 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.staxutils;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Records the events of one element of an XMLStreamReader, as they are read, 
+ * so that the element can be read again.  The events are kept in a few flat 
+ * arrays, a lot smaller than a DOM of the same element, and are only recorded 
+ * as far as a reader has asked for them.
+ * <p>
+ * {@link #getFragmentReader()} returns a reader of the element as a document, 
+ * any number of which may be used one after the other.  {@link #getReader()} 
+ * returns the reader that takes the place of the original one: it replays 
+ * what has been recorded, then goes on with the original reader without 
+ * recording, so that the rest of the element and what follows it are streamed.  
+ * Once it has done so, the element can no longer be read again.
+ * <p>
+ * The namespaces declared on the ancestors of the element are looked up in the
+ * namespace context of the original reader.  So that the element stands on its
+ * own, the prefixes of its name and attributes are declared on it if they are
+ * declared on an ancestor.
+ */
+public class XMLStreamEventBuffer {
+    
+    private static final int META_SHIFT = 16;
+    private static final int META_MASK = 0xffff;
+    
+    private final XMLStreamReader reader;
+    private final NamespaceContext parentContext;
+    
+    private int[] types = new int[64];
+    private int[] offsets = new int[64];
+    private int[] counts = new int[64];
+    private int size;
+    private String[] strings = new String[256];
+    private int stringCount;
+    
+    private int depth;
+    private boolean complete;
+    private boolean detached;
+    
+    /**
+     * @param r the reader, on the START_ELEMENT of the element
+     */
+    public XMLStreamEventBuffer(XMLStreamReader r) {
+        if (r.getEventType() != XMLStreamReader.START_ELEMENT) {
+            throw new IllegalStateException("The reader is not on a start element");
+        }
+        reader = r;
+        parentContext = r.getNamespaceContext();
+        recordStartElement(true);
+        depth = 1;
+    }
+    
+    /**
+     * @return the name of the element
+     */
+    public QName getName() {
+        return new QName(nsURI(strings[offsets[0]]), strings[offsets[0] + 1], 
+                         prefix(strings[offsets[0] + 2]));
+    }
+    
+    /**
+     * @return the number of events recorded
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return true if the whole element has been recorded
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * @return a reader of the element, starting with START_DOCUMENT and 
+     * ending with END_DOCUMENT
+     */
+    public XMLStreamReader getFragmentReader() {
+        return new Cursor(true);
+    }
+    
+    /**
+     * @return a reader of the element and of what follows it, on the 
+     * START_ELEMENT of the element
+     */
+    public XMLStreamReader getReader() {
+        return new Cursor(false);
+    }
+    
+    private void recordNext() throws XMLStreamException {
+        if (detached) {
+            throw new XMLStreamException("The element has already been read past the recorded events");
+        }
+        int event = reader.next();
+        switch (event) {
+        case XMLStreamReader.START_ELEMENT:
+            recordStartElement(false);
+            depth++;
+            break;
+        case XMLStreamReader.END_ELEMENT:
+            addEvent(event, 0);
+            addString(reader.getNamespaceURI());
+            addString(reader.getLocalName());
+            addString(reader.getPrefix());
+            depth--;
+            complete = depth == 0;
+            break;
+        case XMLStreamReader.CHARACTERS:
+        case XMLStreamReader.CDATA:
+        case XMLStreamReader.SPACE:
+        case XMLStreamReader.COMMENT:
+            addEvent(event, 0);
+            addString(reader.getText());
+            break;
+        case XMLStreamReader.PROCESSING_INSTRUCTION:
+            addEvent(event, 0);
+            addString(reader.getPITarget());
+            addString(reader.getPIData());
+            break;
+        case XMLStreamReader.ENTITY_REFERENCE:
+            addEvent(event, 0);
+            addString(reader.getLocalName());
+            addString(reader.getText());
+            break;
+        case XMLStreamReader.END_DOCUMENT:
+            throw new XMLStreamException("Unexpected end of document");
+        default:
+            addEvent(event, 0);
+            break;
+        }
+    }
+    
+    private void recordStartElement(boolean root) {
+        int nsCount = reader.getNamespaceCount();
+        int attCount = reader.getAttributeCount();
+        int start = size;
+        addEvent(XMLStreamReader.START_ELEMENT, 0);
+        addString(reader.getNamespaceURI());
+        addString(reader.getLocalName());
+        addString(reader.getPrefix());
+        for (int i = 0; i < nsCount; i++) {
+            addString(reader.getNamespacePrefix(i));
+            addString(reader.getNamespaceURI(i));
+        }
+        if (root) {
+            nsCount += declare(reader.getPrefix(), reader.getNamespaceURI(), start, nsCount);
+            for (int i = 0; i < attCount; i++) {
+                nsCount += declare(reader.getAttributePrefix(i), reader.getAttributeNamespace(i), 
+                                   start, nsCount);
+            }
+        }
+        for (int i = 0; i < attCount; i++) {
+            addString(reader.getAttributeNamespace(i));
+            addString(reader.getAttributeLocalName(i));
+            addString(reader.getAttributePrefix(i));
+            addString(reader.getAttributeType(i));
+            addString(reader.getAttributeValue(i));
+        }
+        counts[start] = (nsCount << META_SHIFT) | attCount;
+    }
+    
+    /**
+     * Declares the prefix on the root element unless it is declared there already.
+     */
+    private int declare(String pfx, String uri, int event, int nsCount) {
+        pfx = prefix(pfx);
+        if (uri == null || uri.length() == 0 || XMLConstants.XML_NS_URI.equals(uri)) {
+            return 0;
+        }
+        int offset = offsets[event] + 3;
+        for (int i = 0; i < nsCount; i++) {
+            if (pfx.equals(prefix(strings[offset + 2 * i]))) {
+                return 0;
+            }
+        }
+        addString(pfx);
+        addString(uri);
+        return 1;
+    }
+    
+    private void addEvent(int type, int count) {
+        if (size == types.length) {
+            types = grow(types);
+            offsets = grow(offsets);
+            counts = grow(counts);
+        }
+        types[size] = type;
+        offsets[size] = stringCount;
+        counts[size] = count;
+        size++;
+    }
+    
+    private void addString(String s) {
+        if (stringCount == strings.length) {
+            String[] a = new String[strings.length * 2];
+            System.arraycopy(strings, 0, a, 0, stringCount);
+            strings = a;
+        }
+        strings[stringCount++] = s;
+    }
+    
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+    
+    private static String nsURI(String uri) {
+        return uri == null ? XMLConstants.NULL_NS_URI : uri;
+    }
+    
+    private static String prefix(String pfx) {
+        return pfx == null ? XMLConstants.DEFAULT_NS_PREFIX : pfx;
+    }
+    
+    /**
+     * A reader over the recorded events that records more of them as needed.
+     */
+    private class Cursor implements XMLStreamReader, NamespaceContext {
+        private final boolean fragment;
+        private int index;
+        private int type;
+        private boolean live;
+        private int[] elements = new int[16];
+        private int elementDepth;
+        
+        Cursor(boolean fragment) {
+            this.fragment = fragment;
+            if (fragment) {
+                index = -1;
+                type = START_DOCUMENT;
+            } else {
+                push(0);
+                type = START_ELEMENT;
+            }
+        }
+        
+        private void push(int event) {
+            if (elementDepth == elements.length) {
+                elements = grow(elements);
+            }
+            elements[elementDepth++] = event;
+        }
+        
+        public int next() throws XMLStreamException {
+            if (live) {
+                return reader.next();
+            }
+            if (type == END_DOCUMENT) {
+                throw new XMLStreamException("Already at the end of the document");
+            }
+            if (type == END_ELEMENT) {
+                elementDepth--;
+            }
+            if (index + 1 == size) {
+                if (complete) {
+                    if (fragment) {
+                        type = END_DOCUMENT;
+                        return type;
+                    }
+                    // go on with the original reader, which is on the same END_ELEMENT
+                    live = true;
+                    detached = true;
+                    return reader.next();
+                }
+                if (!fragment) {
+                    // nobody reads the element again, stop recording
+                    live = true;
+                    detached = true;
+                    return reader.next();
+                }
+                recordNext();
+            }
+            index++;
+            type = types[index];
+            if (type == START_ELEMENT) {
+                push(index);
+            }
+            return type;
+        }
+        
+        public int nextTag() throws XMLStreamException {
+            if (live) {
+                return reader.nextTag();
+            }
+            int event = next();
+            while ((event == CHARACTERS && isWhiteSpace())
+                || (event == CDATA && isWhiteSpace())
+                || event == SPACE
+                || event == PROCESSING_INSTRUCTION
+                || event == COMMENT) {
+                event = next();
+            }
+            if (event != START_ELEMENT && event != END_ELEMENT) {
+                throw new XMLStreamException("expected start or end tag", getLocation());
+            }
+            return event;
+        }
+        
+        public String getElementText() throws XMLStreamException {
+            if (live) {
+                return reader.getElementText();
+            }
+            if (type != START_ELEMENT) {
+                throw new XMLStreamException("parser must be on START_ELEMENT to read next text",
+                                             getLocation());
+            }
+            StringBuilder content = new StringBuilder();
+            int event = next();
+            while (event != END_ELEMENT) {
+                if (event == CHARACTERS || event == CDATA || event == SPACE 
+                    || event == ENTITY_REFERENCE) {
+                    content.append(getText());
+                } else if (event == START_ELEMENT) {
+                    throw new XMLStreamException("element text content may not contain START_ELEMENT",
+                                                 getLocation());
+                } else if (event == END_DOCUMENT) {
+                    throw new XMLStreamException("unexpected end of document when reading element text",
+                                                 getLocation());
+                }
+                event = next();
+            }
+            return content.toString();
+        }
+        
+        public boolean hasNext() throws XMLStreamException {
+            return live ? reader.hasNext() : type != END_DOCUMENT;
+        }
+        
+        public void require(int expected, String namespaceURI, String localName) 
+            throws XMLStreamException {
+            if (live) {
+                reader.require(expected, namespaceURI, localName);
+                return;
+            }
+            if (expected != getEventType()
+                || (namespaceURI != null && !namespaceURI.equals(getNamespaceURI()))
+                || (localName != null && !localName.equals(getLocalName()))) {
+                throw new XMLStreamException("require failed", getLocation());
+            }
+        }
+        
+        public int getEventType() {
+            return live ? reader.getEventType() : type;
+        }
+        
+        public void close() throws XMLStreamException {
+            if (live) {
+                reader.close();
+            }
+        }
+        
+        private int offset() {
+            return offsets[index];
+        }
+        
+        private int nsCount(int event) {
+            return counts[event] >>> META_SHIFT;
+        }
+        
+        private int attCount(int event) {
+            return counts[event] & META_MASK;
+        }
+        
+        private int attOffset(int i) {
+            return offset() + 3 + 2 * nsCount(index) + 5 * i;
+        }
+        
+        private boolean isElementEvent() {
+            return type == START_ELEMENT || type == END_ELEMENT;
+        }
+        
+        public boolean isStartElement() {
+            return getEventType() == START_ELEMENT;
+        }
+        
+        public boolean isEndElement() {
+            return getEventType() == END_ELEMENT;
+        }
+        
+        public boolean isCharacters() {
+            return getEventType() == CHARACTERS;
+        }
+        
+        public boolean isWhiteSpace() {
+            if (live) {
+                return reader.isWhiteSpace();
+            }
+            if (type == SPACE) {
+                return true;
+            }
+            if (type != CHARACTERS && type != CDATA) {
+                return false;
+            }
+            String text = getText();
+            for (int i = 0; i < text.length(); i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        public boolean hasName() {
+            return live ? reader.hasName() : isElementEvent();
+        }
+        
+        public boolean hasText() {
+            if (live) {
+                return reader.hasText();
+            }
+            return type == CHARACTERS || type == CDATA || type == SPACE 
+                || type == COMMENT || type == ENTITY_REFERENCE;
+        }
+        
+        public QName getName() {
+            if (live) {
+                return reader.getName();
+            }
+            if (!isElementEvent()) {
+                throw new IllegalStateException("Current event is not an element");
+            }
+            return new QName(getNamespaceURI(), getLocalName(), getPrefix());
+        }
+        
+        public String getLocalName() {
+            if (live) {
+                return reader.getLocalName();
+            }
+            if (isElementEvent() || type == ENTITY_REFERENCE) {
+                return strings[offset() + (type == ENTITY_REFERENCE ? 0 : 1)];
+            }
+            throw new IllegalStateException("Current event has no local name");
+        }
+        
+        public String getNamespaceURI() {
+            if (live) {
+                return reader.getNamespaceURI();
+            }
+            return isElementEvent() ? nsURI(strings[offset()]) : null;
+        }
+        
+        public String getPrefix() {
+            if (live) {
+                return reader.getPrefix();
+            }
+            return isElementEvent() ? prefix(strings[offset() + 2]) : null;
+        }
+        
+        public int getAttributeCount() {
+            if (live) {
+                return reader.getAttributeCount();
+            }
+            checkStartElement();
+            return attCount(index);
+        }
+        
+        private void checkStartElement() {
+            if (type != START_ELEMENT) {
+                throw new IllegalStateException("Current event is not START_ELEMENT");
+            }
+        }
+        
+        public QName getAttributeName(int i) {
+            if (live) {
+                return reader.getAttributeName(i);
+            }
+            return new QName(getAttributeNamespace(i), getAttributeLocalName(i), getAttributePrefix(i));
+        }
+        
+        public String getAttributeNamespace(int i) {
+            if (live) {
+                return reader.getAttributeNamespace(i);
+            }
+            checkStartElement();
+            return nsURI(strings[attOffset(i)]);
+        }
+        
+        public String getAttributeLocalName(int i) {
+            if (live) {
+                return reader.getAttributeLocalName(i);
+            }
+            checkStartElement();
+            return strings[attOffset(i) + 1];
+        }
+        
+        public String getAttributePrefix(int i) {
+            if (live) {
+                return reader.getAttributePrefix(i);
+            }
+            checkStartElement();
+            return prefix(strings[attOffset(i) + 2]);
+        }
+        
+        public String getAttributeType(int i) {
+            if (live) {
+                return reader.getAttributeType(i);
+            }
+            checkStartElement();
+            return strings[attOffset(i) + 3];
+        }
+        
+        public String getAttributeValue(int i) {
+            if (live) {
+                return reader.getAttributeValue(i);
+            }
+            checkStartElement();
+            return strings[attOffset(i) + 4];
+        }
+        
+        public String getAttributeValue(String namespaceURI, String localName) {
+            if (live) {
+                return reader.getAttributeValue(namespaceURI, localName);
+            }
+            checkStartElement();
+            for (int i = 0; i < attCount(index); i++) {
+                if (localName.equals(getAttributeLocalName(i))
+                    && (namespaceURI == null || namespaceURI.equals(getAttributeNamespace(i)))) {
+                    return getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+        
+        public boolean isAttributeSpecified(int i) {
+            return live ? reader.isAttributeSpecified(i) : true;
+        }
+        
+        public int getNamespaceCount() {
+            if (live) {
+                return reader.getNamespaceCount();
+            }
+            if (type == START_ELEMENT) {
+                return nsCount(index);
+            } else if (type == END_ELEMENT) {
+                return nsCount(elements[elementDepth - 1]);
+            }
+            throw new IllegalStateException("Current event is not an element");
+        }
+        
+        private int nsOffset(int i) {
+            int event = type == END_ELEMENT ? elements[elementDepth - 1] : index;
+            return offsets[event] + 3 + 2 * i;
+        }
+        
+        public String getNamespacePrefix(int i) {
+            if (live) {
+                return reader.getNamespacePrefix(i);
+            }
+            String pfx = strings[nsOffset(i)];
+            return pfx == null || pfx.length() == 0 ? null : pfx;
+        }
+        
+        public String getNamespaceURI(int i) {
+            if (live) {
+                return reader.getNamespaceURI(i);
+            }
+            return strings[nsOffset(i) + 1];
+        }
+        
+        public String getNamespaceURI(String pfx) {
+            if (live) {
+                return reader.getNamespaceURI(pfx);
+            }
+            pfx = prefix(pfx);
+            for (int e = elementDepth - 1; e >= 0; e--) {
+                int event = elements[e];
+                int offset = offsets[event] + 3;
+                for (int i = 0; i < nsCount(event); i++) {
+                    if (pfx.equals(prefix(strings[offset + 2 * i]))) {
+                        return strings[offset + 2 * i + 1];
+                    }
+                }
+            }
+            return parentContext == null ? null : parentContext.getNamespaceURI(pfx);
+        }
+        
+        public String getPrefix(String namespaceURI) {
+            for (int e = elementDepth - 1; e >= 0; e--) {
+                int event = elements[e];
+                int offset = offsets[event] + 3;
+                for (int i = 0; i < nsCount(event); i++) {
+                    String pfx = prefix(strings[offset + 2 * i]);
+                    if (namespaceURI.equals(strings[offset + 2 * i + 1])
+                        && namespaceURI.equals(getNamespaceURI(pfx))) {
+                        return pfx;
+                    }
+                }
+            }
+            return parentContext == null ? null : parentContext.getPrefix(namespaceURI);
+        }
+        
+        public Iterator getPrefixes(String namespaceURI) {
+            String pfx = getPrefix(namespaceURI);
+            if (pfx == null) {
+                return Collections.EMPTY_LIST.iterator();
+            }
+            return Collections.singletonList(pfx).iterator();
+        }
+        
+        public NamespaceContext getNamespaceContext() {
+            return live ? reader.getNamespaceContext() : this;
+        }
+        
+        public String getText() {
+            if (live) {
+                return reader.getText();
+            }
+            if (type == ENTITY_REFERENCE) {
+                return strings[offset() + 1];
+            }
+            if (!hasText()) {
+                throw new IllegalStateException("Current event has no text");
+            }
+            return strings[offset()];
+        }
+        
+        public char[] getTextCharacters() {
+            return live ? reader.getTextCharacters() : getText().toCharArray();
+        }
+        
+        public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) 
+            throws XMLStreamException {
+            if (live) {
+                return reader.getTextCharacters(sourceStart, target, targetStart, length);
+            }
+            String text = getText();
+            int n = Math.max(0, Math.min(length, text.length() - sourceStart));
+            text.getChars(sourceStart, sourceStart + n, target, targetStart);
+            return n;
+        }
+        
+        public int getTextStart() {
+            return live ? reader.getTextStart() : 0;
+        }
+        
+        public int getTextLength() {
+            return live ? reader.getTextLength() : getText().length();
+        }
+        
+        public String getPITarget() {
+            if (live) {
+                return reader.getPITarget();
+            }
+            return type == PROCESSING_INSTRUCTION ? strings[offset()] : null;
+        }
+        
+        public String getPIData() {
+            if (live) {
+                return reader.getPIData();
+            }
+            return type == PROCESSING_INSTRUCTION ? strings[offset() + 1] : null;
+        }
+        
+        public Location getLocation() {
+            return reader.getLocation();
+        }
+        
+        public Object getProperty(String name) {
+            return reader.getProperty(name);
+        }
+        
+        public String getEncoding() {
+            return reader.getEncoding();
+        }
+        
+        public String getVersion() {
+            return reader.getVersion();
+        }
+        
+        public boolean isStandalone() {
+            return reader.isStandalone();
+        }
+        
+        public boolean standaloneSet() {
+            return reader.standaloneSet();
+        }
+        
+        public String getCharacterEncodingScheme() {
+            return reader.getCharacterEncodingScheme();
+        }
+    }
+}
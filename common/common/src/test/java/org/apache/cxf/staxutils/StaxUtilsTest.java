@@ -23,6 +23,7 @@ import java.io.*;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Source;
@@ -251,4 +252,69 @@ public class StaxUtilsTest extends Assert {
         assertFalse(output.contains("<?pi in='the sky'?>"));
         assertFalse(output.contains("<?e excl='gads'?>"));
     }
+    
+    @Test
+    public void testConcurrentReaderCreation() throws Exception {
+        final String xml = "<root xmlns='urn:test'><child/></root>";
+        final int threads = 8;
+        final boolean[] ok = new boolean[threads];
+        Thread[] workers = new Thread[threads];
+        long before = StaxUtils.getFactoryPoolHits() + StaxUtils.getFactoryPoolMisses();
+        for (int i = 0; i < threads; i++) {
+            final int idx = i;
+            workers[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            XMLStreamReader reader = StaxUtils.createXMLStreamReader(new StringReader(xml));
+                            StaxUtils.toNextElement(new DepthXMLStreamReader(reader));
+                            StringWriter sw = new StringWriter();
+                            XMLStreamWriter writer = StaxUtils.createXMLStreamWriter(sw);
+                            StaxUtils.copy(reader, writer);
+                            writer.flush();
+                            if (!sw.toString().contains("child")) {
+                                return;
+                            }
+                        }
+                        ok[idx] = true;
+                    } catch (Exception e) {
+                        // leaves ok[idx] false
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for (Thread t : workers) {
+            t.join(10000);
+        }
+        for (boolean b : ok) {
+            assertTrue(b);
+        }
+        long borrowed = StaxUtils.getFactoryPoolHits() + StaxUtils.getFactoryPoolMisses() - before;
+        if (StaxUtils.isUsingSharedFactories()) {
+            assertEquals(0, borrowed);
+        } else {
+            assertTrue(borrowed > 0);
+        }
+    }
+    
+    @Test
+    public void testSharedFactoryProperties() throws Exception {
+        if (!StaxUtils.isUsingSharedFactories()) {
+            return;
+        }
+        // properties set on the cached factory apply to the readers StaxUtils creates
+        XMLInputFactory factory = StaxUtils.getXMLInputFactory();
+        Object coalescing = factory.getProperty(XMLInputFactory.IS_COALESCING);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        try {
+            XMLStreamReader reader = StaxUtils.createXMLStreamReader(
+                new StringReader("<a>x<![CDATA[y]]>z</a>"));
+            reader.nextTag();
+            reader.next();
+            assertEquals("xyz", reader.getText());
+        } finally {
+            factory.setProperty(XMLInputFactory.IS_COALESCING, coalescing);
+        }
+    }
 }
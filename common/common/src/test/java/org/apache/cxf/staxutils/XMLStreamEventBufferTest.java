@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.staxutils;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import org.apache.cxf.helpers.DOMUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XMLStreamEventBufferTest extends Assert {
+    private static final String ENVELOPE = 
+        "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\""
+        + " xmlns:t=\"http://example.com/types\"><soap:Body>"
+        + "<t:order t:id=\"42\"><t:item>one</t:item><!-- c --><t:item>two &amp; three</t:item>"
+        + "<note xmlns=\"http://example.com/notes\">text</note></t:order>"
+        + "<t:next/></soap:Body></soap:Envelope>";
+
+    private XMLStreamReader createPayloadReader() throws XMLStreamException {
+        XMLStreamReader reader = StaxUtils.createXMLStreamReader(new StringReader(ENVELOPE));
+        reader.nextTag();
+        reader.nextTag();
+        reader.nextTag();
+        assertEquals("order", reader.getLocalName());
+        return reader;
+    }
+    
+    @Test
+    public void testFragmentReader() throws Exception {
+        XMLStreamEventBuffer buffer = new XMLStreamEventBuffer(createPayloadReader());
+        assertEquals("order", buffer.getName().getLocalPart());
+        assertEquals("http://example.com/types", buffer.getName().getNamespaceURI());
+        assertEquals(1, buffer.size());
+        
+        XMLStreamReader fragment = buffer.getFragmentReader();
+        assertEquals(XMLStreamReader.START_DOCUMENT, fragment.getEventType());
+        checkOrder(StaxUtils.read(fragment));
+        assertTrue(buffer.isComplete());
+        
+        // replayed
+        checkOrder(StaxUtils.read(buffer.getFragmentReader()));
+    }
+    
+    @Test
+    public void testReplayAndContinue() throws Exception {
+        XMLStreamReader original = createPayloadReader();
+        XMLStreamEventBuffer buffer = new XMLStreamEventBuffer(original);
+        
+        // a handler reads part of the payload
+        XMLStreamReader fragment = buffer.getFragmentReader();
+        fragment.nextTag();
+        fragment.nextTag();
+        assertEquals("item", fragment.getLocalName());
+        assertEquals("one", fragment.getElementText());
+        assertFalse(buffer.isComplete());
+        int recorded = buffer.size();
+        
+        XMLStreamReader reader = buffer.getReader();
+        assertEquals(XMLStreamReader.START_ELEMENT, reader.getEventType());
+        assertEquals("order", reader.getLocalName());
+        assertEquals("42", reader.getAttributeValue("http://example.com/types", "id"));
+        assertEquals("http://example.com/types", reader.getNamespaceURI("t"));
+        
+        W3CDOMStreamWriter writer = new W3CDOMStreamWriter();
+        StaxUtils.copy(reader, writer);
+        checkOrder(writer.getDocument());
+        // the rest was streamed, not recorded
+        assertEquals(recorded, buffer.size());
+        
+        reader.nextTag();
+        assertEquals("next", reader.getLocalName());
+        assertSame(original.getLocalName(), reader.getLocalName());
+        
+        try {
+            StaxUtils.read(buffer.getFragmentReader());
+            fail("the element has been read past the recorded events");
+        } catch (XMLStreamException ex) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testInheritedNamespacesDeclared() throws Exception {
+        XMLStreamEventBuffer buffer = new XMLStreamEventBuffer(createPayloadReader());
+        XMLStreamReader fragment = buffer.getFragmentReader();
+        fragment.next();
+        assertEquals(1, fragment.getNamespaceCount());
+        assertEquals("t", fragment.getNamespacePrefix(0));
+        assertEquals("http://example.com/types", fragment.getNamespaceURI(0));
+        assertEquals("http://schemas.xmlsoap.org/soap/envelope/", 
+                     fragment.getNamespaceContext().getNamespaceURI("soap"));
+    }
+    
+    private void checkOrder(Document doc) {
+        Element order = doc.getDocumentElement();
+        assertEquals("order", order.getLocalName());
+        assertEquals("http://example.com/types", order.getNamespaceURI());
+        assertEquals("42", order.getAttributeNS("http://example.com/types", "id"));
+        Element item = DOMUtils.getFirstElement(order);
+        assertEquals("one", item.getTextContent());
+        item = DOMUtils.getNextElement(item);
+        assertEquals("two & three", item.getTextContent());
+        Element note = DOMUtils.getNextElement(item);
+        assertEquals("http://example.com/notes", note.getNamespaceURI());
+        assertEquals("text", note.getTextContent());
+        assertNull(DOMUtils.getNextElement(note));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.binding.soap;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.cxf.databinding.DataBinding;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.staxutils.StaxUtils;
+
+/**
+ * Inbound header that keeps the serialized header element and only turns it 
+ * into its object form, a DOM Element or whatever its DataBinding reads, when 
+ * the object is first asked for.  The serialized form declares all the 
+ * namespaces that were in scope for the header in the original message.
+ */
+public class LazySoapHeader extends SoapHeader {
+    private String xml;
+
+    public LazySoapHeader(QName q, String xml, DataBinding b) {
+        super(q, null, b);
+        this.xml = xml;
+    }
+    
+    public boolean isMaterialized() {
+        return xml == null;
+    }
+
+    @Override
+    public Object getObject() {
+        if (xml != null) {
+            String s = xml;
+            xml = null;
+            super.setObject(read(s));
+        }
+        return super.getObject();
+    }
+    
+    @Override
+    public void setObject(Object object) {
+        xml = null;
+        super.setObject(object);
+    }
+    
+    private Object read(String s) {
+        XMLStreamReader reader = StaxUtils.createXMLStreamReader(new StringReader(s));
+        try {
+            if (getDataBinding() != null) {
+                reader.nextTag();
+                return getDataBinding().createReader(XMLStreamReader.class).read(reader);
+            }
+            return StaxUtils.read(reader).getDocumentElement();
+        } catch (XMLStreamException e) {
+            throw new Fault(e);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                //ignore
+            }
+        }
+    }
+}
@@ -20,13 +20,20 @@
 package org.apache.cxf.binding.soap.interceptor;
 
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -36,6 +43,7 @@ import org.w3c.dom.Node;
 //import org.w3c.dom.NodeList;
 
 import org.apache.cxf.Bus;
+import org.apache.cxf.binding.soap.LazySoapHeader;
 import org.apache.cxf.binding.soap.Soap11;
 import org.apache.cxf.binding.soap.SoapFault;
 import org.apache.cxf.binding.soap.SoapHeader;
@@ -49,12 +57,24 @@ import org.apache.cxf.databinding.DataBinding;
 import org.apache.cxf.headers.HeaderManager;
 import org.apache.cxf.headers.HeaderProcessor;
 import org.apache.cxf.helpers.DOMUtils;
+import org.apache.cxf.message.MessageUtils;
 import org.apache.cxf.phase.Phase;
 import org.apache.cxf.staxutils.PartialXMLStreamReader;
 import org.apache.cxf.staxutils.StaxUtils;
 
 
 public class ReadHeadersInterceptor extends AbstractSoapInterceptor {
+    /**
+     * Contextual property that makes the headers be read straight from the 
+     * stream instead of through a DOM of the envelope.  The headers are then 
+     * LazySoapHeaders that only build their DOM Element, or read their 
+     * DataBinding object, when getObject() is first called.  No Node content is
+     * set on the message in that case, so it must not be enabled together with
+     * interceptors that work on the SAAJ or DOM form of the envelope, such as 
+     * WS-Security or JAX-WS SOAP handlers.
+     */
+    public static final String STREAM_HEADERS = "org.apache.cxf.binding.soap.streamHeaders";
+    
     private static final Logger LOG = LogUtils.getL7dLogger(ReadHeadersInterceptor.class);
 
     private Bus bus;
@@ -97,79 +117,10 @@ public class ReadHeadersInterceptor extends AbstractSoapInterceptor {
                 }
                 message.setVersion(soapVersion);
 
-                XMLStreamReader filteredReader = new PartialXMLStreamReader(xmlReader, message.getVersion()
-                    .getBody());
-
-                Document doc = StaxUtils.read(filteredReader);
-
-                message.setContent(Node.class, doc);
-
-                // Find header
-                // TODO - we could stream read the "known" headers and just DOM read the 
-                // unknown ones
-                Element element = doc.getDocumentElement();
-                QName header = soapVersion.getHeader();                
-                List<Element> elemList = 
-                    DOMUtils.findAllElementsByTagNameNS(element, 
-                                                        header.getNamespaceURI(), 
-                                                        header.getLocalPart());
-                for (Element elem : elemList) {
-                    Element hel = DOMUtils.getFirstElement(elem);
-                    while (hel != null) {
-                        // Need to add any attributes that are present on the parent element
-                        // which otherwise would be lost.
-                        if (elem.hasAttributes()) {
-                            NamedNodeMap nnp = elem.getAttributes();
-                            for (int ct = 0; ct < nnp.getLength(); ct++) {
-                                Node attr = nnp.item(ct);
-                                Node headerAttrNode = hel.hasAttributes() 
-                                        ?  hel.getAttributes().getNamedItemNS(
-                                                        attr.getNamespaceURI(), attr.getLocalName()) 
-                                        : null;
-                                
-                                if (headerAttrNode == null) {
-                                    Attr attribute = hel.getOwnerDocument().createAttributeNS(
-                                            attr.getNamespaceURI(), 
-                                            attr.getNodeName());
-                                    attribute.setNodeValue(attr.getNodeValue());
-                                    hel.setAttributeNodeNS(attribute);
-                                }
-                            }
-                        }
-                        
-                        HeaderProcessor p = bus.getExtension(HeaderManager.class)
-                            .getHeaderProcessor(hel.getNamespaceURI());
-
-                        Object obj;
-                        DataBinding dataBinding = null;
-                        if (p == null || p.getDataBinding() == null) {
-                            obj = hel;
-                        } else {
-                            dataBinding = p.getDataBinding();
-                            obj = dataBinding.createReader(Node.class).read(hel);
-                        }
-                        //TODO - add the interceptors
-                        
-                        SoapHeader shead = new SoapHeader(new QName(hel.getNamespaceURI(),
-                                                                    hel.getLocalName()),
-                                                           obj,
-                                                           dataBinding);
-                        String mu = hel.getAttributeNS(soapVersion.getNamespace(),
-                                                      soapVersion.getAttrNameMustUnderstand());
-                        String act = hel.getAttributeNS(soapVersion.getNamespace(),
-                                                        soapVersion.getAttrNameRole());
-
-                        if (!StringUtils.isEmpty(act)) {
-                            shead.setActor(act);
-                        }
-                        shead.setMustUnderstand(Boolean.valueOf(mu) || "1".equals(mu));
-                        //mark header as inbound header.(for distinguishing between the  direction to 
-                        //avoid piggybacking of headers from request->server->response.
-                        shead.setDirection(SoapHeader.Direction.DIRECTION_IN);
-                        message.getHeaders().add(shead);
-                        
-                        hel = DOMUtils.getNextElement(hel);
-                    }
+                if (MessageUtils.isTrue(message.getContextualProperty(STREAM_HEADERS))) {
+                    readStreamedHeaders(message, xmlReader, soapVersion);
+                } else {
+                    readDOMHeaders(message, xmlReader, soapVersion);
                 }
                 //advance to just outside the <soap:body> opening tag, but not 
                 //to the nextTag as that may skip over white space that is 
@@ -184,4 +135,233 @@ public class ReadHeadersInterceptor extends AbstractSoapInterceptor {
             throw new SoapFault(new Message("XML_STREAM_EXC", LOG), e, message.getVersion().getSender());
         }
     }
+    
+    private void readDOMHeaders(SoapMessage message, XMLStreamReader xmlReader, SoapVersion soapVersion)
+        throws XMLStreamException {
+        XMLStreamReader filteredReader = new PartialXMLStreamReader(xmlReader, message.getVersion()
+            .getBody());
+
+        Document doc = StaxUtils.read(filteredReader);
+
+        message.setContent(Node.class, doc);
+
+        // Find header (see STREAM_HEADERS for reading them without the DOM)
+        Element element = doc.getDocumentElement();
+        QName header = soapVersion.getHeader();                
+        List<Element> elemList = 
+            DOMUtils.findAllElementsByTagNameNS(element, 
+                                                header.getNamespaceURI(), 
+                                                header.getLocalPart());
+        for (Element elem : elemList) {
+            Element hel = DOMUtils.getFirstElement(elem);
+            while (hel != null) {
+                // Need to add any attributes that are present on the parent element
+                // which otherwise would be lost.
+                if (elem.hasAttributes()) {
+                    NamedNodeMap nnp = elem.getAttributes();
+                    for (int ct = 0; ct < nnp.getLength(); ct++) {
+                        Node attr = nnp.item(ct);
+                        Node headerAttrNode = hel.hasAttributes() 
+                                ?  hel.getAttributes().getNamedItemNS(
+                                                attr.getNamespaceURI(), attr.getLocalName()) 
+                                : null;
+                        
+                        if (headerAttrNode == null) {
+                            Attr attribute = hel.getOwnerDocument().createAttributeNS(
+                                    attr.getNamespaceURI(), 
+                                    attr.getNodeName());
+                            attribute.setNodeValue(attr.getNodeValue());
+                            hel.setAttributeNodeNS(attribute);
+                        }
+                    }
+                }
+                
+                HeaderProcessor p = bus.getExtension(HeaderManager.class)
+                    .getHeaderProcessor(hel.getNamespaceURI());
+
+                Object obj;
+                DataBinding dataBinding = null;
+                if (p == null || p.getDataBinding() == null) {
+                    obj = hel;
+                } else {
+                    dataBinding = p.getDataBinding();
+                    obj = dataBinding.createReader(Node.class).read(hel);
+                }
+                //TODO - add the interceptors
+                
+                SoapHeader shead = new SoapHeader(new QName(hel.getNamespaceURI(),
+                                                            hel.getLocalName()),
+                                                   obj,
+                                                   dataBinding);
+                String mu = hel.getAttributeNS(soapVersion.getNamespace(),
+                                              soapVersion.getAttrNameMustUnderstand());
+                String act = hel.getAttributeNS(soapVersion.getNamespace(),
+                                                soapVersion.getAttrNameRole());
+
+                if (!StringUtils.isEmpty(act)) {
+                    shead.setActor(act);
+                }
+                shead.setMustUnderstand(Boolean.valueOf(mu) || "1".equals(mu));
+                //mark header as inbound header.(for distinguishing between the  direction to 
+                //avoid piggybacking of headers from request->server->response.
+                shead.setDirection(SoapHeader.Direction.DIRECTION_IN);
+                message.getHeaders().add(shead);
+                
+                hel = DOMUtils.getNextElement(hel);
+            }
+        }
+    }
+    
+    /**
+     * Reads the headers straight from the stream into LazySoapHeaders, without 
+     * building a DOM for the envelope.  Leaves the reader on the Body start tag.
+     */
+    private void readStreamedHeaders(SoapMessage message, XMLStreamReader xmlReader, 
+                                     SoapVersion soapVersion) throws XMLStreamException {
+        Map<String, String> namespaces = new LinkedHashMap<String, String>();
+        addNamespaces(xmlReader, namespaces);
+        if (xmlReader.nextTag() != XMLStreamConstants.START_ELEMENT
+            || !soapVersion.getHeader().equals(xmlReader.getName())) {
+            return;
+        }
+        addNamespaces(xmlReader, namespaces);
+        // attributes of the Header element apply to all the headers
+        List<QName> headerAttrNames = new ArrayList<QName>();
+        List<String> headerAttrValues = new ArrayList<String>();
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            headerAttrNames.add(xmlReader.getAttributeName(i));
+            headerAttrValues.add(xmlReader.getAttributeValue(i));
+        }
+        
+        HeaderManager manager = bus.getExtension(HeaderManager.class);
+        while (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            QName name = xmlReader.getName();
+            String mu = getHeaderAttribute(xmlReader, soapVersion.getNamespace(),
+                                           soapVersion.getAttrNameMustUnderstand(),
+                                           headerAttrNames, headerAttrValues);
+            String act = getHeaderAttribute(xmlReader, soapVersion.getNamespace(),
+                                            soapVersion.getAttrNameRole(),
+                                            headerAttrNames, headerAttrValues);
+            
+            HeaderProcessor p = manager == null ? null : manager.getHeaderProcessor(name.getNamespaceURI());
+            DataBinding dataBinding = p == null ? null : p.getDataBinding();
+            String xml = recordHeader(xmlReader, namespaces, headerAttrNames, headerAttrValues);
+            
+            SoapHeader shead = new LazySoapHeader(name, xml, dataBinding);
+            if (!StringUtils.isEmpty(act)) {
+                shead.setActor(act);
+            }
+            shead.setMustUnderstand(Boolean.valueOf(mu) || "1".equals(mu));
+            shead.setDirection(SoapHeader.Direction.DIRECTION_IN);
+            message.getHeaders().add(shead);
+        }
+        // move from the Header end tag to the Body
+        xmlReader.nextTag();
+    }
+    
+    private static void addNamespaces(XMLStreamReader reader, Map<String, String> namespaces) {
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            namespaces.put(prefix == null ? "" : prefix, reader.getNamespaceURI(i));
+        }
+    }
+    
+    private static String getHeaderAttribute(XMLStreamReader reader, String ns, String localName,
+                                             List<QName> headerAttrNames, List<String> headerAttrValues) {
+        String value = reader.getAttributeValue(ns, localName);
+        if (value == null) {
+            int idx = headerAttrNames.indexOf(new QName(ns, localName));
+            if (idx != -1) {
+                value = headerAttrValues.get(idx);
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * Serializes the header element the reader is on, declaring the namespaces in 
+     * scope from the enclosing elements and adding the Header element's attributes.
+     * Leaves the reader on the end tag of the header element.
+     */
+    private static String recordHeader(XMLStreamReader reader, Map<String, String> namespaces,
+                                       List<QName> headerAttrNames, List<String> headerAttrValues) 
+        throws XMLStreamException {
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter writer = StaxUtils.createXMLStreamWriter(sw);
+        
+        String prefix = reader.getPrefix() == null ? "" : reader.getPrefix();
+        String uri = reader.getNamespaceURI() == null ? "" : reader.getNamespaceURI();
+        writer.writeStartElement(prefix, reader.getLocalName(), uri);
+        Set<String> declared = new HashSet<String>();
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = reader.getNamespacePrefix(i) == null ? "" : reader.getNamespacePrefix(i);
+            declareNamespace(writer, nsPrefix, reader.getNamespaceURI(i));
+            declared.add(nsPrefix);
+        }
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            if (declared.add(ns.getKey())) {
+                declareNamespace(writer, ns.getKey(), ns.getValue());
+            }
+        }
+        if (declared.add(prefix) && uri.length() > 0) {
+            declareNamespace(writer, prefix, uri);
+        }
+        
+        Set<QName> attrNames = new HashSet<QName>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attrNames.add(reader.getAttributeName(i));
+            writeAttribute(writer, reader.getAttributeName(i), reader.getAttributeValue(i));
+        }
+        for (int i = 0; i < headerAttrNames.size(); i++) {
+            if (!attrNames.contains(headerAttrNames.get(i))) {
+                writeAttribute(writer, headerAttrNames.get(i), headerAttrValues.get(i));
+            }
+        }
+        
+        int event = reader.next();
+        while (event != XMLStreamConstants.END_ELEMENT) {
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                StaxUtils.copy(reader, writer);
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writer.writeCharacters(reader.getText());
+                break;
+            case XMLStreamConstants.CDATA:
+                writer.writeCData(reader.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                writer.writeComment(reader.getText());
+                break;
+            default:
+                break;
+            }
+            event = reader.next();
+        }
+        writer.writeEndElement();
+        writer.flush();
+        writer.close();
+        return sw.toString();
+    }
+    
+    private static void declareNamespace(XMLStreamWriter writer, String prefix, String uri) 
+        throws XMLStreamException {
+        if (prefix.length() == 0) {
+            writer.writeDefaultNamespace(uri);
+            writer.setDefaultNamespace(uri);
+        } else {
+            writer.writeNamespace(prefix, uri);
+            writer.setPrefix(prefix, uri);
+        }
+    }
+    
+    private static void writeAttribute(XMLStreamWriter writer, QName name, String value) 
+        throws XMLStreamException {
+        if (StringUtils.isEmpty(name.getNamespaceURI())) {
+            writer.writeAttribute(name.getLocalPart(), value);
+        } else {
+            writer.writeAttribute(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart(), value);
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.binding.soap.saaj;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.xml.soap.AttachmentPart;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.soap.SOAPPart;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+
+import org.apache.cxf.binding.soap.SoapMessage;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.staxutils.StaxUtils;
+
+/**
+ * A SAAJ message whose Body is read from the XMLStreamReader of the CXF 
+ * message only when it is asked for, see {@link SAAJInInterceptor#LAZY_BODY}.  
+ * Until then the envelope holds the headers and an empty Body, and the reader
+ * stays on the first child of the Body.  {@link #getSOAPHeader()}, the MIME 
+ * headers and the attachments leave the Body unread; everything that can 
+ * reach the Body, {@link #getSOAPPart()} included, reads it first and then 
+ * points the CXF message at a reader over the SAAJ Body, as an eagerly built 
+ * message would.
+ */
+public class LazySOAPMessage extends SOAPMessage {
+    
+    private final SOAPMessage delegate;
+    private final SoapMessage message;
+    private boolean bodyRead;
+    
+    public LazySOAPMessage(SOAPMessage soapMessage, SoapMessage m) {
+        delegate = soapMessage;
+        message = m;
+    }
+    
+    /**
+     * @return true if the message is a lazy message whose Body has not been read
+     */
+    public static boolean isBodyPending(SOAPMessage soapMessage) {
+        return soapMessage instanceof LazySOAPMessage
+            && !((LazySOAPMessage)soapMessage).bodyRead;
+    }
+    
+    /**
+     * Reads the Body into the SAAJ message, once.
+     */
+    public synchronized void readBody() throws SOAPException {
+        if (bodyRead) {
+            return;
+        }
+        try {
+            XMLStreamReader xmlReader = message.getContent(XMLStreamReader.class);
+            StaxUtils.readDocElements(delegate.getSOAPBody(), xmlReader, true);
+            DOMSource bodySource = new DOMSource(delegate.getSOAPBody());
+            xmlReader = StaxUtils.createXMLStreamReader(bodySource);
+            xmlReader.nextTag();
+            xmlReader.nextTag(); // move past body tag
+            message.setContent(XMLStreamReader.class, xmlReader);
+            bodyRead = true;
+        } catch (XMLStreamException e) {
+            throw new SOAPException(e);
+        }
+    }
+    
+    private SOAPMessage readMessage() {
+        try {
+            readBody();
+        } catch (SOAPException e) {
+            throw new Fault(e);
+        }
+        return delegate;
+    }
+    
+    public SOAPHeader getSOAPHeader() throws SOAPException {
+        return delegate.getSOAPHeader();
+    }
+    
+    public SOAPBody getSOAPBody() throws SOAPException {
+        readBody();
+        return delegate.getSOAPBody();
+    }
+    
+    public SOAPPart getSOAPPart() {
+        return readMessage().getSOAPPart();
+    }
+    
+    public void saveChanges() throws SOAPException {
+        readBody();
+        delegate.saveChanges();
+    }
+    
+    public boolean saveRequired() {
+        return delegate.saveRequired();
+    }
+    
+    public void writeTo(OutputStream out) throws SOAPException, IOException {
+        readBody();
+        delegate.writeTo(out);
+    }
+    
+    public String getContentDescription() {
+        return delegate.getContentDescription();
+    }
+    
+    public void setContentDescription(String description) {
+        delegate.setContentDescription(description);
+    }
+    
+    public MimeHeaders getMimeHeaders() {
+        return delegate.getMimeHeaders();
+    }
+    
+    public int countAttachments() {
+        return delegate.countAttachments();
+    }
+    
+    public Iterator getAttachments() {
+        return delegate.getAttachments();
+    }
+    
+    public Iterator getAttachments(MimeHeaders headers) {
+        return delegate.getAttachments(headers);
+    }
+    
+    public AttachmentPart getAttachment(SOAPElement element) throws SOAPException {
+        return delegate.getAttachment(element);
+    }
+    
+    public void addAttachmentPart(AttachmentPart attachmentPart) {
+        delegate.addAttachmentPart(attachmentPart);
+    }
+    
+    public AttachmentPart createAttachmentPart() {
+        return delegate.createAttachmentPart();
+    }
+    
+    public void removeAllAttachments() {
+        delegate.removeAllAttachments();
+    }
+    
+    public void removeAttachments(MimeHeaders headers) {
+        delegate.removeAttachments(headers);
+    }
+    
+    public Object getProperty(String property) throws SOAPException {
+        return delegate.getProperty(property);
+    }
+    
+    public void setProperty(String property, Object value) throws SOAPException {
+        delegate.setProperty(property, value);
+    }
+}
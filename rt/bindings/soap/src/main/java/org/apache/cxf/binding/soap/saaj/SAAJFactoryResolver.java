@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.binding.soap.saaj;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.soap.SOAPException;
+
+import org.apache.cxf.binding.soap.Soap11;
+import org.apache.cxf.binding.soap.SoapVersion;
+
+/**
+ * The SAAJ MessageFactory instances shared by the SAAJ interceptors.  The 
+ * factories are looked up once per SOAP version; creating messages from them
+ * needs no locking.
+ */
+public final class SAAJFactoryResolver {
+    
+    private static volatile MessageFactory factory11;
+    private static volatile MessageFactory factory12;
+    
+    private SAAJFactoryResolver() {
+        //utility class
+    }
+    
+    public static MessageFactory getMessageFactory(SoapVersion version) throws SOAPException {
+        if (version instanceof Soap11) {
+            MessageFactory factory = factory11;
+            if (factory == null) {
+                // a race only looks up the factory twice
+                factory = MessageFactory.newInstance();
+                factory11 = factory;
+            }
+            return factory;
+        }
+        MessageFactory factory = factory12;
+        if (factory == null) {
+            factory = MessageFactory.newInstance(SOAPConstants.SOAP_1_2_PROTOCOL);
+            factory12 = factory;
+        }
+        return factory;
+    }
+}
@@ -27,7 +27,6 @@ import javax.xml.namespace.QName;
 import javax.xml.soap.AttachmentPart;
 import javax.xml.soap.Detail;
 import javax.xml.soap.MessageFactory;
-import javax.xml.soap.SOAPConstants;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPFault;
 import javax.xml.soap.SOAPHeader;
@@ -57,6 +56,7 @@ import org.apache.cxf.headers.HeaderProcessor;
 import org.apache.cxf.helpers.DOMUtils;
 import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.message.Attachment;
+import org.apache.cxf.message.MessageUtils;
 import org.apache.cxf.phase.Phase;
 import org.apache.cxf.staxutils.StaxUtils;
 import org.apache.cxf.staxutils.W3CDOMStreamWriter;
@@ -66,11 +66,19 @@ import org.apache.cxf.staxutils.W3CDOMStreamWriter;
  * the SOAP headers and from the XMLStreamReader.
  */
 public class SAAJInInterceptor extends AbstractSoapInterceptor {
-    private static final ResourceBundle BUNDLE = BundleUtils.getBundle(SAAJInInterceptor.class);
+    /**
+     * The contextual property that, if true, defers reading the Body into the 
+     * SAAJ tree until it is asked for, see {@link LazySOAPMessage}.  This spares 
+     * the DOM round-trip of the Body when the SAAJ message is only wanted for 
+     * its headers, as by header-only JAX-WS SOAP handlers; a Body that is never 
+     * asked for is streamed to the databinding.  Code that walks the DOM from a 
+     * header to the Body sees it empty.
+     */
+    public static final String LAZY_BODY = "org.apache.cxf.binding.soap.saaj.lazyBody";
     
-    private MessageFactory factory11;
-    private MessageFactory factory12;
+    private static final ResourceBundle BUNDLE = BundleUtils.getBundle(SAAJInInterceptor.class);
     
+    private boolean lazyBody;
     
     public SAAJInInterceptor() {
         super(Phase.PRE_PROTOCOL);
@@ -79,22 +87,25 @@ public class SAAJInInterceptor extends AbstractSoapInterceptor {
         super(phase);
     }
     
-    private synchronized MessageFactory getFactory(SoapMessage message) throws SOAPException {
-        if (message.getVersion() instanceof Soap11) {
-            if (factory11 == null) { 
-                factory11 = MessageFactory.newInstance();
-            } 
-            return factory11;
-        }
-        if (factory12 == null) {
-            factory12 = MessageFactory.newInstance(SOAPConstants.SOAP_1_2_PROTOCOL);
-        }
-        return factory12;
+    public boolean isLazyBody() {
+        return lazyBody;
+    }
+    
+    /**
+     * @param lazy the default for {@link #LAZY_BODY}
+     */
+    public void setLazyBody(boolean lazy) {
+        lazyBody = lazy;
+    }
+    
+    private boolean isLazyBody(SoapMessage message) {
+        Object lazy = message.getContextualProperty(LAZY_BODY);
+        return lazy == null ? lazyBody : MessageUtils.isTrue(lazy);
     }
     
     public void handleMessage(SoapMessage message) throws Fault {
         try {
-            MessageFactory factory = getFactory(message);
+            MessageFactory factory = SAAJFactoryResolver.getMessageFactory(message.getVersion());
             SOAPMessage soapMessage = factory.createMessage();
             message.setContent(SOAPMessage.class, soapMessage);
             
@@ -164,6 +175,10 @@ public class SAAJInInterceptor extends AbstractSoapInterceptor {
 
                 DOMSource bodySource = new DOMSource(soapFault);
                 xmlReader = StaxUtils.createXMLStreamReader(bodySource);
+            } else if (isLazyBody(message)) {
+                // leave the reader on the first child of the body until it is asked for
+                message.setContent(SOAPMessage.class, new LazySOAPMessage(soapMessage, message));
+                return;
             } else { 
                 StaxUtils.readDocElements(soapMessage.getSOAPBody(), xmlReader, true);
                 DOMSource bodySource = new DOMSource(soapMessage.getSOAPPart().getEnvelope().getBody());
@@ -29,7 +29,6 @@ import java.util.ResourceBundle;
 import javax.xml.soap.AttachmentPart;
 import javax.xml.soap.MessageFactory;
 import javax.xml.soap.MimeHeader;
-import javax.xml.soap.SOAPConstants;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
@@ -38,7 +37,6 @@ import javax.xml.stream.XMLStreamWriter;
 
 
 import org.apache.cxf.attachment.AttachmentImpl;
-import org.apache.cxf.binding.soap.Soap11;
 import org.apache.cxf.binding.soap.SoapFault;
 import org.apache.cxf.binding.soap.SoapMessage;
 import org.apache.cxf.binding.soap.SoapVersion;
@@ -68,23 +66,11 @@ public class SAAJOutInterceptor extends AbstractSoapInterceptor {
     
     private static final ResourceBundle BUNDLE = BundleUtils.getBundle(SAAJOutInterceptor.class);
     
-    private MessageFactory factory11;
-    private MessageFactory factory12;
-    
     public SAAJOutInterceptor() {
         super(Phase.PRE_PROTOCOL);
     }
-    public synchronized MessageFactory getFactory(SoapMessage message) throws SOAPException {
-        if (message.getVersion() instanceof Soap11) {
-            if (factory11 == null) { 
-                factory11 = MessageFactory.newInstance();
-            } 
-            return factory11;
-        }
-        if (factory12 == null) {
-            factory12 = MessageFactory.newInstance(SOAPConstants.SOAP_1_2_PROTOCOL);
-        }
-        return factory12;
+    public MessageFactory getFactory(SoapMessage message) throws SOAPException {
+        return SAAJFactoryResolver.getMessageFactory(message.getVersion());
     }
     public void handleMessage(SoapMessage message) throws Fault {
         SOAPMessage saaj = message.getContent(SOAPMessage.class);
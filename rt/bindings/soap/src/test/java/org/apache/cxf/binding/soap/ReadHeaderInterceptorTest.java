@@ -30,6 +30,7 @@ import javax.mail.util.ByteArrayDataSource;
 import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import org.apache.cxf.BusFactory;
 import org.apache.cxf.attachment.AttachmentImpl;
@@ -81,7 +82,30 @@ public class ReadHeaderInterceptorTest extends TestBase {
         } catch (IOException ioe) {
             fail("Failed in creating soap message");
         }
+        checkHeaders();
+        assertNotNull(soapMessage.getContent(Node.class));
+    }
+
+    @Test
+    public void testHandleStreamedHeader() {
+        try {
+            prepareSoapMessage("test-soap-header.xml");
+        } catch (IOException ioe) {
+            fail("Failed in creating soap message");
+        }
+        soapMessage.put(ReadHeadersInterceptor.STREAM_HEADERS, Boolean.TRUE);
+        checkHeaders();
+        assertNull(soapMessage.getContent(Node.class));
+        for (Header hdr : soapMessage.getHeaders()) {
+            assertTrue(hdr instanceof LazySoapHeader);
+            Element el = (Element)hdr.getObject();
+            assertTrue(((LazySoapHeader)hdr).isMaterialized());
+            assertEquals(hdr.getName().getLocalPart(), el.getLocalName());
+            assertEquals(hdr.getName().getNamespaceURI(), el.getNamespaceURI());
+        }
+    }
 
+    private void checkHeaders() {
         staxIntc.handleMessage(soapMessage);
         soapMessage.getInterceptorChain().doIntercept(soapMessage);
         // check the xmlReader should be placed on the first entry of the body element
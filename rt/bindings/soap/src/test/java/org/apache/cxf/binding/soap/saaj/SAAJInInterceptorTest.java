@@ -42,6 +42,7 @@ import org.apache.cxf.binding.soap.TestUtil;
 import org.apache.cxf.binding.soap.interceptor.CheckFaultInterceptor;
 import org.apache.cxf.binding.soap.interceptor.ReadHeadersInterceptor;
 import org.apache.cxf.headers.Header;
+import org.apache.cxf.helpers.DOMUtils;
 import org.apache.cxf.interceptor.StaxInInterceptor;
 import org.junit.Before;
 import org.junit.Test;
@@ -98,6 +99,35 @@ public class SAAJInInterceptorTest extends TestBase {
         assertEquals(2, headerChilds.size());
     }
     
+    @Test
+    public void testLazyBody() throws Exception {
+        try {
+            prepareSoapMessage("../test-soap-header.xml");
+        } catch (IOException ioe) {
+            fail("Failed in creating soap message");
+        }
+
+        staxIntc.handleMessage(soapMessage);
+        rhi.handleMessage(soapMessage);
+        XMLStreamReader streamReader = soapMessage.getContent(XMLStreamReader.class);
+        saajIntc.setLazyBody(true);
+        saajIntc.handleMessage(soapMessage);
+
+        // the body is left on the stream
+        assertSame(streamReader, soapMessage.getContent(XMLStreamReader.class));
+        SOAPMessage parsedMessage = soapMessage.getContent(SOAPMessage.class);
+        assertTrue(LazySOAPMessage.isBodyPending(parsedMessage));
+        assertNotNull(DOMUtils.getFirstElement(parsedMessage.getSOAPHeader()));
+        assertTrue(LazySOAPMessage.isBodyPending(parsedMessage));
+        
+        Element body = DOMUtils.getFirstElement(parsedMessage.getSOAPBody());
+        assertFalse(LazySOAPMessage.isBodyPending(parsedMessage));
+        assertEquals("itinerary", body.getLocalName());
+        XMLStreamReader xmlReader = soapMessage.getContent(XMLStreamReader.class);
+        assertNotSame(streamReader, xmlReader);
+        assertEquals("check the first entry of body", "itinerary", xmlReader.getLocalName());
+    }
+    
     @Test
     public void testFaultDetail() throws Exception {
         try {
@@ -36,7 +36,11 @@ public class AttachmentDataSource implements DataSource {
     public AttachmentDataSource(String ctParam, InputStream inParam) throws IOException {
         this.ct = ctParam;        
         cache = new CachedOutputStream();
-        IOUtils.copy(inParam, cache);
+        if (inParam instanceof DelegatingInputStream) {
+            ((DelegatingInputStream)inParam).transferTo(cache);
+        } else {
+            IOUtils.copy(inParam, cache);
+        }
         cache.lockOutputStream();
     }
 
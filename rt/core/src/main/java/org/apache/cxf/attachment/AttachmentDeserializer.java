@@ -56,7 +56,7 @@ public class AttachmentDeserializer {
 
     private boolean lazyLoading = true;
 
-    private int pbAmount = 2048;
+    private int pbAmount = 32 * 1024;
     private PushbackInputStream stream;
 
     private byte boundary[];
@@ -221,7 +221,7 @@ public class AttachmentDeserializer {
         try {
             out = new CachedOutputStream();
             setStreamedAttachmentProperties(out);
-            IOUtils.copy(input, out);
+            input.transferTo(out);
             input.setInputStream(out.getInputStream());
             origIn.close();
         } finally {
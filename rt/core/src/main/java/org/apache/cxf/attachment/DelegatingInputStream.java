@@ -22,8 +22,13 @@ package org.apache.cxf.attachment;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.cxf.helpers.IOUtils;
 
 final class DelegatingInputStream extends InputStream {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    
     private InputStream is;
     private boolean isClosed;
 
@@ -87,6 +92,17 @@ final class DelegatingInputStream extends InputStream {
         return this.is.skip(n);
     }
 
+    /**
+     * Copies the rest of the stream to the output stream, without an intermediate
+     * buffer if the stream is a MIME part.
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        if (is instanceof MimeBodyPartInputStream) {
+            return ((MimeBodyPartInputStream)is).transferTo(out);
+        }
+        return IOUtils.copy(is, out, COPY_BUFFER_SIZE);
+    }
+
     public void setInputStream(InputStream inputStream) {
         this.is = inputStream;
     }
@@ -21,8 +21,17 @@ package org.apache.cxf.attachment;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
 
+/**
+ * The body of one MIME part, read up to the next boundary.  The stream reads 
+ * ahead in blocks of the pushback size and looks for the boundary with a 
+ * Boyer-Moore-Horspool scan, so most bytes are examined once, not one at a time.
+ * A CRLF directly in front of the boundary belongs to the boundary.  The bytes 
+ * read past the boundary, or past the current position if the stream is closed 
+ * before the boundary is reached, are pushed back onto the underlying stream.
+ */
 public class MimeBodyPartInputStream extends InputStream {
 
     PushbackInputStream inStream;
@@ -30,7 +39,15 @@ public class MimeBodyPartInputStream extends InputStream {
     boolean boundaryFound;
     int pbAmount;
     byte[] boundary;
-    byte[] boundaryBuffer;
+    
+    private final int[] skip = new int[256];
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private int dataEnd;
+    private int scanFrom;
+    private int boundaryStart = -1;
+    private boolean eof;
 
     public MimeBodyPartInputStream(PushbackInputStream inStreamParam, 
                                    byte[] boundaryParam,
@@ -39,213 +56,190 @@ public class MimeBodyPartInputStream extends InputStream {
         this.inStream = inStreamParam;
         this.boundary = boundaryParam;
         this.pbAmount = pbsize;
+        
+        int last = boundary.length - 1;
+        for (int i = 0; i < skip.length; i++) {
+            skip[i] = boundary.length;
+        }
+        for (int i = 0; i < last; i++) {
+            skip[boundary[i] & 0xff] = last - i;
+        }
     }
 
-    public int read(byte buf[], int origOff, int origLen) throws IOException {
-        byte b[] = buf;
-        int off = origOff;
-        int len = origLen;
-        if (boundaryFound) {
-            return -1;
-        }
-        if ((off < 0) || (off > b.length) || (len < 0) 
-            || ((off + len) > b.length) || ((off + len) < 0)) {
+    public int read(byte buf[], int off, int len) throws IOException {
+        if ((off < 0) || (off > buf.length) || (len < 0) 
+            || ((off + len) > buf.length) || ((off + len) < 0)) {
 
             throw new IndexOutOfBoundsException();
         }
         if (len == 0) {
             return 0;
         }
-        boolean bufferCreated = false;
-        if (len < boundary.length * 2) {
-            //buffer is too short to detect boundaries with it.  We'll need to create a larger buffer   
-            bufferCreated = true;
-            if (boundaryBuffer == null) {
-                boundaryBuffer = new byte[boundary.length * 2];
-            }
-            b = boundaryBuffer;
-            off = 0;
-            len = boundaryBuffer.length;
+        int n = ensureData();
+        if (n == -1) {
+            return -1;
         }
-        if (len > pbAmount) {
-            len = pbAmount;  //can only pushback that much so make sure we can
+        n = Math.min(n, len);
+        System.arraycopy(buffer, pos, buf, off, n);
+        pos += n;
+        return n;
+    }
+
+    public int read() throws IOException {
+        if (ensureData() == -1) {
+            return -1;
         }
-        if (len > 0) {
-            len = inStream.read(b, off, len);
+        return buffer[pos++] & 0xff;
+    }
+    
+    @Override
+    public int available() throws IOException {
+        return boundaryFound ? 0 : dataEnd - pos;
+    }
+    
+    /**
+     * Writes the rest of the part to the output stream, directly from the read 
+     * buffer.
+     * 
+     * @return the number of bytes written
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        long count = 0;
+        int n = ensureData();
+        while (n != -1) {
+            out.write(buffer, pos, n);
+            pos += n;
+            count += n;
+            n = ensureData();
         }
-        int i = processBuffer(b, off, len);
-        if (bufferCreated && i > 0) {
-            // read more than we need, push it back
-            if (origLen >= i) {
-                System.arraycopy(b, 0, buf, origOff, i);
+        return count;
+    }
+    
+    /**
+     * Pushes the bytes that have been read ahead back onto the underlying stream
+     * so that it is positioned where the reader of this part stopped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!boundaryFound && buffer != null && limit > pos) {
+            inStream.unread(buffer, pos, limit - pos);
+        }
+        pos = 0;
+        limit = 0;
+        dataEnd = 0;
+        scanFrom = 0;
+        boundaryStart = -1;
+        eof = false;
+    }
+    
+    /**
+     * @return the number of bytes of the part available in the buffer, reading 
+     * more if there are none, or -1 at the end of the part
+     */
+    private int ensureData() throws IOException {
+        while (!boundaryFound) {
+            int n = dataEnd - pos;
+            if (n > 0) {
+                return n;
+            }
+            if (boundaryStart != -1) {
+                consumeBoundary();
+            } else if (eof) {
+                // no closing boundary, the part ends with the stream
+                boundaryFound = true;
+                buffer = null;
             } else {
-                System.arraycopy(b, 0, buf, origOff, origLen);
-                inStream.unread(b, origLen, i - origLen);
-                i = origLen;
+                fill();
+                scan();
             }
-        } else if (i == 0 && boundaryFound) {
-            return -1;
         }
-        return i;
+        return -1;
     }
-
-    //Has Data after encountering CRLF
-    private boolean hasData(byte[] b, int initialPointer, int pointer, int off, int len)
-        throws IOException {
-        if (pointer < (off + len)) {
-            return true;
+    
+    private void fill() throws IOException {
+        if (buffer == null) {
+            buffer = new byte[Math.max(pbAmount, boundary.length * 2 + 4)];
+        } else if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            dataEnd -= pos;
+            scanFrom = Math.max(0, scanFrom - pos);
+            if (boundaryStart != -1) {
+                boundaryStart -= pos;
+            }
+            pos = 0;
+        }
+        int n = inStream.read(buffer, limit, buffer.length - limit);
+        if (n == -1) {
+            eof = true;
         } else {
-            inStream.unread(b, initialPointer, (off + len) - initialPointer);
-            return false;
+            limit += n;
         }
     }
-
-    protected int processBuffer(byte[] buffer, int off, int len) throws IOException {
-        for (int i = off; i < (off + len); i++) {
-            boolean needUnread0d0a = false;
-            int value = buffer[i];
-            int initialI = i;
-            if (value == 13) {
-                if (!hasData(buffer, initialI, initialI + 1, off, len)) {
-                    return initialI - off;
-                }
-                value = buffer[initialI + 1];
-                if (value != 10) {
-                    continue;
-                } else {  //if it comes here then 13, 10 are values and will try to match boundaries
-                    if (!hasData(buffer, initialI, initialI + 2, off, len)) {
-                        return initialI - off;
-                    }
-                    value = buffer[initialI + 2];
-                    if ((byte) value != boundary[0]) {
-                        i++;
-                        continue;
-                    } else { //13, 10, boundaries first value matched
-                        needUnread0d0a = true;
-                        i += 2; //i after this points to boundary[0] element
-                    }
-                }
-            } else if (value != boundary[0]) {
-                continue;
+    
+    private void scan() {
+        int k = indexOfBoundary(Math.max(pos, scanFrom), limit);
+        if (k != -1) {
+            boundaryStart = k;
+            dataEnd = k;
+            if (k - 2 >= pos && buffer[k - 2] == 13 && buffer[k - 1] == 10) {
+                dataEnd = k - 2;
             }
-
-            int boundaryIndex = 0;
-            while ((boundaryIndex < boundary.length) && (value == boundary[boundaryIndex])) {
-                if (!hasData(buffer, initialI, i + 1, off, len)) {
-                    return initialI - off;
-                }                
-                value = buffer[++i];
-                boundaryIndex++;
-            }
-            if (boundaryIndex == boundary.length) {
-                // read the end of line character
-                if (initialI != off) {
-                    i = 1000000000;
-                }
-                if (initialI - off != 0 
-                    && !hasData(buffer, initialI, i + 1, off, len)) {
-                    return initialI - off;
-                }
-                boundaryFound = true;
-                int j = i + 1;
-                if (j < len && buffer[j] == 45 && value == 45) {
-                    // Last mime boundary should have a succeeding "--"
-                    // as we are on it, read the terminating CRLF
-                    i += 2;
-                    //last mime boundary
-                }
-
-                //boundary matched (may or may not be last mime boundary)
-                int processed = initialI - off;
-                if ((len - (i + 2)) > 0) {
-                    inStream.unread(buffer, i + 2, len - (i + 2));
+        } else if (eof) {
+            dataEnd = limit;
+        } else {
+            // keep back what may be the start of a boundary and the CRLF before it
+            scanFrom = Math.max(pos, limit - boundary.length + 1);
+            dataEnd = Math.max(pos, limit - boundary.length - 1);
+        }
+    }
+    
+    private int indexOfBoundary(int from, int to) {
+        int last = boundary.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (buffer[i + j] == boundary[j]) {
+                if (j == 0) {
+                    return i;
                 }
-                return processed;
-            }
-
-            // Boundary not found. Restoring bytes skipped.
-            // write first skipped byte, push back the rest
-            if (value != -1) { //pushing back first byte of boundary
-                // Stream might have ended
-                i--;
-            }
-            if (needUnread0d0a) { //Pushing all,  returning 13
-                i = i - boundaryIndex;
-                i--; //for 10
-                value = 13;
-            } else {
-                i = i - boundaryIndex;
-                i++;
-                value = boundary[0];
+                j--;
             }
+            i += skip[buffer[i + last] & 0xff];
         }
-        return len;
+        return -1;
     }
-
-    public int read() throws IOException {
-        boolean needUnread0d0a = false;
-        if (boundaryFound) {
-            return -1;
+    
+    /**
+     * Skips the boundary, the "--" that follows the last one and the line end,
+     * then pushes back what has been read beyond.
+     */
+    private void consumeBoundary() throws IOException {
+        pos = boundaryStart + boundary.length;
+        boundaryStart = -1;
+        if (ensure(2) && buffer[pos] == 45 && buffer[pos + 1] == 45) {
+            pos += 2;
         }
-
-        // read the next value from stream
-        int value = inStream.read();
-        // A problem occurred because all the mime parts tends to have a /r/n
-        // at the end. Making it hard to transform them to correct
-        // DataSources.
-        // This logic introduced to handle it
-        if (value == 13) {
-            value = inStream.read();
-            if (value != 10) {
-                inStream.unread(value);
-                return 13;
-            } else {
-                value = inStream.read();
-                if ((byte) value != boundary[0]) {
-                    inStream.unread(value);
-                    inStream.unread(10);
-                    return 13;
-                } else {
-                    needUnread0d0a = true;
-                }
-            }
-        } else if ((byte) value != boundary[0]) {
-            return value;
-        }
-        // read value is the first byte of the boundary. Start matching the
-        // next characters to find a boundary
-        int boundaryIndex = 0;
-        while ((boundaryIndex < boundary.length) && ((byte) value == boundary[boundaryIndex])) {
-            value = inStream.read();
-            boundaryIndex++;
-        }
-        if (boundaryIndex == boundary.length) {
-            // boundary found
-            boundaryFound = true;
-            int dashNext = inStream.read();
-            // read the end of line character
-            if (dashNext == 45 && value == 45) {
-                // Last mime boundary should have a succeeding "--"
-                // as we are on it, read the terminating CRLF
-                inStream.read();
-                inStream.read();
-            }
-            return -1;
+        while (ensure(1) && (buffer[pos] == 32 || buffer[pos] == 9)) {
+            pos++;
         }
-        // Boundary not found. Restoring bytes skipped.
-        // write first skipped byte, push back the rest
-        if (value != -1) {
-            // Stream might have ended
-            inStream.unread(value);
+        if (ensure(1) && buffer[pos] == 13) {
+            pos++;
         }
-        if (needUnread0d0a) {
-            inStream.unread(boundary, 0, boundaryIndex);
-            inStream.unread(10);
-            value = 13;
-        } else {
-            inStream.unread(boundary, 1, boundaryIndex - 1);                
-            value = boundary[0];
+        if (ensure(1) && buffer[pos] == 10) {
+            pos++;
+        }
+        if (limit > pos) {
+            inStream.unread(buffer, pos, limit - pos);
+        }
+        boundaryFound = true;
+        buffer = null;
+    }
+    
+    private boolean ensure(int n) throws IOException {
+        while (limit - pos < n && !eof) {
+            fill();
         }
-        return value;
+        return limit - pos >= n;
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.transport.Conduit;
+
+/**
+ * One endpoint of a static cluster, together with the statistics the
+ * LoadBalancingStrategy bases its choice on and the state of the circuit
+ * breaker guarding it.
+ * <p>
+ * The circuit is opened when the configured number of consecutive requests 
+ * has failed at the transport level.  Once the reset timeout has elapsed the
+ * member is offered again, the next success closing the circuit and the next
+ * failure opening it for another period.  A failed health probe takes the 
+ * member out of rotation until a probe succeeds.
+ */
+public class ClusterMember {
+    /**
+     * The weight of the latest sample in the average latency.
+     */
+    private static final double EWMA_WEIGHT = 0.2;
+    
+    private final Endpoint endpoint;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long circuitOpenedAt;
+    private volatile boolean healthy = true;
+    private double averageLatency = -1;
+    private volatile Conduit conduit;
+    
+    public ClusterMember(Endpoint ep) {
+        endpoint = ep;
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+    
+    public String getAddress() {
+        return endpoint.getEndpointInfo().getAddress();
+    }
+    
+    /**
+     * @return the number of requests sent to the member that have not completed
+     */
+    public int getOutstandingRequests() {
+        return outstanding.get();
+    }
+    
+    /**
+     * @return the exponentially weighted moving average of the response time
+     * in milliseconds, or -1 if no request has completed yet
+     */
+    public synchronized double getAverageLatency() {
+        return averageLatency;
+    }
+    
+    public boolean isHealthy() {
+        return healthy;
+    }
+    
+    /**
+     * Records the outcome of a health probe.
+     */
+    public void setHealthy(boolean h) {
+        healthy = h;
+    }
+    
+    /**
+     * @return true if the circuit breaker has opened and the reset timeout 
+     * has not elapsed yet
+     */
+    public boolean isCircuitOpen(long now, long resetTimeout) {
+        long opened = circuitOpenedAt;
+        return opened != 0 && now - opened < resetTimeout;
+    }
+    
+    /**
+     * @return true if requests may be sent to the member
+     */
+    public boolean isAvailable(long now, long resetTimeout) {
+        return healthy && !isCircuitOpen(now, resetTimeout);
+    }
+    
+    void requestStarted() {
+        outstanding.incrementAndGet();
+    }
+    
+    /**
+     * Records the completion of a request.
+     * 
+     * @param latency the response time in milliseconds
+     * @param failed true if the request failed at the transport level
+     * @param failureThreshold the number of consecutive failures that open the circuit
+     */
+    void requestCompleted(long latency, boolean failed, int failureThreshold) {
+        outstanding.decrementAndGet();
+        if (failed) {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                circuitOpenedAt = System.currentTimeMillis();
+            }
+            return;
+        }
+        consecutiveFailures.set(0);
+        circuitOpenedAt = 0;
+        synchronized (this) {
+            averageLatency = averageLatency < 0 
+                ? latency : EWMA_WEIGHT * latency + (1 - EWMA_WEIGHT) * averageLatency;
+        }
+    }
+    
+    Conduit getConduit() {
+        return conduit;
+    }
+    
+    void setConduit(Conduit c) {
+        conduit = c;
+    }
+    
+    @Override
+    public String toString() {
+        return endpoint == null ? super.toString() : getAddress();
+    }
+}
@@ -191,13 +191,30 @@ public class FailoverTargetSelector extends AbstractConduitSelector {
         return LOG;
     }
 
+    /**
+     * @param exchange the current Exchange
+     * @return the context recorded for the invocation by prepare
+     */
+    protected synchronized InvocationContext getInvocationContext(Exchange exchange) {
+        return inProgress.get(new InvocationKey(exchange));
+    }
+    
+    /**
+     * Discards the context recorded for the invocation.
+     * 
+     * @param exchange the current Exchange
+     */
+    protected synchronized void removeInvocationContext(Exchange exchange) {
+        inProgress.remove(new InvocationKey(exchange));
+    }
+
     /**
      * Check if the exchange is suitable for a failover.
      * 
      * @param exchange the current Exchange
      * @return boolean true iff a failover should be attempted
      */
-    private boolean requiresFailover(Exchange exchange) {
+    protected boolean requiresFailover(Exchange exchange) {
         Message outMessage = exchange.getOutMessage();
         Exception ex = outMessage.get(Exception.class) != null
                        ? outMessage.get(Exception.class)
@@ -282,7 +299,7 @@ public class FailoverTargetSelector extends AbstractConduitSelector {
     /**
      * Records the context of an invocation.
      */
-    private static class InvocationContext {
+    protected static class InvocationContext {
         private Endpoint originalEndpoint;
         private BindingOperationInfo bindingOperationInfo;
         private Object[] params; 
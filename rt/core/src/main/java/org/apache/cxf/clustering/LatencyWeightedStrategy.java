@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load balancing strategy choosing members at random, weighted by the
+ * inverse of their average response time, so that faster members receive 
+ * proportionally more requests.  Members without a measured response time
+ * are weighted as the fastest member so that they are measured soon.
+ */
+public class LatencyWeightedStrategy implements LoadBalancingStrategy {
+    
+    /**
+     * The lower bound of the latency used for weighting, in milliseconds,
+     * so that a member answering in next to no time does not take all requests.
+     */
+    private static final double MIN_LATENCY = 1;
+    
+    private Random random;
+    
+    /**
+     * Constructor.
+     */
+    public LatencyWeightedStrategy() {
+        random = new Random();
+    }
+
+    /**
+     * Select the member to send a request to.
+     * 
+     * @param candidates non-empty List of the members currently available
+     * @return the selected member
+     */
+    public ClusterMember select(List<ClusterMember> candidates) {
+        int size = candidates.size();
+        double[] latencies = new double[size];
+        double fastest = -1;
+        for (int i = 0; i < size; i++) {
+            latencies[i] = candidates.get(i).getAverageLatency();
+            if (latencies[i] >= 0) {
+                latencies[i] = Math.max(latencies[i], MIN_LATENCY);
+                if (fastest < 0 || latencies[i] < fastest) {
+                    fastest = latencies[i];
+                }
+            }
+        }
+        if (fastest < 0) {
+            return candidates.get(random.nextInt(size));
+        }
+        
+        double[] weights = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = 1 / (latencies[i] < 0 ? fastest : latencies[i]);
+            total += weights[i];
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < size - 1; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(size - 1);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load balancing strategy sending each request to the available member
+ * with the fewest requests outstanding.  Ties are broken in turn, so that 
+ * an idle cluster is used evenly.
+ */
+public class LeastOutstandingRequestsStrategy implements LoadBalancingStrategy {
+    
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Select the member to send a request to.
+     * 
+     * @param candidates non-empty List of the members currently available
+     * @return the selected member
+     */
+    public ClusterMember select(List<ClusterMember> candidates) {
+        int size = candidates.size();
+        int offset = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        ClusterMember selected = null;
+        int least = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ClusterMember member = candidates.get((offset + i) % size);
+            int outstanding = member.getOutstandingRequests();
+            if (outstanding < least) {
+                least = outstanding;
+                selected = member;
+            }
+        }
+        return selected;
+    }
+}
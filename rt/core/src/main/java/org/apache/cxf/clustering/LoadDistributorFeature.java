@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.endpoint.Client;
+
+/**
+ * This feature may be applied to a Client so as to distribute its
+ * requests over all the compatible endpoints for the target service,
+ * rather than only failing over to them.
+ */
+public class LoadDistributorFeature extends FailoverFeature {
+
+    private LoadBalancingStrategy loadBalancingStrategy;
+    private HealthProbe healthProbe;
+    private long probeInterval = 10000;
+    private int failureThreshold = 5;
+    private long resetTimeout = 30000;
+    
+    @Override
+    public void initialize(Client client, Bus bus) {
+        LoadDistributorTargetSelector selector =
+            new LoadDistributorTargetSelector();
+        selector.setEndpoint(client.getEndpoint());
+        selector.setStrategy(getStrategy());
+        if (loadBalancingStrategy != null) {
+            selector.setLoadBalancingStrategy(loadBalancingStrategy);
+        }
+        selector.setHealthProbe(healthProbe);
+        selector.setProbeInterval(probeInterval);
+        selector.setFailureThreshold(failureThreshold);
+        selector.setResetTimeout(resetTimeout);
+        client.setConduitSelector(selector);
+        new LoadDistributorTargetSelector.ShutdownListener(selector, client, bus);
+    }
+
+    public void setLoadBalancingStrategy(LoadBalancingStrategy strategy) {
+        loadBalancingStrategy = strategy;
+    }
+    
+    public LoadBalancingStrategy getLoadBalancingStrategy() {
+        return loadBalancingStrategy;
+    }
+
+    public void setHealthProbe(HealthProbe probe) {
+        healthProbe = probe;
+    }
+    
+    public HealthProbe getHealthProbe() {
+        return healthProbe;
+    }
+
+    public void setProbeInterval(long interval) {
+        probeInterval = interval;
+    }
+    
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    public void setFailureThreshold(int threshold) {
+        failureThreshold = threshold;
+    }
+    
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setResetTimeout(long timeout) {
+        resetTimeout = timeout;
+    }
+    
+    public long getResetTimeout() {
+        return resetTimeout;
+    }
+}
@@ -0,0 +1,471 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.buslifecycle.BusLifeCycleListener;
+import org.apache.cxf.buslifecycle.BusLifeCycleManager;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.endpoint.Client;
+import org.apache.cxf.endpoint.ClientLifeCycleListener;
+import org.apache.cxf.endpoint.ClientLifeCycleManager;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.endpoint.Retryable;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.transport.Conduit;
+
+
+/**
+ * Implements a target selection strategy distributing the requests over 
+ * all the endpoints of a static cluster, rather than sending them to one 
+ * target until it fails.  Each request is sent to the member chosen by the
+ * LoadBalancingStrategy among those whose circuit breaker is closed and whose
+ * health probe, if one is configured, succeeds.  A request failing at the
+ * transport level is retried on the other members.
+ * <p>
+ * The members of the cluster are found with the FailoverStrategy.
+ */
+public class LoadDistributorTargetSelector extends FailoverTargetSelector {
+
+    private static final Logger LOG =
+        LogUtils.getL7dLogger(LoadDistributorTargetSelector.class);
+    private static final String MEMBER_KEY = ClusterMember.class.getName();
+    private static final String START_KEY = 
+        LoadDistributorTargetSelector.class.getName() + ".START";
+    private static final String COMPLETED_KEY = 
+        LoadDistributorTargetSelector.class.getName() + ".COMPLETED";
+    
+    private volatile List<ClusterMember> members;
+    private LoadBalancingStrategy loadBalancingStrategy;
+    private int failureThreshold = 5;
+    private long resetTimeout = 30000;
+    private HealthProbe healthProbe;
+    private long probeInterval = 10000;
+    private Timer probeTimer;
+    
+    /**
+     * Normal constructor.
+     */
+    public LoadDistributorTargetSelector() {
+        this(null);
+    }
+    
+    /**
+     * Constructor, allowing a specific conduit to override normal selection.
+     * 
+     * @param c specific conduit
+     */
+    public LoadDistributorTargetSelector(Conduit c) {
+        super(c);
+    }
+    
+    /**
+     * Called prior to the interceptor chain being traversed.
+     * 
+     * @param message the current Message
+     */
+    @Override
+    public void prepare(Message message) {
+        super.prepare(message);
+        if (members == null) {
+            initializeMembers(message.getExchange());
+        }
+    }
+
+    /**
+     * Called when a Conduit is actually required.  The member is chosen
+     * once for each exchange.
+     * 
+     * @param message
+     * @return the Conduit to use for mediation of the message
+     */
+    @Override
+    public Conduit selectConduit(Message message) {
+        Exchange exchange = message.getExchange();
+        ClusterMember member = (ClusterMember)exchange.get(MEMBER_KEY);
+        if (member == null) {
+            if (members == null || getInvocationContext(exchange) == null) {
+                // not an invocation prepared by this selector
+                return super.selectConduit(message);
+            }
+            member = selectMember(exchange);
+            exchange.put(MEMBER_KEY, member);
+            exchange.put(START_KEY, System.currentTimeMillis());
+            member.requestStarted();
+            message.put(Message.ENDPOINT_ADDRESS, member.getAddress());
+        }
+        return getConduit(member, message);
+    }
+
+    /**
+     * Called on completion of the MEP for which the Conduit was required.
+     * 
+     * @param exchange represents the completed MEP
+     */
+    @Override
+    public void complete(Exchange exchange) {
+        ClusterMember member = (ClusterMember)exchange.get(MEMBER_KEY);
+        if (member == null) {
+            super.complete(exchange);
+            return;
+        }
+        boolean failed = requiresFailover(exchange);
+        if (exchange.put(COMPLETED_KEY, Boolean.TRUE) == null) {
+            Long start = (Long)exchange.get(START_KEY);
+            long latency = start == null ? 0 : System.currentTimeMillis() - start;
+            member.requestCompleted(latency, failed, failureThreshold);
+        }
+        if (failed) {
+            InvocationContext invocation = getInvocationContext(exchange);
+            if (invocation != null && retry(exchange, member, invocation)) {
+                return;
+            }
+        }
+        removeInvocationContext(exchange);
+        Message inMessage = exchange.getInMessage();
+        if (inMessage != null) {
+            try {
+                getConduit(member, inMessage).close(inMessage);
+            } catch (IOException e) {
+                //IGNORE
+            }
+        }
+    }
+    
+    /**
+     * @return the members of the cluster, or an empty list before the first
+     * invocation
+     */
+    public List<ClusterMember> getMembers() {
+        List<ClusterMember> m = members;
+        return m == null ? Collections.<ClusterMember>emptyList() : m;
+    }
+    
+    /**
+     * @param strategy the LoadBalancingStrategy to use
+     */
+    public synchronized void setLoadBalancingStrategy(LoadBalancingStrategy strategy) {
+        getLogger().log(Level.INFO, "USING_LOAD_BALANCING_STRATEGY", new Object[] {strategy});
+        loadBalancingStrategy = strategy;
+    }
+    
+    /**
+     * @return the LoadBalancingStrategy to use
+     */
+    public synchronized LoadBalancingStrategy getLoadBalancingStrategy() {
+        if (loadBalancingStrategy == null) {
+            loadBalancingStrategy = new RoundRobinStrategy();
+            getLogger().log(Level.INFO,
+                            "USING_LOAD_BALANCING_STRATEGY",
+                            new Object[] {loadBalancingStrategy});
+        }
+        return loadBalancingStrategy;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * @param threshold the number of consecutive transport failures after 
+     * which a member's circuit is opened
+     */
+    public void setFailureThreshold(int threshold) {
+        failureThreshold = threshold;
+    }
+
+    public long getResetTimeout() {
+        return resetTimeout;
+    }
+
+    /**
+     * @param timeout the time in milliseconds after which a member whose 
+     * circuit has been opened is tried again
+     */
+    public void setResetTimeout(long timeout) {
+        resetTimeout = timeout;
+    }
+
+    public HealthProbe getHealthProbe() {
+        return healthProbe;
+    }
+
+    /**
+     * @param probe the HealthProbe run periodically against each member, 
+     * null for none
+     */
+    public void setHealthProbe(HealthProbe probe) {
+        healthProbe = probe;
+    }
+
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * @param interval the time in milliseconds between health probes
+     */
+    public void setProbeInterval(long interval) {
+        probeInterval = interval;
+    }
+    
+    /**
+     * Stops the health probes and closes the conduits to the other members.
+     * Called when the client is destroyed or the bus shuts down.
+     */
+    public synchronized void shutdown() {
+        if (probeTimer != null) {
+            probeTimer.cancel();
+            probeTimer = null;
+        }
+        for (ClusterMember member : getMembers()) {
+            Conduit conduit;
+            synchronized (member) {
+                conduit = member.getConduit();
+                member.setConduit(null);
+            }
+            if (conduit != null) {
+                conduit.close();
+            }
+        }
+    }
+
+    /**
+     * @return the logger to use
+     */
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+    
+    private synchronized void initializeMembers(Exchange exchange) {
+        if (members != null) {
+            return;
+        }
+        List<ClusterMember> m = new ArrayList<ClusterMember>();
+        m.add(new ClusterMember(getEndpoint()));
+        for (Endpoint alternate : getStrategy().getAlternateEndpoints(exchange)) {
+            m.add(new ClusterMember(alternate));
+        }
+        getLogger().log(Level.INFO, "CLUSTER_MEMBERS", new Object[] {m});
+        members = Collections.unmodifiableList(m);
+        if (healthProbe != null && probeTimer == null) {
+            probeTimer = new Timer("cxf-cluster-health-probe", true);
+            probeTimer.schedule(new ProbeTask(this), 0, probeInterval);
+        }
+    }
+    
+    /**
+     * Choose the member for the exchange among the available members not
+     * yet tried by the invocation.  If none is available the circuit breakers 
+     * and probes are disregarded rather than failing the request outright.
+     */
+    private ClusterMember selectMember(Exchange exchange) {
+        long now = System.currentTimeMillis();
+        InvocationContext invocation = getInvocationContext(exchange);
+        List<Endpoint> remaining = invocation == null ? null : invocation.getAlternateTargets();
+        List<ClusterMember> untried = new ArrayList<ClusterMember>();
+        List<ClusterMember> candidates = new ArrayList<ClusterMember>();
+        for (ClusterMember member : members) {
+            if (remaining == null || remaining.contains(member.getEndpoint())) {
+                untried.add(member);
+                if (member.isAvailable(now, resetTimeout)) {
+                    candidates.add(member);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            getLogger().warning("NO_AVAILABLE_MEMBERS");
+            candidates = untried.isEmpty() ? members : untried;
+        }
+        return getLoadBalancingStrategy().select(candidates);
+    }
+    
+    private Conduit getConduit(ClusterMember member, Message message) {
+        if (member.getEndpoint() == getEndpoint()) {
+            return getSelectedConduit(message);
+        }
+        Conduit conduit = member.getConduit();
+        if (conduit == null) {
+            synchronized (member) {
+                conduit = member.getConduit();
+                if (conduit == null) {
+                    conduit = createConduit(message, member.getEndpoint().getEndpointInfo());
+                    member.setConduit(conduit);
+                }
+            }
+        }
+        return conduit;
+    }
+    
+    /**
+     * Retry the invocation on another member.
+     * 
+     * @return true if the invocation has been retried
+     */
+    private boolean retry(Exchange exchange, ClusterMember failed, InvocationContext invocation) {
+        List<Endpoint> remaining = invocation.getAlternateTargets();
+        if (remaining == null) {
+            remaining = new ArrayList<Endpoint>();
+            for (ClusterMember member : members) {
+                if (member != failed) {
+                    remaining.add(member.getEndpoint());
+                }
+            }
+            invocation.setAlternateTargets(remaining);
+        } else {
+            remaining.remove(failed.getEndpoint());
+        }
+        Retryable retry = exchange.get(Retryable.class);
+        if (remaining.isEmpty() || retry == null) {
+            getLogger().warning("NO_ALTERNATE_TARGETS_REMAIN");
+            return false;
+        }
+        getLogger().log(Level.WARNING, "RETRYING_ON_OTHER_MEMBER", failed);
+        Exception prevExchangeFault =
+            (Exception)exchange.remove(Exception.class.getName());
+        Message outMessage = exchange.getOutMessage();
+        Exception prevMessageFault =
+            outMessage.getContent(Exception.class);
+        outMessage.setContent(Exception.class, null);
+        exchange.clear();
+        try {
+            retry.invoke(invocation.getBindingOperationInfo(),
+                         invocation.getParams(),
+                         invocation.getContext(),
+                         exchange);
+        } catch (Exception e) {
+            if (exchange.get(Exception.class) != null) {
+                exchange.put(Exception.class, prevExchangeFault);
+            }
+            if (outMessage.getContent(Exception.class) != null) {
+                outMessage.setContent(Exception.class,
+                                      prevMessageFault);
+            }
+        }
+        return true;
+    }
+    
+    private void probe() {
+        for (ClusterMember member : getMembers()) {
+            boolean healthy;
+            try {
+                healthy = healthProbe.isHealthy(member.getEndpoint());
+            } catch (RuntimeException ex) {
+                healthy = false;
+            }
+            if (healthy != member.isHealthy()) {
+                getLogger().log(Level.WARNING,
+                                healthy ? "MEMBER_READMITTED" : "MEMBER_EJECTED",
+                                member);
+            }
+            member.setHealthy(healthy);
+        }
+    }
+    
+    /*
+     * does not keep a selector that is no longer used from being collected
+     */
+    static class ProbeTask extends TimerTask {
+        final WeakReference<LoadDistributorTargetSelector> ref;
+        
+        ProbeTask(LoadDistributorTargetSelector selector) {
+            ref = new WeakReference<LoadDistributorTargetSelector>(selector);
+        }
+        
+        public void run() {
+            LoadDistributorTargetSelector selector = ref.get();
+            if (selector == null) {
+                cancel();
+            } else {
+                selector.probe();
+            }
+        }
+    }
+    
+    /**
+     * Shuts the selector down when its client is destroyed or the bus shuts 
+     * down, whichever comes first.
+     */
+    static class ShutdownListener implements ClientLifeCycleListener, BusLifeCycleListener {
+        final WeakReference<LoadDistributorTargetSelector> ref;
+        final WeakReference<Client> client;
+        ClientLifeCycleManager clcm;
+        BusLifeCycleManager blcm;
+        
+        ShutdownListener(LoadDistributorTargetSelector selector, Client c, Bus bus) {
+            ref = new WeakReference<LoadDistributorTargetSelector>(selector);
+            client = new WeakReference<Client>(c);
+            clcm = bus.getExtension(ClientLifeCycleManager.class);
+            if (clcm != null) {
+                clcm.registerListener(this);
+            }
+            blcm = bus.getExtension(BusLifeCycleManager.class);
+            if (blcm != null) {
+                blcm.registerLifeCycleListener(this);
+            }
+        }
+        
+        public void clientCreated(Client c) {
+        }
+        
+        public void clientDestroyed(Client c) {
+            if (c == client.get()) {
+                shutdown();
+            }
+        }
+        
+        public void initComplete() {
+        }
+        
+        public void preShutdown() {
+            shutdown();
+        }
+        
+        public void postShutdown() {
+        }
+        
+        synchronized void shutdown() {
+            if (clcm != null) {
+                clcm.unRegisterListener(this);
+                clcm = null;
+            }
+            if (blcm != null) {
+                blcm.unregisterLifeCycleListener(this);
+                blcm = null;
+            }
+            LoadDistributorTargetSelector selector = ref.get();
+            if (selector != null) {
+                selector.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load balancing strategy sending requests to the available members 
+ * in turn.
+ */
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+    
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Select the member to send a request to.
+     * 
+     * @param candidates non-empty List of the members currently available
+     * @return the selected member
+     */
+    public ClusterMember select(List<ClusterMember> candidates) {
+        int next = counter.getAndIncrement() & Integer.MAX_VALUE;
+        return candidates.get(next % candidates.size());
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.endpoint.Endpoint;
+
+/**
+ * Health probe considering a member healthy if a TCP connection to the host
+ * and port of its address can be established.
+ */
+public class SocketHealthProbe implements HealthProbe {
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(SocketHealthProbe.class);
+    
+    private int connectTimeout = 2000;
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param timeout the time in milliseconds to wait for the connection
+     */
+    public void setConnectTimeout(int timeout) {
+        connectTimeout = timeout;
+    }
+
+    public boolean isHealthy(Endpoint endpoint) {
+        String address = endpoint.getEndpointInfo().getAddress();
+        Socket socket = new Socket();
+        try {
+            URI uri = new URI(address);
+            int port = uri.getPort();
+            if (port == -1) {
+                port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+            }
+            socket.connect(new InetSocketAddress(uri.getHost(), port), connectTimeout);
+            return true;
+        } catch (Exception ex) {
+            LOG.log(Level.FINE, "HEALTH_PROBE_FAILED", new Object[] {address, ex});
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+}
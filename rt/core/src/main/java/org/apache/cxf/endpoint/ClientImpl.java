@@ -19,14 +19,16 @@
 
 package org.apache.cxf.endpoint;
 
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
@@ -77,6 +79,8 @@ public class ClientImpl
     public static final String FINISHED = "exchange.finished";
 
     private static final Logger LOG = LogUtils.getL7dLogger(ClientImpl.class);
+    
+    private static final String METHOD = Method.class.getName();
 
     protected Bus bus;
     protected ConduitSelector conduitSelector;
@@ -86,12 +90,10 @@ public class ClientImpl
     protected PhaseChainCache outboundChainCache = new PhaseChainCache();
     protected PhaseChainCache inboundChainCache = new PhaseChainCache();
 
-    protected Map<String, Object> currentRequestContext = new ConcurrentHashMap<String, Object>();
-    protected Map<Thread, EchoContext> requestContext 
-        = Collections.synchronizedMap(new WeakHashMap<Thread, EchoContext>());
+    protected Map<String, Object> currentRequestContext = new SharedContext();
+    private ThreadLocal<EchoContext> requestContext = new ThreadLocal<EchoContext>();
 
-    protected Map<Thread, Map<String, Object>> responseContext 
-        = Collections.synchronizedMap(new WeakHashMap<Thread, Map<String, Object>>());
+    private ThreadLocal<Map<String, Object>> responseContext = new ThreadLocal<Map<String, Object>>();
 
     protected Executor executor;
 
@@ -217,20 +219,47 @@ public class ClientImpl
 
     public Map<String, Object> getRequestContext() {
         if (isThreadLocalRequestContext()) {
-            if (!requestContext.containsKey(Thread.currentThread())) {
-                requestContext.put(Thread.currentThread(), new EchoContext(currentRequestContext));
+            EchoContext ctx = requestContext.get();
+            if (ctx == null) {
+                ctx = new EchoContext(currentRequestContext);
+                requestContext.set(ctx);
             }
-            return requestContext.get(Thread.currentThread());
+            return ctx;
         }
         return currentRequestContext;
     }
     public Map<String, Object> getResponseContext() {
-        if (!responseContext.containsKey(Thread.currentThread())) {
-            responseContext.put(Thread.currentThread(), new HashMap<String, Object>());
+        Map<String, Object> ctx = responseContext.get();
+        if (ctx == null) {
+            ctx = new HashMap<String, Object>();
+            responseContext.set(ctx);
         }
-        return responseContext.get(Thread.currentThread());
+        return ctx;
 
     }
+    
+    /**
+     * Returns the request context for a new invocation. It shares the content of 
+     * the current request context until either of them is modified.
+     */
+    protected Map<String, Object> createInvocationRequestContext() {
+        Map<String, Object> ctx = getRequestContext();
+        Map<String, Object> snapshot;
+        if (ctx instanceof EchoContext) {
+            snapshot = ((EchoContext)ctx).getSnapshot();
+        } else if (ctx instanceof SharedContext) {
+            snapshot = ((SharedContext)ctx).getSnapshot();
+        } else {
+            return new HashMap<String, Object>(ctx);
+        }
+        Map<String, Object> req = new CopyOnWriteContext(snapshot);
+        // the Method set by the proxies does not invalidate the snapshot
+        Object method = ctx.get(METHOD);
+        if (method != snapshot.get(METHOD)) {
+            req.put(METHOD, method);
+        }
+        return req;
+    }
     public boolean isThreadLocalRequestContext() {
         if (currentRequestContext.containsKey(THREAD_LOCAL_REQUEST_CONTEXT)) {
             Object o = currentRequestContext.get(THREAD_LOCAL_REQUEST_CONTEXT);
@@ -294,13 +323,13 @@ public class ClientImpl
         Map<String, Object> context = new HashMap<String, Object>();
         Map<String, Object> resp = getResponseContext();
         resp.clear();
-        Map<String, Object> req = new HashMap<String, Object>(getRequestContext());
+        Map<String, Object> req = createInvocationRequestContext();
         context.put(RESPONSE_CONTEXT, resp);
         context.put(REQUEST_CONTEXT, req);
         try {
             return invoke(oi, params, context, exchange);
         } finally {
-            responseContext.put(Thread.currentThread(), resp);
+            responseContext.set(resp);
         }
     }
     public Object[] invoke(BindingOperationInfo oi,
@@ -312,7 +341,7 @@ public class ClientImpl
             if (context != null) {
                 Map<String, Object> resp = CastUtils.cast((Map<?, ?>)context.get(RESPONSE_CONTEXT));
                 if (resp != null) {
-                    responseContext.put(Thread.currentThread(), resp);
+                    responseContext.set(resp);
                 }
             }
         }
@@ -375,7 +404,7 @@ public class ClientImpl
             Map<String, Object> context = new HashMap<String, Object>();
             Map<String, Object> resp = getResponseContext();
             resp.clear();
-            Map<String, Object> reqContext = new HashMap<String, Object>(getRequestContext());
+            Map<String, Object> reqContext = createInvocationRequestContext();
             context.put(RESPONSE_CONTEXT, resp);
             context.put(REQUEST_CONTEXT, reqContext);
 
@@ -519,7 +548,7 @@ public class ClientImpl
             if (null != resContext) {
                 resContext.putAll(inMsg);
                 if (LOG.isLoggable(Level.FINE)) {
-                    LOG.fine("set responseContext to be" + responseContext);
+                    LOG.fine("set responseContext to be" + resContext);
                 }
             }
             resList = inMsg.getContent(List.class);
@@ -828,6 +857,7 @@ public class ClientImpl
      */
     public static class EchoContext extends HashMap<String, Object> {
         final Map<String, Object> shared;
+        final CopyOnWriteContext.Snapshots snapshots = new CopyOnWriteContext.Snapshots();
         public EchoContext(Map<String, Object> sharedMap) {
             super(sharedMap);
             shared = sharedMap;
@@ -835,22 +865,104 @@ public class ClientImpl
 
         public Object put(String key, Object value) {
             shared.put(key, value);
-            return super.put(key, value);
+            Object old = super.put(key, value);
+            if (old != value && !METHOD.equals(key)) {
+                snapshots.modified();
+            }
+            return old;
         }
 
         public void putAll(Map<? extends String, ? extends Object> t) {
             shared.putAll(t);
             super.putAll(t);
+            snapshots.modified();
         }
 
         public Object remove(Object key) {
             shared.remove(key);
-            return super.remove(key);
+            Object old = super.remove(key);
+            snapshots.modified();
+            return old;
+        }
+        
+        public void clear() {
+            super.clear();
+            snapshots.modified();
         }
 
         public void reload() {
             super.clear();
             super.putAll(shared);
+            snapshots.modified();
+        }
+        
+        public Set<String> keySet() {
+            return snapshots.track(super.keySet());
+        }
+        
+        public Collection<Object> values() {
+            return snapshots.track(super.values());
+        }
+        
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return snapshots.trackEntries(super.entrySet());
+        }
+        
+        Map<String, Object> getSnapshot() {
+            return snapshots.getSnapshot(this);
+        }
+    }
+    
+    /*
+     * the request context shared by all threads, keeps a snapshot of its content
+     * that invocations share until it is modified
+     */
+    static class SharedContext extends AbstractMap<String, Object> {
+        final CopyOnWriteContext.Snapshots snapshots = new CopyOnWriteContext.Snapshots();
+        final Map<String, Object> content = new ConcurrentHashMap<String, Object>();
+        
+        public Object get(Object key) {
+            return content.get(key);
+        }
+        
+        public boolean containsKey(Object key) {
+            return content.containsKey(key);
+        }
+        
+        public int size() {
+            return content.size();
+        }
+        
+        public Object put(String key, Object value) {
+            Object old = content.put(key, value);
+            if (old != value && !METHOD.equals(key)) {
+                snapshots.modified();
+            }
+            return old;
+        }
+
+        public void putAll(Map<? extends String, ? extends Object> t) {
+            content.putAll(t);
+            snapshots.modified();
+        }
+
+        public Object remove(Object key) {
+            Object old = content.remove(key);
+            snapshots.modified();
+            return old;
+        }
+        
+        public void clear() {
+            content.clear();
+            snapshots.modified();
+        }
+        
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return snapshots.trackEntries(content.entrySet());
+        }
+        
+        Map<String, Object> getSnapshot() {
+            return snapshots.getSnapshot(this);
         }
     }
 
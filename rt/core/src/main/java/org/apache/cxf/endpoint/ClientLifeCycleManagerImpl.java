@@ -19,14 +19,15 @@
 
 package org.apache.cxf.endpoint;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.cxf.extension.BusExtension;
 
 public class ClientLifeCycleManagerImpl implements ClientLifeCycleManager, BusExtension {
     
-    private List<ClientLifeCycleListener> listeners = new ArrayList<ClientLifeCycleListener>(); 
+    private List<ClientLifeCycleListener> listeners = 
+        new CopyOnWriteArrayList<ClientLifeCycleListener>(); 
 
     public Class<?> getRegistrationType() {
         return ClientLifeCycleManager.class;
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.endpoint;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The request context of a single invocation. Reads go to an immutable snapshot
+ * of the client's request context, which is shared by all the invocations made
+ * until that context is modified. The first write copies the snapshot, so the
+ * interceptors can still change the context of their own invocation.
+ * 
+ * Until the first write the collection views are read only.
+ */
+class CopyOnWriteContext extends AbstractMap<String, Object> {
+    private Map<String, Object> content;
+    private boolean copied;
+    
+    CopyOnWriteContext(Map<String, Object> snapshot) {
+        content = snapshot;
+    }
+    
+    private Map<String, Object> copy() {
+        if (!copied) {
+            content = new HashMap<String, Object>(content);
+            copied = true;
+        }
+        return content;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        return content.get(key);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return content.containsKey(key);
+    }
+    
+    @Override
+    public int size() {
+        return content.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return content.entrySet();
+    }
+    
+    @Override
+    public Object put(String key, Object value) {
+        return copy().put(key, value);
+    }
+    
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> m) {
+        copy().putAll(m);
+    }
+    
+    @Override
+    public Object remove(Object key) {
+        if (!content.containsKey(key)) {
+            return null;
+        }
+        return copy().remove(key);
+    }
+    
+    @Override
+    public void clear() {
+        content = new HashMap<String, Object>();
+        copied = true;
+    }
+
+    
+    /**
+     * Keeps the snapshot of a request context. The owner of the context calls 
+     * modified() after each change, a snapshot taken before a change is never 
+     * returned after it.
+     */
+    static final class Snapshots {
+        private final AtomicInteger version = new AtomicInteger();
+        private volatile Snapshot snapshot;
+        
+        void modified() {
+            version.incrementAndGet();
+        }
+        
+        /**
+         * Wraps a collection view of the context so that removing through it
+         * counts as a change.
+         */
+        <T> Set<T> track(final Set<T> set) {
+            return new AbstractSet<T>() {
+                public Iterator<T> iterator() {
+                    return track(set.iterator());
+                }
+                public int size() {
+                    return set.size();
+                }
+                public boolean contains(Object o) {
+                    return set.contains(o);
+                }
+            };
+        }
+        
+        <T> Collection<T> track(final Collection<T> c) {
+            return new AbstractCollection<T>() {
+                public Iterator<T> iterator() {
+                    return track(c.iterator());
+                }
+                public int size() {
+                    return c.size();
+                }
+            };
+        }
+        
+        /**
+         * Wraps the entry set of the context so that removing entries or 
+         * setting their values counts as a change.
+         */
+        Set<Map.Entry<String, Object>> trackEntries(final Set<Map.Entry<String, Object>> entries) {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    final Iterator<Map.Entry<String, Object>> it = track(entries.iterator());
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+                        public Map.Entry<String, Object> next() {
+                            return new TrackedEntry(it.next());
+                        }
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+                public int size() {
+                    return entries.size();
+                }
+                public boolean contains(Object o) {
+                    return entries.contains(o);
+                }
+            };
+        }
+        
+        private <T> Iterator<T> track(final Iterator<T> it) {
+            return new Iterator<T>() {
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+                public T next() {
+                    return it.next();
+                }
+                public void remove() {
+                    it.remove();
+                    modified();
+                }
+            };
+        }
+        
+        private final class TrackedEntry implements Map.Entry<String, Object> {
+            private final Map.Entry<String, Object> entry;
+            
+            TrackedEntry(Map.Entry<String, Object> e) {
+                entry = e;
+            }
+            public String getKey() {
+                return entry.getKey();
+            }
+            public Object getValue() {
+                return entry.getValue();
+            }
+            public Object setValue(Object value) {
+                Object old = entry.setValue(value);
+                modified();
+                return old;
+            }
+            public boolean equals(Object o) {
+                return entry.equals(o);
+            }
+            public int hashCode() {
+                return entry.hashCode();
+            }
+            public String toString() {
+                return entry.toString();
+            }
+        }
+        
+        Map<String, Object> getSnapshot(Map<String, Object> context) {
+            int v = version.get();
+            Snapshot s = snapshot;
+            if (s == null || s.version != v) {
+                s = new Snapshot(v, Collections.unmodifiableMap(new HashMap<String, Object>(context)));
+                snapshot = s;
+            }
+            return s.content;
+        }
+    }
+    
+    private static final class Snapshot {
+        final int version;
+        final Map<String, Object> content;
+        
+        Snapshot(int v, Map<String, Object> c) {
+            version = v;
+            content = c;
+        }
+    }
+}
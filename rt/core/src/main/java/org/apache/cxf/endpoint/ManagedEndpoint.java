@@ -28,6 +28,10 @@ import org.apache.cxf.management.ManagementConstants;
 import org.apache.cxf.management.annotation.ManagedAttribute;
 import org.apache.cxf.management.annotation.ManagedOperation;
 import org.apache.cxf.management.annotation.ManagedResource;
+import org.apache.cxf.phase.PhaseChainCache;
+import org.apache.cxf.transport.ChainInitiationObserver;
+import org.apache.cxf.transport.Destination;
+import org.apache.cxf.transport.MessageObserver;
 
 @ManagedResource(componentName = "Endpoint", 
                  description = "Responsible for managing server instances.")
@@ -77,6 +81,35 @@ public class ManagedEndpoint implements ManagedComponent, ServerLifeCycleListene
     public String getState() {
         return state.toString();
     }
+    
+    @ManagedAttribute(description = "Number of interceptor chains served from the chain cache")
+    public long getInterceptorChainCacheHits() {
+        PhaseChainCache cache = getChainCache();
+        return cache == null ? 0 : cache.getHits();
+    }
+    
+    @ManagedAttribute(description = "Number of interceptor chains built because of a chain cache miss")
+    public long getInterceptorChainCacheMisses() {
+        PhaseChainCache cache = getChainCache();
+        return cache == null ? 0 : cache.getMisses();
+    }
+    
+    @ManagedAttribute(description = "Number of interceptor chains held in the chain cache")
+    public int getInterceptorChainCacheSize() {
+        PhaseChainCache cache = getChainCache();
+        return cache == null ? 0 : cache.getSize();
+    }
+    
+    private PhaseChainCache getChainCache() {
+        Destination destination = server.getDestination();
+        if (destination != null) {
+            MessageObserver observer = destination.getMessageObserver();
+            if (observer instanceof ChainInitiationObserver) {
+                return ((ChainInitiationObserver)observer).getChainCache();
+            }
+        }
+        return null;
+    }
         
     public ObjectName getObjectName() throws JMException {
         String busId = bus.getId();
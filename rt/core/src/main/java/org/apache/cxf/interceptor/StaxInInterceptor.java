@@ -79,8 +79,13 @@ public class StaxInInterceptor extends AbstractPhaseInterceptor<Message> {
         XMLStreamReader reader;
         try {
             XMLInputFactory factory = getXMLInputFactory(message);
-            synchronized (factory) {
+            if (factory == StaxUtils.getXMLInputFactory() && StaxUtils.isUsingSharedFactories()) {
+                // the shared factory is thread-safe
                 reader = factory.createXMLStreamReader(is, encoding);
+            } else {
+                synchronized (factory) {
+                    reader = factory.createXMLStreamReader(is, encoding);
+                }
             }
         } catch (XMLStreamException e) {
             throw new Fault(new org.apache.cxf.common.i18n.Message("STREAM_CREATE_EXC",
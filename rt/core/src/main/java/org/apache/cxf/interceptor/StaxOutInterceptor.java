@@ -65,8 +65,13 @@ public class StaxOutInterceptor extends AbstractPhaseInterceptor<Message> {
         
         try {
             XMLOutputFactory factory = getXMLOutputFactory(message);
-            synchronized (factory) {
+            if (factory == StaxUtils.getXMLOutputFactory() && StaxUtils.isUsingSharedFactories()) {
+                // the shared factory is thread-safe
                 writer = factory.createXMLStreamWriter(os, encoding);
+            } else {
+                synchronized (factory) {
+                    writer = factory.createXMLStreamWriter(os, encoding);
+                }
             }
             if (Boolean.TRUE.equals(message.getContextualProperty(FORCE_START_DOCUMENT))) {
                 writer.writeStartDocument(encoding, "1.0");
@@ -135,4 +135,8 @@ public class ChainInitiationObserver implements MessageObserver {
         return endpoint;
     }
     
+    public PhaseChainCache getChainCache() {
+        return chainCache;
+    }
+    
 }
@@ -23,6 +23,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -299,4 +300,49 @@ public class AttachmentDeserializerTest extends Assert {
         assertEquals(-1, m.read(new byte[1000]));
         assertEquals(-1, m.read(new byte[1000]));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testBoundaryAcrossReadBuffers() throws Exception {
+        byte[] boundary = "--uuid:1234".getBytes();
+        // part data containing partial boundaries and line ends
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; i++) {
+            data.write(("line " + i + "\r\n--uuid:12\r\r\n-").getBytes());
+            data.write(i);
+        }
+        byte[] part = data.toByteArray();
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        message.write(part);
+        message.write("\r\n--uuid:1234\r\nnext".getBytes());
+        byte[] bytes = message.toByteArray();
+        
+        for (int size = 32; size < 300; size += 7) {
+            PushbackInputStream in = new PushbackInputStream(new ByteArrayInputStream(bytes), size);
+            MimeBodyPartInputStream m = new MimeBodyPartInputStream(in, boundary, size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[size / 3];
+            for (int n = m.read(buf); n != -1; n = m.read(buf)) {
+                out.write(buf, 0, n);
+            }
+            assertEquals(part.length, out.size());
+            assertTrue(Arrays.equals(part, out.toByteArray()));
+            assertEquals("next", IOUtils.toString(in));
+        }
+    }
+    
+    @Test
+    public void testCloseBeforeBoundaryPushesBack() throws Exception {
+        byte[] bytes = "0123456789\r\n--uuid:1234--\r\n".getBytes();
+        PushbackInputStream in = new PushbackInputStream(new ByteArrayInputStream(bytes), 64);
+        MimeBodyPartInputStream m = new MimeBodyPartInputStream(in, "--uuid:1234".getBytes(), 64);
+        assertEquals('0', m.read());
+        m.close();
+        
+        m = new MimeBodyPartInputStream(in, "--uuid:1234".getBytes(), 64);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(9, m.transferTo(out));
+        assertEquals("123456789", out.toString());
+        assertEquals(-1, m.read());
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadBalancingStrategyTest extends Assert {
+
+    @Test
+    public void testRoundRobin() {
+        List<ClusterMember> members = createMembers(3);
+        LoadBalancingStrategy strategy = new RoundRobinStrategy();
+        for (int i = 0; i < 6; i++) {
+            assertSame(members.get(i % 3), strategy.select(members));
+        }
+    }
+
+    @Test
+    public void testLeastOutstandingRequests() {
+        List<ClusterMember> members = createMembers(3);
+        members.get(0).requestStarted();
+        members.get(0).requestStarted();
+        members.get(2).requestStarted();
+        LoadBalancingStrategy strategy = new LeastOutstandingRequestsStrategy();
+        assertSame(members.get(1), strategy.select(members));
+        
+        members.get(1).requestStarted();
+        members.get(1).requestStarted();
+        assertSame(members.get(2), strategy.select(members));
+    }
+
+    @Test
+    public void testLatencyWeighted() {
+        List<ClusterMember> members = createMembers(2);
+        members.get(0).requestStarted();
+        members.get(0).requestCompleted(10, false, 5);
+        members.get(1).requestStarted();
+        members.get(1).requestCompleted(1000, false, 5);
+        LoadBalancingStrategy strategy = new LatencyWeightedStrategy();
+        int fast = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (strategy.select(members) == members.get(0)) {
+                fast++;
+            }
+        }
+        assertTrue("fast member selected " + fast + " times", fast > 900);
+    }
+
+    @Test
+    public void testAverageLatency() {
+        ClusterMember member = new ClusterMember(null);
+        assertEquals(-1, member.getAverageLatency(), 0);
+        member.requestStarted();
+        member.requestCompleted(100, false, 5);
+        assertEquals(100, member.getAverageLatency(), 0.001);
+        member.requestStarted();
+        member.requestCompleted(200, false, 5);
+        assertEquals(120, member.getAverageLatency(), 0.001);
+        member.requestStarted();
+        member.requestCompleted(0, true, 5);
+        assertEquals("failures are not sampled", 120, member.getAverageLatency(), 0.001);
+        assertEquals(0, member.getOutstandingRequests());
+    }
+
+    @Test
+    public void testCircuitBreaker() {
+        ClusterMember member = new ClusterMember(null);
+        for (int i = 0; i < 3; i++) {
+            long now = System.currentTimeMillis();
+            assertTrue(member.isAvailable(now, 30000));
+            member.requestStarted();
+            member.requestCompleted(0, true, 3);
+        }
+        long now = System.currentTimeMillis();
+        assertTrue(member.isCircuitOpen(now, 30000));
+        assertFalse(member.isAvailable(now, 30000));
+        assertTrue("half open after reset timeout", member.isAvailable(now + 30000, 30000));
+        
+        member.requestStarted();
+        member.requestCompleted(0, true, 3);
+        assertFalse("trial failure reopens", member.isAvailable(System.currentTimeMillis(), 30000));
+        
+        member.requestStarted();
+        member.requestCompleted(10, false, 3);
+        assertTrue(member.isAvailable(System.currentTimeMillis(), 30000));
+    }
+
+    @Test
+    public void testHealthProbeOutcome() {
+        ClusterMember member = new ClusterMember(null);
+        member.setHealthy(false);
+        assertFalse(member.isAvailable(System.currentTimeMillis(), 30000));
+        member.setHealthy(true);
+        assertTrue(member.isAvailable(System.currentTimeMillis(), 30000));
+    }
+    
+    private static List<ClusterMember> createMembers(int count) {
+        List<ClusterMember> members = new ArrayList<ClusterMember>();
+        for (int i = 0; i < count; i++) {
+            members.add(new ClusterMember(null));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.clustering;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.buslifecycle.BusLifeCycleManager;
+import org.apache.cxf.buslifecycle.CXFBusLifeCycleManager;
+import org.apache.cxf.endpoint.Client;
+import org.apache.cxf.endpoint.ClientLifeCycleManager;
+import org.apache.cxf.endpoint.ClientLifeCycleManagerImpl;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.transport.Conduit;
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadDistributorTargetSelectorTest extends Assert {
+
+    private IMocksControl control;
+    private Bus bus;
+    private Client client;
+    private Conduit conduit;
+    private ClientLifeCycleManager clientManager;
+    private BusLifeCycleManager busManager;
+    private CountingProbe probe;
+    private LoadDistributorTargetSelector selector;
+
+    @Before
+    public void setUp() {
+        control = EasyMock.createNiceControl();
+        bus = control.createMock(Bus.class);
+        client = control.createMock(Client.class);
+        conduit = control.createMock(Conduit.class);
+        clientManager = new ClientLifeCycleManagerImpl();
+        busManager = new CXFBusLifeCycleManager();
+        EasyMock.expect(bus.getExtension(ClientLifeCycleManager.class))
+            .andReturn(clientManager).anyTimes();
+        EasyMock.expect(bus.getExtension(BusLifeCycleManager.class))
+            .andReturn(busManager).anyTimes();
+        conduit.close();
+        EasyMock.expectLastCall();
+
+        final Endpoint alternate = createEndpoint("http://localhost:9001/alternate");
+        probe = new CountingProbe();
+        selector = new LoadDistributorTargetSelector();
+        selector.setEndpoint(createEndpoint("http://localhost:9000/primary"));
+        selector.setStrategy(new FailoverStrategy() {
+            public List<Endpoint> getAlternateEndpoints(Exchange exchange) {
+                return Collections.singletonList(alternate);
+            }
+            public Endpoint selectAlternateEndpoint(List<Endpoint> alternates) {
+                return null;
+            }
+        });
+        selector.setHealthProbe(probe);
+        selector.setProbeInterval(10);
+        control.replay();
+    }
+
+    @Test
+    public void testShutdownWhenClientDestroyed() throws Exception {
+        new LoadDistributorTargetSelector.ShutdownListener(selector, client, bus);
+        startProbes();
+
+        clientManager.clientDestroyed(client);
+        assertNull(selector.getMembers().get(1).getConduit());
+        control.verify();
+        assertProbesStopped();
+    }
+
+    @Test
+    public void testShutdownWithBus() throws Exception {
+        new LoadDistributorTargetSelector.ShutdownListener(selector, client, bus);
+        startProbes();
+
+        busManager.preShutdown();
+        assertNull(selector.getMembers().get(1).getConduit());
+        control.verify();
+        assertProbesStopped();
+
+        // the listener has been unregistered
+        clientManager.clientDestroyed(client);
+    }
+
+    private Endpoint createEndpoint(String address) {
+        Endpoint endpoint = control.createMock(Endpoint.class);
+        EndpointInfo ei = new EndpointInfo();
+        ei.setAddress(address);
+        EasyMock.expect(endpoint.getEndpointInfo()).andReturn(ei).anyTimes();
+        return endpoint;
+    }
+
+    private void startProbes() throws InterruptedException {
+        Message message = new MessageImpl();
+        Exchange exchange = new ExchangeImpl();
+        message.setExchange(exchange);
+        message.setContent(List.class, new ArrayList<Object>());
+        selector.prepare(message);
+        assertEquals(2, selector.getMembers().size());
+        selector.getMembers().get(1).setConduit(conduit);
+        assertTrue("probe not run", probe.started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void assertProbesStopped() throws InterruptedException {
+        // let a probe in progress when the timer was cancelled complete
+        Thread.sleep(50);
+        int count = probe.count.get();
+        Thread.sleep(100);
+        assertEquals(count, probe.count.get());
+    }
+
+    private static class CountingProbe implements HealthProbe {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+
+        public boolean isHealthy(Endpoint endpoint) {
+            count.incrementAndGet();
+            started.countDown();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.endpoint;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CopyOnWriteContextTest extends Assert {
+    
+    @Test
+    public void testSnapshotSharedUntilModified() {
+        ClientImpl.SharedContext ctx = new ClientImpl.SharedContext();
+        ctx.put("a", "1");
+        Map<String, Object> snapshot = ctx.getSnapshot();
+        assertSame(snapshot, ctx.getSnapshot());
+        
+        ctx.put("a", snapshot.get("a"));
+        assertSame("same value does not change the context", snapshot, ctx.getSnapshot());
+        
+        ctx.put("b", "2");
+        Map<String, Object> snapshot2 = ctx.getSnapshot();
+        assertNotSame(snapshot, snapshot2);
+        assertNull(snapshot.get("b"));
+        assertEquals("2", snapshot2.get("b"));
+        
+        ctx.remove("a");
+        assertFalse(ctx.getSnapshot().containsKey("a"));
+        assertEquals("1", snapshot2.get("a"));
+    }
+    
+    @Test
+    public void testCopyOnWrite() {
+        ClientImpl.SharedContext ctx = new ClientImpl.SharedContext();
+        ctx.put("a", "1");
+        ctx.put("b", "2");
+        Map<String, Object> snapshot = ctx.getSnapshot();
+        
+        Map<String, Object> req1 = new CopyOnWriteContext(snapshot);
+        Map<String, Object> req2 = new CopyOnWriteContext(snapshot);
+        assertEquals(snapshot, req1);
+        
+        req1.put("a", "3");
+        req1.remove("b");
+        assertEquals("3", req1.get("a"));
+        assertFalse(req1.containsKey("b"));
+        assertEquals(1, req1.size());
+        
+        assertEquals("1", req2.get("a"));
+        assertEquals("2", req2.get("b"));
+        assertEquals("1", ctx.get("a"));
+        assertSame(snapshot, ctx.getSnapshot());
+        
+        req2.clear();
+        assertTrue(req2.isEmpty());
+        assertEquals(2, snapshot.size());
+    }
+    
+    @Test
+    public void testEchoContext() {
+        ClientImpl.SharedContext shared = new ClientImpl.SharedContext();
+        shared.put("a", "1");
+        ClientImpl.EchoContext ctx = new ClientImpl.EchoContext(shared);
+        Map<String, Object> snapshot = ctx.getSnapshot();
+        assertEquals("1", snapshot.get("a"));
+        assertSame(snapshot, ctx.getSnapshot());
+        
+        ctx.put("b", "2");
+        assertEquals("2", shared.get("b"));
+        assertEquals("2", ctx.getSnapshot().get("b"));
+        assertNull(snapshot.get("b"));
+        
+        shared.put("c", "3");
+        snapshot = ctx.getSnapshot();
+        assertNull(snapshot.get("c"));
+        ctx.reload();
+        assertNotSame(snapshot, ctx.getSnapshot());
+        assertEquals("3", ctx.getSnapshot().get("c"));
+    }
+    
+    @Test
+    public void testViewsTrackChanges() {
+        ClientImpl.SharedContext ctx = new ClientImpl.SharedContext();
+        ctx.put("a", "1");
+        ctx.put("b", "2");
+        ctx.put("c", "3");
+        Map<String, Object> snapshot = ctx.getSnapshot();
+        
+        ctx.keySet().remove("a");
+        Map<String, Object> snapshot2 = ctx.getSnapshot();
+        assertNotSame(snapshot, snapshot2);
+        assertFalse(snapshot2.containsKey("a"));
+        
+        ctx.entrySet().iterator().next().setValue("4");
+        Map<String, Object> snapshot3 = ctx.getSnapshot();
+        assertNotSame(snapshot2, snapshot3);
+        assertTrue(snapshot3.containsValue("4"));
+        
+        ctx.values().clear();
+        assertTrue(ctx.getSnapshot().isEmpty());
+        
+        ClientImpl.EchoContext echo = new ClientImpl.EchoContext(ctx);
+        echo.put("d", "5");
+        snapshot = echo.getSnapshot();
+        Iterator<String> it = echo.keySet().iterator();
+        it.next();
+        it.remove();
+        assertNotSame(snapshot, echo.getSnapshot());
+        assertTrue(echo.getSnapshot().isEmpty());
+    }
+    
+    @Test
+    public void testMethodDoesNotInvalidateSnapshot() throws Exception {
+        ClientImpl.SharedContext ctx = new ClientImpl.SharedContext();
+        ctx.put("a", "1");
+        Map<String, Object> snapshot = ctx.getSnapshot();
+        ctx.put(Method.class.getName(), Object.class.getMethod("toString"));
+        assertSame(snapshot, ctx.getSnapshot());
+        assertNotNull(ctx.get(Method.class.getName()));
+    }
+}
@@ -20,8 +20,13 @@ package org.apache.cxf.transport;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.io.ByteBufferPool;
 import org.apache.cxf.io.CachedOutputStream;
 import org.junit.Assert;
 import org.junit.Test;
@@ -54,6 +59,106 @@ public class CachedOutputStreamTest extends Assert {
         assertFalse(tempFile.exists());
     }
     
+    @Test
+    public void testChunkedContent() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(100, 10, false);
+        CachedOutputStream cos = new CachedOutputStream();
+        cos.setBufferPool(pool);
+        String result = initTestData(1);
+        cos.write(result.getBytes(), 0, 150);
+        cos.write(result.getBytes(), 150, result.length() - 150);
+        
+        assertEquals(result, new String(cos.getBytes()));
+        assertEquals(result, IOUtils.toString(cos.getInputStream()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cos.writeCacheTo(Channels.newChannel(out));
+        assertEquals(result, out.toString());
+        StringBuilder builder = new StringBuilder();
+        cos.writeCacheTo(builder, 10);
+        assertEquals(result.substring(0, 10), builder.toString());
+        
+        out = new ByteArrayOutputStream();
+        cos.resetOut(out, true);
+        assertEquals(result, out.toString());
+        assertEquals(10, pool.getPooledCount());
+    }
+    
+    @Test
+    public void testChunksKeptForOpenInputStream() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(100, 10, false);
+        CachedOutputStream cos = new CachedOutputStream();
+        cos.setBufferPool(pool);
+        String result = initTestData(1);
+        cos.write(result.getBytes());
+        InputStream in = cos.getInputStream();
+        assertEquals(result.charAt(0), in.read());
+        
+        cos.resetOut(new ByteArrayOutputStream(), false);
+        assertEquals(0, pool.getPooledCount());
+        // the chunks must not be handed to another stream while still read
+        CachedOutputStream other = new CachedOutputStream();
+        other.setBufferPool(pool);
+        other.write(new byte[result.length()]);
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(result.substring(1), IOUtils.toString(in));
+        assertEquals(10, pool.getPooledCount());
+        in.close();
+        other.close();
+    }
+    
+    @Test
+    public void testChunksReleasedOnClose() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(100, 10, false);
+        CachedOutputStream cos = new CachedOutputStream();
+        cos.setBufferPool(pool);
+        String result = initTestData(1);
+        cos.write(result.getBytes());
+        assertEquals(0, pool.getPooledCount());
+        cos.close();
+        assertEquals(10, pool.getPooledCount());
+        // the content can still be read after close
+        assertEquals(result, new String(cos.getBytes()));
+        assertEquals(result, IOUtils.toString(cos.getInputStream()));
+
+        cos = new CachedOutputStream();
+        cos.setBufferPool(pool);
+        cos.write(result.getBytes());
+        InputStream in = cos.getInputStream();
+        cos.close();
+        // the open InputStream keeps the chunks until it is done with them
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(result, IOUtils.toString(in));
+        assertEquals(10, pool.getPooledCount());
+        in.close();
+    }
+
+    @Test
+    public void testDirectBuffersSpillToFile() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(1024, 100, true);
+        CachedOutputStream cos = new CachedOutputStream(4096);
+        cos.setBufferPool(pool);
+        String result = initTestData(3);
+        cos.write(result.getBytes());
+        assertNull(cos.getTempFile());
+        assertEquals(result, new String(cos.getBytes()));
+        
+        cos.write(result.getBytes());
+        File tempFile = cos.getTempFile();
+        assertNotNull(tempFile);
+        assertEquals(3, pool.getPooledCount());
+        assertEquals(result + result, new String(cos.getBytes()));
+        
+        File copy = File.createTempFile("cos", "test");
+        FileOutputStream fout = new FileOutputStream(copy);
+        cos.writeCacheTo(fout);
+        fout.close();
+        assertEquals(2 * result.length(), copy.length());
+        copy.delete();
+        
+        cos.close();
+        assertFalse(tempFile.exists());
+    }
+    
     String initTestData(int packetSize) {
         String temp = "abcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*()_+?><[]/0123456789";
         String result = new String();
@@ -74,6 +74,7 @@ public class DefaultTypeCreator extends AbstractTypeCreator {
         typeInfo.setDefaultMinOccurs(getConfiguration().getDefaultMinOccurs());
         typeInfo.setExtensibleAttributes(getConfiguration().isDefaultExtensibleAttributes());
         typeInfo.setExtensibleElements(getConfiguration().isDefaultExtensibleElements());
+        typeInfo.setGenerateAccessors(getConfiguration().isGenerateAccessors());
 
         return type;
     }
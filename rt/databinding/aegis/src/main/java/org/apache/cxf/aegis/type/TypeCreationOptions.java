@@ -39,6 +39,7 @@ public class TypeCreationOptions {
     private int defaultMinOccurs;
     private boolean qualifyElements = true;
     private boolean qualifyAttributes;
+    private boolean generateAccessors;
 
     public TypeCreationOptions() {
         super();
@@ -127,4 +128,22 @@ public class TypeCreationOptions {
     public void setQualifyAttributes(boolean qualifyAttributes) {
         this.qualifyAttributes = qualifyAttributes;
     }
+
+    /**
+     * Whether or not to generate classes that read and write bean properties
+     * without reflection. Falls back to reflection when classes can't be generated.
+     * False by default.
+     * @return
+     */
+    public boolean isGenerateAccessors() {
+        return generateAccessors;
+    }
+
+    /**
+     * Turn on or off generated bean property accessors.
+     * @param generateAccessors
+     */
+    public void setGenerateAccessors(boolean generateAccessors) {
+        this.generateAccessors = generateAccessors;
+    }
 }
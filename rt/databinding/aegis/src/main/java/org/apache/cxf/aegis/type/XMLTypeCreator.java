@@ -367,6 +367,7 @@ public class XMLTypeCreator extends AbstractTypeCreator {
             
             btinfo.setQualifyAttributes(this.getConfiguration().isQualifyAttributes());
             btinfo.setQualifyElements(this.getConfiguration().isQualifyElements());
+            btinfo.setGenerateAccessors(this.getConfiguration().isGenerateAccessors());
             BeanType type = new BeanType(btinfo);
 
             if (name == null) {
@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.aegis.type.basic;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.cxf.aegis.DatabindingException;
+import org.apache.cxf.common.util.ASMHelper;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates a {@link BeanPropertyAccessor} for a bean class that calls the read
+ * and write methods of its properties directly, selected by a tableswitch on the
+ * property index.
+ */
+final class BeanAccessorCompiler extends ASMHelper {
+    private static final String ACCESSOR_NAME = periodToSlashes(BeanPropertyAccessor.class.getName());
+    private static final String EXCEPTION_NAME = periodToSlashes(DatabindingException.class.getName());
+
+    final Class<?> beanClass;
+    final String beanName;
+    final PropertyDescriptor descriptors[];
+    final ClassWriter cw;
+
+    private BeanAccessorCompiler(Class<?> beanClass, PropertyDescriptor descriptors[]) {
+        this.beanClass = beanClass;
+        this.beanName = periodToSlashes(beanClass.getName());
+        this.descriptors = descriptors;
+        cw = createClassWriter();
+    }
+
+    /**
+     * Returns an accessor for the given properties of the bean class, or null if 
+     * the class can't have one (interfaces, non public classes or property types) 
+     * or if generating the class fails, for instance because ASM is not available 
+     * or defining classes is not permitted. Callers then fall back to reflection.
+     */
+    static synchronized BeanPropertyAccessor compileAccessor(Class<?> beanClass,
+                                                             PropertyDescriptor descriptors[]) {
+        if (beanClass.isInterface()
+            || beanClass.isArray()
+            || beanClass.isPrimitive()
+            || !isAccessible(beanClass)
+            || descriptors.length == 0) {
+            return null;
+        }
+        for (PropertyDescriptor descriptor : descriptors) {
+            // the generated class lives in another class loader, so it can only
+            // call public methods and cast to public types
+            if (!isAccessible(descriptor.getReadMethod())
+                || !isAccessible(descriptor.getWriteMethod())) {
+                return null;
+            }
+        }
+        try {
+            return new BeanAccessorCompiler(beanClass, descriptors).compile();
+        } catch (Throwable t) {
+            // Some error - probably no ASM or a security manager that
+            // doesn't allow creating class loaders
+        }
+        return null;
+    }
+
+    private static boolean isAccessible(Method m) {
+        if (m == null) {
+            return true;
+        }
+        if (!Modifier.isPublic(m.getModifiers()) || !isAccessible(m.getReturnType())) {
+            return false;
+        }
+        for (Class<?> tp : m.getParameterTypes()) {
+            if (!isAccessible(tp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> cls) {
+        while (cls.isArray()) {
+            cls = cls.getComponentType();
+        }
+        for (Class<?> c = cls; c != null && !c.isPrimitive(); c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    BeanPropertyAccessor compile() throws Exception {
+        String newClassName = beanClass.getName() + "_AegisPropertyAccessor";
+        newClassName = newClassName.replaceAll("\\$", ".");
+        newClassName = periodToSlashes(newClassName);
+
+        Class<?> cls = super.findClass(newClassName.replace('/', '.'), beanClass);
+        if (cls != null) {
+            return BeanPropertyAccessor.class.cast(cls.newInstance());
+        }
+        if (cw == null) {
+            return null;
+        }
+        
+        cw.visit(Opcodes.V1_5,
+                 Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+                 newClassName,
+                 null,
+                 "java/lang/Object",
+                 new String[] {ACCESSOR_NAME});
+        addConstructor();
+        addGetProperty();
+        addSetProperty();
+        cw.visitEnd();
+        
+        cls = loadClass(newClassName.replace('/', '.'), beanClass, cw.toByteArray());
+        return BeanPropertyAccessor.class.cast(cls.newInstance());
+    }
+
+    private void addConstructor() {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void addGetProperty() {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC,
+                                          "getProperty",
+                                          "(Ljava/lang/Object;I)Ljava/lang/Object;",
+                                          null, null);
+        mv.visitCode();
+        // Bean b = (Bean)bean;
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, beanName);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        
+        Label labels[] = createLabels();
+        Label defaultLabel = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitTableSwitchInsn(0, descriptors.length - 1, defaultLabel, labels);
+        
+        for (int x = 0; x < descriptors.length; x++) {
+            mv.visitLabel(labels[x]);
+            Method m = descriptors[x].getReadMethod();
+            if (m == null) {
+                throwException(mv, "No read method for property " + descriptors[x].getName()
+                               + " in class " + beanClass.getName());
+                continue;
+            }
+            // return b.getX();
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, beanName, m.getName(), getMethodSignature(m));
+            Class<?> tp = m.getReturnType();
+            if (tp.isPrimitive()) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, NONPRIMITIVE_MAP.get(tp), "valueOf",
+                                   "(" + PRIMITIVE_MAP.get(tp) + ")L" + NONPRIMITIVE_MAP.get(tp) + ";");
+            }
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        
+        mv.visitLabel(defaultLabel);
+        throwException(mv, "Invalid property index for class " + beanClass.getName());
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void addSetProperty() {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC,
+                                          "setProperty",
+                                          "(Ljava/lang/Object;ILjava/lang/Object;)V",
+                                          null, null);
+        mv.visitCode();
+        // Bean b = (Bean)bean;
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, beanName);
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+        
+        Label labels[] = createLabels();
+        Label defaultLabel = new Label();
+        Label returnLabel = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitTableSwitchInsn(0, descriptors.length - 1, defaultLabel, labels);
+        
+        for (int x = 0; x < descriptors.length; x++) {
+            mv.visitLabel(labels[x]);
+            Method m = descriptors[x].getWriteMethod();
+            if (m == null) {
+                throwException(mv, "No write method for property " + descriptors[x].getName()
+                               + " in " + beanClass.getName());
+                continue;
+            }
+            Class<?> tp = m.getParameterTypes()[0];
+            if (tp.isPrimitive()) {
+                // if (value != null) b.setX(((Wrapper)value).xValue());
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+                mv.visitJumpInsn(Opcodes.IFNULL, returnLabel);
+                mv.visitVarInsn(Opcodes.ALOAD, 4);
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, NONPRIMITIVE_MAP.get(tp));
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, NONPRIMITIVE_MAP.get(tp), 
+                                   tp.getName() + "Value", "()" + PRIMITIVE_MAP.get(tp));
+            } else {
+                // b.setX((X)value);
+                mv.visitVarInsn(Opcodes.ALOAD, 4);
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+                if (tp.isArray()) {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, getClassCode(tp));
+                } else {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, periodToSlashes(tp.getName()));
+                }
+            }
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, beanName, m.getName(), getMethodSignature(m));
+            Class<?> ret = m.getReturnType();
+            if (ret == Long.TYPE || ret == Double.TYPE) {
+                mv.visitInsn(Opcodes.POP2);
+            } else if (ret != Void.TYPE) {
+                mv.visitInsn(Opcodes.POP);
+            }
+            mv.visitJumpInsn(Opcodes.GOTO, returnLabel);
+        }
+        
+        mv.visitLabel(defaultLabel);
+        throwException(mv, "Invalid property index for class " + beanClass.getName());
+        mv.visitLabel(returnLabel);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+    
+    private Label[] createLabels() {
+        Label labels[] = new Label[descriptors.length];
+        for (int x = 0; x < labels.length; x++) {
+            labels[x] = new Label();
+        }
+        return labels;
+    }
+    
+    private static void throwException(MethodVisitor mv, String message) {
+        mv.visitTypeInsn(Opcodes.NEW, EXCEPTION_NAME);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn(message);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, EXCEPTION_NAME, "<init>", "(Ljava/lang/String;)V");
+        mv.visitInsn(Opcodes.ATHROW);
+    }
+}
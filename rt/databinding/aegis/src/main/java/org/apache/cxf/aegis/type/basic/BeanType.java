@@ -255,6 +255,15 @@ public class BeanType extends Type {
         }
 
         try {
+            BeanPropertyAccessor accessor = inf.getPropertyAccessor();
+            if (accessor != null) {
+                int index = inf.getPropertyIndexFromMappedName(name);
+                if (index != -1) {
+                    accessor.setProperty(object, index, property);
+                    return;
+                }
+            }
+            
             PropertyDescriptor desc = inf.getPropertyDescriptorFromMappedName(name);
 
             Method m = desc.getWriteMethod();
@@ -410,7 +419,16 @@ public class BeanType extends Type {
 
     protected Object readProperty(Object object, QName name) {
         try {
-            PropertyDescriptor desc = getTypeInfo().getPropertyDescriptorFromMappedName(name);
+            BeanTypeInfo inf = getTypeInfo();
+            BeanPropertyAccessor accessor = inf.getPropertyAccessor();
+            if (accessor != null) {
+                int index = inf.getPropertyIndexFromMappedName(name);
+                if (index != -1) {
+                    return accessor.getProperty(object, index);
+                }
+            }
+            
+            PropertyDescriptor desc = inf.getPropertyDescriptorFromMappedName(name);
 
             Method m = desc.getReadMethod();
 
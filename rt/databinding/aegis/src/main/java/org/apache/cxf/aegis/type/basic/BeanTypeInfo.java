@@ -41,6 +41,7 @@ public class BeanTypeInfo {
     private Map<QName, QName> mappedName2typeName = new HashMap<QName, QName>();
     private Map<QName, String> mappedName2pdName = new HashMap<QName, String>();
     private Map<QName, Type> mappedName2type = new HashMap<QName, Type>();
+    private Map<QName, Integer> mappedName2index = new HashMap<QName, Integer>();
     private Class<?> beanClass;
     private List<QName> attributes = new ArrayList<QName>();
     private List<QName> elements = new ArrayList<QName>();
@@ -53,6 +54,7 @@ public class BeanTypeInfo {
     private boolean isExtension;
     private boolean qualifyAttributes;
     private boolean qualifyElements = true;
+    private volatile BeanPropertyAccessor accessor;
 
     /**
      * extensibleElements means adding xs:any to WSDL Complex Type Definition
@@ -245,13 +247,24 @@ public class BeanTypeInfo {
 
     public void mapAttribute(String property, QName mappedName) {
         mappedName2pdName.put(mappedName, property);
+        mapIndex(property, mappedName);
         attributes.add(mappedName);
     }
 
     public void mapElement(String property, QName mappedName) {
         mappedName2pdName.put(mappedName, property);
+        mapIndex(property, mappedName);
         elements.add(mappedName);
     }
+    
+    private void mapIndex(String property, QName mappedName) {
+        for (int i = 0; i < descriptors.length; i++) {
+            if (descriptors[i].getName().equals(property)) {
+                mappedName2index.put(mappedName, i);
+                return;
+            }
+        }
+    }
 
     /**
      * Specifies the SchemaType for a particular class.
@@ -349,6 +362,49 @@ public class BeanTypeInfo {
         return getPropertyDescriptor(getPropertyNameFromMappedName(name));
     }
 
+    /**
+     * Return the index of the property with the specified mapped name for use
+     * with the {@link #getPropertyAccessor() property accessor}.
+     * 
+     * @param name
+     * @return the index, or -1 if there is no such property
+     */
+    public int getPropertyIndexFromMappedName(QName name) {
+        Integer index = mappedName2index.get(name);
+        return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * Return the generated accessor for the properties of the bean class.
+     * @return the accessor, or null if properties are accessed through reflection.
+     */
+    public BeanPropertyAccessor getPropertyAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return true if the properties are accessed through a generated accessor.
+     */
+    public boolean isGenerateAccessors() {
+        return accessor != null;
+    }
+
+    /**
+     * Generate a class that reads and writes the properties of the bean class
+     * without reflection. If the class can't be generated (no ASM, or defining
+     * classes is not permitted), the properties continue to be accessed through 
+     * reflection.
+     * 
+     * @param generateAccessors
+     */
+    public void setGenerateAccessors(boolean generateAccessors) {
+        if (!generateAccessors) {
+            accessor = null;
+        } else if (accessor == null) {
+            accessor = BeanAccessorCompiler.compileAccessor(beanClass, descriptors);
+        }
+    }
+
     protected boolean isAttribute(PropertyDescriptor desc) {
         return false;
     }
@@ -217,6 +217,7 @@ public class Java5TypeCreator extends AbstractTypeCreator {
 
         typeInfo.setDefaultMinOccurs(getConfiguration().getDefaultMinOccurs());
         typeInfo.setDefaultNillable(getConfiguration().isDefaultNillable());
+        typeInfo.setGenerateAccessors(getConfiguration().isGenerateAccessors());
 
         BeanType type = new BeanType(typeInfo);
         type.setTypeMapping(getTypeMapping());
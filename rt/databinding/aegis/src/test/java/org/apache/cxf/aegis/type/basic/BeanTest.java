@@ -18,6 +18,7 @@
  */
 package org.apache.cxf.aegis.type.basic;
 
+import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -455,6 +456,59 @@ public class BeanTest extends AbstractAegisTest {
 
     }
     
+    @Test
+    public void testGeneratedAccessors() throws Exception {
+        TypeCreationOptions config = new TypeCreationOptions();
+        config.setGenerateAccessors(true);
+        context = new AegisContext();
+        context.setTypeCreationOptions(config);
+        context.initialize();
+        mapping = context.getTypeMapping();
+
+        BeanType type = (BeanType)mapping.getTypeCreator().createType(SimpleBean.class);
+        type.setTypeClass(SimpleBean.class);
+        type.setTypeMapping(mapping);
+        assertTrue(type.getTypeInfo().isGenerateAccessors());
+        
+        SimpleBean bean = new SimpleBean();
+        bean.setBleh("bleh");
+        bean.setHowdy("howdy");
+        bean.setLittleByte((byte)0xfd);
+        bean.setPrimitiveChar('a');
+        bean.setNumbers(new int[] {1, 2});
+        
+        BeanTypeInfo info = type.getTypeInfo();
+        BeanPropertyAccessor accessor = info.getPropertyAccessor();
+        QName littleByte = new QName(type.getSchemaType().getNamespaceURI(), "littleByte");
+        int index = info.getPropertyIndexFromMappedName(littleByte);
+        assertEquals(Byte.valueOf((byte)0xfd), accessor.getProperty(bean, index));
+        accessor.setProperty(bean, index, null);
+        assertEquals((byte)0xfd, bean.getLittleByte());
+        accessor.setProperty(bean, index, Byte.valueOf((byte)3));
+        assertEquals(3, bean.getLittleByte());
+        
+        Element element = writeObjectToElement(type, bean, getContext());
+        assertValid("/b:root/bz:bleh[text()='bleh']", element);
+        assertValid("/b:root/bz:howdy[text()='howdy']", element);
+        assertValid("/b:root/bz:littleByte[text()='3']", element);
+        
+        ElementReader reader = new ElementReader(getResourceAsStream("byteBeans.xml"));
+        bean = (SimpleBean)type.readObject(reader, getContext());
+        assertEquals(-5, bean.getLittleByte());
+        assertEquals(25, bean.getBigByte().byteValue());
+        reader.getXMLStreamReader().close();
+    }
+    
+    @Test
+    public void testNoAccessorForHiddenPropertyType() throws Exception {
+        PropertyDescriptor pds[] = 
+            Introspector.getBeanInfo(HiddenTypeBean.class, Object.class).getPropertyDescriptors();
+        assertNull(BeanAccessorCompiler.compileAccessor(HiddenTypeBean.class, pds));
+        
+        pds = Introspector.getBeanInfo(IntBean.class, Object.class).getPropertyDescriptors();
+        assertNotNull(BeanAccessorCompiler.compileAccessor(IntBean.class, pds));
+    }
+    
     @Test
     public void testNullNonNillableWithDate() throws Exception {
         BeanTypeInfo info = new BeanTypeInfo(DateBean.class, "urn:Bean");
@@ -617,6 +671,21 @@ public class BeanTest extends AbstractAegisTest {
         }
     }
 
+    static class HiddenType {
+    }
+
+    public static class HiddenTypeBean {
+        private HiddenType[] hidden;
+
+        public HiddenType[] getHidden() {
+            return hidden;
+        }
+
+        public void setHidden(HiddenType[] hidden) {
+            this.hidden = hidden;
+        }
+    }
+
     public static class ExtendedBean extends SimpleBean {
         private String howdy;
 
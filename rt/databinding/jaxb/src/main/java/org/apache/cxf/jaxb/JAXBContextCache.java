@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.jaxb;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.dom.DOMSource;
+
+/**
+ * Cache of JAXBContexts keyed by the set of classes they were built for.  
+ * Lookups do not take a global lock and a context is only ever built once per
+ * class set: the first caller runs the creation while concurrent callers for the
+ * same set wait on its result.  Neither the classes nor the contexts are strongly
+ * held by the cache, so web application classloaders can still be collected; 
+ * entries whose classes or context went away are expunged on later lookups.  
+ * The schema DOMs generated for a context are kept with its entry so that other 
+ * bindings over the same classes do not need to generate them again.
+ */
+final class JAXBContextCache {
+    
+    private final ConcurrentMap<ClassSetKey, Slot> cache = new ConcurrentHashMap<ClassSetKey, Slot>();
+    private final ReferenceQueue<Class<?>> queue = new ReferenceQueue<Class<?>>();
+    
+    /**
+     * Strongly referenced view of a cache entry, handed out to the bindings.
+     */
+    static final class CachedContextAndSchemas {
+        private final JAXBContext context;
+        private final Entry entry;
+
+        CachedContextAndSchemas(JAXBContext context, Entry entry) {
+            this.context = context;
+            this.entry = entry;
+        }
+
+        public JAXBContext getContext() {
+            return context;
+        }
+
+        public Collection<DOMSource> getSchemas() {
+            return entry.schemas;
+        }
+
+        public void setSchemas(Collection<DOMSource> schemas) {
+            entry.schemas = schemas;
+        }
+    }
+    
+    private static final class Entry {
+        private final WeakReference<JAXBContext> context;
+        private volatile Collection<DOMSource> schemas;
+        
+        Entry(JAXBContext ctx) {
+            context = new WeakReference<JAXBContext>(ctx);
+        }
+    }
+    
+    /**
+     * The map value: the creation task while the context is being built, then 
+     * only the resulting entry.  The task is dropped once it has completed as it 
+     * keeps hold of its Callable, and with it of whatever the creator refers to,
+     * which would otherwise keep the weakly held classes reachable.
+     */
+    private static final class Slot {
+        private volatile FutureTask<Entry> task;
+        private volatile Entry entry;
+        
+        Slot(FutureTask<Entry> t) {
+            task = t;
+        }
+        
+        Slot(Entry e) {
+            entry = e;
+        }
+        
+        Entry get() throws InterruptedException, ExecutionException {
+            Entry e = entry;
+            if (e != null) {
+                return e;
+            }
+            FutureTask<Entry> t = task;
+            // the entry is set before the task is cleared
+            return t == null ? entry : t.get();
+        }
+        
+        void run() {
+            FutureTask<Entry> t = task;
+            t.run();
+            try {
+                entry = t.get();
+                task = null;
+            } catch (Exception e) {
+                // a failed task is kept, so that its waiters see the failure
+            }
+        }
+    }
+    
+    /**
+     * Returns the cached context for the given classes, building it with the 
+     * creator if there is none.  Failures are not cached.
+     */
+    public CachedContextAndSchemas getOrCreate(Set<Class<?>> classes, 
+                                               final Callable<JAXBContext> creator) 
+        throws JAXBException {
+        expungeStaleEntries();
+        ClassSetKey probe = new ClassSetKey(classes);
+        while (true) {
+            Slot slot = cache.get(probe);
+            if (slot == null) {
+                Slot newSlot = new Slot(new FutureTask<Entry>(new Callable<Entry>() {
+                    public Entry call() throws Exception {
+                        return new Entry(creator.call());
+                    }
+                }));
+                slot = cache.putIfAbsent(new ClassSetKey(classes, queue), newSlot);
+                if (slot == null) {
+                    slot = newSlot;
+                    newSlot.run();
+                }
+            }
+            Entry entry;
+            try {
+                entry = slot.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JAXBException(e);
+            } catch (ExecutionException e) {
+                cache.remove(probe, slot);
+                Throwable cause = e.getCause();
+                if (cause instanceof JAXBException) {
+                    throw (JAXBException)cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                } else if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new JAXBException(cause);
+            }
+            JAXBContext ctx = entry.context.get();
+            if (ctx != null) {
+                return new CachedContextAndSchemas(ctx, entry);
+            }
+            // the context has been collected, build a new one
+            cache.remove(probe, slot);
+        }
+    }
+    
+    /**
+     * Caches a context that was built outside of the cache, replacing any 
+     * existing entry for the classes.
+     */
+    public CachedContextAndSchemas put(Set<Class<?>> classes, JAXBContext ctx) {
+        expungeStaleEntries();
+        Entry entry = new Entry(ctx);
+        // stored keys only match probes, so drop the old entry explicitly
+        cache.remove(new ClassSetKey(classes));
+        cache.put(new ClassSetKey(classes, queue), new Slot(entry));
+        return new CachedContextAndSchemas(ctx, entry);
+    }
+    
+    public void clear() {
+        cache.clear();
+        expungeStaleEntries();
+    }
+    
+    public int size() {
+        return cache.size();
+    }
+    
+    private void expungeStaleEntries() {
+        Reference<? extends Class<?>> ref = queue.poll();
+        while (ref != null) {
+            cache.remove(((ClassRef)ref).key);
+            ref = queue.poll();
+        }
+    }
+    
+    private static final class ClassRef extends WeakReference<Class<?>> {
+        private final ClassSetKey key;
+        
+        ClassRef(Class<?> cls, ClassSetKey key, ReferenceQueue<Class<?>> queue) {
+            super(cls, queue);
+            this.key = key;
+        }
+    }
+    
+    /**
+     * Map key over a set of classes.  Keys stored in the map only weakly 
+     * reference their classes and are equal to another stored key only if they 
+     * are the same instance, while the short lived probe keys used for lookups 
+     * hold the set being looked up.  The hash code is that of the original set.
+     */
+    private static final class ClassSetKey {
+        private final Set<Class<?>> lookup;
+        private final ClassRef[] refs;
+        private final int hash;
+        
+        ClassSetKey(Set<Class<?>> classes) {
+            lookup = classes;
+            refs = null;
+            hash = classes.hashCode();
+        }
+        
+        ClassSetKey(Set<Class<?>> classes, ReferenceQueue<Class<?>> queue) {
+            lookup = null;
+            refs = new ClassRef[classes.size()];
+            int i = 0;
+            for (Class<?> cls : classes) {
+                refs[i++] = new ClassRef(cls, this, queue);
+            }
+            hash = classes.hashCode();
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClassSetKey)) {
+                return false;
+            }
+            ClassSetKey other = (ClassSetKey)o;
+            if (hash != other.hash) {
+                return false;
+            }
+            if (lookup != null && other.lookup != null) {
+                return lookup.equals(other.lookup);
+            } else if (lookup != null) {
+                return other.matches(lookup);
+            } else if (other.lookup != null) {
+                return matches(other.lookup);
+            }
+            return false;
+        }
+        
+        private boolean matches(Set<Class<?>> classes) {
+            if (refs.length != classes.size()) {
+                return false;
+            }
+            for (ClassRef ref : refs) {
+                Class<?> cls = ref.get();
+                if (cls == null || !classes.contains(cls)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -73,6 +74,7 @@ import org.apache.cxf.databinding.DataReader;
 import org.apache.cxf.databinding.DataWriter;
 import org.apache.cxf.databinding.WrapperCapableDatabinding;
 import org.apache.cxf.databinding.WrapperHelper;
+import org.apache.cxf.jaxb.JAXBContextCache.CachedContextAndSchemas;
 import org.apache.cxf.jaxb.io.DataReaderImpl;
 import org.apache.cxf.jaxb.io.DataWriterImpl;
 import org.apache.cxf.service.Service;
@@ -98,28 +100,6 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
                                                                                XMLEventWriter.class,
                                                                                XMLStreamWriter.class};
 
-    private static final class CachedContextAndSchemas {
-        private JAXBContext context;
-        private Collection<DOMSource> schemas;
-
-        CachedContextAndSchemas(JAXBContext context) {
-            this.context = context;
-        }
-
-        public JAXBContext getContext() {
-            return context;
-        }
-
-        public Collection<DOMSource> getSchemas() {
-            return schemas;
-        }
-
-        public void setSchemas(Collection<DOMSource> schemas) {
-            this.schemas = schemas;
-        }
-
-    }
-    
     private static final class CachedClassOrNull {
         private WeakReference<Class<?>> cachedClass;
 
@@ -136,8 +116,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
         }
     }
 
-    private static final Map<Set<Class<?>>, CachedContextAndSchemas> JAXBCONTEXT_CACHE 
-        = new CacheMap<Set<Class<?>>, CachedContextAndSchemas>();
+    private static final JAXBContextCache JAXBCONTEXT_CACHE = new JAXBContextCache();
     
     private static final Map<Package, CachedClassOrNull> OBJECT_FACTORY_CACHE
         = new CacheMap<Package, CachedClassOrNull>();
@@ -160,6 +139,9 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
 
     private boolean qualifiedSchemas;
     private Service service;
+    
+    private int marshallerPoolSize = JAXBMarshallerPool.DEFAULT_SIZE;
+    private volatile JAXBMarshallerPool marshallerPool;
 
     public JAXBDataBinding() {
     }
@@ -185,6 +167,52 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
 
     public final void setContext(JAXBContext ctx) {
         context = ctx;
+        marshallerPool = null;
+    }
+
+    /**
+     * Returns the pool of Marshallers and Unmarshallers for the current context.
+     * 
+     * @return the pool, or null if pooling is disabled
+     */
+    public JAXBMarshallerPool getMarshallerPool() {
+        JAXBMarshallerPool pool = marshallerPool;
+        if (marshallerPoolSize <= 0 || context == null) {
+            return null;
+        }
+        if (pool == null || pool.getContext() != context) {
+            pool = new JAXBMarshallerPool(context, marshallerPoolSize);
+            marshallerPool = pool;
+        }
+        return pool;
+    }
+
+    public int getMarshallerPoolSize() {
+        return marshallerPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of idle Marshallers and Unmarshallers kept for reuse.
+     * 0 disables pooling.
+     * 
+     * @param size the maximum number of idle instances of each
+     */
+    public void setMarshallerPoolSize(int size) {
+        marshallerPoolSize = size;
+        marshallerPool = null;
+    }
+    
+    @Override
+    public void setNamespaceMap(Map<String, String> namespaceMap) {
+        super.setNamespaceMap(namespaceMap);
+        clearMarshallerPool();
+    }
+    
+    private void clearMarshallerPool() {
+        JAXBMarshallerPool pool = marshallerPool;
+        if (pool != null) {
+            pool.clear();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -270,7 +298,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
                 try {
                     ctx = JAXBContext.newInstance(contextClasses
                                                   .toArray(new Class[contextClasses.size()]), null);
-                    cachedContextAndSchemas = new CachedContextAndSchemas(ctx);
+                    cachedContextAndSchemas = JAXBCONTEXT_CACHE.put(contextClasses, ctx);
                 } catch (JAXBException e) {
                     e1 = e;
                     added = addJaxbObjectFactory(e1);
@@ -279,10 +307,6 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
 
             if (ctx == null) {
                 throw new ServiceConstructionException(e1);
-            } else {
-                synchronized (JAXBCONTEXT_CACHE) {
-                    JAXBCONTEXT_CACHE.put(contextClasses, cachedContextAndSchemas);
-                }                
             }
         }
         ctx = cachedContextAndSchemas.getContext();
@@ -418,7 +442,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
             }
         }
 
-        Map<String, Object> map = new HashMap<String, Object>();
+        final Map<String, Object> map = new HashMap<String, Object>();
         if (defaultNs != null) {
             map.put("com.sun.xml.bind.defaultNamespaceRemap", defaultNs);
         }
@@ -428,32 +452,24 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
             map.putAll(contextProperties);
         }
 
-        CachedContextAndSchemas cachedContextAndSchemas = null;
-        synchronized (JAXBCONTEXT_CACHE) {
-            cachedContextAndSchemas = JAXBCONTEXT_CACHE.get(classes);
-        }
-        if (cachedContextAndSchemas == null) {
-            JAXBContext ctx;
-            try {
-                ctx = JAXBContext.newInstance(classes.toArray(new Class[classes.size()]), map);
-            } catch (JAXBException ex) {
-                if (map.containsKey("com.sun.xml.bind.defaultNamespaceRemap")
-                    && ex.getMessage().contains("com.sun.xml.bind.defaultNamespaceRemap")) {
-                    map.put("com.sun.xml.internal.bind.defaultNamespaceRemap",
-                            map.remove("com.sun.xml.bind.defaultNamespaceRemap"));
-                    ctx = JAXBContext.newInstance(classes.toArray(new Class[classes.size()]), map);
-                } else {
+        final Class[] classArray = classes.toArray(new Class[classes.size()]);
+        return JAXBCONTEXT_CACHE.getOrCreate(classes, new Callable<JAXBContext>() {
+            public JAXBContext call() throws JAXBException {
+                try {
+                    return JAXBContext.newInstance(classArray, map);
+                } catch (JAXBException ex) {
+                    if (map.containsKey("com.sun.xml.bind.defaultNamespaceRemap")
+                        && ex.getMessage().contains("com.sun.xml.bind.defaultNamespaceRemap")) {
+                        map.put("com.sun.xml.internal.bind.defaultNamespaceRemap",
+                                map.remove("com.sun.xml.bind.defaultNamespaceRemap"));
+                        return JAXBContext.newInstance(classArray, map);
+                    }
                     throw ex;
                 }
             }
-            cachedContextAndSchemas = new CachedContextAndSchemas(ctx);
-            synchronized (JAXBCONTEXT_CACHE) {
-                JAXBCONTEXT_CACHE.put(classes, cachedContextAndSchemas);
-            }
-        }
-
-        return cachedContextAndSchemas;
+        });
     }
+    
     private void scanPackages(Set<Class<?>> classes) {
      // try and read any jaxb.index files that are with the other classes.
         // This should
@@ -650,6 +666,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
      */
     public void setMarshallerProperties(Map<String, Object> marshallerProperties) {
         this.marshallerProperties = marshallerProperties;
+        clearMarshallerPool();
     }
     
     
@@ -673,6 +690,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
      */
     public void setUnmarshallerProperties(Map<String, Object> unmarshallerProperties) {
         this.unmarshallerProperties = unmarshallerProperties;
+        clearMarshallerPool();
     }
     
     /**
@@ -725,9 +743,7 @@ public class JAXBDataBinding extends AbstractDataBinding  implements WrapperCapa
     }
 
     public static void clearCaches() {
-        synchronized (JAXBCONTEXT_CACHE) {
-            JAXBCONTEXT_CACHE.clear();
-        }
+        JAXBCONTEXT_CACHE.clear();
         synchronized (OBJECT_FACTORY_CACHE) {
             OBJECT_FACTORY_CACHE.clear();
         }
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Bounded pool of the Marshallers and Unmarshallers of a JAXBContext.  Creating 
+ * them is comparatively expensive, while configuring them for a message is cheap,
+ * so pooled instances are handed out unconfigured: callers set the listeners, 
+ * handlers, schema and attachment (un)marshaller they need each time, and the pool
+ * clears these when an instance is released.  Instances that failed during 
+ * (un)marshalling should be dropped rather than released.
+ */
+public class JAXBMarshallerPool {
+    
+    public static final int DEFAULT_SIZE = 32;
+    
+    private final JAXBContext context;
+    private final BlockingQueue<Marshaller> marshallers;
+    private final BlockingQueue<Unmarshaller> unmarshallers;
+    
+    private final AtomicLong marshallerHits = new AtomicLong();
+    private final AtomicLong marshallerCreations = new AtomicLong();
+    private final AtomicLong unmarshallerHits = new AtomicLong();
+    private final AtomicLong unmarshallerCreations = new AtomicLong();
+    
+    public JAXBMarshallerPool(JAXBContext ctx, int size) {
+        context = ctx;
+        marshallers = new ArrayBlockingQueue<Marshaller>(size);
+        unmarshallers = new ArrayBlockingQueue<Unmarshaller>(size);
+    }
+    
+    public JAXBContext getContext() {
+        return context;
+    }
+    
+    public Marshaller acquireMarshaller() throws JAXBException {
+        Marshaller m = marshallers.poll();
+        if (m != null) {
+            marshallerHits.incrementAndGet();
+            return m;
+        }
+        marshallerCreations.incrementAndGet();
+        return context.createMarshaller();
+    }
+    
+    public void releaseMarshaller(Marshaller m) {
+        try {
+            m.setListener(null);
+            m.setEventHandler(null);
+            m.setSchema(null);
+            m.setAttachmentMarshaller(null);
+        } catch (JAXBException ex) {
+            // cannot be reset, let it go
+            return;
+        }
+        marshallers.offer(m);
+    }
+    
+    public Unmarshaller acquireUnmarshaller() throws JAXBException {
+        Unmarshaller u = unmarshallers.poll();
+        if (u != null) {
+            unmarshallerHits.incrementAndGet();
+            return u;
+        }
+        unmarshallerCreations.incrementAndGet();
+        return context.createUnmarshaller();
+    }
+    
+    public void releaseUnmarshaller(Unmarshaller u) {
+        try {
+            u.setListener(null);
+            u.setEventHandler(null);
+            u.setSchema(null);
+            u.setAttachmentUnmarshaller(null);
+        } catch (JAXBException ex) {
+            // cannot be reset, let it go
+            return;
+        }
+        unmarshallers.offer(u);
+    }
+    
+    /**
+     * Drops all pooled instances, e.g. after their configuration has changed.
+     */
+    public void clear() {
+        marshallers.clear();
+        unmarshallers.clear();
+    }
+    
+    public long getMarshallerHits() {
+        return marshallerHits.get();
+    }
+    
+    public long getMarshallerCreations() {
+        return marshallerCreations.get();
+    }
+    
+    public long getUnmarshallerHits() {
+        return unmarshallerHits.get();
+    }
+    
+    public long getUnmarshallerCreations() {
+        return unmarshallerCreations.get();
+    }
+    
+    public int getPooledMarshallers() {
+        return marshallers.size();
+    }
+    
+    public int getPooledUnmarshallers() {
+        return unmarshallers.size();
+    }
+}
@@ -36,6 +36,7 @@ import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.jaxb.JAXBDataBase;
 import org.apache.cxf.jaxb.JAXBDataBinding;
 import org.apache.cxf.jaxb.JAXBEncoderDecoder;
+import org.apache.cxf.jaxb.JAXBMarshallerPool;
 import org.apache.cxf.service.model.MessagePartInfo;
 
 public class DataReaderImpl<T> extends JAXBDataBase implements DataReader<T> {
@@ -59,8 +60,9 @@ public class DataReaderImpl<T> extends JAXBDataBase implements DataReader<T> {
     }
     private Unmarshaller createUnmarshaller() {
         try {
-            Unmarshaller um = null;
-            um = context.createUnmarshaller();
+            JAXBMarshallerPool pool = databinding.getMarshallerPool();
+            Unmarshaller um = pool != null && pool.getContext() == context 
+                ? pool.acquireUnmarshaller() : context.createUnmarshaller();
             if (databinding.getUnmarshallerListener() != null) {
                 um.setListener(databinding.getUnmarshallerListener());
             }
@@ -91,6 +93,13 @@ public class DataReaderImpl<T> extends JAXBDataBase implements DataReader<T> {
         }
     }
 
+    private void releaseUnmarshaller(Unmarshaller um) {
+        JAXBMarshallerPool pool = databinding.getMarshallerPool();
+        if (pool != null && pool.getContext() == context) {
+            pool.releaseUnmarshaller(um);
+        }
+    }
+
     public Object read(MessagePartInfo part, T reader) {
         boolean honorJaxbAnnotation = false;
         if (part != null && part.getProperty("honor.jaxb.annotations") != null) {
@@ -111,14 +120,17 @@ public class DataReaderImpl<T> extends JAXBDataBase implements DataReader<T> {
                                                           getAttachmentUnmarshaller());
         }
         
-        return JAXBEncoderDecoder.unmarshall(createUnmarshaller(), reader, part, 
-                                             unwrapJAXBElement);
+        Unmarshaller um = createUnmarshaller();
+        Object obj = JAXBEncoderDecoder.unmarshall(um, reader, part, unwrapJAXBElement);
+        releaseUnmarshaller(um);
+        return obj;
     }
 
     public Object read(QName name, T input, Class type) {
-        return JAXBEncoderDecoder.unmarshall(createUnmarshaller(), input,
-                                             name, type, 
-                                             unwrapJAXBElement);
+        Unmarshaller um = createUnmarshaller();
+        Object obj = JAXBEncoderDecoder.unmarshall(um, input, name, type, unwrapJAXBElement);
+        releaseUnmarshaller(um);
+        return obj;
     }
 
 }
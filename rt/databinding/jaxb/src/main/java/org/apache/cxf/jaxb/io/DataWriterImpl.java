@@ -42,6 +42,7 @@ import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.jaxb.JAXBDataBase;
 import org.apache.cxf.jaxb.JAXBDataBinding;
 import org.apache.cxf.jaxb.JAXBEncoderDecoder;
+import org.apache.cxf.jaxb.JAXBMarshallerPool;
 import org.apache.cxf.jaxb.JAXBUtils;
 import org.apache.cxf.jaxb.attachment.JAXBAttachmentMarshaller;
 import org.apache.cxf.service.model.MessagePartInfo;
@@ -99,7 +100,9 @@ public class DataWriterImpl<T> extends JAXBDataBase implements DataWriter<T> {
         Marshaller marshaller;
         try {
             
-            marshaller = context.createMarshaller();
+            JAXBMarshallerPool pool = databinding.getMarshallerPool();
+            marshaller = pool != null && pool.getContext() == context 
+                ? pool.acquireMarshaller() : context.createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
             marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
@@ -146,6 +149,17 @@ public class DataWriterImpl<T> extends JAXBDataBase implements DataWriter<T> {
         return marshaller;
     }
     
+    /**
+     * Returns a marshaller obtained from {@link #createMarshaller(Object, MessagePartInfo)}
+     * to the pool once it has been used successfully.
+     */
+    public void releaseMarshaller(Marshaller marshaller) {
+        JAXBMarshallerPool pool = databinding.getMarshallerPool();
+        if (pool != null && pool.getContext() == context) {
+            pool.releaseMarshaller(marshaller);
+        }
+    }
+    
     public void write(Object obj, MessagePartInfo part, T output) {
         boolean honorJaxbAnnotation = false;
         if (part != null && part.getProperty("honor.jaxb.annotations") != null) {
@@ -159,14 +173,18 @@ public class DataWriterImpl<T> extends JAXBDataBase implements DataWriter<T> {
                 && part != null
                 && Boolean.TRUE.equals(part.getProperty(JAXBDataBinding.class.getName() 
                                                         + ".CUSTOM_EXCEPTION"))) {
-                JAXBEncoderDecoder.marshallException(createMarshaller(obj, part),
+                Marshaller marshaller = createMarshaller(obj, part);
+                JAXBEncoderDecoder.marshallException(marshaller,
                                                      (Exception)obj,
                                                      part, 
                                                      output);                
+                releaseMarshaller(marshaller);
             } else {
                 Annotation[] anns = getJAXBAnnotation(part);
                 if (!honorJaxbAnnotation || anns.length == 0) {
-                    JAXBEncoderDecoder.marshall(createMarshaller(obj, part), obj, part, output);
+                    Marshaller marshaller = createMarshaller(obj, part);
+                    JAXBEncoderDecoder.marshall(marshaller, obj, part, output);
+                    releaseMarshaller(marshaller);
                 } else if (honorJaxbAnnotation && anns.length > 0) {
                     //RpcLit will use the JAXB Bridge to marshall part message when it is 
                     //annotated with @XmlList,@XmlAttachmentRef,@XmlJavaTypeAdapter
@@ -183,8 +201,9 @@ public class DataWriterImpl<T> extends JAXBDataBase implements DataWriter<T> {
                 }
             }
         } else if (obj == null && needToRender(obj, part)) {
-            JAXBEncoderDecoder.marshallNullElement(createMarshaller(obj, part),
-                                                   output, part);
+            Marshaller marshaller = createMarshaller(obj, part);
+            JAXBEncoderDecoder.marshallNullElement(marshaller, output, part);
+            releaseMarshaller(marshaller);
         }
     }
 
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.jaxb;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.dom.DOMSource;
+
+import org.apache.cxf.jaxb.JAXBContextCache.CachedContextAndSchemas;
+import org.apache.cxf.jaxb.fortest.QualifiedBean;
+import org.apache.cxf.jaxb.fortest.unqualified.UnqualifiedBean;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JAXBContextCacheTest extends Assert {
+    
+    private final AtomicInteger creations = new AtomicInteger();
+    
+    private Callable<JAXBContext> creator(final Set<Class<?>> classes) {
+        return new Callable<JAXBContext>() {
+            public JAXBContext call() throws Exception {
+                creations.incrementAndGet();
+                Thread.sleep(50);
+                return JAXBContext.newInstance(classes.toArray(new Class[classes.size()]));
+            }
+        };
+    }
+    
+    private static Set<Class<?>> classes(Class<?>... cls) {
+        Set<Class<?>> set = new LinkedHashSet<Class<?>>();
+        Collections.addAll(set, cls);
+        return set;
+    }
+
+    @Test
+    public void testEqualSetsShareEntry() throws Exception {
+        JAXBContextCache cache = new JAXBContextCache();
+        Set<Class<?>> set = classes(QualifiedBean.class, UnqualifiedBean.class);
+        CachedContextAndSchemas first = cache.getOrCreate(set, creator(set));
+        Collection<DOMSource> schemas = Collections.singleton(new DOMSource());
+        first.setSchemas(schemas);
+        
+        Set<Class<?>> reordered = classes(UnqualifiedBean.class, QualifiedBean.class);
+        CachedContextAndSchemas second = cache.getOrCreate(reordered, creator(reordered));
+        assertSame(first.getContext(), second.getContext());
+        assertSame(schemas, second.getSchemas());
+        assertEquals(1, creations.get());
+        
+        Set<Class<?>> other = classes(QualifiedBean.class);
+        assertNotSame(first.getContext(), cache.getOrCreate(other, creator(other)).getContext());
+        assertEquals(2, creations.get());
+        assertEquals(2, cache.size());
+        
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testConcurrentLookupsCreateOnce() throws Exception {
+        final JAXBContextCache cache = new JAXBContextCache();
+        final Set<Class<?>> set = classes(QualifiedBean.class, UnqualifiedBean.class);
+        final CountDownLatch start = new CountDownLatch(1);
+        final JAXBContext[] contexts = new JAXBContext[8];
+        Thread[] threads = new Thread[contexts.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int idx = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        contexts[idx] = cache.getOrCreate(set, creator(set)).getContext();
+                    } catch (Exception e) {
+                        // leaves the slot empty
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(10000);
+        }
+        assertEquals(1, creations.get());
+        for (JAXBContext ctx : contexts) {
+            assertNotNull(ctx);
+            assertSame(contexts[0], ctx);
+        }
+    }
+    
+    @Test
+    public void testFailureIsNotCached() throws Exception {
+        JAXBContextCache cache = new JAXBContextCache();
+        Set<Class<?>> set = classes(QualifiedBean.class);
+        try {
+            cache.getOrCreate(set, new Callable<JAXBContext>() {
+                public JAXBContext call() throws JAXBException {
+                    throw new JAXBException("expected");
+                }
+            });
+            fail("JAXBException expected");
+        } catch (JAXBException ex) {
+            assertEquals("expected", ex.getMessage());
+        }
+        assertEquals(0, cache.size());
+        assertNotNull(cache.getOrCreate(set, creator(set)).getContext());
+        assertEquals(1, creations.get());
+    }
+    
+    @Test
+    public void testPutReplacesEntry() throws Exception {
+        JAXBContextCache cache = new JAXBContextCache();
+        Set<Class<?>> set = classes(QualifiedBean.class);
+        CachedContextAndSchemas first = cache.getOrCreate(set, creator(set));
+        JAXBContext ctx = JAXBContext.newInstance(QualifiedBean.class);
+        CachedContextAndSchemas put = cache.put(set, ctx);
+        assertSame(ctx, put.getContext());
+        assertNotSame(first.getContext(), ctx);
+        assertSame(ctx, cache.getOrCreate(set, creator(set)).getContext());
+        assertEquals(1, creations.get());
+    }
+}
@@ -31,6 +31,7 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.cxf.databinding.DataWriter;
 import org.apache.cxf.jaxb.JAXBDataBinding;
+import org.apache.cxf.jaxb.JAXBMarshallerPool;
 import org.apache.cxf.service.model.MessagePartInfo;
 import org.apache.cxf.staxutils.DepthXMLStreamReader;
 import org.apache.cxf.staxutils.StaxUtils;
@@ -129,6 +130,31 @@ public class XMLStreamDataWriterTest extends Assert {
         assertEquals("This is element 1", reader.getText());
     }
 
+    @Test
+    public void testMarshallerReuse() throws Exception {
+        JAXBDataBinding db = getTestWriterFactory(TradePriceData.class);
+        DataWriter<XMLStreamWriter> dw = db.createWriter(XMLStreamWriter.class);
+        
+        TradePriceData val = new TradePriceData();
+        val.setTickerSymbol("This is a symbol");
+        val.setTickerPrice(1.0f);
+        QName elName = new QName("http://apache.org/hello_world_doc_lit_bare/types", "inout");
+        MessagePartInfo part = new MessagePartInfo(elName, null);
+        part.setElement(true);
+        part.setElementQName(elName);
+        dw.write(val, part, streamWriter);
+        dw.write(val, part, streamWriter);
+        
+        JAXBMarshallerPool pool = db.getMarshallerPool();
+        assertEquals(1, pool.getMarshallerCreations());
+        assertEquals(1, pool.getMarshallerHits());
+        assertEquals(1, pool.getPooledMarshallers());
+        
+        db.setMarshallerPoolSize(0);
+        assertNull(db.getMarshallerPool());
+        dw.write(val, part, streamWriter);
+    }
+
     @Test
     public void testWriteBare() throws Exception {
         JAXBDataBinding db = getTestWriterFactory(TradePriceData.class);
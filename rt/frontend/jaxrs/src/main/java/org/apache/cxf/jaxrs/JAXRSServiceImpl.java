@@ -19,6 +19,7 @@
 
 package org.apache.cxf.jaxrs;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -33,6 +34,8 @@ import org.apache.cxf.databinding.DataBinding;
 import org.apache.cxf.endpoint.Endpoint;
 import org.apache.cxf.interceptor.AbstractAttributedInterceptorProvider;
 import org.apache.cxf.jaxrs.model.ClassResourceInfo;
+import org.apache.cxf.jaxrs.model.URITemplate;
+import org.apache.cxf.jaxrs.model.URITemplateIndex;
 import org.apache.cxf.service.Service;
 import org.apache.cxf.service.invoker.Invoker;
 import org.apache.cxf.service.model.EndpointInfo;
@@ -41,6 +44,8 @@ import org.apache.cxf.workqueue.SynchronousExecutor;
 
 public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider implements Service, Configurable {
     private List<ClassResourceInfo> classResourceInfos;
+    private volatile URITemplateIndex<ClassResourceInfo> classResourceIndex;
+    private volatile int classResourceIndexSize;
     private DataBinding dataBinding;
     private Executor executor;
     private Invoker invoker;
@@ -57,6 +62,7 @@ public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider impl
     public JAXRSServiceImpl(List<ClassResourceInfo> cri) {
         this.classResourceInfos = cri;
         executor = SynchronousExecutor.getInstance();    
+        classResourceIndex = createClassResourceIndex();
     }
     
     public String getBeanName() {
@@ -77,6 +83,39 @@ public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider impl
         return classResourceInfos;
     }
     
+    /**
+     * @param path the request path
+     * @return the root resources with a URI template which may match the path,
+     *         in the order of {@link #getClassResourceInfos()}
+     */
+    public List<ClassResourceInfo> getClassResourceInfos(String path) {
+        if (classResourceInfos == null) {
+            return Collections.emptyList();
+        }
+        URITemplateIndex<ClassResourceInfo> index = classResourceIndex;
+        if (index == null || classResourceIndexSize != classResourceInfos.size()) {
+            // resources have been added since the index was built
+            index = createClassResourceIndex();
+            classResourceIndex = index;
+        }
+        return index.getCandidates(path);
+    }
+    
+    private URITemplateIndex<ClassResourceInfo> createClassResourceIndex() {
+        if (classResourceInfos == null) {
+            return null;
+        }
+        List<ClassResourceInfo> resources = new ArrayList<ClassResourceInfo>(classResourceInfos);
+        classResourceIndexSize = resources.size();
+        return new URITemplateIndex<ClassResourceInfo>(
+            resources,
+            new URITemplateIndex.TemplateAccessor<ClassResourceInfo>() {
+                public URITemplate getURITemplate(ClassResourceInfo cri) {
+                    return cri.getURITemplate();
+                }
+            });
+    }
+    
     public List<ServiceInfo> getServiceInfos() {
         return Collections.emptyList();
     }
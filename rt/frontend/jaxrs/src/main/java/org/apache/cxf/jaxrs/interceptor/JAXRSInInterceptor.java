@@ -97,7 +97,7 @@ public class JAXRSInInterceptor extends AbstractPhaseInterceptor<Message> {
         
         //1. Matching target resource class
         Service service = message.getExchange().get(Service.class);
-        List<ClassResourceInfo> resources = ((JAXRSServiceImpl)service).getClassResourceInfos();
+        List<ClassResourceInfo> resources = ((JAXRSServiceImpl)service).getClassResourceInfos(rawPath);
 
         String acceptTypes = (String)message.get(Message.ACCEPT_CONTENT_TYPE);
         if (acceptTypes == null) {
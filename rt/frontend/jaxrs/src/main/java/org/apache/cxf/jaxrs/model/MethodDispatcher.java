@@ -19,7 +19,9 @@
 package org.apache.cxf.jaxrs.model;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +31,7 @@ public class MethodDispatcher {
         new LinkedHashMap<OperationResourceInfo, Method>();
     private Map<Method, OperationResourceInfo> methodToOri = 
         new LinkedHashMap<Method, OperationResourceInfo>();
+    private volatile URITemplateIndex<OperationResourceInfo> index;
 
     public void bind(OperationResourceInfo o, Method... methods) {
         Method primary = methods[0];
@@ -38,6 +41,7 @@ public class MethodDispatcher {
         }
 
         oriToMethod.put(o, primary);
+        index = null;
     }
 
     public OperationResourceInfo getOperationResourceInfo(Method method) {
@@ -48,6 +52,26 @@ public class MethodDispatcher {
         return oriToMethod.keySet();
     }
 
+    /**
+     * @param path the path to match
+     * @return the operations with a URI template which may match the path, in the 
+     *         order of {@link #getOperationResourceInfos()}
+     */
+    public List<OperationResourceInfo> getOperationResourceInfos(String path) {
+        URITemplateIndex<OperationResourceInfo> idx = index;
+        if (idx == null) {
+            idx = new URITemplateIndex<OperationResourceInfo>(
+                new ArrayList<OperationResourceInfo>(oriToMethod.keySet()),
+                new URITemplateIndex.TemplateAccessor<OperationResourceInfo>() {
+                    public URITemplate getURITemplate(OperationResourceInfo ori) {
+                        return ori.getURITemplate();
+                    }
+                });
+            index = idx;
+        }
+        return idx.getCandidates(path);
+    }
+
     public Method getMethod(OperationResourceInfo op) {
         return oriToMethod.get(op);
     }
@@ -42,12 +42,15 @@ public final class URITemplate {
     public static final String FINAL_MATCH_GROUP = "FINAL_MATCH_GROUP";
     private static final String DEFAULT_PATH_VARIABLE_REGEX = "([^/]+?)";
     private static final String CHARACTERS_TO_ESCAPE = ".";
+    private static final String REGEX_META_CHARACTERS = "\\[](){}.*+?^$|";
+    private static final String REGEX_QUANTIFIERS = "*+?{";
 
     private final String template;
     private final List<String> variables = new ArrayList<String>();
     private final List<String> customVariables = new ArrayList<String>();
     private final Pattern templateRegexPattern;
     private final String literals;
+    private final String literalPrefix;
     private final List<UriChunk> uriChunks;
 
     public URITemplate(String theTemplate) {
@@ -87,6 +90,7 @@ public final class URITemplate {
         patternBuilder.append(LIMITED_REGEX_SUFFIX);
 
         templateRegexPattern = Pattern.compile(patternBuilder.toString());
+        literalPrefix = getLiteralPrefix(templateRegexPattern.pattern());
     }
 
     public String getLiteralChars() {
@@ -97,6 +101,35 @@ public final class URITemplate {
         return template;
     }
 
+    /**
+     * The characters every URI matched by this template starts with, e.g. "/books/" for 
+     * "/books/{id}".  URIs with matrix parameters are excepted, as the parameters are 
+     * removed before matching.
+     * 
+     * @return the literal prefix of the template, possibly empty
+     */
+    public String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    private static String getLiteralPrefix(String regex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char ch = regex.charAt(i);
+            if (ch == '\\' && i + 1 < regex.length() && isReservedCharacter(regex.charAt(i + 1))) {
+                ch = regex.charAt(++i);
+            } else if (REGEX_META_CHARACTERS.indexOf(ch) != -1) {
+                break;
+            }
+            if (i + 1 < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(i + 1)) != -1) {
+                // the character is optional or repeated
+                break;
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
     /**
      * List of all variables in order of appearance in template.
      * 
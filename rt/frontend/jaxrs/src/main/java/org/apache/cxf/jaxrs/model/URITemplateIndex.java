@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of the literal prefixes of URI templates, used to find the templates
+ * that may match a request path without running the regular expressions of 
+ * all of them.  Candidates are returned in the order they were added, so that 
+ * matching them gives the same result as matching all templates in that order.
+ */
+public class URITemplateIndex<T> {
+    
+    private final Node<T> root = new Node<T>();
+    private final List<T> all = new ArrayList<T>();
+    
+    public URITemplateIndex() {
+    }
+    
+    public URITemplateIndex(List<T> values, TemplateAccessor<T> accessor) {
+        for (T value : values) {
+            URITemplate template = accessor.getURITemplate(value);
+            if (template != null) {
+                add(template, value);
+            }
+        }
+    }
+    
+    public final void add(URITemplate template, T value) {
+        String prefix = template.getLiteralPrefix();
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrCreateChild(prefix.charAt(i));
+        }
+        node.values.add(new Entry<T>(value, all.size()));
+        all.add(value);
+    }
+    
+    public int size() {
+        return all.size();
+    }
+    
+    /**
+     * @param path the request path
+     * @return the values whose templates may match the path, in insertion order
+     */
+    public List<T> getCandidates(String path) {
+        if (path == null || path.indexOf(';') != -1) {
+            // matrix parameters are only removed when matching
+            return all;
+        }
+        List<Entry<T>> entries = null;
+        int sources = 0;
+        Node<T> node = root;
+        for (int i = 0; node != null; i++) {
+            if (!node.values.isEmpty()) {
+                if (entries == null) {
+                    entries = new ArrayList<Entry<T>>(node.values);
+                } else {
+                    entries.addAll(node.values);
+                }
+                sources++;
+            }
+            if (i == path.length() || node.children == null) {
+                break;
+            }
+            node = node.children.get(path.charAt(i));
+        }
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        if (sources > 1) {
+            Collections.sort(entries, new Comparator<Entry<T>>() {
+                public int compare(Entry<T> e1, Entry<T> e2) {
+                    return e1.ordinal - e2.ordinal;
+                }
+            });
+        }
+        List<T> candidates = new ArrayList<T>(entries.size());
+        for (Entry<T> entry : entries) {
+            candidates.add(entry.value);
+        }
+        return candidates;
+    }
+    
+    /**
+     * Gets the template of an indexed value.
+     */
+    public interface TemplateAccessor<T> {
+        URITemplate getURITemplate(T value);
+    }
+    
+    private static final class Node<T> {
+        private Map<Character, Node<T>> children;
+        private final List<Entry<T>> values = new ArrayList<Entry<T>>(1);
+        
+        Node<T> getOrCreateChild(char ch) {
+            if (children == null) {
+                children = new HashMap<Character, Node<T>>();
+            }
+            Node<T> child = children.get(ch);
+            if (child == null) {
+                child = new Node<T>();
+                children.put(ch, child);
+            }
+            return child;
+        }
+    }
+    
+    private static final class Entry<T> {
+        private final T value;
+        private final int ordinal;
+        
+        Entry(T v, int o) {
+            value = v;
+            ordinal = o;
+        }
+    }
+}
@@ -22,13 +22,22 @@ package org.apache.cxf.jaxrs.provider;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -46,6 +55,11 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import org.apache.cxf.jaxrs.ext.MessageContext;
+import org.apache.cxf.jaxrs.provider.json.JSONBeanContext;
+import org.apache.cxf.jaxrs.provider.json.JSONBeanInfo;
+import org.apache.cxf.jaxrs.provider.json.JSONStreamReader;
+import org.apache.cxf.jaxrs.provider.json.JSONStreamWriter;
+import org.apache.cxf.jaxrs.utils.InjectionUtils;
 import org.apache.cxf.jaxrs.utils.schemas.SchemaHandler;
 import org.codehaus.jettison.AbstractXMLStreamWriter;
 import org.codehaus.jettison.mapped.Configuration;
@@ -64,6 +78,8 @@ public class JSONProvider extends AbstractJAXBProvider  {
     private Map<String, String> namespaceMap = new HashMap<String, String>();
     private boolean serializeAsArray;
     private List<String> arrayKeys;
+    private boolean streaming;
+    private volatile JSONBeanContext beanContext;
     
     @Context
     public void setMessageContext(MessageContext mc) {
@@ -92,14 +108,41 @@ public class JSONProvider extends AbstractJAXBProvider  {
     
     public void setSerializeAsArray(boolean asArray) {
         this.serializeAsArray = asArray;
+        beanContext = null;
     }
     
     public void setArrayKeys(List<String> keys) {
         this.arrayKeys = keys;
+        beanContext = null;
     }
     
     public void setNamespaceMap(Map<String, String> namespaceMap) {
         this.namespaceMap = namespaceMap;
+        beanContext = null;
+    }
+    
+    /**
+     * Binds beans directly to JSON, with a streaming reader and writer and 
+     * metadata worked out once per class, instead of going through JAXB and 
+     * a JSON-backed XMLStreamReader or XMLStreamWriter.  The output is the 
+     * one Jettison produces: a property with a single item is not written as 
+     * an array unless serializeAsArray is set and its key is one of the array
+     * keys, or if there are none, the root key.  Lists, sets and arrays of root
+     * elements are supported too, a collection is written as {"rootKey":[...]}
+     * one item at a time.  Types which the direct binding does not support, 
+     * and all types if a schema is set for validation, are still handled by
+     * JAXB.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+    
+    @Override
+    protected boolean isSupported(Class<?> type, Type genericType, Annotation[] anns) {
+        if (streaming && InjectionUtils.isSupportedCollectionOrArray(type)) {
+            return getBeanInfo(type, genericType, anns) != null;
+        }
+        return super.isSupported(type, genericType, anns);
     }
 
     public Object readFrom(Class<Object> type, Type genericType, Annotation[] anns, MediaType mt, 
@@ -107,6 +150,13 @@ public class JSONProvider extends AbstractJAXBProvider  {
         throws IOException {
         
         try {
+            if (streaming) {
+                JSONBeanInfo info = getBeanInfo(type, genericType, anns);
+                if (info != null) {
+                    return readDirect(info, type, mt, is);
+                }
+            }
+            
             Class<?> theType = getActualType(type, genericType, anns);
             
             Unmarshaller unmarshaller = createUnmarshaller(theType, genericType);
@@ -139,6 +189,14 @@ public class JSONProvider extends AbstractJAXBProvider  {
         MediaType m, MultivaluedMap<String, Object> headers, OutputStream os)
         throws IOException {
         try {
+            if (streaming) {
+                JSONBeanInfo info = getBeanInfo(InjectionUtils.isSupportedCollectionOrArray(cls) 
+                                                ? cls : obj.getClass(), genericType, anns);
+                if (info != null) {
+                    writeDirect(info, obj, m, headers, os);
+                    return;
+                }
+            }
             
             Object actualObject = checkAdapter(obj, anns, true);
             Class<?> actualClass = actualObject.getClass();
@@ -179,6 +237,80 @@ public class JSONProvider extends AbstractJAXBProvider  {
         }
     }
 
+    private Object readDirect(JSONBeanInfo info, Class<?> type, MediaType mt, InputStream is)
+        throws Exception {
+        String encoding = mt.getParameters().get("charset");
+        JSONStreamReader reader = new JSONStreamReader(
+            new InputStreamReader(is, encoding == null ? "UTF-8" : encoding));
+        if (!InjectionUtils.isSupportedCollectionOrArray(type)) {
+            return info.readElement(reader);
+        }
+        List<Object> items = new ArrayList<Object>();
+        info.readElements(reader, items);
+        if (type.isArray()) {
+            Object array = Array.newInstance(info.getType(), items.size());
+            return items.toArray((Object[])array);
+        }
+        Collection<Object> c = items;
+        if (SortedSet.class.isAssignableFrom(type)) {
+            c = new TreeSet<Object>(items);
+        } else if (Set.class.isAssignableFrom(type)) {
+            c = new LinkedHashSet<Object>(items);
+        }
+        return c;
+    }
+    
+    private void writeDirect(JSONBeanInfo info, Object obj, MediaType m,
+                             MultivaluedMap<String, Object> headers, OutputStream os)
+        throws Exception {
+        String encoding = getEncoding(m, headers);
+        if (encoding == null) {
+            encoding = "UTF-8";
+        }
+        JSONStreamWriter writer = new JSONStreamWriter(new OutputStreamWriter(os, encoding));
+        if (obj instanceof Collection) {
+            info.writeElements(((Collection)obj).iterator(), writer);
+        } else if (obj.getClass().isArray()) {
+            info.writeElements(Arrays.asList((Object[])obj).iterator(), writer);
+        } else if (serializeAsArray && arrayKeys == null) {
+            // Jettison makes the root key an array if no keys are given
+            info.writeElement(obj, writer, true);
+        } else {
+            info.writeElement(obj, writer);
+        }
+        writer.flush();
+    }
+    
+    /**
+     * @return the metadata for reading and writing the type, or of its items if
+     * it is a collection or an array, directly, null if JAXB has to be used
+     */
+    private JSONBeanInfo getBeanInfo(Class<?> type, Type genericType, Annotation[] anns) {
+        if (getSchema() != null || adapterAvailable(type, anns)) {
+            return null;
+        }
+        Class<?> beanType = type;
+        if (InjectionUtils.isSupportedCollectionOrArray(type)) {
+            beanType = InjectionUtils.getActualType(type.isArray() ? type : genericType);
+            if (beanType == null || adapterAvailable(beanType, anns)) {
+                return null;
+            }
+        }
+        if (beanType.getAnnotation(XmlRootElement.class) == null) {
+            return null;
+        }
+        return getBeanContext().getBeanInfo(beanType);
+    }
+    
+    private JSONBeanContext getBeanContext() {
+        JSONBeanContext context = beanContext;
+        if (context == null) {
+            context = new JSONBeanContext(namespaceMap, serializeAsArray ? arrayKeys : null);
+            beanContext = context;
+        }
+        return context;
+    }
+
     private String getKey(MappedNamespaceConvention convention, Class<?> cls) {
         String key = null;
         
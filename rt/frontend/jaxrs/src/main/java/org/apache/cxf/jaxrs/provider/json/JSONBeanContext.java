@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link JSONBeanInfo} of the classes bound directly to JSON and the
+ * mapping of XML namespaces to JSON key prefixes they are built with.  A class
+ * is introspected once, the first time it is asked for, and its metadata is
+ * then shared by all the threads using the context.
+ * <p>
+ * As with Jettison, a collection property with a single item is written as 
+ * that item and not as an array, unless its key is one of the array keys, 
+ * which are always written as arrays.
+ */
+public class JSONBeanContext {
+
+    private final Map<String, String> namespaceMap;
+    private final Set<String> arrayKeys;
+    private final Map<Class<?>, JSONBeanInfo> beanInfos = new ConcurrentHashMap<Class<?>, JSONBeanInfo>();
+    // the classes being introspected, guarded by itself
+    private final Map<Class<?>, JSONBeanInfo> pending = new HashMap<Class<?>, JSONBeanInfo>();
+
+    public JSONBeanContext() {
+        this(null);
+    }
+
+    /**
+     * @param namespaceMap the JSON key prefixes keyed by namespace, keys of
+     * elements and attributes in other namespaces are not prefixed
+     */
+    public JSONBeanContext(Map<String, String> namespaceMap) {
+        this(namespaceMap, null);
+    }
+
+    /**
+     * @param namespaceMap the JSON key prefixes keyed by namespace, keys of
+     * elements and attributes in other namespaces are not prefixed
+     * @param arrayKeys the keys of the elements always written as arrays, even
+     * with a single item
+     */
+    public JSONBeanContext(Map<String, String> namespaceMap, Collection<String> arrayKeys) {
+        if (namespaceMap == null) {
+            namespaceMap = Collections.emptyMap();
+        }
+        this.namespaceMap = namespaceMap;
+        this.arrayKeys = arrayKeys == null 
+            ? Collections.<String>emptySet() : new HashSet<String>(arrayKeys);
+    }
+
+    /**
+     * @return the metadata of the class, or null if the class can not be bound
+     * directly, e.g. because it or a class it refers to uses a JAXB feature
+     * that has no equivalent here
+     */
+    public JSONBeanInfo getBeanInfo(Class<?> cls) {
+        JSONBeanInfo info = beanInfos.get(cls);
+        if (info == null) {
+            info = introspect(cls);
+        }
+        return info.isSupported() ? info : null;
+    }
+
+    /**
+     * Introspects the class and the classes it refers to.  They are only 
+     * published to other threads once all of them are complete.
+     */
+    private JSONBeanInfo introspect(Class<?> cls) {
+        synchronized (pending) {
+            JSONBeanInfo info = beanInfos.get(cls);
+            if (info == null) {
+                // a class referring back to one being introspected
+                info = pending.get(cls);
+            }
+            if (info == null) {
+                boolean outermost = pending.isEmpty();
+                info = new JSONBeanInfo(this, cls);
+                pending.put(cls, info);
+                boolean complete = false;
+                try {
+                    info.introspect();
+                    complete = true;
+                } finally {
+                    if (outermost) {
+                        if (complete) {
+                            beanInfos.putAll(pending);
+                        }
+                        pending.clear();
+                    }
+                }
+            }
+            return info;
+        }
+    }
+
+    boolean isArrayKey(String key) {
+        return arrayKeys.contains(key);
+    }
+
+    String createKey(String namespace, String localName) {
+        if (namespace.length() == 0) {
+            return localName;
+        }
+        String prefix = namespaceMap.get(namespace);
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        return prefix + "." + localName;
+    }
+}
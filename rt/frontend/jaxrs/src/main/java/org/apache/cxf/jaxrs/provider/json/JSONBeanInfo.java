@@ -0,0 +1,680 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import javax.xml.bind.annotation.XmlAccessOrder;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorOrder;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAnyAttribute;
+import javax.xml.bind.annotation.XmlAnyElement;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementRef;
+import javax.xml.bind.annotation.XmlElementRefs;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlMixed;
+import javax.xml.bind.annotation.XmlNsForm;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSchema;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapters;
+
+import org.apache.cxf.common.i18n.BundleUtils;
+import org.apache.cxf.common.i18n.Message;
+import org.apache.cxf.common.logging.LogUtils;
+
+/**
+ * The JSON binding of a JAXB-annotated class, worked out once from its
+ * annotations and then used to write and read its instances without a
+ * JAXBContext or an XML infoset in between.  The keys follow the mapped
+ * convention: an element is keyed by its local name, an attribute by its name
+ * with a leading '@', the value of an element that also has attributes by '$',
+ * and the name is prefixed with the JSON prefix of its namespace if it has one.
+ * <p>
+ * Properties are found the way JAXB finds them, as controlled by
+ * XmlAccessorType, XmlTransient, XmlType.propOrder and XmlAccessorOrder, and
+ * may be simple values, beans, or collections and arrays of either.  Features
+ * which depend on the XML model, such as adapters, wildcards, element
+ * references or substitution, are not supported; a class using them is
+ * reported as unsupported by {@link JSONBeanContext#getBeanInfo(Class)}.
+ * So are classes with XmlSeeAlso, as JAXB writes their subclasses with their
+ * xsi:type.  Values are read as the declared types of their properties and
+ * written as their own classes if these can be bound, so that the properties
+ * of a subclass are not lost.
+ */
+public class JSONBeanInfo {
+
+    private static final ResourceBundle BUNDLE = BundleUtils.getBundle(JSONBeanInfo.class);
+    private static final Logger LOG = LogUtils.getL7dLogger(JSONBeanInfo.class);
+
+    private static final String JAXB_DEFAULT = "##default";
+    private static final String VALUE_KEY = "$";
+    private static final List<Class<?>> UNSUPPORTED_ANNOTATIONS = Arrays.asList(new Class<?>[] {
+        XmlJavaTypeAdapter.class, XmlAnyElement.class, XmlAnyAttribute.class,
+        XmlElementRef.class, XmlElementRefs.class, XmlElements.class,
+        XmlMixed.class, XmlIDREF.class, XmlList.class
+    });
+
+    private final JSONBeanContext context;
+    private final Class<?> cls;
+    private boolean supported = true;
+    private Constructor<?> constructor;
+    private String rootKey;
+    // attributes first, then the value or the elements
+    private JSONBeanProperty[] properties;
+    private int attributeCount;
+    private JSONBeanProperty valueProperty;
+    private Map<String, JSONBeanProperty> keys = new HashMap<String, JSONBeanProperty>();
+
+    JSONBeanInfo(JSONBeanContext context, Class<?> cls) {
+        this.context = context;
+        this.cls = cls;
+    }
+
+    public Class<?> getType() {
+        return cls;
+    }
+
+    /**
+     * @return the key of the root element, from XmlRootElement if the class has
+     * it or the JAXB default name otherwise
+     */
+    public String getRootKey() {
+        return rootKey;
+    }
+
+    boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Writes the bean as the root of a JSON document, {"rootKey":{...}}, or 
+     * {"rootKey":[{...}]} if the root key is an array key of the context.
+     */
+    public void writeElement(Object bean, JSONStreamWriter writer) throws IOException {
+        writeElement(bean, writer, context.isArrayKey(rootKey));
+    }
+
+    /**
+     * Writes the bean as the root of a JSON document.
+     * 
+     * @param asArray true to write it as {"rootKey":[{...}]}
+     */
+    public void writeElement(Object bean, JSONStreamWriter writer, boolean asArray) throws IOException {
+        writer.startObject().name(rootKey);
+        if (asArray) {
+            writer.startArray();
+            write(bean, writer);
+            writer.endArray();
+        } else {
+            write(bean, writer);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes the beans as the root of a JSON document, {"rootKey":[{...},...]}.
+     * The beans are written one by one as the iterator returns them.
+     */
+    public void writeElements(Iterator<?> beans, JSONStreamWriter writer) throws IOException {
+        writer.startObject().name(rootKey).startArray();
+        while (beans.hasNext()) {
+            Object bean = beans.next();
+            if (bean == null) {
+                writer.literal("null");
+            } else {
+                write(bean, writer);
+            }
+        }
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Reads a JSON document written by {@link #writeElement(Object, JSONStreamWriter)}.
+     * If the root key holds an array, its first item is read.
+     */
+    public Object readElement(JSONStreamReader reader) throws IOException {
+        if (reader.next() != JSONStreamReader.START_OBJECT) {
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        readRootKey(reader);
+        Object bean = null;
+        if (reader.next() == JSONStreamReader.START_ARRAY) {
+            if (reader.next() != JSONStreamReader.END_ARRAY) {
+                bean = read(reader);
+                while (reader.next() != JSONStreamReader.END_ARRAY) {
+                    reader.skipValue();
+                }
+            }
+        } else {
+            bean = read(reader);
+        }
+        if (reader.next() != JSONStreamReader.END_OBJECT) {
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        reader.next();
+        return bean;
+    }
+
+    /**
+     * Reads a JSON document written by {@link #writeElements(Iterator, JSONStreamWriter)},
+     * a root key with a single bean, or a bare array of beans, adding the beans
+     * to the collection as they are read.
+     */
+    public void readElements(JSONStreamReader reader, Collection<Object> beans) throws IOException {
+        int token = reader.next();
+        boolean wrapped = token == JSONStreamReader.START_OBJECT;
+        if (wrapped) {
+            readRootKey(reader);
+            token = reader.next();
+        }
+        if (token == JSONStreamReader.START_ARRAY) {
+            while (reader.next() != JSONStreamReader.END_ARRAY) {
+                beans.add(read(reader));
+            }
+        } else if (wrapped) {
+            beans.add(read(reader));
+        } else {
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        if (wrapped && reader.next() != JSONStreamReader.END_OBJECT) {
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        reader.next();
+    }
+
+    void write(Object bean, JSONStreamWriter writer) throws IOException {
+        if (!supported) {
+            throw error("NOT_SUPPORTED", cls.getName());
+        }
+        if (bean.getClass() != cls) {
+            JSONBeanInfo info = context.getBeanInfo(bean.getClass());
+            if (info != null) {
+                info.write(bean, writer);
+                return;
+            }
+        }
+        if (valueProperty != null && !hasAttributeValues(bean)) {
+            // an element with text only
+            valueProperty.writeItem(valueProperty.get(bean), writer);
+            return;
+        }
+        writer.startObject();
+        for (JSONBeanProperty p : properties) {
+            p.write(bean, writer);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Reads the value that starts with the current token.
+     */
+    Object read(JSONStreamReader reader) throws IOException {
+        if (!supported) {
+            throw error("NOT_SUPPORTED", cls.getName());
+        }
+        int token = reader.getToken();
+        if (token == JSONStreamReader.NULL) {
+            return null;
+        }
+        Object bean = newInstance();
+        if (token == JSONStreamReader.START_OBJECT) {
+            while (reader.next() == JSONStreamReader.NAME) {
+                JSONBeanProperty p = keys.get(reader.getText());
+                reader.next();
+                if (p != null && p.isWritable()) {
+                    p.read(bean, reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } else if (valueProperty != null) {
+            valueProperty.read(bean, reader);
+        } else if (token != JSONStreamReader.STRING || reader.getText().length() != 0) {
+            // "" is how an empty element comes from XML-to-JSON conventions
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        return bean;
+    }
+
+    private void readRootKey(JSONStreamReader reader) throws IOException {
+        if (reader.next() != JSONStreamReader.NAME) {
+            throw error("UNEXPECTED_TOKEN", cls.getName());
+        }
+        if (!rootKey.equals(reader.getText())) {
+            throw error("UNEXPECTED_ROOT", reader.getText(), rootKey);
+        }
+    }
+
+    private boolean hasAttributeValues(Object bean) throws IOException {
+        for (int i = 0; i < attributeCount; i++) {
+            if (properties[i].get(bean) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object newInstance() throws IOException {
+        try {
+            return constructor.newInstance();
+        } catch (Exception ex) {
+            IOException ioe = new IOException(ex.getMessage());
+            ioe.initCause(ex);
+            throw ioe;
+        }
+    }
+
+    static IOException error(String code, Object... params) {
+        return new IOException(new Message(code, BUNDLE, params).toString());
+    }
+
+    void introspect() {
+        try {
+            supported = doIntrospect();
+        } catch (SecurityException ex) {
+            supported = false;
+        }
+        if (!supported) {
+            LOG.fine(new Message("NOT_SUPPORTED", BUNDLE, cls.getName()).toString());
+        }
+    }
+
+    private boolean doIntrospect() {
+        if (cls.isInterface() || cls.isArray() || cls.isPrimitive() || cls.isEnum()
+            || Modifier.isAbstract(cls.getModifiers())
+            || cls.getEnclosingClass() != null && !Modifier.isStatic(cls.getModifiers())
+            || JSONSimpleType.forClass(cls) != null
+            || cls.isAnnotationPresent(XmlJavaTypeAdapter.class)
+            || cls.isAnnotationPresent(XmlSeeAlso.class)
+            || cls.getPackage() != null
+               && (cls.getPackage().isAnnotationPresent(XmlJavaTypeAdapter.class)
+                   || cls.getPackage().isAnnotationPresent(XmlJavaTypeAdapters.class))) {
+            return false;
+        }
+        XmlType xmlType = cls.getAnnotation(XmlType.class);
+        if (xmlType != null
+            && (xmlType.factoryClass() != XmlType.DEFAULT.class || xmlType.factoryMethod().length() > 0)) {
+            return false;
+        }
+        try {
+            constructor = cls.getDeclaredConstructor();
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+        if (!Modifier.isPublic(constructor.getModifiers())
+            || !Modifier.isPublic(cls.getModifiers())) {
+            constructor.setAccessible(true);
+        }
+
+        XmlRootElement root = cls.getAnnotation(XmlRootElement.class);
+        if (root != null) {
+            String name = JAXB_DEFAULT.equals(root.name()) ? getDefaultName(cls) : root.name();
+            rootKey = context.createKey(getNamespace(cls, root.namespace(), true), name);
+        } else {
+            rootKey = getDefaultName(cls);
+        }
+
+        List<JSONBeanProperty> all = new ArrayList<JSONBeanProperty>();
+        if (!collectProperties(cls, all)) {
+            return false;
+        }
+        List<JSONBeanProperty> attributes = new ArrayList<JSONBeanProperty>();
+        List<JSONBeanProperty> elements = new ArrayList<JSONBeanProperty>();
+        for (JSONBeanProperty p : all) {
+            if (!mapProperty(p)) {
+                return false;
+            }
+            if (p.getKind() == JSONBeanProperty.ATTRIBUTE) {
+                attributes.add(p);
+            } else if (p.getKind() == JSONBeanProperty.VALUE) {
+                if (valueProperty != null) {
+                    return false;
+                }
+                valueProperty = p;
+            } else {
+                elements.add(p);
+            }
+        }
+        if (valueProperty != null && !elements.isEmpty()) {
+            return false;
+        }
+        attributeCount = attributes.size();
+        if (valueProperty != null) {
+            attributes.add(valueProperty);
+        }
+        attributes.addAll(elements);
+        properties = attributes.toArray(new JSONBeanProperty[attributes.size()]);
+        return true;
+    }
+
+    /**
+     * Adds the properties of the class and of its superclasses, those of a
+     * superclass first, in the order JAXB writes them.
+     *
+     * @return false if the properties can not be bound
+     */
+    private boolean collectProperties(Class<?> c, List<JSONBeanProperty> props) {
+        Class<?> superClass = c.getSuperclass();
+        if (superClass != null && superClass != Object.class
+            && !collectProperties(superClass, props)) {
+            return false;
+        }
+        XmlAccessType accessType = getAccessType(c);
+        List<JSONBeanProperty> own = new ArrayList<JSONBeanProperty>();
+
+        for (Field f : c.getDeclaredFields()) {
+            int mod = f.getModifiers();
+            if (Modifier.isStatic(mod) || f.isSynthetic() || f.isAnnotationPresent(XmlTransient.class)) {
+                continue;
+            }
+            if (isAnnotated(f)
+                || accessType == XmlAccessType.FIELD && !Modifier.isTransient(mod)
+                || accessType == XmlAccessType.PUBLIC_MEMBER && Modifier.isPublic(mod)) {
+                own.add(new JSONBeanProperty(f.getName(), f));
+            }
+        }
+
+        Map<String, Method> getters = new TreeMap<String, Method>();
+        Map<String, Method> setters = new HashMap<String, Method>();
+        for (Method m : c.getDeclaredMethods()) {
+            if (Modifier.isStatic(m.getModifiers()) || m.isBridge() || m.isSynthetic()) {
+                continue;
+            }
+            String name = m.getName();
+            Class<?>[] params = m.getParameterTypes();
+            if (params.length == 0 && name.startsWith("get") && name.length() > 3
+                && m.getReturnType() != Void.TYPE) {
+                getters.put(Introspector.decapitalize(name.substring(3)), m);
+            } else if (params.length == 0 && name.startsWith("is") && name.length() > 2
+                && m.getReturnType() == Boolean.TYPE) {
+                getters.put(Introspector.decapitalize(name.substring(2)), m);
+            } else if (params.length == 1 && name.startsWith("set") && name.length() > 3) {
+                setters.put(Introspector.decapitalize(name.substring(3)), m);
+            }
+        }
+        for (Method setter : setters.values()) {
+            String name = Introspector.decapitalize(setter.getName().substring(3));
+            if (!getters.containsKey(name) && isAnnotated(setter)) {
+                // a setter only property
+                return false;
+            }
+        }
+        for (Map.Entry<String, Method> entry : getters.entrySet()) {
+            Method getter = entry.getValue();
+            Method setter = setters.get(entry.getKey());
+            if (setter != null && setter.getParameterTypes()[0] != getter.getReturnType()) {
+                setter = null;
+            }
+            if (getter.isAnnotationPresent(XmlTransient.class)
+                || setter != null && setter.isAnnotationPresent(XmlTransient.class)) {
+                continue;
+            }
+            boolean collection = Collection.class.isAssignableFrom(getter.getReturnType());
+            if (isAnnotated(getter) || setter != null && isAnnotated(setter)
+                || accessType == XmlAccessType.PROPERTY && (setter != null || collection)
+                || accessType == XmlAccessType.PUBLIC_MEMBER && setter != null
+                   && Modifier.isPublic(getter.getModifiers())
+                   && Modifier.isPublic(setter.getModifiers())) {
+                own.add(new JSONBeanProperty(entry.getKey(), getter, setter));
+            }
+        }
+
+        if (!orderProperties(c, own)) {
+            return false;
+        }
+        props.addAll(own);
+        return true;
+    }
+
+    /**
+     * Orders the properties declared by the class as propOrder or
+     * XmlAccessorOrder says, fields in declaration order followed by properties
+     * in alphabetical order otherwise.
+     */
+    private boolean orderProperties(Class<?> c, List<JSONBeanProperty> own) {
+        XmlType xmlType = c.getAnnotation(XmlType.class);
+        String[] propOrder = xmlType != null ? xmlType.propOrder() : null;
+        if (propOrder != null && propOrder.length > 0
+            && !(propOrder.length == 1 && propOrder[0].length() == 0)) {
+            final List<String> order = Arrays.asList(propOrder);
+            Collections.sort(own, new Comparator<JSONBeanProperty>() {
+                public int compare(JSONBeanProperty p1, JSONBeanProperty p2) {
+                    return position(p1) - position(p2);
+                }
+                private int position(JSONBeanProperty p) {
+                    int i = order.indexOf(p.getName());
+                    return i == -1 ? Integer.MAX_VALUE / 2 : i;
+                }
+            });
+        } else if (getAccessOrder(c) == XmlAccessOrder.ALPHABETICAL) {
+            Collections.sort(own, new Comparator<JSONBeanProperty>() {
+                public int compare(JSONBeanProperty p1, JSONBeanProperty p2) {
+                    return p1.getName().compareTo(p2.getName());
+                }
+            });
+        }
+        for (int i = 0; i < own.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                if (own.get(i).getName().equals(own.get(j).getName())) {
+                    // a field and a property with the same name
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Works out the key and the value type of the property.
+     *
+     * @return false if the property can not be bound
+     */
+    private boolean mapProperty(JSONBeanProperty p) {
+        for (Annotation a : p.getAnnotations()) {
+            if (UNSUPPORTED_ANNOTATIONS.contains(a.annotationType())) {
+                return false;
+            }
+        }
+        Class<?> type = p.getType();
+        Class<?> itemType = type;
+        boolean collection = false;
+        if (JSONBeanProperty.isSupportedCollection(type)) {
+            collection = true;
+            if (type.isArray()) {
+                itemType = type.getComponentType();
+            } else {
+                Type t = p.getGenericType();
+                if (!(t instanceof ParameterizedType)) {
+                    return false;
+                }
+                Type[] args = ((ParameterizedType)t).getActualTypeArguments();
+                if (args.length != 1 || !(args[0] instanceof Class)) {
+                    return false;
+                }
+                itemType = (Class<?>)args[0];
+            }
+        } else if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return false;
+        }
+
+        XmlElement element = p.getAnnotation(XmlElement.class);
+        if (element != null && element.type() != XmlElement.DEFAULT.class) {
+            itemType = element.type();
+        }
+        JSONSimpleType simpleType = JSONSimpleType.forClass(itemType);
+        JSONBeanInfo info = null;
+        if (simpleType == null) {
+            if (itemType.isArray()) {
+                return false;
+            }
+            info = context.getBeanInfo(itemType);
+            if (info == null) {
+                return false;
+            }
+        }
+
+        XmlAttribute attribute = p.getAnnotation(XmlAttribute.class);
+        if (attribute != null) {
+            if (collection || simpleType == null) {
+                return false;
+            }
+            String name = JAXB_DEFAULT.equals(attribute.name()) ? p.getName() : attribute.name();
+            String ns = attribute.namespace();
+            if (JAXB_DEFAULT.equals(ns)) {
+                XmlSchema schema = getSchema(cls);
+                ns = schema != null && schema.attributeFormDefault() == XmlNsForm.QUALIFIED
+                    ? schema.namespace() : "";
+            }
+            return map(p, JSONBeanProperty.ATTRIBUTE, "@" + context.createKey(ns, name), null,
+                       itemType, simpleType, null);
+        }
+        if (p.getAnnotation(XmlValue.class) != null) {
+            if (collection || simpleType == null) {
+                return false;
+            }
+            return map(p, JSONBeanProperty.VALUE, VALUE_KEY, null, itemType, simpleType, null);
+        }
+
+        String name = p.getName();
+        String ns = JAXB_DEFAULT;
+        if (element != null) {
+            name = JAXB_DEFAULT.equals(element.name()) ? name : element.name();
+            ns = element.namespace();
+        }
+        String wrapperKey = null;
+        XmlElementWrapper wrapper = p.getAnnotation(XmlElementWrapper.class);
+        if (wrapper != null) {
+            if (!collection) {
+                return false;
+            }
+            String wrapperName = JAXB_DEFAULT.equals(wrapper.name()) ? p.getName() : wrapper.name();
+            wrapperKey = context.createKey(getNamespace(cls, wrapper.namespace(), false), wrapperName);
+        }
+        return map(p, JSONBeanProperty.ELEMENT, context.createKey(getNamespace(cls, ns, false), name),
+                   wrapperKey, itemType, simpleType, info);
+    }
+
+    private boolean map(JSONBeanProperty p, int kind, String key, String wrapperKey,
+                        Class<?> itemType, JSONSimpleType simpleType, JSONBeanInfo info) {
+        p.setMapping(kind, key, wrapperKey, itemType, simpleType, info, 
+                     kind == JSONBeanProperty.ELEMENT && context.isArrayKey(key));
+        String lookupKey = wrapperKey != null ? wrapperKey : key;
+        if (keys.containsKey(lookupKey)) {
+            return false;
+        }
+        keys.put(lookupKey, p);
+        return true;
+    }
+
+    private static XmlAccessType getAccessType(Class<?> c) {
+        XmlAccessorType accessorType = c.getAnnotation(XmlAccessorType.class);
+        if (accessorType == null && c.getPackage() != null) {
+            accessorType = c.getPackage().getAnnotation(XmlAccessorType.class);
+        }
+        return accessorType != null ? accessorType.value() : XmlAccessType.PUBLIC_MEMBER;
+    }
+
+    private static XmlAccessOrder getAccessOrder(Class<?> c) {
+        XmlAccessorOrder accessorOrder = c.getAnnotation(XmlAccessorOrder.class);
+        if (accessorOrder == null && c.getPackage() != null) {
+            accessorOrder = c.getPackage().getAnnotation(XmlAccessorOrder.class);
+        }
+        return accessorOrder != null ? accessorOrder.value() : XmlAccessOrder.UNDEFINED;
+    }
+
+    private static XmlSchema getSchema(Class<?> c) {
+        return c.getPackage() != null ? c.getPackage().getAnnotation(XmlSchema.class) : null;
+    }
+
+    /**
+     * @param global true for a root element, which is in the namespace of the
+     * package by default, false for a local one, which is only if the package
+     * says so
+     */
+    private static String getNamespace(Class<?> c, String ns, boolean global) {
+        if (!JAXB_DEFAULT.equals(ns)) {
+            return ns;
+        }
+        XmlSchema schema = getSchema(c);
+        if (schema == null || !global && schema.elementFormDefault() != XmlNsForm.QUALIFIED) {
+            return "";
+        }
+        return schema.namespace();
+    }
+
+    /**
+     * @return the name JAXB gives the class if it does not name it, the simple
+     * name with the leading upper case word in lower case, e.g. urlHolder for
+     * URLHolder
+     */
+    static String getDefaultName(Class<?> c) {
+        String name = c.getSimpleName();
+        int upper = 0;
+        while (upper < name.length() && Character.isUpperCase(name.charAt(upper))) {
+            upper++;
+        }
+        if (upper > 1 && upper < name.length() && Character.isLowerCase(name.charAt(upper))) {
+            // the last upper case letter starts the next word
+            upper--;
+        }
+        return name.substring(0, upper).toLowerCase() + name.substring(upper);
+    }
+
+    private static boolean isAnnotated(AnnotatedElement e) {
+        for (Annotation a : e.getAnnotations()) {
+            if (a.annotationType().getName().startsWith("javax.xml.bind.annotation.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,409 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * One property of a bean: how it is accessed, the JSON key it is mapped to and
+ * how its value is written and read.
+ */
+class JSONBeanProperty {
+
+    static final int ELEMENT = 0;
+    static final int ATTRIBUTE = 1;
+    static final int VALUE = 2;
+
+    private final String name;
+    private final Field field;
+    private final Method getter;
+    private final Method setter;
+    private final Class<?> type;
+
+    private int kind;
+    private String key;
+    private String wrapperKey;
+    private boolean collection;
+    private boolean array;
+    private boolean asArray;
+    private Class<?> itemType;
+    private JSONSimpleType simpleType;
+    private JSONBeanInfo beanInfo;
+
+    JSONBeanProperty(String name, Field field) {
+        this.name = name;
+        this.field = field;
+        this.getter = null;
+        this.setter = null;
+        this.type = field.getType();
+        if (!Modifier.isPublic(field.getModifiers())
+            || !Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+            field.setAccessible(true);
+        }
+    }
+
+    JSONBeanProperty(String name, Method getter, Method setter) {
+        this.name = name;
+        this.field = null;
+        this.getter = getter;
+        this.setter = setter;
+        this.type = getter.getReturnType();
+        makeAccessible(getter);
+        if (setter != null) {
+            makeAccessible(setter);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    Type getGenericType() {
+        return field != null ? field.getGenericType() : getter.getGenericReturnType();
+    }
+
+    /**
+     * @return the annotation of the field, or of the getter or the setter
+     */
+    <T extends Annotation> T getAnnotation(Class<T> annotationType) {
+        if (field != null) {
+            return field.getAnnotation(annotationType);
+        }
+        T a = getter.getAnnotation(annotationType);
+        if (a == null && setter != null) {
+            a = setter.getAnnotation(annotationType);
+        }
+        return a;
+    }
+
+    Annotation[] getAnnotations() {
+        if (field != null) {
+            return field.getAnnotations();
+        }
+        Annotation[] anns = getter.getAnnotations();
+        if (setter != null) {
+            Annotation[] setterAnns = setter.getAnnotations();
+            Annotation[] all = new Annotation[anns.length + setterAnns.length];
+            System.arraycopy(anns, 0, all, 0, anns.length);
+            System.arraycopy(setterAnns, 0, all, anns.length, setterAnns.length);
+            anns = all;
+        }
+        return anns;
+    }
+
+    int getKind() {
+        return kind;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    boolean isCollection() {
+        return collection || array;
+    }
+
+    Class<?> getItemType() {
+        return itemType;
+    }
+
+    boolean isSimple() {
+        return simpleType != null;
+    }
+
+    /**
+     * Sets how the values of the property are mapped.
+     *
+     * @param itemTypeParam the type of the value, or of its items if the
+     * property is a collection or an array
+     * @param info the bean metadata of the item type, null if it is simple
+     * @param asArrayParam true if values are always written as arrays, 
+     * otherwise only collections with more than one item are
+     */
+    void setMapping(int kindParam, String keyParam, String wrapperKeyParam,
+                    Class<?> itemTypeParam, JSONSimpleType simple, JSONBeanInfo info,
+                    boolean asArrayParam) {
+        this.kind = kindParam;
+        this.key = keyParam;
+        this.wrapperKey = wrapperKeyParam;
+        this.itemType = itemTypeParam;
+        this.simpleType = simple;
+        this.beanInfo = info;
+        this.asArray = asArrayParam;
+        array = type.isArray();
+        collection = Collection.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @return true if the property can be written to, a collection property can
+     * also be filled through the collection its getter returns
+     */
+    boolean isWritable() {
+        return field != null && !Modifier.isFinal(field.getModifiers())
+            || setter != null
+            || collection && getter != null;
+    }
+
+    Object get(Object bean) throws IOException {
+        try {
+            return field != null ? field.get(bean) : getter.invoke(bean);
+        } catch (InvocationTargetException ex) {
+            throw toIOException(ex.getCause());
+        } catch (Exception ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    void set(Object bean, Object value) throws IOException {
+        try {
+            if (field != null) {
+                field.set(bean, value);
+            } else if (setter != null) {
+                setter.invoke(bean, value);
+            }
+        } catch (InvocationTargetException ex) {
+            throw toIOException(ex.getCause());
+        } catch (Exception ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the key and the value of the property, nothing if the value is
+     * null or an empty collection.  A collection with a single item is written 
+     * as that item, like Jettison does, unless the key is an array key.
+     */
+    void write(Object bean, JSONStreamWriter writer) throws IOException {
+        Object value = get(bean);
+        if (value == null) {
+            return;
+        }
+        if (collection || array) {
+            int size = collection ? ((Collection)value).size() : Array.getLength(value);
+            if (size == 0) {
+                return;
+            }
+            if (wrapperKey != null) {
+                writer.name(wrapperKey).startObject();
+            }
+            writer.name(key);
+            if (size == 1 && !asArray) {
+                writeItem(collection ? ((Collection)value).iterator().next() : Array.get(value, 0), writer);
+            } else {
+                writer.startArray();
+                if (collection) {
+                    for (Object item : (Collection)value) {
+                        writeItem(item, writer);
+                    }
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        writeItem(Array.get(value, i), writer);
+                    }
+                }
+                writer.endArray();
+            }
+            if (wrapperKey != null) {
+                writer.endObject();
+            }
+        } else if (asArray) {
+            writer.name(key).startArray();
+            writeItem(value, writer);
+            writer.endArray();
+        } else {
+            writer.name(key);
+            writeItem(value, writer);
+        }
+    }
+
+    void writeItem(Object value, JSONStreamWriter writer) throws IOException {
+        if (value == null) {
+            writer.literal("null");
+        } else if (simpleType != null) {
+            simpleType.write(value, writer);
+        } else {
+            beanInfo.write(value, writer);
+        }
+    }
+
+    /**
+     * Reads the value that starts with the current token into the property.
+     * A collection accepts an array as well as a single item, which is how a
+     * collection with one item comes from XML-to-JSON conventions, and a 
+     * single value an array, of which the first item is taken.
+     */
+    void read(Object bean, JSONStreamReader reader) throws IOException {
+        int token = reader.getToken();
+        if (!(collection || array)) {
+            if (token == JSONStreamReader.START_ARRAY) {
+                // an array key, the first item is the value
+                token = reader.next();
+                if (token != JSONStreamReader.END_ARRAY) {
+                    set(bean, readItem(reader, token));
+                    while (reader.next() != JSONStreamReader.END_ARRAY) {
+                        reader.skipValue();
+                    }
+                }
+                return;
+            }
+            set(bean, readItem(reader, token));
+            return;
+        }
+        if (wrapperKey != null) {
+            if (token != JSONStreamReader.START_OBJECT) {
+                // an empty wrapper
+                reader.skipValue();
+                return;
+            }
+            while (reader.next() == JSONStreamReader.NAME) {
+                String itemKey = reader.getText();
+                token = reader.next();
+                if (key.equals(itemKey)) {
+                    readItems(bean, reader, token);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } else {
+            readItems(bean, reader, token);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readItems(Object bean, JSONStreamReader reader, int token) throws IOException {
+        Collection<Object> items = array ? new ArrayList<Object>() : getCollection(bean);
+        if (token == JSONStreamReader.START_ARRAY) {
+            for (token = reader.next(); token != JSONStreamReader.END_ARRAY; token = reader.next()) {
+                items.add(readItem(reader, token));
+            }
+        } else if (token != JSONStreamReader.NULL) {
+            items.add(readItem(reader, token));
+        }
+        if (array) {
+            Object values = Array.newInstance(itemType, items.size());
+            int i = 0;
+            for (Iterator<Object> it = items.iterator(); it.hasNext(); i++) {
+                Array.set(values, i, it.next());
+            }
+            set(bean, values);
+        }
+    }
+
+    Object readItem(JSONStreamReader reader, int token) throws IOException {
+        if (simpleType == null) {
+            return beanInfo.read(reader);
+        }
+        String text;
+        switch (token) {
+        case JSONStreamReader.STRING:
+        case JSONStreamReader.NUMBER:
+            text = reader.getText();
+            break;
+        case JSONStreamReader.TRUE:
+            text = "true";
+            break;
+        case JSONStreamReader.FALSE:
+            text = "false";
+            break;
+        case JSONStreamReader.NULL:
+            if (itemType.isPrimitive()) {
+                throw JSONBeanInfo.error("INVALID_VALUE", "null", name);
+            }
+            return null;
+        default:
+            throw JSONBeanInfo.error("UNEXPECTED_TOKEN", name);
+        }
+        try {
+            return simpleType.parse(text);
+        } catch (IllegalArgumentException ex) {
+            throw JSONBeanInfo.error("INVALID_VALUE", text, name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Object> getCollection(Object bean) throws IOException {
+        Collection<Object> c = (Collection<Object>)get(bean);
+        if (c == null) {
+            if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                try {
+                    c = (Collection<Object>)type.newInstance();
+                } catch (Exception ex) {
+                    throw toIOException(ex);
+                }
+            } else if (SortedSet.class.isAssignableFrom(type)) {
+                c = new TreeSet<Object>();
+            } else if (Set.class.isAssignableFrom(type)) {
+                c = new LinkedHashSet<Object>();
+            } else {
+                c = new ArrayList<Object>();
+            }
+            set(bean, c);
+        }
+        return c;
+    }
+
+    /**
+     * @return true if the type is an array or a collection the property can
+     * hold and, if it is abstract, create
+     */
+    static boolean isSupportedCollection(Class<?> cls) {
+        if (cls.isArray()) {
+            // byte[] is base64 binary
+            return cls != byte[].class && cls != char[].class;
+        }
+        if (!Collection.class.isAssignableFrom(cls)) {
+            return false;
+        }
+        return !cls.isInterface() && !Modifier.isAbstract(cls.getModifiers())
+            || cls.isAssignableFrom(ArrayList.class)
+            || cls.isAssignableFrom(LinkedHashSet.class)
+            || cls.isAssignableFrom(TreeSet.class);
+    }
+
+    private static void makeAccessible(Method m) {
+        if (!Modifier.isPublic(m.getModifiers())
+            || !Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
+            m.setAccessible(true);
+        }
+    }
+
+    private static IOException toIOException(Throwable t) {
+        IOException ex = new IOException(t.getMessage());
+        ex.initCause(t);
+        return ex;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlEnumValue;
+
+/**
+ * Converts the values of the simple types a bean property can have to and from
+ * JSON scalars.  Numbers and booleans are written as JSON literals, everything
+ * else as strings; both forms are accepted when reading.
+ */
+class JSONSimpleType {
+
+    private static final int STRING = 0;
+    private static final int BOOLEAN = 1;
+    private static final int BYTE = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int BIG_INTEGER = 8;
+    private static final int BIG_DECIMAL = 9;
+    private static final int ENUM = 10;
+
+    private static final Map<Class<?>, JSONSimpleType> TYPES = new HashMap<Class<?>, JSONSimpleType>();
+    static {
+        TYPES.put(String.class, new JSONSimpleType(STRING));
+        TYPES.put(Boolean.class, new JSONSimpleType(BOOLEAN));
+        TYPES.put(Boolean.TYPE, new JSONSimpleType(BOOLEAN));
+        TYPES.put(Byte.class, new JSONSimpleType(BYTE));
+        TYPES.put(Byte.TYPE, new JSONSimpleType(BYTE));
+        TYPES.put(Short.class, new JSONSimpleType(SHORT));
+        TYPES.put(Short.TYPE, new JSONSimpleType(SHORT));
+        TYPES.put(Integer.class, new JSONSimpleType(INT));
+        TYPES.put(Integer.TYPE, new JSONSimpleType(INT));
+        TYPES.put(Long.class, new JSONSimpleType(LONG));
+        TYPES.put(Long.TYPE, new JSONSimpleType(LONG));
+        TYPES.put(Float.class, new JSONSimpleType(FLOAT));
+        TYPES.put(Float.TYPE, new JSONSimpleType(FLOAT));
+        TYPES.put(Double.class, new JSONSimpleType(DOUBLE));
+        TYPES.put(Double.TYPE, new JSONSimpleType(DOUBLE));
+        TYPES.put(BigInteger.class, new JSONSimpleType(BIG_INTEGER));
+        TYPES.put(BigDecimal.class, new JSONSimpleType(BIG_DECIMAL));
+    }
+
+    private final int kind;
+    private Map<String, Object> enumConstants;
+    private Map<Object, String> enumValues;
+
+    private JSONSimpleType(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * @return the converter for the type, or null if it is not a simple type
+     */
+    static JSONSimpleType forClass(Class<?> cls) {
+        JSONSimpleType type = TYPES.get(cls);
+        if (type == null && cls.isEnum()) {
+            type = new JSONSimpleType(ENUM);
+            type.enumConstants = new HashMap<String, Object>();
+            type.enumValues = new HashMap<Object, String>();
+            for (Object constant : cls.getEnumConstants()) {
+                String name = ((Enum)constant).name();
+                String value = name;
+                try {
+                    XmlEnumValue ev = cls.getField(name).getAnnotation(XmlEnumValue.class);
+                    if (ev != null) {
+                        value = ev.value();
+                    }
+                } catch (NoSuchFieldException ex) {
+                    // can not happen, every constant has its field
+                }
+                type.enumConstants.put(value, constant);
+                type.enumValues.put(constant, value);
+            }
+        }
+        return type;
+    }
+
+    void write(Object value, JSONStreamWriter writer) throws IOException {
+        switch (kind) {
+        case STRING:
+            writer.value((String)value);
+            break;
+        case ENUM:
+            writer.value(enumValues.get(value));
+            break;
+        case FLOAT:
+        case DOUBLE:
+            double d = ((Number)value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                // not a valid JSON number
+                writer.value(value.toString());
+            } else {
+                writer.literal(value.toString());
+            }
+            break;
+        default:
+            writer.literal(value.toString());
+        }
+    }
+
+    /**
+     * @return the value of a STRING, NUMBER, TRUE or FALSE token
+     * @throws IllegalArgumentException if the text is not a valid value
+     */
+    Object parse(String text) {
+        switch (kind) {
+        case STRING:
+            return text;
+        case BOOLEAN:
+            // xsd:boolean also allows 1 and 0
+            return Boolean.valueOf("true".equals(text) || "1".equals(text));
+        case BYTE:
+            return Byte.valueOf(text);
+        case SHORT:
+            return Short.valueOf(text);
+        case INT:
+            return Integer.valueOf(text);
+        case LONG:
+            return Long.valueOf(text);
+        case FLOAT:
+            return Float.valueOf(text);
+        case DOUBLE:
+            return Double.valueOf(text);
+        case BIG_INTEGER:
+            return new BigInteger(text);
+        case BIG_DECIMAL:
+            return new BigDecimal(text);
+        default:
+            Object constant = enumConstants.get(text);
+            if (constant == null) {
+                throw new IllegalArgumentException(text);
+            }
+            return constant;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ResourceBundle;
+
+import org.apache.cxf.common.i18n.BundleUtils;
+import org.apache.cxf.common.i18n.Message;
+
+/**
+ * A pull tokenizer for JSON text.  Each call to {@link #next()} reads one token
+ * from the character stream; no tree is built, and only the text of the current
+ * name or scalar value is kept.  The structure is checked as it is read, so a
+ * malformed document fails at the first token that does not fit.
+ * The reader is not thread safe.
+ */
+public class JSONStreamReader {
+
+    public static final int START_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int START_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int NAME = 5;
+    public static final int STRING = 6;
+    public static final int NUMBER = 7;
+    public static final int TRUE = 8;
+    public static final int FALSE = 9;
+    public static final int NULL = 10;
+    public static final int END_DOCUMENT = 11;
+
+    private static final ResourceBundle BUNDLE = BundleUtils.getBundle(JSONStreamReader.class);
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long offset;
+
+    private final StringBuilder text = new StringBuilder();
+    // '{' or '[' per open container
+    private char[] stack = new char[16];
+    private int depth;
+    private boolean afterName;
+    private boolean afterValue;
+    private int token;
+
+    public JSONStreamReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the current token
+     */
+    public int getToken() {
+        return token;
+    }
+
+    /**
+     * @return the text of the current NAME, STRING or NUMBER token
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @return the number of objects and arrays that are open
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token, END_DOCUMENT once the top level value has been read
+     * and only white space is left
+     */
+    public int next() throws IOException {
+        token = readToken();
+        return token;
+    }
+
+    /**
+     * Skips the value that starts with the current token, including all of its
+     * members or items if it is an object or an array.
+     */
+    public void skipValue() throws IOException {
+        if (token == START_OBJECT || token == START_ARRAY) {
+            int level = depth - 1;
+            while (depth > level) {
+                if (next() == END_DOCUMENT) {
+                    throw error("UNEXPECTED_END");
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readToken() throws IOException {
+        int c = skipWhitespace();
+        if (depth == 0) {
+            if (c == -1) {
+                if (!afterValue) {
+                    throw error("UNEXPECTED_END");
+                }
+                return END_DOCUMENT;
+            }
+            if (afterValue) {
+                throw unexpected(c);
+            }
+            return readValue(c);
+        }
+        boolean inObject = stack[depth - 1] == '{';
+        if (afterName) {
+            if (c != ':') {
+                throw unexpected(c);
+            }
+            afterName = false;
+            return readValue(skipWhitespace());
+        }
+        char close = inObject ? '}' : ']';
+        if (afterValue) {
+            if (c == close) {
+                return pop(inObject);
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+            c = skipWhitespace();
+        } else if (c == close) {
+            return pop(inObject);
+        }
+        if (!inObject) {
+            return readValue(c);
+        }
+        if (c != '"') {
+            throw unexpected(c);
+        }
+        readString();
+        afterName = true;
+        afterValue = false;
+        return NAME;
+    }
+
+    private int readValue(int c) throws IOException {
+        switch (c) {
+        case '{':
+            push('{');
+            return START_OBJECT;
+        case '[':
+            push('[');
+            return START_ARRAY;
+        case '"':
+            readString();
+            afterValue = true;
+            return STRING;
+        case 't':
+            readLiteral("true");
+            afterValue = true;
+            return TRUE;
+        case 'f':
+            readLiteral("false");
+            afterValue = true;
+            return FALSE;
+        case 'n':
+            readLiteral("null");
+            afterValue = true;
+            return NULL;
+        default:
+            if (c == '-' || c >= '0' && c <= '9') {
+                readNumber(c);
+                afterValue = true;
+                return NUMBER;
+            }
+            throw unexpected(c);
+        }
+    }
+
+    private void push(char c) {
+        if (depth == stack.length) {
+            char[] newStack = new char[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+        stack[depth++] = c;
+        afterValue = false;
+    }
+
+    private int pop(boolean inObject) {
+        depth--;
+        afterValue = true;
+        return inObject ? END_OBJECT : END_ARRAY;
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("UNEXPECTED_END");
+            }
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                if (c < 0x20) {
+                    throw unexpected(c);
+                }
+                pos++;
+            }
+            text.append(buf, start, pos - start);
+            if (pos < limit) {
+                char c = buf[pos++];
+                if (c == '"') {
+                    return;
+                }
+                text.append(readEscape());
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char)c;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = Character.digit(read(), 16);
+                if (d == -1) {
+                    throw error("INVALID_ESCAPE");
+                }
+                value = (value << 4) | d;
+            }
+            return (char)value;
+        default:
+            throw error("INVALID_ESCAPE");
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char)first);
+        int c = first == '-' ? appendRead() : first;
+        if (c == '0') {
+            c = peek();
+        } else if (c >= '1' && c <= '9') {
+            c = appendDigits();
+        } else {
+            throw unexpected(c);
+        }
+        if (c == '.') {
+            appendRead();
+            if (appendDigits(true) == -2) {
+                throw unexpected(peek());
+            }
+            c = peek();
+        }
+        if (c == 'e' || c == 'E') {
+            appendRead();
+            c = peek();
+            if (c == '+' || c == '-') {
+                appendRead();
+            }
+            if (appendDigits(true) == -2) {
+                throw unexpected(peek());
+            }
+        }
+    }
+
+    private int appendRead() throws IOException {
+        int c = read();
+        if (c == -1) {
+            throw error("UNEXPECTED_END");
+        }
+        text.append((char)c);
+        return c;
+    }
+
+    private int appendDigits() throws IOException {
+        return appendDigits(false);
+    }
+
+    /**
+     * Appends the digits that follow.
+     *
+     * @return the next character, or -2 if at least one digit was required and
+     * there was none
+     */
+    private int appendDigits(boolean required) throws IOException {
+        boolean found = false;
+        int c = peek();
+        while (c >= '0' && c <= '9') {
+            text.append((char)c);
+            pos++;
+            found = true;
+            c = peek();
+        }
+        return required && !found ? -2 : c;
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 1; i < literal.length(); i++) {
+            int c = read();
+            if (c != literal.charAt(i)) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buf[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        while (n == 0) {
+            n = in.read(buf, 0, buf.length);
+        }
+        if (n == -1) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IOException unexpected(int c) {
+        if (c == -1) {
+            return error("UNEXPECTED_END");
+        }
+        return error("UNEXPECTED_CHARACTER", String.valueOf((char)c));
+    }
+
+    private IOException error(String code, Object... params) {
+        Object[] args = new Object[params.length + 1];
+        args[0] = Long.valueOf(offset + pos);
+        System.arraycopy(params, 0, args, 1, params.length);
+        return new IOException(new Message(code, BUNDLE, args).toString());
+    }
+}
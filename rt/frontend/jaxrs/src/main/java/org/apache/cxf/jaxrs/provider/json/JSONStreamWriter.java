@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON text to a character stream as it is produced.  Nothing is kept
+ * but the nesting state and a small output buffer, so an object graph or a
+ * collection of any size can be written without building it in memory first.
+ * The writer is not thread safe.
+ */
+public class JSONStreamWriter {
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String[] ESCAPES = new String[128];
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            ESCAPES[i] = "\\u00" + HEX[i >> 4] + HEX[i & 0xf];
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+    }
+
+    private final Writer out;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int count;
+    // per nesting level, whether a member or an item has already been written
+    private boolean[] started = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JSONStreamWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JSONStreamWriter startObject() throws IOException {
+        beforeValue();
+        write('{');
+        push();
+        return this;
+    }
+
+    public JSONStreamWriter endObject() throws IOException {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JSONStreamWriter startArray() throws IOException {
+        beforeValue();
+        write('[');
+        push();
+        return this;
+    }
+
+    public JSONStreamWriter endArray() throws IOException {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next object member.
+     */
+    public JSONStreamWriter name(String name) throws IOException {
+        if (started[depth]) {
+            write(',');
+        }
+        started[depth] = true;
+        writeString(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or null.
+     */
+    public JSONStreamWriter value(String value) throws IOException {
+        if (value == null) {
+            return literal("null");
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a number, boolean or null value.  The text is written as is and
+     * must be a valid JSON literal.
+     */
+    public JSONStreamWriter literal(String value) throws IOException {
+        beforeValue();
+        write(value);
+        return this;
+    }
+
+    /**
+     * Writes the buffered text to the underlying writer and flushes it.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0) {
+            if (started[depth]) {
+                write(',');
+            }
+            started[depth] = true;
+        }
+    }
+
+    private void push() {
+        depth++;
+        if (depth == started.length) {
+            boolean[] newStarted = new boolean[depth * 2];
+            System.arraycopy(started, 0, newStarted, 0, depth);
+            started = newStarted;
+        }
+        started[depth] = false;
+    }
+
+    private void writeString(String s) throws IOException {
+        write('"');
+        int len = s.length();
+        int from = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            String escape = null;
+            if (c < 128) {
+                escape = ESCAPES[c];
+            } else if (c == '\u2028' || c == '\u2029') {
+                escape = c == '\u2028' ? "\\u2028" : "\\u2029";
+            }
+            if (escape != null) {
+                write(s, from, i);
+                write(escape);
+                from = i + 1;
+            }
+        }
+        write(s, from, len);
+        write('"');
+    }
+
+    private void write(char c) throws IOException {
+        if (count == buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = c;
+    }
+
+    private void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    private void write(String s, int from, int to) throws IOException {
+        while (from < to) {
+            if (count == buf.length) {
+                flushBuffer();
+            }
+            int n = Math.min(to - from, buf.length - count);
+            s.getChars(from, from + n, buf, count);
+            count += n;
+            from += n;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -251,30 +251,39 @@ public final class JAXRSUtils {
         int consumeMatched = 0;
         int produceMatched = 0;
         
+        // the path is matched once, only the media types vary with the accept type
+        List<OperationResourceInfo> pathMatches = new ArrayList<OperationResourceInfo>();
+        List<MultivaluedMap<String, String>> pathValues = new ArrayList<MultivaluedMap<String, String>>();
+        for (OperationResourceInfo ori : resource.getMethodDispatcher().getOperationResourceInfos(path)) {
+            MultivaluedMap<String, String> map = new MetadataMap<String, String>(values);
+            if (ori.getURITemplate().match(path, map)) {
+                pathMatches.add(ori);
+                pathValues.add(map);
+            }
+        }
+        
         boolean subresourcesOnly = true;
         for (MediaType acceptType : acceptContentTypes) {
-            for (OperationResourceInfo ori : resource.getMethodDispatcher().getOperationResourceInfos()) {
-                URITemplate uriTemplate = ori.getURITemplate();
-                MultivaluedMap<String, String> map = new MetadataMap<String, String>(values);
-                if (uriTemplate != null && uriTemplate.match(path, map)) {
-                    if (ori.isSubResourceLocator()) {
-                        candidateList.put(ori, map);
-                    } else {
-                        String finalGroup = map.getFirst(URITemplate.FINAL_MATCH_GROUP);
-                        if (finalGroup == null || StringUtils.isEmpty(finalGroup)
-                            || finalGroup.equals("/")) {
-                            pathMatched++;
-                            boolean mMatched = matchHttpMethod(ori.getHttpMethod(), httpMethod);
-                            boolean cMatched = matchConsumeTypes(requestType, ori);
-                            boolean pMatched = matchProduceTypes(acceptType, ori);
-                            if (mMatched && cMatched && pMatched) {
-                                subresourcesOnly = false;
-                                candidateList.put(ori, map);    
-                            } else {
-                                methodMatched = mMatched ? methodMatched + 1 : methodMatched;
-                                produceMatched = pMatched ? produceMatched + 1 : produceMatched;
-                                consumeMatched = cMatched ? consumeMatched + 1 : consumeMatched;
-                            }
+            for (int i = 0; i < pathMatches.size(); i++) {
+                OperationResourceInfo ori = pathMatches.get(i);
+                MultivaluedMap<String, String> map = pathValues.get(i);
+                if (ori.isSubResourceLocator()) {
+                    candidateList.put(ori, map);
+                } else {
+                    String finalGroup = map.getFirst(URITemplate.FINAL_MATCH_GROUP);
+                    if (finalGroup == null || StringUtils.isEmpty(finalGroup)
+                        || finalGroup.equals("/")) {
+                        pathMatched++;
+                        boolean mMatched = matchHttpMethod(ori.getHttpMethod(), httpMethod);
+                        boolean cMatched = matchConsumeTypes(requestType, ori);
+                        boolean pMatched = matchProduceTypes(acceptType, ori);
+                        if (mMatched && cMatched && pMatched) {
+                            subresourcesOnly = false;
+                            candidateList.put(ori, map);    
+                        } else {
+                            methodMatched = mMatched ? methodMatched + 1 : methodMatched;
+                            produceMatched = pMatched ? produceMatched + 1 : produceMatched;
+                            consumeMatched = cMatched ? consumeMatched + 1 : consumeMatched;
                         }
                     }
                 }
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class URITemplateIndexTest extends Assert {
+
+    @Test
+    public void testCandidates() {
+        URITemplateIndex<String> index = new URITemplateIndex<String>();
+        index.add(new URITemplate("/books/{id}"), "book");
+        index.add(new URITemplate("/"), "root");
+        index.add(new URITemplate("/books"), "books");
+        index.add(new URITemplate("/customers/{id}"), "customer");
+        index.add(new URITemplate("{path}"), "any");
+        
+        assertEquals(Arrays.asList("book", "root", "books", "any"), 
+                     index.getCandidates("/books/123"));
+        assertEquals(Arrays.asList("root", "customer", "any"), 
+                     index.getCandidates("/customers/1"));
+        assertEquals(Arrays.asList("root", "any"), index.getCandidates("/orders"));
+        assertEquals(5, index.size());
+    }
+    
+    @Test
+    public void testMatrixParameters() {
+        URITemplateIndex<String> index = new URITemplateIndex<String>();
+        index.add(new URITemplate("/books/{id}"), "book");
+        index.add(new URITemplate("/customers/{id}"), "customer");
+        
+        // matrix parameters may hide a literal prefix, so all templates are candidates 
+        assertEquals(2, index.getCandidates("/books;a=b/1").size());
+    }
+    
+    @Test
+    public void testNoCandidates() {
+        URITemplateIndex<String> index = new URITemplateIndex<String>();
+        index.add(new URITemplate("/books/{id}"), "book");
+        
+        assertEquals(Collections.emptyList(), index.getCandidates("/customers"));
+        List<String> candidates = index.getCandidates("/books/1");
+        assertEquals(Collections.singletonList("book"), candidates);
+    }
+}
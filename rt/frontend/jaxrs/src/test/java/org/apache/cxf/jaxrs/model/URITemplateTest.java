@@ -455,4 +455,13 @@ public class URITemplateTest extends Assert {
         System.out.println(ut.encodeLiteralCharacters());
         assertEquals("a%20{digit:[0-9]}%20b", ut.encodeLiteralCharacters());
     }
+    
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/customers/", new URITemplate("/customers/{id}").getLiteralPrefix());
+        assertEquals("/customers", new URITemplate("/customers/").getLiteralPrefix());
+        assertEquals("/a.b/", new URITemplate("/a.b/{id}").getLiteralPrefix());
+        assertEquals("", new URITemplate("/").getLiteralPrefix());
+        assertEquals("", new URITemplate("{id}").getLiteralPrefix());
+    }
 }
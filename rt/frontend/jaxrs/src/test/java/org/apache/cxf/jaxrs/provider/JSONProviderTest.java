@@ -19,8 +19,13 @@
 
 package org.apache.cxf.jaxrs.provider;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import javax.ws.rs.core.MediaType;
 
@@ -92,6 +97,125 @@ public class JSONProviderTest extends Assert {
             s);
     }
     
+    @Test
+    public void testWriteStreaming() throws Exception {
+        JSONProvider p = new JSONProvider();
+        p.setStreaming(true);
+        p.setSerializeAsArray(true);
+        p.setArrayKeys(Collections.singletonList("list"));
+        Tags tags = new Tags();
+        tags.addTag(createTag("a", "b"));
+        ManyTags many = new ManyTags();
+        many.setTags(tags);
+        
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        
+        p.writeTo(many, (Class)ManyTags.class, ManyTags.class, ManyTags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        
+        String s = os.toString();
+        assertEquals(
+            "{\"ManyTags\":{\"tags\":{\"list\":[{\"group\":\"b\",\"name\":\"a\"}]}}}",
+            s);
+    }
+    
+    @Test
+    public void testWriteOneItemListStreaming() throws Exception {
+        Tags tags = new Tags();
+        tags.addTag(createTag("a", "b"));
+        ManyTags many = new ManyTags();
+        many.setTags(tags);
+        
+        JSONProvider p = new JSONProvider();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        p.writeTo(many, (Class)ManyTags.class, ManyTags.class, ManyTags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        String jaxb = os.toString();
+        
+        p.setStreaming(true);
+        os = new ByteArrayOutputStream();
+        p.writeTo(many, (Class)ManyTags.class, ManyTags.class, ManyTags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        assertEquals("{\"ManyTags\":{\"tags\":{\"list\":{\"group\":\"b\",\"name\":\"a\"}}}}",
+                     os.toString());
+        assertEquals(jaxb, os.toString());
+    }
+    
+    @Test
+    public void testWriteRootAsArrayStreaming() throws Exception {
+        JSONProvider p = new JSONProvider();
+        p.setStreaming(true);
+        p.setSerializeAsArray(true);
+        Tags tags = new Tags();
+        tags.addTag(createTag("a", "b"));
+        
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        p.writeTo(tags, (Class)Tags.class, Tags.class, Tags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        String s = os.toString();
+        assertEquals("{\"Tags\":[{\"list\":{\"group\":\"b\",\"name\":\"a\"}}]}", s);
+        
+        Object o = p.readFrom((Class)Tags.class, Tags.class, Tags.class.getAnnotations(), 
+                              MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, String>(), 
+                              new ByteArrayInputStream(s.getBytes()));
+        os = new ByteArrayOutputStream();
+        p.writeTo(o, (Class)Tags.class, Tags.class, Tags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        assertEquals(s, os.toString());
+    }
+    
+    @Test
+    public void testReadStreaming() throws Exception {
+        JSONProvider p = new JSONProvider();
+        p.setStreaming(true);
+        String data = "{\"ManyTags\":{\"tags\":{\"list\":{\"group\":\"b\",\"name\":\"a\"}}}}";
+        
+        Object o = p.readFrom((Class)ManyTags.class, ManyTags.class, ManyTags.class.getAnnotations(), 
+                              MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, String>(), 
+                              new ByteArrayInputStream(data.getBytes()));
+        ManyTags many = (ManyTags)o;
+        
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        p.writeTo(many.getTags(), (Class)Tags.class, Tags.class, Tags.class.getAnnotations(), 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        assertEquals("{\"Tags\":{\"list\":{\"group\":\"b\",\"name\":\"a\"}}}", os.toString());
+    }
+    
+    @Test
+    public void testWriteReadCollectionStreaming() throws Exception {
+        JSONProvider p = new JSONProvider();
+        Type genericType = JSONProviderTest.class.getDeclaredMethod("tagsList").getGenericReturnType();
+        assertFalse(p.isWriteable(List.class, genericType, new Annotation[]{}, 
+                                  MediaType.APPLICATION_JSON_TYPE));
+        p.setStreaming(true);
+        assertTrue(p.isWriteable(List.class, genericType, new Annotation[]{}, 
+                                 MediaType.APPLICATION_JSON_TYPE));
+        
+        List<Tags> list = new ArrayList<Tags>();
+        for (int i = 0; i < 2; i++) {
+            Tags tags = new Tags();
+            tags.addTag(createTag("a" + i, "b" + i));
+            list.add(tags);
+        }
+        
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        p.writeTo(list, (Class)List.class, genericType, new Annotation[]{}, 
+                  MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), os);
+        String s = os.toString();
+        assertEquals("{\"Tags\":[{\"list\":{\"group\":\"b0\",\"name\":\"a0\"}},"
+                     + "{\"list\":{\"group\":\"b1\",\"name\":\"a1\"}}]}", s);
+        
+        Object o = p.readFrom((Class)Tags[].class, Tags[].class, new Annotation[]{}, 
+                              MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, String>(), 
+                              new ByteArrayInputStream(s.getBytes()));
+        Tags[] array = (Tags[])o;
+        assertEquals(2, array.length);
+    }
+    
+    public List<Tags> tagsList() {
+        return null;
+    }
+    
     private TagVO createTag(String name, String group) {
         return new TagVO(name, group);
     }
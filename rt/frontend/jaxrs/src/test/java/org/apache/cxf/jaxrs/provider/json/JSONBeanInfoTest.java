@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlEnumValue;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.XmlValue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONBeanInfoTest extends Assert {
+
+    private static final String BOOK_JSON =
+        "{\"book\":{\"@id\":123,\"name\":\"CXF in Action\",\"price\":9.5,"
+        + "\"chapters\":{\"chapter\":[{\"number\":1,\"title\":\"Intro\"},{\"number\":2,\"title\":\"REST\"}]},"
+        + "\"tags\":[\"soap\",\"rest\"],\"status\":\"in-print\"}}";
+
+    @Test
+    public void testWriteElement() throws Exception {
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        assertEquals("book", info.getRootKey());
+        assertEquals(BOOK_JSON, write(info, createBook()));
+    }
+
+    @Test
+    public void testReadElement() throws Exception {
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        Book book = (Book)info.readElement(new JSONStreamReader(new StringReader(BOOK_JSON)));
+        assertBook(book);
+        assertEquals(2, book.chapters.get(1).getNumber());
+        assertEquals("REST", book.chapters.get(1).getTitle());
+        assertEquals(BOOK_JSON, write(info, book));
+    }
+
+    @Test
+    public void testReadMappedConventionElement() throws Exception {
+        // numbers as strings, single items not in arrays, unknown and empty keys
+        String json = "{\"book\":{\"@id\":\"123\",\"name\":\"CXF in Action\",\"price\":\"9.5\","
+            + "\"unknown\":{\"a\":[1,{\"b\":null}]},"
+            + "\"chapters\":{\"chapter\":{\"number\":\"1\",\"title\":\"Intro\"}},"
+            + "\"tags\":\"soap\",\"status\":\"in-print\",\"cached\":\"x\"}}";
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        Book book = (Book)info.readElement(new JSONStreamReader(new StringReader(json)));
+        assertBook(book);
+        assertEquals(1, book.chapters.size());
+        assertEquals(Arrays.asList("soap"), Arrays.asList(book.tags));
+        assertNull(book.cached);
+    }
+
+    @Test
+    public void testReadUnexpectedRoot() throws Exception {
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        try {
+            info.readElement(new JSONStreamReader(new StringReader("{\"chapter\":{}}")));
+            fail("Unexpected root accepted");
+        } catch (java.io.IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteAndReadElements() throws Exception {
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        List<Book> books = new ArrayList<Book>();
+        for (int i = 0; i < 3; i++) {
+            books.add(createBook());
+        }
+        StringWriter sw = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(sw);
+        info.writeElements(books.iterator(), writer);
+        writer.flush();
+        String json = sw.toString();
+        assertTrue(json.startsWith("{\"book\":[{\"@id\":123,"));
+
+        List<Object> read = new ArrayList<Object>();
+        info.readElements(new JSONStreamReader(new StringReader(json)), read);
+        assertEquals(3, read.size());
+        assertBook((Book)read.get(2));
+
+        String array = json.substring("{\"book\":".length(), json.length() - 1);
+        read.clear();
+        info.readElements(new JSONStreamReader(new StringReader(array)), read);
+        assertEquals(3, read.size());
+    }
+
+    @Test
+    public void testValueAndAttributes() throws Exception {
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Price.class);
+        Price price = new Price();
+        price.amount = new BigDecimal("10.50");
+        assertEquals("{\"price\":10.50}", write(info, price));
+        price.currency = "EUR";
+        String json = write(info, price);
+        assertEquals("{\"price\":{\"@currency\":\"EUR\",\"$\":10.50}}", json);
+
+        price = (Price)info.readElement(new JSONStreamReader(new StringReader(json)));
+        assertEquals("EUR", price.currency);
+        assertEquals(new BigDecimal("10.50"), price.amount);
+        price = (Price)info.readElement(new JSONStreamReader(new StringReader("{\"price\":\"3\"}")));
+        assertNull(price.currency);
+        assertEquals(new BigDecimal("3"), price.amount);
+    }
+
+    @Test
+    public void testPropOrderAndNamespaces() throws Exception {
+        JSONBeanContext context =
+            new JSONBeanContext(Collections.singletonMap("http://books", "b"));
+        JSONBeanInfo info = context.getBeanInfo(Ordered.class);
+        Ordered o = new Ordered();
+        o.a = "1";
+        o.b = "2";
+        assertEquals("{\"b.ordered\":{\"b.second\":\"2\",\"a\":\"1\"}}", write(info, o));
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        JSONBeanContext context = new JSONBeanContext();
+        assertNull(context.getBeanInfo(WithMap.class));
+        assertNull(context.getBeanInfo(HasUnsupported.class));
+        assertNull(context.getBeanInfo(String.class));
+        assertSame(context.getBeanInfo(Book.class), context.getBeanInfo(Book.class));
+    }
+
+    @Test
+    public void testSingleItems() throws Exception {
+        Book book = createBook();
+        book.chapters.remove(1);
+        book.tags = new String[] {"soap"};
+        String json = "{\"book\":{\"@id\":123,\"name\":\"CXF in Action\",\"price\":9.5,"
+            + "\"chapters\":{\"chapter\":{\"number\":1,\"title\":\"Intro\"}},"
+            + "\"tags\":\"soap\",\"status\":\"in-print\"}}";
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        assertEquals(json, write(info, book));
+        assertEquals(json, write(info, info.readElement(new JSONStreamReader(new StringReader(json)))));
+    }
+
+    @Test
+    public void testArrayKeys() throws Exception {
+        Book book = createBook();
+        book.chapters.remove(1);
+        book.tags = new String[] {"soap"};
+        JSONBeanContext context = new JSONBeanContext(null, Arrays.asList("book", "chapter", "tags", "name"));
+        JSONBeanInfo info = context.getBeanInfo(Book.class);
+        String json = "{\"book\":[{\"@id\":123,\"name\":[\"CXF in Action\"],\"price\":9.5,"
+            + "\"chapters\":{\"chapter\":[{\"number\":1,\"title\":\"Intro\"}]},"
+            + "\"tags\":[\"soap\"],\"status\":\"in-print\"}]}";
+        assertEquals(json, write(info, book));
+        book = (Book)info.readElement(new JSONStreamReader(new StringReader(json)));
+        assertBook(book);
+        assertEquals(json, write(info, book));
+    }
+
+    @Test
+    public void testSubclassValues() throws Exception {
+        Book book = createBook();
+        book.chapters.set(1, new NamedChapter(2, "REST", "Resources"));
+        JSONBeanInfo info = new JSONBeanContext().getBeanInfo(Book.class);
+        String json = write(info, book);
+        assertTrue(json, json.contains(
+            "{\"number\":2,\"title\":\"REST\",\"subtitle\":\"Resources\"}"));
+    }
+
+    @Test
+    public void testSeeAlsoUnsupported() throws Exception {
+        JSONBeanContext context = new JSONBeanContext();
+        assertNull(context.getBeanInfo(Shelf.class));
+        assertNotNull(context.getBeanInfo(NamedChapter.class));
+    }
+
+    private static String write(JSONBeanInfo info, Object bean) throws Exception {
+        StringWriter sw = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(sw);
+        info.writeElement(bean, writer);
+        writer.flush();
+        return sw.toString();
+    }
+
+    private static Book createBook() {
+        Book book = new Book();
+        book.id = 123;
+        book.name = "CXF in Action";
+        book.price = 9.5;
+        book.chapters.add(new Chapter(1, "Intro"));
+        book.chapters.add(new Chapter(2, "REST"));
+        book.tags = new String[] {"soap", "rest"};
+        book.status = Status.IN_PRINT;
+        book.cached = "cached";
+        book.temp = "temp";
+        return book;
+    }
+
+    private static void assertBook(Book book) {
+        assertEquals(123L, book.id);
+        assertEquals("CXF in Action", book.name);
+        assertEquals(Double.valueOf(9.5), book.price);
+        assertEquals(1, book.chapters.get(0).getNumber());
+        assertEquals("Intro", book.chapters.get(0).getTitle());
+        assertEquals("soap", book.tags[0]);
+        assertSame(Status.IN_PRINT, book.status);
+    }
+
+    @XmlRootElement(name = "book")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Book {
+        @XmlAttribute
+        private long id;
+        private String name;
+        private Double price;
+        @XmlElementWrapper(name = "chapters")
+        @XmlElement(name = "chapter")
+        private List<Chapter> chapters = new ArrayList<Chapter>();
+        private String[] tags;
+        private Status status;
+        @XmlTransient
+        private String cached;
+        private transient String temp;
+    }
+
+    public static class Chapter {
+        private int number;
+        private String title;
+
+        public Chapter() {
+        }
+
+        public Chapter(int number, String title) {
+            this.number = number;
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public void setNumber(int number) {
+            this.number = number;
+        }
+    }
+
+    public static class NamedChapter extends Chapter {
+        private String subtitle;
+
+        public NamedChapter() {
+        }
+
+        public NamedChapter(int number, String title, String subtitle) {
+            super(number, title);
+            this.subtitle = subtitle;
+        }
+
+        public String getSubtitle() {
+            return subtitle;
+        }
+
+        public void setSubtitle(String subtitle) {
+            this.subtitle = subtitle;
+        }
+    }
+
+    @XmlSeeAlso(NamedChapter.class)
+    public static class PolymorphicChapter extends Chapter {
+    }
+
+    @XmlRootElement
+    public static class Shelf {
+        public PolymorphicChapter chapter;
+    }
+
+    public enum Status {
+        @XmlEnumValue("in-print") IN_PRINT,
+        OUT_OF_PRINT
+    }
+
+    @XmlRootElement
+    public static class Price {
+        @XmlAttribute
+        private String currency;
+        @XmlValue
+        private BigDecimal amount;
+    }
+
+    @XmlRootElement(namespace = "http://books")
+    @XmlType(propOrder = {"b", "a" })
+    public static class Ordered {
+        public String a;
+        @XmlElement(name = "second", namespace = "http://books")
+        public String b;
+    }
+
+    @XmlRootElement
+    public static class WithMap {
+        public Map<String, String> values;
+    }
+
+    @XmlRootElement
+    public static class HasUnsupported {
+        public WithMap withMap;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.provider.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONStreamReaderTest extends Assert {
+
+    @Test
+    public void testTokens() throws Exception {
+        JSONStreamReader r = new JSONStreamReader(new StringReader(
+            " {\"a\" : [1, -2.5e3, \"x\\\"\\u0041\\n\", true, false, null, {}, []], \"b\":{\"c\":0}} "));
+        assertEquals(JSONStreamReader.START_OBJECT, r.next());
+        assertEquals(JSONStreamReader.NAME, r.next());
+        assertEquals("a", r.getText());
+        assertEquals(JSONStreamReader.START_ARRAY, r.next());
+        assertEquals(JSONStreamReader.NUMBER, r.next());
+        assertEquals("1", r.getText());
+        assertEquals(JSONStreamReader.NUMBER, r.next());
+        assertEquals("-2.5e3", r.getText());
+        assertEquals(JSONStreamReader.STRING, r.next());
+        assertEquals("x\"A\n", r.getText());
+        assertEquals(JSONStreamReader.TRUE, r.next());
+        assertEquals(JSONStreamReader.FALSE, r.next());
+        assertEquals(JSONStreamReader.NULL, r.next());
+        assertEquals(JSONStreamReader.START_OBJECT, r.next());
+        assertEquals(JSONStreamReader.END_OBJECT, r.next());
+        assertEquals(JSONStreamReader.START_ARRAY, r.next());
+        assertEquals(JSONStreamReader.END_ARRAY, r.next());
+        assertEquals(JSONStreamReader.END_ARRAY, r.next());
+        assertEquals(JSONStreamReader.NAME, r.next());
+        assertEquals("b", r.getText());
+        assertEquals(JSONStreamReader.START_OBJECT, r.next());
+        r.skipValue();
+        assertEquals(1, r.getDepth());
+        assertEquals(JSONStreamReader.END_OBJECT, r.next());
+        assertEquals(JSONStreamReader.END_DOCUMENT, r.next());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        String[] docs = {"", "{", "{\"a\"}", "{\"a\":1,}", "[1 2]", "[01]", "{a:1}", "[tru]",
+                         "[\"a]", "{} {}", "[-]", "[1.]", "[\"\\x\"]"};
+        for (String doc : docs) {
+            JSONStreamReader r = new JSONStreamReader(new StringReader(doc));
+            try {
+                while (r.next() != JSONStreamReader.END_DOCUMENT) {
+                    // read on
+                }
+                fail("Malformed JSON accepted : " + doc);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndReadLongText() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("line ").append(i).append("\t\"quoted\"\u2028\n");
+        }
+        String text = sb.toString();
+
+        StringWriter sw = new StringWriter();
+        JSONStreamWriter w = new JSONStreamWriter(sw);
+        w.startObject().name("text").value(text).name("items").startArray();
+        w.literal("1").value("two").startObject().endObject().endArray().endObject();
+        w.flush();
+        String json = sw.toString();
+        assertTrue(json.startsWith("{\"text\":\"line 0\\t\\\"quoted\\\"\\u2028\\nline 1"));
+        assertTrue(json.endsWith("\",\"items\":[1,\"two\",{}]}"));
+
+        JSONStreamReader r = new JSONStreamReader(new StringReader(json));
+        assertEquals(JSONStreamReader.START_OBJECT, r.next());
+        assertEquals(JSONStreamReader.NAME, r.next());
+        assertEquals(JSONStreamReader.STRING, r.next());
+        assertEquals(text, r.getText());
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.cxf.jaxws.handler.logical;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
@@ -36,6 +37,7 @@ import org.apache.cxf.jaxws.handler.soap.SOAPHandlerInterceptor;
 import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.Phase;
+import org.apache.cxf.staxutils.StaxSource;
 import org.apache.cxf.staxutils.StaxUtils;
 import org.apache.cxf.staxutils.W3CDOMStreamWriter;
 
@@ -113,6 +115,16 @@ public class LogicalHandlerInInterceptor<T extends Message>
             String ln = dsrc.getNode().getLocalName();
             String ns = dsrc.getNode().getNamespaceURI();
             return new QName(ns, ln);
+        } else if (src instanceof StaxSource) {
+            XMLStreamReader reader = ((StaxSource)src).getXMLStreamReader();
+            try {
+                if (reader.getEventType() != XMLStreamReader.START_ELEMENT) {
+                    reader.nextTag();
+                }
+                return reader.getName();
+            } catch (XMLStreamException e) {
+                return null;
+            }
         }
         return null;
     }
@@ -37,6 +37,7 @@ import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.ws.LogicalMessage;
@@ -54,11 +55,26 @@ import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.io.CachedOutputStream;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.message.XMLMessage;
+import org.apache.cxf.staxutils.FragmentStreamReader;
+import org.apache.cxf.staxutils.StaxSource;
 import org.apache.cxf.staxutils.StaxUtils;
+import org.apache.cxf.staxutils.W3CDOMStreamReader;
 import org.apache.cxf.staxutils.W3CDOMStreamWriter;
+import org.apache.cxf.staxutils.XMLStreamEventBuffer;
 
 
 public class LogicalMessageImpl implements LogicalMessage {
+    /**
+     * The contextual property naming the type of Source {@link #getPayload()} 
+     * returns, as a Class or a class name.  The default, DOMSource, reads the 
+     * payload into a DOM.  SAXSource, or the StaxSource subclass of it which 
+     * also gives access to an XMLStreamReader, reads the payload as a stream 
+     * and records the events read into an {@link XMLStreamEventBuffer}, from 
+     * which the payload is read again by the next handler or the databinding.
+     */
+    public static final String PAYLOAD_SOURCE_TYPE = 
+        "org.apache.cxf.jaxws.handler.logical.payloadSourceType";
+    
     private static final Logger LOG = LogUtils.getL7dLogger(LogicalMessageImpl.class);
     private final LogicalMessageContextImpl msgContext;
     
@@ -67,75 +83,128 @@ public class LogicalMessageImpl implements LogicalMessage {
     }
 
     public Source getPayload() {
-        Source source = null;
-
+        return getPayload(getPayloadSourceType());
+    }
+    
+    /**
+     * @param type DOMSource for a DOM of the payload, SAXSource or StaxSource 
+     * for a view of it that may be read once, see {@link #PAYLOAD_SOURCE_TYPE}
+     * @return the payload
+     */
+    public Source getPayload(Class<? extends Source> type) {
         Service.Mode mode = msgContext.getWrappedMessage().getExchange().get(Service.Mode.class);
         
         if (mode != null) {
             //Dispatch/Provider case
-            source = handleDispatchProviderCase(mode);
-        } else {
-            Message message = msgContext.getWrappedMessage();
-            source = message.getContent(Source.class);
-            if (source == null) {
-                // need to convert
-                SOAPMessage msg = message.getContent(SOAPMessage.class);
-                XMLStreamReader reader = null;
-                if (msg != null) {
-                    try {
-                        Node node = msg.getSOAPBody().getFirstChild();
-                        while (node != null && !(node instanceof Element))  {
-                            node = node.getNextSibling();
-                        }
-                        source = new DOMSource(node);
-                        reader = StaxUtils.createXMLStreamReader(source);
-                    } catch (SOAPException e) {
-                        throw new Fault(e);
-                    }
-                }
-
-                if (source == null) {
-                    try {
-                        W3CDOMStreamWriter writer = new W3CDOMStreamWriter();
-                        reader = message.getContent(XMLStreamReader.class);
-                        //content must be an element thing, skip over any whitespace
-                        StaxUtils.toNextTag(reader);
-                        StaxUtils.copy(reader, writer);
-                        source = new DOMSource(writer.getDocument().getDocumentElement());
-                        reader = StaxUtils.createXMLStreamReader(writer.getDocument());
-                    } catch (ParserConfigurationException e) {
-                        throw new Fault(e);
-                    } catch (XMLStreamException e) {
-                        throw new Fault(e);
-                    }
+            return handleDispatchProviderCase(mode);
+        } else if (type == SAXSource.class || type == StaxSource.class) {
+            return getStreamedPayload(msgContext.getWrappedMessage());
+        }
+        return getDOMPayload(msgContext.getWrappedMessage());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Class<? extends Source> getPayloadSourceType() {
+        Object type = msgContext.getWrappedMessage().getContextualProperty(PAYLOAD_SOURCE_TYPE);
+        if (type instanceof Class) {
+            return (Class<? extends Source>)type;
+        } else if (SAXSource.class.getName().equals(type) 
+            || StaxSource.class.getName().equals(type)) {
+            return StaxSource.class;
+        }
+        return DOMSource.class;
+    }
+    
+    private Source getStreamedPayload(Message message) {
+        XMLStreamEventBuffer buffer = message.getContent(XMLStreamEventBuffer.class);
+        if (buffer == null) {
+            XMLStreamReader reader = message.getContent(XMLStreamReader.class);
+            if (message.getContent(Source.class) != null 
+                || message.getContent(SOAPMessage.class) != null
+                || reader == null) {
+                // the payload has been read into a DOM already
+                Source source = getDOMPayload(message);
+                if (source instanceof DOMSource && ((DOMSource)source).getNode() instanceof Element) {
+                    FragmentStreamReader fragment = new FragmentStreamReader(
+                        new W3CDOMStreamReader((Element)((DOMSource)source).getNode()));
+                    fragment.setAdvanceAtEnd(false);
+                    return new StaxSource(fragment);
                 }
-                message.setContent(XMLStreamReader.class, reader);
-                message.setContent(Source.class, source);
-            } else if (!(source instanceof DOMSource)) {
-                W3CDOMStreamWriter writer;
+                return source;
+            }
+            //content must be an element thing, skip over any whitespace
+            StaxUtils.toNextTag(reader);
+            if (reader.getEventType() != XMLStreamReader.START_ELEMENT) {
+                return getDOMPayload(message);
+            }
+            buffer = new XMLStreamEventBuffer(reader);
+            message.setContent(XMLStreamEventBuffer.class, buffer);
+            message.setContent(XMLStreamReader.class, buffer.getReader());
+        }
+        return new StaxSource(buffer.getFragmentReader());
+    }
+    
+    private Source getDOMPayload(Message message) {
+        Source source = message.getContent(Source.class);
+        if (source == null) {
+            // need to convert
+            SOAPMessage msg = message.getContent(SOAPMessage.class);
+            XMLStreamReader reader = null;
+            if (msg != null) {
                 try {
-                    writer = new W3CDOMStreamWriter();
-                } catch (ParserConfigurationException e) {
-                    throw new Fault(e);
-                }
-                XMLStreamReader reader = message.getContent(XMLStreamReader.class);
-                if (reader == null) {
+                    Node node = msg.getSOAPBody().getFirstChild();
+                    while (node != null && !(node instanceof Element))  {
+                        node = node.getNextSibling();
+                    }
+                    source = new DOMSource(node);
                     reader = StaxUtils.createXMLStreamReader(source);
+                } catch (SOAPException e) {
+                    throw new Fault(e);
                 }
+            }
+
+            if (source == null) {
                 try {
+                    W3CDOMStreamWriter writer = new W3CDOMStreamWriter();
+                    reader = message.getContent(XMLStreamReader.class);
+                    //content must be an element thing, skip over any whitespace
+                    StaxUtils.toNextTag(reader);
                     StaxUtils.copy(reader, writer);
+                    source = new DOMSource(writer.getDocument().getDocumentElement());
+                    reader = StaxUtils.createXMLStreamReader(writer.getDocument());
+                } catch (ParserConfigurationException e) {
+                    throw new Fault(e);
                 } catch (XMLStreamException e) {
                     throw new Fault(e);
                 }
+            }
+            message.setContent(XMLStreamReader.class, reader);
+            message.setContent(Source.class, source);
+            message.removeContent(XMLStreamEventBuffer.class);
+        } else if (!(source instanceof DOMSource)) {
+            W3CDOMStreamWriter writer;
+            try {
+                writer = new W3CDOMStreamWriter();
+            } catch (ParserConfigurationException e) {
+                throw new Fault(e);
+            }
+            XMLStreamReader reader = message.getContent(XMLStreamReader.class);
+            if (reader == null) {
+                reader = StaxUtils.createXMLStreamReader(source);
+            }
+            try {
+                StaxUtils.copy(reader, writer);
+            } catch (XMLStreamException e) {
+                throw new Fault(e);
+            }
 
-                source = new DOMSource(writer.getDocument().getDocumentElement());
+            source = new DOMSource(writer.getDocument().getDocumentElement());
 
-                reader = StaxUtils.createXMLStreamReader(writer.getDocument());
-                message.setContent(XMLStreamReader.class, reader);
-                message.setContent(Source.class, source);
-            }
+            reader = StaxUtils.createXMLStreamReader(writer.getDocument());
+            message.setContent(XMLStreamReader.class, reader);
+            message.setContent(Source.class, source);
+            message.removeContent(XMLStreamEventBuffer.class);
         }
-
         return source;
     }
 
@@ -190,6 +259,7 @@ public class LogicalMessageImpl implements LogicalMessage {
 
     public void setPayload(Source s) {       
         Message message = msgContext.getWrappedMessage();
+        message.removeContent(XMLStreamEventBuffer.class);
         Service.Mode mode = (Service.Mode)msgContext.getWrappedMessage()
             .getContextualProperty(Service.Mode.class.getName());
         if (mode != null) {
@@ -220,7 +290,12 @@ public class LogicalMessageImpl implements LogicalMessage {
 
     public Object getPayload(JAXBContext arg0) {
         try {
-            return arg0.createUnmarshaller().unmarshal(getPayload());
+            // unmarshal straight from the stream unless there is a DOM already
+            Source source = getPayload(StaxSource.class);
+            if (source instanceof StaxSource) {
+                return arg0.createUnmarshaller().unmarshal(((StaxSource)source).getXMLStreamReader());
+            }
+            return arg0.createUnmarshaller().unmarshal(source);
         } catch (JAXBException e) {
             throw new WebServiceException(e);
         }
@@ -48,6 +48,7 @@ import org.apache.cxf.binding.soap.interceptor.AbstractSoapInterceptor;
 import org.apache.cxf.binding.soap.interceptor.MustUnderstandInterceptor;
 import org.apache.cxf.binding.soap.interceptor.SoapInterceptor;
 import org.apache.cxf.binding.soap.interceptor.SoapPreProtocolOutInterceptor;
+import org.apache.cxf.binding.soap.saaj.LazySOAPMessage;
 import org.apache.cxf.binding.soap.saaj.SAAJInInterceptor;
 import org.apache.cxf.binding.soap.saaj.SAAJOutInterceptor;
 import org.apache.cxf.endpoint.Endpoint;
@@ -118,14 +119,22 @@ public class SOAPHandlerInterceptor extends
         } else {
             boolean isFault = handleMessageInternal(message);
             SOAPMessage msg = message.getContent(SOAPMessage.class);
-            if (msg != null) {
+            if (LazySOAPMessage.isBodyPending(msg)) {
+                // the handlers left the body alone, keep streaming it
+                try {
+                    SAAJInInterceptor.replaceHeaders(msg, message);
+                } catch (SOAPException e) {
+                    throw new Fault(e);
+                }
+                message.removeContent(SOAPMessage.class);
+            } else if (msg != null) {
                 XMLStreamReader xmlReader = createXMLStreamReaderFromSOAPMessage(msg);
                 message.setContent(XMLStreamReader.class, xmlReader);
                 // replace headers
                 try {
                     SAAJInInterceptor.replaceHeaders(msg, message);
                 } catch (SOAPException e) {
-                    e.printStackTrace();
+                    throw new Fault(e);
                 }
             }
             if (isFault) {
@@ -254,7 +263,9 @@ public class SOAPHandlerInterceptor extends
                     }
                 }
             }
-            if (msg.getSOAPPart().getEnvelope().getBody() != null 
+            // a lazily read body is never a fault
+            if (!LazySOAPMessage.isBodyPending(msg)
+                && msg.getSOAPPart().getEnvelope().getBody() != null 
                 && msg.getSOAPPart().getEnvelope().getBody().hasFault()) {
                 return null;
             }            
@@ -295,6 +306,11 @@ public class SOAPHandlerInterceptor extends
             if (msg == null) {
                 return null;
             }
+            if (LazySOAPMessage.isBodyPending(msg)) {
+                // the reader is on the first child of the body
+                XMLStreamReader xmlReader = sm.getWrappedMessage().getContent(XMLStreamReader.class);
+                return xmlReader != null && xmlReader.isStartElement() ? xmlReader.getName() : null;
+            }
             SOAPBody body = msg.getSOAPBody();
             if (body == null) {
                 return null;
@@ -86,7 +86,7 @@ public class SOAPMessageContextImpl extends WrappedMessageContext implements SOA
         SOAPMessage msg = getMessage();
         SOAPHeader header;
         try {
-            header = msg.getSOAPPart().getEnvelope().getHeader();
+            header = msg.getSOAPHeader();
             if (header == null || !header.hasChildNodes()) {
                 return new Object[0];
             }
@@ -19,18 +19,28 @@
 
 package org.apache.cxf.jaxws.handler;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 
+import org.w3c.dom.Element;
+
+import org.apache.cxf.helpers.DOMUtils;
 import org.apache.cxf.jaxws.handler.logical.LogicalMessageContextImpl;
 import org.apache.cxf.jaxws.handler.logical.LogicalMessageImpl;
 import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.ExchangeImpl;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.staxutils.StaxSource;
+import org.apache.cxf.staxutils.StaxUtils;
+import org.apache.cxf.staxutils.XMLStreamEventBuffer;
 import org.apache.handlers.types.AddNumbers;
 import org.apache.handlers.types.ObjectFactory;
 import org.junit.Assert;
@@ -38,6 +48,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 public class LogicalMessageImplTest extends Assert {
+    private static final String PAYLOAD = 
+        "<addNumbers xmlns=\"http://apache.org/handlers/types\"><arg0>10</arg0><arg1>20</arg1></addNumbers>";
+    
     AddNumbers req;
     List<Object> args;
 
@@ -72,4 +85,84 @@ public class LogicalMessageImplTest extends Assert {
         assertEquals(req.getArg0(), resp.getArg0());        
         assertEquals(req.getArg1(), resp.getArg1());        
     }
+    
+    @Test
+    public void testPartialStreamedPayloadThenDatabinding() throws Exception {
+        Message message = createStreamedMessage(PAYLOAD);
+        LogicalMessageImpl lmi = new LogicalMessageImpl(new LogicalMessageContextImpl(message));
+        
+        // the handler only looks at the first argument
+        Source source = lmi.getPayload(StaxSource.class);
+        assertTrue(source instanceof StaxSource);
+        XMLStreamReader reader = ((StaxSource)source).getXMLStreamReader();
+        StaxUtils.toNextTag(reader);
+        assertEquals("addNumbers", reader.getLocalName());
+        reader.nextTag();
+        assertEquals("arg0", reader.getLocalName());
+        assertEquals("10", reader.getElementText());
+        
+        // the databinding gets the whole payload, replayed and then streamed
+        AddNumbers numbers = unmarshal(message.getContent(XMLStreamReader.class));
+        assertEquals(10, numbers.getArg0());
+        assertEquals(20, numbers.getArg1());
+    }
+    
+    @Test
+    public void testGetPayloadOfJAXBThenDOM() throws Exception {
+        Message message = createStreamedMessage(PAYLOAD);
+        LogicalMessageImpl lmi = new LogicalMessageImpl(new LogicalMessageContextImpl(message));
+        
+        JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class);
+        Object obj = lmi.getPayload(ctx);
+        assertEquals(20, ((AddNumbers)((JAXBElement)obj).getValue()).getArg1());
+        
+        Source source = lmi.getPayload();
+        assertTrue(source instanceof DOMSource);
+        Element el = (Element)((DOMSource)source).getNode();
+        assertEquals("addNumbers", el.getLocalName());
+        Element arg1 = DOMUtils.getNextElement(DOMUtils.getFirstElement(el));
+        assertEquals("arg1", arg1.getLocalName());
+        assertEquals("20", DOMUtils.getContent(arg1));
+        
+        // the DOM is read again for the databinding
+        assertNull(message.getContent(XMLStreamEventBuffer.class));
+        assertEquals(10, unmarshal(message.getContent(XMLStreamReader.class)).getArg0());
+    }
+    
+    @Test
+    public void testSetPayloadAfterStreamedPayload() throws Exception {
+        Message message = createStreamedMessage(PAYLOAD);
+        LogicalMessageImpl lmi = new LogicalMessageImpl(new LogicalMessageContextImpl(message));
+        
+        XMLStreamReader reader = ((StaxSource)lmi.getPayload(StaxSource.class)).getXMLStreamReader();
+        StaxUtils.toNextTag(reader);
+        assertEquals("addNumbers", reader.getLocalName());
+        
+        String payload = PAYLOAD.replace(">10<", ">1<").replace(">20<", ">2<");
+        Element replacement = StaxUtils.read(StaxUtils.createXMLStreamReader(new StringReader(payload)))
+            .getDocumentElement();
+        lmi.setPayload(new DOMSource(replacement));
+        assertNull(message.getContent(XMLStreamEventBuffer.class));
+        
+        // the next handler and the databinding see the new payload
+        Object obj = lmi.getPayload(JAXBContext.newInstance(ObjectFactory.class));
+        assertEquals(1, ((AddNumbers)((JAXBElement)obj).getValue()).getArg0());
+        AddNumbers numbers = unmarshal(message.getContent(XMLStreamReader.class));
+        assertEquals(1, numbers.getArg0());
+        assertEquals(2, numbers.getArg1());
+    }
+    
+    private static Message createStreamedMessage(String payload) {
+        Message message = new MessageImpl();
+        message.setExchange(new ExchangeImpl());
+        message.setContent(XMLStreamReader.class, 
+                           StaxUtils.createXMLStreamReader(new StringReader(payload)));
+        return message;
+    }
+    
+    private static AddNumbers unmarshal(XMLStreamReader reader) throws Exception {
+        JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class);
+        StaxUtils.toNextTag(reader);
+        return ctx.createUnmarshaller().unmarshal(reader, AddNumbers.class).getValue();
+    }
 }
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.management.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, log-linear histogram of non-negative values, in the style of 
+ * HdrHistogram.  Values below 2^SUB_BUCKET_BITS are counted exactly.  Larger
+ * values share a bucket with the values of the same magnitude that agree in 
+ * their top SUB_BUCKET_BITS bits, so the relative error is bounded by about 
+ * 3% whatever the value.  Recording is lock free; percentiles are computed 
+ * from a pass over the buckets and are only approximate while values are 
+ * being recorded concurrently.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // values above 2^MAX_BITS - 1 (about 19 hours in microseconds) are clamped 
+    private static final int MAX_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_BITS - SUB_BUCKET_BITS + 1);
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    
+    public void record(long value) {
+        counts.incrementAndGet(indexFor(value));
+    }
+    
+    static int indexFor(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT * (shift + 1) + subBucket;
+    }
+    
+    /**
+     * Returns the middle of the range of values counted in the bucket.
+     */
+    static long valueFor(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long)(SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+    
+    /**
+     * @param percentile between 0 and 100
+     * @return the value below or at which the given percentage of the recorded 
+     * values fall, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * total);
+        if (target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return valueFor(i);
+            }
+        }
+        return valueFor(BUCKET_COUNT - 1);
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.cxf.management.counters;
 
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.ObjectName;
 
@@ -33,9 +34,11 @@ public class ResponseTimeCounter implements ResponseTimeCounterMBean, Counter {
     private AtomicInteger unCheckedApplicationFaults = new AtomicInteger();
     private AtomicInteger runtimeFaults = new AtomicInteger();
     private AtomicInteger logicalRuntimeFaults = new AtomicInteger();
-    private long totalHandlingTime;    
-    private long maxHandlingTime;
-    private long minHandlingTime = Integer.MAX_VALUE;
+    private StripedLongCounter totalHandlingTime = new StripedLongCounter();
+    private AtomicLong maxHandlingTime = new AtomicLong();
+    private AtomicLong minHandlingTime = new AtomicLong(Integer.MAX_VALUE);
+    // only holds the handling times that were actually measured
+    private LatencyHistogram histogram = new LatencyHistogram();
     
     public ResponseTimeCounter(ObjectName on) {
         objectName = on;     
@@ -71,17 +74,21 @@ public class ResponseTimeCounter implements ResponseTimeCounterMBean, Counter {
             // We can count the response time 
             if (mhtr.getEndTime() > 0) {
                 handlingTime = mhtr.getHandlingTime(); 
+                histogram.record(handlingTime);
             }    
         } else {
             handlingTime = mhtr.getHandlingTime(); 
+            histogram.record(handlingTime);
         }
             
-        totalHandlingTime = totalHandlingTime + handlingTime;
-        if (maxHandlingTime < handlingTime) {
-            maxHandlingTime = handlingTime;
+        totalHandlingTime.add(handlingTime);
+        long max = maxHandlingTime.get();
+        while (max < handlingTime && !maxHandlingTime.compareAndSet(max, handlingTime)) {
+            max = maxHandlingTime.get();
         }
-        if (minHandlingTime > handlingTime) {
-            minHandlingTime = handlingTime;
+        long min = minHandlingTime.get();
+        while (min > handlingTime && !minHandlingTime.compareAndSet(min, handlingTime)) {
+            min = minHandlingTime.get();
         }
     }
     
@@ -90,15 +97,32 @@ public class ResponseTimeCounter implements ResponseTimeCounterMBean, Counter {
     }
 
     public Number getAvgResponseTime() {        
-        return (int)(totalHandlingTime / invocations.get());
+        int count = invocations.get();
+        return count == 0 ? 0 : (int)(totalHandlingTime.sum() / count);
     }
     
     public Number getMaxResponseTime() {        
-        return maxHandlingTime;
+        return maxHandlingTime.get();
     }
 
     public Number getMinResponseTime() {        
-        return minHandlingTime;
+        return minHandlingTime.get();
+    }
+    
+    public Number getResponseTime50thPercentile() {
+        return histogram.getValueAtPercentile(50.0);
+    }
+    
+    public Number getResponseTime90thPercentile() {
+        return histogram.getValueAtPercentile(90.0);
+    }
+    
+    public Number getResponseTime99thPercentile() {
+        return histogram.getValueAtPercentile(99.0);
+    }
+    
+    public Number getResponseTime999thPercentile() {
+        return histogram.getValueAtPercentile(99.9);
     }
 
     public Number getNumInvocations() {        
@@ -122,7 +146,19 @@ public class ResponseTimeCounter implements ResponseTimeCounterMBean, Counter {
     }
     
     public Number getTotalHandlingTime() {        
-        return totalHandlingTime;
+        return totalHandlingTime.sum();
     }  
+    
+    public void reset() {
+        invocations.set(0);
+        checkedApplicationFaults.set(0);
+        unCheckedApplicationFaults.set(0);
+        runtimeFaults.set(0);
+        logicalRuntimeFaults.set(0);
+        totalHandlingTime.reset();
+        maxHandlingTime.set(0);
+        minHandlingTime.set(Integer.MAX_VALUE);
+        histogram.reset();
+    }
 
 }
@@ -28,4 +28,18 @@ public interface ResponseTimeCounterMBean {
     Number getMaxResponseTime();
     Number getMinResponseTime();   
     Number getTotalHandlingTime();
+    
+    /**
+     * Response time percentiles, in microseconds like the other response times,
+     * computed from a histogram with a relative error of about 3%.
+     */
+    Number getResponseTime50thPercentile();
+    Number getResponseTime90thPercentile();
+    Number getResponseTime99thPercentile();
+    Number getResponseTime999thPercentile();
+    
+    /**
+     * Starts a new measurement interval by clearing all the counts.
+     */
+    void reset();
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.management.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sum that is spread over several cells so that concurrent threads mostly 
+ * update different cache lines.  Reading the sum is comparatively expensive
+ * and not atomic with respect to concurrent updates.
+ */
+class StripedLongCounter {
+    // cells are PADDING longs apart so that two cells never share a cache line
+    private static final int PADDING = 8;
+    
+    private final AtomicLongArray cells;
+    private final int mask;
+    
+    StripedLongCounter() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        mask = stripes - 1;
+        cells = new AtomicLongArray(stripes * PADDING);
+    }
+    
+    void add(long value) {
+        int stripe = (int)(Thread.currentThread().getId() & mask);
+        cells.addAndGet(stripe * PADDING, value);
+    }
+    
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+    
+    void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.management.counters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest extends Assert {
+    
+    @Test
+    public void testBucketsCoverValues() {
+        int last = -1;
+        for (long v = 0; v < 1L << 20; v += 7) {
+            int index = LatencyHistogram.indexFor(v);
+            assertTrue(index >= last);
+            last = index;
+            long mid = LatencyHistogram.valueFor(index);
+            assertTrue("value " + v + " bucket value " + mid, Math.abs(mid - v) <= v / 32 + 1);
+        }
+        assertEquals(LatencyHistogram.indexFor(Long.MAX_VALUE), 
+                     LatencyHistogram.indexFor((1L << 36) - 1));
+        assertEquals(0, LatencyHistogram.indexFor(-5));
+    }
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithin(500000, histogram.getValueAtPercentile(50.0));
+        assertWithin(900000, histogram.getValueAtPercentile(90.0));
+        assertWithin(990000, histogram.getValueAtPercentile(99.0));
+        assertWithin(999000, histogram.getValueAtPercentile(99.9));
+        assertWithin(1000000, histogram.getValueAtPercentile(100.0));
+        
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        histogram.record(10);
+        assertEquals(10, histogram.getValueAtPercentile(50.0));
+    }
+    
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, 
+                   Math.abs(expected - actual) <= expected / 32);
+    }
+    
+    @Test
+    public void testStripedCounter() throws Exception {
+        final StripedLongCounter counter = new StripedLongCounter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.add(2);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(80000, counter.sum());
+        counter.reset();
+        assertEquals(0, counter.sum());
+    }
+}
@@ -46,6 +46,7 @@ import org.apache.cxf.transport.AbstractTransportFactory;
 import org.apache.cxf.transport.Conduit;
 import org.apache.cxf.transport.ConduitInitiator;
 import org.apache.cxf.transport.ConduitInitiatorManager;
+import org.apache.cxf.transport.http.nio.NIOHTTPConduit;
 import org.apache.cxf.transport.https.HttpsURLConnectionFactory;
 import org.apache.cxf.ws.addressing.EndpointReferenceType;
 import org.apache.cxf.wsdl.http.AddressType;
@@ -71,6 +72,14 @@ public abstract class AbstractHTTPTransportFactory
         URI_PREFIXES.add("http://");
         URI_PREFIXES.add("https://");
     }
+    
+    /**
+     * The TLS parameters of the conduits not configured for TLS that are used
+     * with "https" addresses.  One instance so that they share an SSL socket
+     * factory.
+     */
+    private static final TLSClientParameters DEFAULT_TLS_CLIENT_PARAMETERS = 
+        new TLSClientParameters();
 
     /**
      * The CXF Bus which this HTTPTransportFactory
@@ -155,9 +164,7 @@ public abstract class AbstractHTTPTransportFactory
             EndpointInfo endpointInfo,
             EndpointReferenceType target
     ) throws IOException {
-        HTTPConduit conduit = target == null
-            ? new HTTPConduit(bus, endpointInfo)
-            : new HTTPConduit(bus, endpointInfo, target);
+        HTTPConduit conduit = createConduit(endpointInfo, target);
         // Spring configure the conduit.  
         String address = conduit.getAddress();
         if (address != null && address.indexOf('?') != -1) {
@@ -168,6 +175,22 @@ public abstract class AbstractHTTPTransportFactory
         return conduit;
     }
 
+    /**
+     * Creates the HTTPConduit, the {@link NIOHTTPConduit} if it is enabled for
+     * the endpoint.
+     */
+    protected HTTPConduit createConduit(
+            EndpointInfo endpointInfo,
+            EndpointReferenceType target
+    ) throws IOException {
+        if (NIOHTTPConduit.isEnabled(endpointInfo)) {
+            return new NIOHTTPConduit(bus, endpointInfo, target);
+        }
+        return target == null
+            ? new HTTPConduit(bus, endpointInfo)
+            : new HTTPConduit(bus, endpointInfo, target);
+    }
+
     public EndpointInfo createEndpointInfo(
         ServiceInfo serviceInfo, 
         BindingInfo b, 
@@ -265,7 +288,7 @@ public abstract class AbstractHTTPTransportFactory
         if (useHttps) {
             TLSClientParameters params = configuredConduit.getTlsClientParameters();
             if (params == null) {
-                params = new TLSClientParameters(); //use defaults
+                params = DEFAULT_TLS_CLIENT_PARAMETERS;
             }
             fac = new HttpsURLConnectionFactory(params);
         } else {
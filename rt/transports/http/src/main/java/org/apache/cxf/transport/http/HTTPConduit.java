@@ -706,7 +706,7 @@ public class HTTPConduit
      * 
      * @throws MalformedURLException
      */
-    private URL setupURL(Message message) throws MalformedURLException {
+    protected URL setupURL(Message message) throws MalformedURLException {
         String result = (String)message.get(Message.ENDPOINT_ADDRESS);
         String pathInfo = (String)message.get(Message.PATH_INFO);
         String queryString = (String)message.get(Message.QUERY_STRING);
@@ -816,7 +816,7 @@ public class HTTPConduit
      * @param message The outbound message
      * @return The PROTOCOL_HEADERS map
      */
-    private Map<String, List<String>> getSetProtocolHeaders(Message message) {
+    protected Map<String, List<String>> getSetProtocolHeaders(Message message) {
         Map<String, List<String>> headers =
             CastUtils.cast((Map<?, ?>)message.get(Message.PROTOCOL_HEADERS));        
         if (null == headers) {
@@ -893,20 +893,7 @@ public class HTTPConduit
         HttpURLConnection connection = 
             (HttpURLConnection)message.get(KEY_HTTP_CONNECTION);
 
-        String ct  = (String) message.get(Message.CONTENT_TYPE);
-        String enc = (String) message.get(Message.ENCODING);
-        
-        if (null != ct) {
-            if (enc != null 
-                && ct.indexOf("charset=") == -1
-                && !ct.toLowerCase().contains("multipart/related")) {
-                ct = ct + "; charset=" + enc;
-            }
-        } else if (enc != null) {
-            ct = "text/xml; charset=" + enc;
-        } else {
-            ct = "text/xml";
-        }
+        String ct = determineContentType(message);
         connection.setRequestProperty(HttpHeaderHelper.CONTENT_TYPE, ct);
         
         if (LOG.isLoggable(Level.FINE)) {
@@ -924,6 +911,31 @@ public class HTTPConduit
         
     }
     
+    /**
+     * Determines the Content-Type header of the request from the content
+     * type and the encoding of the message.
+     * 
+     * @param message The outbound message.
+     * @return the Content-Type header value
+     */
+    protected String determineContentType(Message message) {
+        String ct  = (String) message.get(Message.CONTENT_TYPE);
+        String enc = (String) message.get(Message.ENCODING);
+        
+        if (null != ct) {
+            if (enc != null 
+                && ct.indexOf("charset=") == -1
+                && !ct.toLowerCase().contains("multipart/related")) {
+                ct = ct + "; charset=" + enc;
+            }
+        } else if (enc != null) {
+            ct = "text/xml; charset=" + enc;
+        } else {
+            ct = "text/xml";
+        }
+        return ct;
+    }
+    
     /**
      * Set up the decoupled Destination if necessary.
      */
@@ -992,14 +1004,14 @@ public class HTTPConduit
      * 
      * @param exchange The exchange in question
      */
-    private boolean isOneway(Exchange exchange) {
+    protected boolean isOneway(Exchange exchange) {
         return exchange != null && exchange.isOneWay();
     }
     
     /**
      * @return true if expecting a decoupled response
      */
-    private boolean isDecoupled() {
+    protected boolean isDecoupled() {
         return decoupledDestination != null;
     }
     
@@ -1250,7 +1262,7 @@ public class HTTPConduit
      * @param url     The URL the message is going to.
      * @param headers The headers in the outgoing message.
      */
-    private void setHeadersByPolicy(
+    protected void setHeadersByPolicy(
         Message message,
         URL     url,
         Map<String, List<String>> headers
@@ -1616,6 +1628,27 @@ public class HTTPConduit
                 connection, currentURL, message, cachedStream);
     }
     
+    /**
+     * Closes the response of a connection that is not used any further, so 
+     * that the JDK can keep the underlying socket alive for the next request
+     * rather than dropping it, as disconnect() would.
+     * 
+     * @param connection The connection whose response is discarded.
+     */
+    private static void closeResponse(HttpURLConnection connection) {
+        try {
+            InputStream in = connection.getErrorStream();
+            if (in == null) {
+                in = connection.getInputStream();
+            }
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException ex) {
+            connection.disconnect();
+        }
+    }
+
     /**
      * This method retransmits the request.
      * 
@@ -1636,8 +1669,8 @@ public class HTTPConduit
             CacheAndWriteOutputStream stream
     ) throws IOException {
         
-        // Disconnect the old, and in with the new.
-        connection.disconnect();
+        // Done with the old, and in with the new.
+        closeResponse(connection);
         
         HTTPClientPolicy cp = getClient(message);
         connection = getConnectionFactory(newURL).createConnection(getProxy(cp), newURL);
@@ -2061,7 +2094,9 @@ public class HTTPConduit
         
             
             if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
-                throw new IOException(connection.getResponseMessage());
+                String responseMessage = connection.getResponseMessage();
+                closeResponse(connection);
+                throw new IOException(responseMessage);
             }
 
             
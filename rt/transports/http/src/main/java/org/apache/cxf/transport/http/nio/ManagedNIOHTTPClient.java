@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.management.ManagedComponent;
+import org.apache.cxf.management.ManagementConstants;
+import org.apache.cxf.management.annotation.ManagedAttribute;
+import org.apache.cxf.management.annotation.ManagedResource;
+
+@ManagedResource(componentName = "NIOHTTPClient", 
+                 description = "The connection pool of an asynchronous HTTP client", 
+                 currencyTimeLimit = 15, persistPolicy = "OnUpdate", persistPeriod = 200)
+                 
+public class ManagedNIOHTTPClient implements ManagedComponent {
+    private static final String TYPE_VALUE = "NIOHTTPClient";
+    
+    private final NIOHTTPClient client;
+    private final Bus bus;
+    
+    public ManagedNIOHTTPClient(NIOHTTPClient c, Bus b) {
+        client = c;
+        bus = b;
+    }
+    
+    @ManagedAttribute(description = "The number of open connections")
+    public int getTotalConnections() {
+        return client.getTotalConnections();
+    }
+    
+    @ManagedAttribute(description = "The number of connections with requests outstanding")
+    public int getLeasedConnections() {
+        return client.getLeasedConnections();
+    }
+    
+    @ManagedAttribute(description = "The number of pooled connections without requests outstanding")
+    public int getIdleConnections() {
+        return client.getIdleConnections();
+    }
+    
+    @ManagedAttribute(description = "The number of requests waiting for a connection")
+    public int getPendingRequests() {
+        return client.getPendingRequests();
+    }
+    
+    @ManagedAttribute(description = "The number of connections opened")
+    public long getConnectionsCreated() {
+        return client.getConnectionsCreated();
+    }
+    
+    @ManagedAttribute(description = "The number of pooled connections found closed by the server")
+    public long getStaleConnections() {
+        return client.getStaleConnections();
+    }
+    
+    @ManagedAttribute(description = "The number of connections closed for being idle")
+    public long getIdleConnectionsEvicted() {
+        return client.getIdleConnectionsEvicted();
+    }
+    
+    @ManagedAttribute(description = "The maximum number of connections per host",
+                      persistPolicy = "OnUpdate")
+    public int getMaxConnectionsPerHost() {
+        return client.getMaxConnectionsPerHost();
+    }
+    
+    public void setMaxConnectionsPerHost(int max) {
+        client.setMaxConnectionsPerHost(max);
+    }
+    
+    @ManagedAttribute(description = "The maximum number of connections",
+                      persistPolicy = "OnUpdate")
+    public int getMaxTotalConnections() {
+        return client.getMaxTotalConnections();
+    }
+    
+    public void setMaxTotalConnections(int max) {
+        client.setMaxTotalConnections(max);
+    }
+    
+    public ObjectName getObjectName() throws JMException {
+        StringBuffer buffer = new StringBuffer(ManagementConstants.DEFAULT_DOMAIN_NAME + ":");
+        buffer.append(ManagementConstants.BUS_ID_PROP + "=" + bus.getId() + ",");
+        buffer.append(ManagementConstants.TYPE_PROP + "=" + TYPE_VALUE + ",");
+        buffer.append(ManagementConstants.NAME_PROP + "=" + ObjectName.quote(client.getName()));
+        return new ObjectName(buffer.toString());
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+
+/**
+ * Receives the outcome of a request executed by a {@link NIOHTTPClient}.
+ * The methods are called on a selector thread so they must not block, 
+ * implementations hand the work over to another thread.
+ */
+public interface NIOHTTPCallback {
+    
+    /**
+     * Called once the complete response, including its body, has been read.
+     */
+    void responseReceived(NIOHTTPResponse response);
+    
+    /**
+     * Called if the request could not be sent or no complete response was read.
+     */
+    void failed(IOException ex);
+}
@@ -0,0 +1,659 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.management.InstrumentationManager;
+
+/**
+ * An asynchronous HTTP/1.1 client that multiplexes its connections over a small
+ * pool of selector threads, so that waiting for a response does not occupy a 
+ * thread.  Connections are kept alive and pooled per host, bounded by a per host 
+ * and a total limit; requests that find no connection available wait, in order, 
+ * for one.  Requests that have no side effects (GET and HEAD) may additionally 
+ * be pipelined on a connection if {@link #setMaxPipelinedRequests(int)} is greater 
+ * than one.  The pool statistics can be exposed with JMX, see {@link #manage(Bus)}.
+ * <p>
+ * All the state of a host, its connections and its queue of waiting requests,
+ * is owned by one selector thread so it needs no locking.  The callbacks are 
+ * called on that thread.
+ */
+public class NIOHTTPClient {
+    private static final Logger LOG = LogUtils.getL7dLogger(NIOHTTPClient.class);
+    private static final long CHECK_INTERVAL = 250;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static NIOHTTPClient defaultClient;
+    
+    private static final AtomicInteger CLIENT_COUNT = new AtomicInteger();
+    
+    private final ConcurrentHashMap<String, HostPool> hosts = new ConcurrentHashMap<String, HostPool>();
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final Set<String> managedBuses = new HashSet<String>();
+    private String name = "nio-http-client-" + CLIENT_COUNT.incrementAndGet();
+    private int maxConnectionsPerHost = 64;
+    private int maxTotalConnections = 512;
+    private int maxPipelinedRequests = 1;
+    private long idleTimeout = 60000;
+    private boolean staleCheckEnabled = true;
+    private volatile boolean shutdown;
+    
+    // statistics, updated by the selector threads
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger leasedConnections = new AtomicInteger();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong staleConnections = new AtomicLong();
+    private final AtomicLong idleConnectionsEvicted = new AtomicLong();
+    
+    public NIOHTTPClient() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+    
+    public NIOHTTPClient(int selectorThreads) {
+        loops = new SelectorLoop[selectorThreads];
+    }
+    
+    /**
+     * @return a client shared by all the conduits that have not been given one
+     */
+    public static synchronized NIOHTTPClient getDefaultClient() {
+        if (defaultClient == null) {
+            defaultClient = new NIOHTTPClient();
+            defaultClient.setName("default");
+        }
+        return defaultClient;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name under which the client is registered with JMX.
+     */
+    public void setName(String n) {
+        name = n;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int max) {
+        maxConnectionsPerHost = max;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    /**
+     * Sets the maximum number of connections, to all hosts together.
+     */
+    public void setMaxTotalConnections(int max) {
+        maxTotalConnections = max;
+    }
+
+    public int getMaxPipelinedRequests() {
+        return maxPipelinedRequests;
+    }
+
+    /**
+     * Sets how many GET or HEAD requests may be outstanding on one connection.
+     * The default of 1 disables pipelining.
+     */
+    public void setMaxPipelinedRequests(int max) {
+        maxPipelinedRequests = max;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an unused connection is closed.
+     */
+    public void setIdleTimeout(long timeout) {
+        idleTimeout = timeout;
+    }
+
+    public boolean isStaleCheckEnabled() {
+        return staleCheckEnabled;
+    }
+
+    /**
+     * Sets whether a pooled connection is checked for having been closed by 
+     * the server before it is reused.  The check is a non-blocking read.
+     */
+    public void setStaleCheckEnabled(boolean enabled) {
+        staleCheckEnabled = enabled;
+    }
+    
+    /**
+     * @return the number of open or opening connections
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+    
+    /**
+     * @return the number of connections with requests outstanding
+     */
+    public int getLeasedConnections() {
+        return leasedConnections.get();
+    }
+    
+    /**
+     * @return the number of pooled connections without requests outstanding
+     */
+    public int getIdleConnections() {
+        return Math.max(0, totalConnections.get() - leasedConnections.get());
+    }
+    
+    /**
+     * @return the number of requests waiting for a connection
+     */
+    public int getPendingRequests() {
+        return pendingRequests.get();
+    }
+    
+    /**
+     * @return the number of connections opened since the client was created
+     */
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+    
+    /**
+     * @return the number of pooled connections found closed by the server 
+     * when they were about to be reused
+     */
+    public long getStaleConnections() {
+        return staleConnections.get();
+    }
+    
+    /**
+     * @return the number of connections closed because they were idle for 
+     * longer than the idle timeout
+     */
+    public long getIdleConnectionsEvicted() {
+        return idleConnectionsEvicted.get();
+    }
+    
+    /**
+     * Registers the statistics of the client with the InstrumentationManager 
+     * of the bus, if it has one.
+     */
+    public void manage(Bus bus) {
+        InstrumentationManager manager = bus.getExtension(InstrumentationManager.class);
+        if (manager == null) {
+            return;
+        }
+        synchronized (managedBuses) {
+            if (!managedBuses.add(bus.getId())) {
+                return;
+            }
+        }
+        try {
+            manager.register(new ManagedNIOHTTPClient(this, bus));
+        } catch (JMException jmex) {
+            LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+        }
+    }
+    
+    /**
+     * Sends the request.  The method returns immediately, the outcome is 
+     * reported to the callback.
+     */
+    public void execute(NIOHTTPRequest request, NIOHTTPCallback callback) {
+        URL url = request.getURL();
+        if (!"http".equalsIgnoreCase(url.getProtocol())) {
+            callback.failed(new IOException("Unsupported protocol: " + url.getProtocol()));
+            return;
+        }
+        if (shutdown) {
+            callback.failed(new IOException("The HTTP client has been shut down"));
+            return;
+        }
+        // resolve the address here, not on the selector thread
+        InetSocketAddress address = getAddress(url);
+        if (address.isUnresolved()) {
+            callback.failed(new IOException("Unknown host: " + url.getHost()));
+            return;
+        }
+        final HostPool pool = getPool(url);
+        final Exchange exchange = new Exchange(request, callback, address);
+        pool.loop.execute(new Runnable() {
+            public void run() {
+                pool.dispatch(exchange);
+            }
+        });
+    }
+    
+    /**
+     * Opens connections to the host of the URL in advance, so that the first
+     * requests do not pay for establishing them.  The method returns immediately.
+     * 
+     * @param url the URL of the host
+     * @param count the number of connections the host should have
+     */
+    public void warmUp(URL url, final int count) throws IOException {
+        if (!"http".equalsIgnoreCase(url.getProtocol())) {
+            throw new IOException("Unsupported protocol: " + url.getProtocol());
+        }
+        final InetSocketAddress address = getAddress(url);
+        if (address.isUnresolved()) {
+            throw new IOException("Unknown host: " + url.getHost());
+        }
+        final HostPool pool = getPool(url);
+        pool.loop.execute(new Runnable() {
+            public void run() {
+                pool.warmUp(address, count);
+            }
+        });
+    }
+    
+    /**
+     * Closes all the connections, failing the requests that are outstanding.
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (loops) {
+            for (SelectorLoop loop : loops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+        }
+    }
+    
+    private static InetSocketAddress getAddress(URL url) {
+        return new InetSocketAddress(url.getHost(), 
+                                     url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+    }
+    
+    private HostPool getPool(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        String key = url.getHost().toLowerCase() + ":" + port;
+        HostPool pool = hosts.get(key);
+        if (pool != null && pool.loop.isClosed() && !shutdown) {
+            // its selector failed, start over on a working one
+            hosts.remove(key, pool);
+            pool = null;
+        }
+        if (pool == null) {
+            pool = new HostPool(key, getLoop());
+            HostPool existing = hosts.putIfAbsent(key, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+    
+    private SelectorLoop getLoop() {
+        int idx = (nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length;
+        synchronized (loops) {
+            if (loops[idx] == null || loops[idx].isClosed() && !shutdown) {
+                try {
+                    loops[idx] = new SelectorLoop();
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                Thread t = new Thread(loops[idx], "cxf-nio-http-client-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                t.start();
+            }
+            return loops[idx];
+        }
+    }
+    
+    /**
+     * A request together with the state of its execution.
+     */
+    static final class Exchange {
+        final NIOHTTPRequest request;
+        final NIOHTTPCallback callback;
+        final InetSocketAddress address;
+        boolean retried;
+        boolean written;
+        long writtenAt;
+        
+        Exchange(NIOHTTPRequest req, NIOHTTPCallback cb, InetSocketAddress addr) {
+            request = req;
+            callback = cb;
+            address = addr;
+        }
+        
+        void responseReceived(NIOHTTPResponse response) {
+            try {
+                callback.responseReceived(response);
+            } catch (Throwable t) {
+                LOG.log(Level.WARNING, "Exception in HTTP response callback", t);
+            }
+        }
+        
+        void failed(IOException ex) {
+            try {
+                callback.failed(ex);
+            } catch (Throwable t) {
+                LOG.log(Level.WARNING, "Exception in HTTP response callback", t);
+            }
+        }
+    }
+    
+    /**
+     * The connections to one host and the requests waiting for one of them.
+     * Only accessed from the thread of its loop.
+     */
+    final class HostPool {
+        final String key;
+        final SelectorLoop loop;
+        final List<NIOHTTPConnection> connections = new ArrayList<NIOHTTPConnection>();
+        final Queue<Exchange> pending = new LinkedList<Exchange>();
+        
+        HostPool(String k, SelectorLoop l) {
+            key = k;
+            loop = l;
+        }
+        
+        void dispatch(Exchange ex) {
+            if (shutdown || loop.isClosed()) {
+                ex.failed(new IOException("The HTTP client has been shut down"));
+                return;
+            }
+            pending.add(ex);
+            pendingRequests.incrementAndGet();
+            dispatchPending();
+        }
+        
+        /**
+         * Assigns the waiting requests, in order, to connections as long as 
+         * there are connections available or new ones may be opened.
+         */
+        void dispatchPending() {
+            if (loop.isClosed()) {
+                failPending(new IOException("The HTTP client has been shut down"));
+                return;
+            }
+            Exchange ex = pending.peek();
+            while (ex != null && assign(ex)) {
+                pending.poll();
+                pendingRequests.decrementAndGet();
+                ex = pending.peek();
+            }
+        }
+        
+        void failPending(IOException ex) {
+            Exchange e = pending.poll();
+            while (e != null) {
+                pendingRequests.decrementAndGet();
+                e.failed(ex);
+                e = pending.poll();
+            }
+        }
+        
+        private boolean assign(Exchange ex) {
+            NIOHTTPConnection pipelined = null;
+            for (int i = connections.size() - 1; i >= 0; i--) {
+                NIOHTTPConnection c = connections.get(i);
+                if (c.isIdle()) {
+                    if (staleCheckEnabled && c.isStale()) {
+                        staleConnections.incrementAndGet();
+                        c.discard();
+                        removed(c);
+                        continue;
+                    }
+                    c.send(ex);
+                    return true;
+                }
+                if (pipelined == null && c.canPipeline(ex, maxPipelinedRequests)) {
+                    pipelined = c;
+                }
+            }
+            if (pipelined != null) {
+                pipelined.send(ex);
+                return true;
+            }
+            NIOHTTPConnection c = open(ex.address);
+            if (c == null) {
+                return false;
+            }
+            if (!c.isClosed()) {
+                c.send(ex);
+            } else {
+                ex.failed(c.getConnectFailure());
+            }
+            return true;
+        }
+        
+        void warmUp(InetSocketAddress address, int count) {
+            while (!loop.isClosed() && connections.size() < count) {
+                NIOHTTPConnection c = open(address);
+                if (c == null || c.isClosed()) {
+                    break;
+                }
+            }
+        }
+        
+        /**
+         * @return the new connection or null if the limits do not allow one
+         */
+        private NIOHTTPConnection open(InetSocketAddress address) {
+            if (connections.size() >= maxConnectionsPerHost) {
+                return null;
+            }
+            if (totalConnections.incrementAndGet() > maxTotalConnections) {
+                totalConnections.decrementAndGet();
+                return null;
+            }
+            connectionsCreated.incrementAndGet();
+            NIOHTTPConnection c = new NIOHTTPConnection(this);
+            connections.add(c);
+            loop.connections.add(c);
+            c.connect(address, loop.selector);
+            if (c.isClosed()) {
+                removed(c);
+            }
+            return c;
+        }
+        
+        /**
+         * Called when a connection has no more requests outstanding.
+         */
+        void idle(NIOHTTPConnection c) {
+            dispatchPending();
+        }
+        
+        /**
+         * Called when a connection has been closed.
+         */
+        void closed(NIOHTTPConnection c) {
+            removed(c);
+            dispatchPending();
+        }
+        
+        private void removed(NIOHTTPConnection c) {
+            if (connections.remove(c)) {
+                loop.connections.remove(c);
+                totalConnections.decrementAndGet();
+            }
+        }
+        
+        void leaseChanged(boolean leased) {
+            if (leased) {
+                leasedConnections.incrementAndGet();
+            } else {
+                leasedConnections.decrementAndGet();
+            }
+        }
+        
+        void evicted() {
+            idleConnectionsEvicted.incrementAndGet();
+        }
+        
+        long getIdleTimeout() {
+            return idleTimeout;
+        }
+    }
+    
+    /**
+     * A selector and the thread running it.
+     */
+    final class SelectorLoop implements Runnable {
+        final Selector selector;
+        final Set<NIOHTTPConnection> connections = new HashSet<NIOHTTPConnection>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private volatile boolean closed;
+        
+        SelectorLoop() throws IOException {
+            selector = Selector.open();
+        }
+        
+        /**
+         * Runs the task on the thread of the loop or, once the loop has been 
+         * closed, on the calling thread.  Tasks run that way fail at once.
+         */
+        void execute(Runnable r) {
+            tasks.add(r);
+            if (closed) {
+                // the loop may have run its tasks for the last time already
+                runTasks();
+            } else {
+                selector.wakeup();
+            }
+        }
+        
+        void shutdown() {
+            closed = true;
+            selector.wakeup();
+        }
+        
+        boolean isClosed() {
+            return closed;
+        }
+        
+        public void run() {
+            long lastCheck = System.currentTimeMillis();
+            try {
+                while (!closed) {
+                    selector.select(CHECK_INTERVAL);
+                    runTasks();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        handle(key);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastCheck >= CHECK_INTERVAL) {
+                        lastCheck = now;
+                        for (NIOHTTPConnection c : new ArrayList<NIOHTTPConnection>(connections)) {
+                            c.checkTimeouts(now);
+                        }
+                        // requests held back by the total limit when another host 
+                        // released a connection
+                        for (HostPool pool : hosts.values()) {
+                            if (pool.loop == this && !pool.pending.isEmpty()) {
+                                pool.dispatchPending();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "HTTP client selector failed", ex);
+            } catch (ClosedSelectorException ex) {
+                // shut down
+            } finally {
+                closed = true;
+                IOException ex = new IOException("The HTTP client has been shut down");
+                for (NIOHTTPConnection c : new ArrayList<NIOHTTPConnection>(connections)) {
+                    c.fail(ex, false);
+                }
+                for (HostPool pool : hosts.values()) {
+                    if (pool.loop == this) {
+                        pool.failPending(ex);
+                    }
+                }
+                runTasks();
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        
+        /**
+         * Lets the connection of the key handle it.  An unexpected exception only
+         * fails that connection, not the loop and all the others.
+         */
+        private void handle(SelectionKey key) {
+            NIOHTTPConnection c = (NIOHTTPConnection)key.attachment();
+            try {
+                c.handle(key);
+            } catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Exception in HTTP connection", ex);
+                IOException ioe = new IOException(ex.getMessage());
+                ioe.initCause(ex);
+                c.fail(ioe, false);
+            }
+        }
+        
+        private void runTasks() {
+            Runnable r = tasks.poll();
+            while (r != null) {
+                runSafely(r);
+                r = tasks.poll();
+            }
+        }
+        
+        private void runSafely(Runnable r) {
+            try {
+                r.run();
+            } catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Exception in HTTP client task", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.HttpHeaderHelper;
+import org.apache.cxf.io.CachedOutputStream;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
+import org.apache.cxf.version.Version;
+import org.apache.cxf.workqueue.AutomaticWorkQueue;
+import org.apache.cxf.workqueue.WorkQueueManager;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+
+/**
+ * An HTTPConduit that sends asynchronous requests with a {@link NIOHTTPClient}
+ * so that no thread is blocked while the response is awaited.  Synchronous 
+ * requests, and the requests that need features only the HttpURLConnection
+ * based implementation provides (https, proxies, redirects, authentication 
+ * retransmits, trust decisions, sessions and decoupled responses), are handled 
+ * by the HTTPConduit.
+ * <p>
+ * The conduit is used by the HTTP transport factory if the {@link #USE_NIO}
+ * property is set to true on the EndpointInfo or as a system property.
+ */
+public class NIOHTTPConduit extends HTTPConduit {
+    public static final String USE_NIO = "org.apache.cxf.transport.http.nio.enabled";
+    
+    /**
+     * The EndpointInfo property holding the number of connections to open to the 
+     * endpoint when the conduit is created.
+     */
+    public static final String WARM_UP_CONNECTIONS = "org.apache.cxf.transport.http.nio.warmUpConnections";
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(NIOHTTPConduit.class);
+    
+    private NIOHTTPClient httpClient;
+    private int warmUpConnections;
+    
+    public NIOHTTPConduit(Bus b, EndpointInfo ei) throws IOException {
+        this(b, ei, null);
+    }
+
+    public NIOHTTPConduit(Bus b, EndpointInfo ei, EndpointReferenceType t) throws IOException {
+        super(b, ei, t);
+        if (b != null) {
+            httpClient = b.getExtension(NIOHTTPClient.class);
+        }
+        if (httpClient == null) {
+            httpClient = NIOHTTPClient.getDefaultClient();
+        }
+        if (b != null) {
+            httpClient.manage(b);
+        }
+        Object warmUp = ei == null ? null : ei.getProperty(WARM_UP_CONNECTIONS);
+        if (warmUp != null) {
+            warmUpConnections = Integer.parseInt(warmUp.toString());
+        }
+    }
+    
+    /**
+     * @return true if the NIOHTTPConduit should be used for the endpoint
+     */
+    public static boolean isEnabled(EndpointInfo ei) {
+        Object value = ei == null ? null : ei.getProperty(USE_NIO);
+        if (value == null) {
+            value = System.getProperty(USE_NIO);
+        }
+        return value != null && Boolean.valueOf(value.toString());
+    }
+    
+    public NIOHTTPClient getHttpClient() {
+        return httpClient;
+    }
+
+    public void setHttpClient(NIOHTTPClient client) {
+        httpClient = client;
+    }
+    
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    /**
+     * Sets the number of connections to open to the endpoint once the conduit
+     * has been configured.
+     */
+    public void setWarmUpConnections(int count) {
+        warmUpConnections = count;
+    }
+    
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+    
+    @Override
+    protected void finalizeConfig() {
+        super.finalizeConfig();
+        if (warmUpConnections > 0 && httpClient != null) {
+            try {
+                URL url = getURL();
+                if ("http".equalsIgnoreCase(url.getProtocol())) {
+                    httpClient.warmUp(url, warmUpConnections);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Could not open connections in advance", ex);
+            }
+        }
+    }
+    
+    @Override
+    public void prepare(Message message) throws IOException {
+        if (!isNonBlocking(message)) {
+            super.prepare(message);
+            return;
+        }
+        URL currentURL = setupURL(message);
+        if (!"http".equalsIgnoreCase(currentURL.getProtocol())) {
+            super.prepare(message);
+            return;
+        }
+        Map<String, List<String>> headers = getSetProtocolHeaders(message);
+        HTTPClientPolicy csPolicy = getClient(message);
+
+        // If the HTTP_REQUEST_METHOD is not set, the default is "POST".
+        String httpRequestMethod = (String)message.get(Message.HTTP_REQUEST_METHOD);        
+        NIOHTTPRequest request = new NIOHTTPRequest(httpRequestMethod == null ? "POST" : httpRequestMethod,
+                                                    currentURL);
+        request.setConnectTimeout(csPolicy.getConnectionTimeout());
+        request.setReceiveTimeout(csPolicy.getReceiveTimeout());
+        
+        setHeadersByPolicy(message, currentURL, headers);
+        message.setContent(OutputStream.class, new RequestOutputStream(message, request));
+    }
+    
+    /**
+     * @return true if the message can be sent without blocking a thread
+     */
+    protected boolean isNonBlocking(Message message) {
+        Exchange exchange = message.getExchange();
+        if (httpClient == null
+            || exchange == null
+            || exchange.isSynchronous()
+            || isOneway(exchange)
+            || isDecoupled()
+            || getAuthSupplier() != null
+            || getTrustDecider() != null
+            || Boolean.TRUE.equals(message.get(Message.MAINTAIN_SESSION))) {
+            return false;
+        }
+        HTTPClientPolicy csPolicy = getClient(message);
+        return !csPolicy.isAutoRedirect() 
+            && !csPolicy.isSetProxyServer()
+            && System.getProperty("http.proxyHost") == null;
+    }
+    
+    /**
+     * Copies the headers of the message onto the request.
+     */
+    private void setRequestHeaders(Message message, NIOHTTPRequest request) {
+        Map<String, List<String>> requestHeaders = request.getHeaders();
+        String ct = determineContentType(message);
+        requestHeaders.put(HttpHeaderHelper.CONTENT_TYPE, Collections.singletonList(ct));
+        boolean hasUserAgent = false;
+        Map<String, List<String>> headers = getSetProtocolHeaders(message);
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            String header = e.getKey();
+            List<String> headerList = e.getValue();
+            if (HttpHeaderHelper.CONTENT_TYPE.equalsIgnoreCase(header)) {
+                continue;
+            }
+            if ("User-Agent".equalsIgnoreCase(header)) {
+                hasUserAgent = true;
+            }
+            if (HttpHeaderHelper.COOKIE.equalsIgnoreCase(header)) {
+                requestHeaders.put(header, headerList);
+            } else {
+                StringBuilder b = new StringBuilder();
+                for (int i = 0; i < headerList.size(); i++) {
+                    b.append(headerList.get(i));
+                    if (i + 1 < headerList.size()) {
+                        b.append(',');
+                    }
+                }
+                requestHeaders.put(header, Collections.singletonList(b.toString()));
+            }
+        }
+        if (!hasUserAgent) {
+            requestHeaders.put("User-Agent", 
+                               Collections.singletonList(Version.getCompleteVersionString()));
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Sending " + request.getMethod() + " Message with Headers to "
+                     + request.getURL() + " Conduit :" + getConduitName() 
+                     + "\nHeaders: " + requestHeaders + "\n");
+        }
+    }
+    
+    /**
+     * Builds the incoming message from the response and passes it to the observer.
+     */
+    protected void handleResponse(Message outMessage, NIOHTTPResponse response) throws IOException {
+        int responseCode = response.getResponseCode();
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Response Code: " + responseCode + " Conduit: " + getConduitName());
+            LOG.fine("Content length: " + response.getContentLength());
+            LOG.fine("Header fields: " + response.getHeaders());
+        }
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new IOException(response.getResponseMessage());
+        }
+        outMessage.removeContent(OutputStream.class);
+        
+        Message inMessage = new MessageImpl();
+        inMessage.setExchange(outMessage.getExchange());
+        
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> e : response.getHeaders().entrySet()) {
+            headers.put(HttpHeaderHelper.getHeaderKey(e.getKey()), e.getValue());
+        }
+        inMessage.put(Message.PROTOCOL_HEADERS, headers);
+        inMessage.put(Message.RESPONSE_CODE, responseCode);
+        String ct = response.getHeader(HttpHeaderHelper.CONTENT_TYPE);
+        inMessage.put(Message.CONTENT_TYPE, ct);
+        String charset = HttpHeaderHelper.findCharset(ct);
+        String normalizedEncoding = HttpHeaderHelper.mapCharset(charset);
+        if (normalizedEncoding == null) {
+            String m = new org.apache.cxf.common.i18n.Message("INVALID_ENCODING_MSG",
+                                                               LOG, charset).toString();
+            LOG.log(Level.WARNING, m);
+            throw new IOException(m);   
+        } 
+        inMessage.put(Message.ENCODING, normalizedEncoding);
+        
+        InputStream in = response.getInputStream();
+        // it's perfectly ok for non-soap http services to have no response body
+        inMessage.setContent(InputStream.class, in);
+        
+        incomingObserver.onMessage(inMessage);
+    }
+    
+    /**
+     * Passes the failure of the request to the observer.
+     */
+    protected void handleFailure(Message outMessage, Exception ex) {
+        Message inMessage = new MessageImpl();
+        inMessage.setExchange(outMessage.getExchange());
+        inMessage.setContent(Exception.class, ex);
+        incomingObserver.onMessage(inMessage);
+    }
+    
+    /**
+     * Buffers the request body and sends the request once it is closed.
+     */
+    protected class RequestOutputStream extends CachedOutputStream {
+        protected final Message outMessage;
+        protected final NIOHTTPRequest request;
+        
+        protected RequestOutputStream(Message m, NIOHTTPRequest r) {
+            outMessage = m;
+            request = r;
+        }
+        
+        @Override
+        protected void doClose() throws IOException {
+            setRequestHeaders(outMessage, request);
+            if (size() > 0 || !request.isIdempotent()) {
+                request.setBody(getBytes());
+            }
+        }
+        
+        @Override
+        protected void postClose() throws IOException {
+            httpClient.execute(request, new ResponseCallback(outMessage));
+        }
+    }
+    
+    /**
+     * Hands the outcome of the request over from the selector thread to 
+     * the http-conduit work queue.
+     */
+    protected class ResponseCallback implements NIOHTTPCallback {
+        protected final Message outMessage;
+        
+        protected ResponseCallback(Message m) {
+            outMessage = m;
+        }
+
+        public void responseReceived(final NIOHTTPResponse response) {
+            execute(new Runnable() {
+                public void run() {
+                    try {
+                        handleResponse(outMessage, response);
+                    } catch (Exception e) {
+                        handleFailure(outMessage, e);
+                    }
+                }
+            });
+        }
+
+        public void failed(final IOException ex) {
+            execute(new Runnable() {
+                public void run() {
+                    handleFailure(outMessage, ex);
+                }
+            });
+        }
+        
+        private void execute(Runnable runnable) {
+            WorkQueueManager mgr = outMessage.getExchange().get(Bus.class)
+                .getExtension(WorkQueueManager.class);
+            AutomaticWorkQueue queue = mgr.getNamedWorkQueue("http-conduit");
+            if (queue == null) {
+                queue = mgr.getAutomaticWorkQueue();
+            }
+            queue.execute(runnable);
+        }
+    }
+}
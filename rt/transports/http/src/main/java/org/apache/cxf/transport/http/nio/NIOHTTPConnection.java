@@ -0,0 +1,354 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.cxf.transport.http.nio.NIOHTTPClient.Exchange;
+import org.apache.cxf.transport.http.nio.NIOHTTPClient.HostPool;
+
+/**
+ * A connection of a {@link NIOHTTPClient}.  Requests are written in the order 
+ * they are sent and the responses are matched to them in the same order.
+ * Only accessed from the selector thread that owns its {@link HostPool}.
+ */
+final class NIOHTTPConnection {
+    private final HostPool pool;
+    private final LinkedList<Exchange> inflight = new LinkedList<Exchange>();
+    private final LinkedList<ByteBuffer> writes = new LinkedList<ByteBuffer>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    private final NIOHTTPResponseParser parser = new NIOHTTPResponseParser();
+    private SocketChannel channel;
+    private SelectionKey key;
+    private boolean connected;
+    private boolean closed;
+    private boolean reused;
+    private boolean leased;
+    private IOException connectFailure;
+    private long connectStarted;
+    private long lastRead;
+    private long idleSince;
+    
+    NIOHTTPConnection(HostPool p) {
+        pool = p;
+    }
+    
+    /**
+     * Starts connecting.  If that fails at once the connection is closed and
+     * the failure is available from {@link #getConnectFailure()}.
+     */
+    void connect(InetSocketAddress address, Selector selector) {
+        connectStarted = System.currentTimeMillis();
+        idleSince = connectStarted;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            if (channel.connect(address)) {
+                connected = true;
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+            } else {
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        } catch (IOException ex) {
+            connectFailure = ex;
+            discard();
+        }
+    }
+    
+    IOException getConnectFailure() {
+        return connectFailure;
+    }
+    
+    boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * @return true if the connection, connected or still connecting, has no 
+     * requests outstanding
+     */
+    boolean isIdle() {
+        return !closed && inflight.isEmpty();
+    }
+    
+    /**
+     * Checks whether the server has closed the idle connection, without blocking.
+     */
+    boolean isStale() {
+        if (!connected) {
+            return false;
+        }
+        try {
+            // an idle connection has nothing to read unless it has been closed
+            return channel.read(readBuffer) != 0;
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+    
+    boolean canPipeline(Exchange ex, int max) {
+        if (!connected || closed || inflight.size() >= max || !ex.request.isIdempotent()) {
+            return false;
+        }
+        for (Exchange e : inflight) {
+            if (!e.request.isIdempotent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    void send(Exchange ex) {
+        if (inflight.isEmpty()) {
+            parser.reset("HEAD".equals(ex.request.getMethod()));
+        }
+        inflight.add(ex);
+        updateLeased();
+        ex.written = false;
+        writes.add(ex.request.toByteBuffer());
+        if (connected) {
+            interest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+    
+    void handle(SelectionKey k) {
+        try {
+            if (k.isConnectable()) {
+                channel.finishConnect();
+                connected = true;
+                if (writes.isEmpty()) {
+                    // opened in advance
+                    interest(SelectionKey.OP_READ);
+                    idleSince = System.currentTimeMillis();
+                    pool.idle(this);
+                } else {
+                    interest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+            if (k.isValid() && k.isWritable()) {
+                write();
+            }
+            if (k.isValid() && k.isReadable()) {
+                read();
+            }
+        } catch (CancelledKeyException ex) {
+            fail(new IOException("Connection closed"), false);
+        } catch (IOException ex) {
+            fail(ex, reused);
+        }
+    }
+    
+    private void write() throws IOException {
+        while (!writes.isEmpty()) {
+            ByteBuffer buf = writes.getFirst();
+            channel.write(buf);
+            if (buf.hasRemaining()) {
+                return;
+            }
+            writes.removeFirst();
+            long now = System.currentTimeMillis();
+            for (Exchange ex : inflight) {
+                if (!ex.written) {
+                    ex.written = true;
+                    ex.writtenAt = now;
+                    break;
+                }
+            }
+        }
+        interest(SelectionKey.OP_READ);
+    }
+    
+    private void read() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n == -1) {
+            endOfStream();
+            return;
+        }
+        lastRead = System.currentTimeMillis();
+        readBuffer.flip();
+        try {
+            while (readBuffer.hasRemaining()) {
+                if (inflight.isEmpty()) {
+                    throw new IOException("Unexpected data received on an idle HTTP connection");
+                }
+                NIOHTTPResponse response = parser.parse(readBuffer);
+                if (response == null) {
+                    break;
+                }
+                if (!completed(response)) {
+                    return;
+                }
+            }
+        } finally {
+            readBuffer.compact();
+        }
+    }
+    
+    /**
+     * Hands the response to the exchange it belongs to.
+     * @return false if the connection has been closed
+     */
+    private boolean completed(NIOHTTPResponse response) {
+        Exchange ex = inflight.removeFirst();
+        updateLeased();
+        reused = true;
+        if (!inflight.isEmpty()) {
+            parser.reset("HEAD".equals(inflight.getFirst().request.getMethod()));
+        }
+        boolean keepAlive = response.isKeepAlive();
+        if (!keepAlive) {
+            close();
+            // the requests pipelined behind this one were not processed by the server
+            retryAll(new IOException("Connection closed by the server"));
+        }
+        ex.responseReceived(response);
+        if (keepAlive && inflight.isEmpty()) {
+            idleSince = System.currentTimeMillis();
+            pool.idle(this);
+        }
+        return keepAlive;
+    }
+    
+    private void endOfStream() throws IOException {
+        if (!inflight.isEmpty() && parser.isStarted()) {
+            NIOHTTPResponse response = parser.endOfStream();
+            Exchange ex = inflight.removeFirst();
+            close();
+            retryAll(new IOException("Connection closed by the server"));
+            ex.responseReceived(response);
+            return;
+        }
+        // a pooled connection closed by the server before it read the request
+        fail(new IOException("Connection closed by the server"), reused);
+    }
+    
+    void checkTimeouts(long now) {
+        if (closed) {
+            return;
+        }
+        if (!connected) {
+            long timeout = inflight.isEmpty() 
+                ? pool.getIdleTimeout() : inflight.getFirst().request.getConnectTimeout();
+            if (timeout > 0 && now - connectStarted > timeout) {
+                fail(new SocketTimeoutException("connect timed out"), false);
+            }
+            return;
+        }
+        if (inflight.isEmpty()) {
+            if (now - idleSince > pool.getIdleTimeout()) {
+                pool.evicted();
+                close();
+            }
+            return;
+        }
+        Exchange head = inflight.getFirst();
+        long timeout = head.request.getReceiveTimeout();
+        if (timeout > 0 && head.written && now - Math.max(head.writtenAt, lastRead) > timeout) {
+            fail(new SocketTimeoutException("Read timed out"), false);
+        }
+    }
+    
+    /**
+     * Closes the connection and fails the outstanding requests.
+     * @param retry true if the requests that have not received any part of their 
+     * response should be sent again on another connection, as far as that is
+     * safe (see {@link #retryAll(IOException)})
+     */
+    void fail(IOException ex, boolean retry) {
+        close();
+        if (retry && !parser.isStarted()) {
+            retryAll(ex);
+        } else {
+            List<Exchange> failed = new ArrayList<Exchange>(inflight);
+            inflight.clear();
+            for (Exchange e : failed) {
+                e.failed(ex);
+            }
+        }
+    }
+    
+    /**
+     * Sends the outstanding requests again on another connection, except for
+     * the ones already retried and the non-idempotent ones that were written
+     * completely, as the server may have processed those.  They are failed.
+     */
+    private void retryAll(IOException ex) {
+        List<Exchange> retries = new ArrayList<Exchange>(inflight);
+        inflight.clear();
+        for (Exchange e : retries) {
+            if (e.retried || e.written && !e.request.isIdempotent()) {
+                e.failed(ex);
+            } else {
+                e.retried = true;
+                pool.dispatch(e);
+            }
+        }
+    }
+    
+    private void close() {
+        if (!closed) {
+            discard();
+            pool.closed(this);
+        }
+    }
+    
+    /**
+     * Closes the connection without notifying the pool.
+     */
+    void discard() {
+        closed = true;
+        updateLeased();
+        writes.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+    
+    private void updateLeased() {
+        boolean busy = !closed && !inflight.isEmpty();
+        if (busy != leased) {
+            leased = busy;
+            pool.leaseChanged(busy);
+        }
+    }
+    
+    private void interest(int ops) {
+        if (key != null && key.isValid()) {
+            key.interestOps(ops);
+        }
+    }
+}
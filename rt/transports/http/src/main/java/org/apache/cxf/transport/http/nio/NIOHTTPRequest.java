@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request to be executed by a {@link NIOHTTPClient}. The body is held in
+ * memory so that it can be written without blocking and, if a pooled connection
+ * turns out to be stale, written again.
+ */
+public class NIOHTTPRequest {
+    private final String method;
+    private final URL url;
+    private final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+    private byte[] body;
+    private long receiveTimeout;
+    private long connectTimeout;
+    
+    public NIOHTTPRequest(String method, URL url) {
+        this.method = method;
+        this.url = url;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] b) {
+        body = b;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for the response once the request
+     * has been written, 0 waits indefinitely
+     */
+    public long getReceiveTimeout() {
+        return receiveTimeout;
+    }
+
+    public void setReceiveTimeout(long timeout) {
+        receiveTimeout = timeout;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for the connection to be established,
+     * 0 waits indefinitely
+     */
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long timeout) {
+        connectTimeout = timeout;
+    }
+    
+    /**
+     * @return true if the request has no side effects and may be pipelined 
+     */
+    boolean isIdempotent() {
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+    
+    String getHostHeader() {
+        int port = url.getPort();
+        if (port == -1 || port == url.getDefaultPort()) {
+            return url.getHost();
+        }
+        return url.getHost() + ":" + port;
+    }
+    
+    /**
+     * Serializes the request line, the headers and the body.
+     */
+    ByteBuffer toByteBuffer() {
+        StringBuilder sb = new StringBuilder(256);
+        String file = url.getFile();
+        sb.append(method).append(' ').append(file.length() == 0 ? "/" : file).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(getHostHeader()).append("\r\n");
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            String name = e.getKey();
+            if ("Host".equalsIgnoreCase(name)) {
+                continue;
+            }
+            if ("Content-Length".equalsIgnoreCase(name) 
+                || "Transfer-Encoding".equalsIgnoreCase(name)) {
+                // the body is always sent with a Content-Length
+                continue;
+            }
+            for (String value : e.getValue()) {
+                sb.append(name).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (body != null || !isIdempotent()) {
+            sb.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+        }
+        sb.append("\r\n");
+        
+        byte[] head;
+        try {
+            head = sb.toString().getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            // ISO-8859-1 is always supported
+            throw new IllegalStateException(e);
+        }
+        int len = head.length + (body == null ? 0 : body.length);
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        buf.put(head);
+        if (body != null) {
+            buf.put(body);
+        }
+        buf.flip();
+        return buf;
+    }
+}
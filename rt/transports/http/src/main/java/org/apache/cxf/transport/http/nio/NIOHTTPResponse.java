@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cxf.io.CachedOutputStream;
+
+/**
+ * An HTTP response read by a {@link NIOHTTPClient}. The body is fully read 
+ * before the response is handed to the {@link NIOHTTPCallback}.
+ */
+public class NIOHTTPResponse {
+    private String protocol;
+    private int responseCode;
+    private String responseMessage;
+    private final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+    private CachedOutputStream body;
+    private boolean closeDelimited;
+    
+    NIOHTTPResponse(String protocol, int responseCode, String responseMessage) {
+        this.protocol = protocol;
+        this.responseCode = responseCode;
+        this.responseMessage = responseMessage;
+    }
+    
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public String getResponseMessage() {
+        return responseMessage;
+    }
+
+    /**
+     * @return the headers, keyed by the names as they were received
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+    
+    /**
+     * @return the first value of the header, matching the name case insensitively
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(name) && !e.getValue().isEmpty()) {
+                return e.getValue().get(0);
+            }
+        }
+        return null;
+    }
+    
+    void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+    
+    /**
+     * @return the length of the body
+     */
+    public int getContentLength() {
+        return body == null ? 0 : body.size();
+    }
+
+    /**
+     * @return the body, or null if the response has none
+     */
+    public InputStream getInputStream() throws IOException {
+        return body == null ? null : body.getInputStream();
+    }
+    
+    void setBody(CachedOutputStream cos, boolean delimitedByClose) {
+        body = cos;
+        closeDelimited = delimitedByClose;
+    }
+    
+    /**
+     * @return true if the connection can be used for further requests
+     */
+    public boolean isKeepAlive() {
+        if (closeDelimited) {
+            return false;
+        }
+        String connection = getHeader("Connection");
+        if ("HTTP/1.0".equals(protocol)) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        }
+        return !"close".equalsIgnoreCase(connection);
+    }
+}
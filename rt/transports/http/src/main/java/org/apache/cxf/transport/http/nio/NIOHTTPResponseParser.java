@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.cxf.io.CachedOutputStream;
+
+/**
+ * Incrementally parses HTTP/1.x responses from the bytes read off a connection.
+ * Bytes following a complete response are left in the buffer so that 
+ * pipelined responses can be parsed in turn.
+ */
+final class NIOHTTPResponseParser {
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    
+    private enum State {
+        STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, BODY_TO_EOF
+    }
+    
+    private State state;
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean lineCR;
+    private boolean headRequest;
+    private NIOHTTPResponse response;
+    private CachedOutputStream body;
+    private long remaining;
+    
+    NIOHTTPResponseParser() {
+        reset(false);
+    }
+    
+    /**
+     * Prepares the parser for the next response.
+     * @param head true if the response is for a HEAD request and so has no body
+     */
+    void reset(boolean head) {
+        state = State.STATUS_LINE;
+        line.setLength(0);
+        lineCR = false;
+        headRequest = head;
+        response = null;
+        body = null;
+        remaining = 0;
+    }
+    
+    /**
+     * @return true if any part of the current response has been read
+     */
+    boolean isStarted() {
+        return state != State.STATUS_LINE || line.length() > 0;
+    }
+    
+    /**
+     * Consumes bytes from the buffer.
+     * @return the response if it is complete, or null if more bytes are needed
+     */
+    NIOHTTPResponse parse(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            switch (state) {
+            case STATUS_LINE:
+                if (readLine(buf) && line.length() > 0) {
+                    parseStatusLine();
+                }
+                break;
+            case HEADERS:
+                if (readLine(buf)) {
+                    if (line.length() == 0) {
+                        NIOHTTPResponse r = headersComplete();
+                        if (r != null) {
+                            return r;
+                        }
+                    } else {
+                        parseHeader();
+                    }
+                }
+                break;
+            case BODY:
+                remaining -= copy(buf, remaining);
+                if (remaining == 0) {
+                    return complete(false);
+                }
+                break;
+            case CHUNK_SIZE:
+                if (readLine(buf)) {
+                    remaining = parseChunkSize();
+                    state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                }
+                break;
+            case CHUNK_DATA:
+                remaining -= copy(buf, remaining);
+                if (remaining == 0) {
+                    state = State.CHUNK_END;
+                }
+                break;
+            case CHUNK_END:
+                if (readLine(buf)) {
+                    state = State.CHUNK_SIZE;
+                }
+                break;
+            case TRAILERS:
+                if (readLine(buf) && line.length() == 0) {
+                    return complete(false);
+                }
+                break;
+            case BODY_TO_EOF:
+                copy(buf, Long.MAX_VALUE);
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Called when the server has closed the connection.
+     * @return the response if its body was delimited by the end of the stream
+     * @throws IOException if the response is incomplete
+     */
+    NIOHTTPResponse endOfStream() throws IOException {
+        if (state == State.BODY_TO_EOF) {
+            return complete(true);
+        }
+        throw new IOException("Connection closed before the response was complete");
+    }
+    
+    private boolean readLine(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            char c = (char)(buf.get() & 0xff);
+            if (c == '\n') {
+                lineCR = false;
+                return true;
+            }
+            if (lineCR) {
+                line.append('\r');
+                lineCR = false;
+            }
+            if (c == '\r') {
+                lineCR = true;
+            } else {
+                line.append(c);
+            }
+            if (line.length() > MAX_LINE_LENGTH) {
+                throw new IOException("HTTP response line too long");
+            }
+        }
+        return false;
+    }
+    
+    private void parseStatusLine() throws IOException {
+        String s = line.toString();
+        line.setLength(0);
+        int idx = s.indexOf(' ');
+        if (!s.startsWith("HTTP/") || idx == -1) {
+            throw new IOException("Invalid HTTP status line: " + s);
+        }
+        int idx2 = s.indexOf(' ', idx + 1);
+        String code = idx2 == -1 ? s.substring(idx + 1) : s.substring(idx + 1, idx2);
+        try {
+            response = new NIOHTTPResponse(s.substring(0, idx), 
+                                           Integer.parseInt(code.trim()),
+                                           idx2 == -1 ? "" : s.substring(idx2 + 1));
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid HTTP status line: " + s);
+        }
+        state = State.HEADERS;
+    }
+    
+    private void parseHeader() {
+        String s = line.toString();
+        line.setLength(0);
+        int idx = s.indexOf(':');
+        if (idx > 0) {
+            response.addHeader(s.substring(0, idx).trim(), s.substring(idx + 1).trim());
+        }
+    }
+    
+    private NIOHTTPResponse headersComplete() throws IOException {
+        int code = response.getResponseCode();
+        if (code >= 100 && code < 200) {
+            // interim response such as 100-Continue, the real one follows
+            reset(headRequest);
+            return null;
+        }
+        if (headRequest || code == 204 || code == 304) {
+            return complete(false);
+        }
+        String te = response.getHeader("Transfer-Encoding");
+        if (te != null && te.toLowerCase().indexOf("chunked") != -1) {
+            body = new CachedOutputStream();
+            state = State.CHUNK_SIZE;
+            return null;
+        }
+        String cl = response.getHeader("Content-Length");
+        if (cl != null) {
+            try {
+                remaining = Long.parseLong(cl.trim());
+            } catch (NumberFormatException ex) {
+                throw new IOException("Invalid Content-Length: " + cl);
+            }
+            if (remaining == 0) {
+                return complete(false);
+            }
+            body = new CachedOutputStream();
+            state = State.BODY;
+            return null;
+        }
+        body = new CachedOutputStream();
+        state = State.BODY_TO_EOF;
+        return null;
+    }
+    
+    private long parseChunkSize() throws IOException {
+        String s = line.toString();
+        line.setLength(0);
+        int idx = s.indexOf(';');
+        if (idx != -1) {
+            s = s.substring(0, idx);
+        }
+        try {
+            return Long.parseLong(s.trim(), 16);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid chunk size: " + s);
+        }
+    }
+    
+    private long copy(ByteBuffer buf, long max) throws IOException {
+        int n = (int)Math.min(buf.remaining(), max);
+        if (buf.hasArray()) {
+            body.write(buf.array(), buf.arrayOffset() + buf.position(), n);
+            buf.position(buf.position() + n);
+        } else {
+            byte[] bytes = new byte[n];
+            buf.get(bytes);
+            body.write(bytes);
+        }
+        return n;
+    }
+    
+    private NIOHTTPResponse complete(boolean closeDelimited) throws IOException {
+        NIOHTTPResponse r = response;
+        if (body != null) {
+            body.flush();
+        }
+        r.setBody(body, closeDelimited);
+        reset(false);
+        return r;
+    }
+}
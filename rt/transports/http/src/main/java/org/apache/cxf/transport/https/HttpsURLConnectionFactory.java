@@ -28,6 +28,8 @@ import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 
@@ -73,6 +75,15 @@ public final class HttpsURLConnectionFactory
      */
     private static final String[] DERIVATIVE = {"CiphersuiteFilters"};
     
+    /*
+     * The socket factories created so far.  The connection factories of all
+     * the conduits configured with the same TLSClientParameters share one, so
+     * that the JDK can reuse their kept alive connections and TLS sessions 
+     * rather than handshaking again for each new client.
+     */
+    private static final Map<TLSClientParameters, SSLSocketFactory> SOCKET_FACTORIES =
+        new WeakHashMap<TLSClientParameters, SSLSocketFactory>();
+    
     /**
      * This field holds the conduit to which this connection factory
      * is a slave.
@@ -173,6 +184,12 @@ public final class HttpsURLConnectionFactory
             }
         }
 
+        if (socketFactory == null) {
+            synchronized (SOCKET_FACTORIES) {
+                socketFactory = SOCKET_FACTORIES.get(tlsClientParameters);
+            }
+        }
+
         // Okay, no SSLSocketFactory available in TLSClientParameters.  Maybe
         // TrustManagers, KeyManagers, etc?
         if (socketFactory == null) {
@@ -220,6 +237,9 @@ public final class HttpsURLConnectionFactory
             socketFactory = new SSLSocketFactoryWrapper(ctx.getSocketFactory(),
                                                         cipherSuites,
                                                         tlsClientParameters.getSecureSocketProtocol());
+            synchronized (SOCKET_FACTORIES) {
+                SOCKET_FACTORIES.put(tlsClientParameters, socketFactory);
+            }
         }
         
         if (connection instanceof HttpsURLConnection) {
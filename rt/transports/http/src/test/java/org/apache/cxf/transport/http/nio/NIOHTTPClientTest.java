@@ -0,0 +1,343 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.transport.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.helpers.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NIOHTTPClientTest extends Assert {
+    private ServerSocket serverSocket;
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean chunked;
+    private volatile boolean respond = true;
+    private volatile boolean closeAfterResponse;
+    private final AtomicBoolean dropNextRequest = new AtomicBoolean();
+    private final AtomicInteger requests = new AtomicInteger();
+    private NIOHTTPClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket s = serverSocket.accept();
+                        connections.incrementAndGet();
+                        new Thread() {
+                            public void run() {
+                                serve(s);
+                            }
+                        } .start();
+                    }
+                } catch (IOException ex) {
+                    // closed
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+        client = new NIOHTTPClient(1);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        client.shutdown();
+        serverSocket.close();
+    }
+    
+    @Test
+    public void testKeepAlive() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Result result = execute("POST", "/test" + i, "hello" + i);
+            assertNull(result.failure);
+            assertEquals(200, result.response.getResponseCode());
+            assertEquals("text/plain", result.response.getHeader("content-type"));
+            assertEquals("POST /test" + i + ":hello" + i, 
+                         IOUtils.toString(result.response.getInputStream()));
+        }
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+        chunked = true;
+        Result result = execute("POST", "/chunked", "some data");
+        assertNull(result.failure);
+        assertEquals("POST /chunked:some data", IOUtils.toString(result.response.getInputStream()));
+        result = execute("POST", "/chunked", "more");
+        assertEquals("POST /chunked:more", IOUtils.toString(result.response.getInputStream()));
+        assertEquals(1, connections.get());
+    }
+    
+    @Test
+    public void testPipelining() throws Exception {
+        client.setMaxConnectionsPerHost(1);
+        client.setMaxPipelinedRequests(5);
+        List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < 5; i++) {
+            Result result = new Result();
+            client.execute(new NIOHTTPRequest("GET", url("/get" + i)), result);
+            results.add(result);
+        }
+        for (int i = 0; i < 5; i++) {
+            Result result = results.get(i).await();
+            assertNull(result.failure);
+            assertEquals("GET /get" + i + ":", IOUtils.toString(result.response.getInputStream()));
+        }
+        assertEquals(1, connections.get());
+    }
+    
+    @Test
+    public void testReceiveTimeout() throws Exception {
+        respond = false;
+        NIOHTTPRequest request = new NIOHTTPRequest("POST", url("/timeout"));
+        request.setBody("data".getBytes());
+        request.setReceiveTimeout(500);
+        Result result = new Result();
+        client.execute(request, result);
+        result.await();
+        assertNull(result.response);
+        assertTrue(result.failure instanceof SocketTimeoutException);
+    }
+    
+    @Test
+    public void testMaxTotalConnections() throws Exception {
+        client.setMaxTotalConnections(1);
+        List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < 4; i++) {
+            NIOHTTPRequest request = new NIOHTTPRequest("POST", url("/total"));
+            request.setBody(("body" + i).getBytes());
+            Result result = new Result();
+            client.execute(request, result);
+            results.add(result);
+        }
+        for (int i = 0; i < 4; i++) {
+            Result result = results.get(i).await();
+            assertNull(result.failure);
+            assertEquals("POST /total:body" + i, IOUtils.toString(result.response.getInputStream()));
+        }
+        assertEquals(1, connections.get());
+        assertEquals(0, client.getPendingRequests());
+        assertEquals(0, client.getLeasedConnections());
+        assertEquals(1, client.getIdleConnections());
+    }
+    
+    @Test
+    public void testWarmUp() throws Exception {
+        client.warmUp(url("/"), 3);
+        for (int i = 0; i < 100 && client.getIdleConnections() < 3; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(3, client.getTotalConnections());
+        assertEquals(3, client.getIdleConnections());
+        
+        Result result = execute("POST", "/warm", "data");
+        assertNull(result.failure);
+        assertEquals(3, connections.get());
+        assertEquals(3, client.getConnectionsCreated());
+    }
+    
+    @Test
+    public void testConnectionClosedByServer() throws Exception {
+        closeAfterResponse = true;
+        for (int i = 0; i < 3; i++) {
+            Result result = execute("POST", "/close", "data" + i);
+            assertNull(result.failure);
+            assertEquals("POST /close:data" + i, IOUtils.toString(result.response.getInputStream()));
+        }
+        assertEquals(3, connections.get());
+    }
+    
+    @Test
+    public void testRetryOnReusedConnection() throws Exception {
+        assertNull(execute("GET", "/first", "").failure);
+        // the server closes the pooled connection after reading the request
+        dropNextRequest.set(true);
+        Result result = execute("GET", "/retried", "");
+        assertNull(result.failure);
+        assertEquals("GET /retried:", IOUtils.toString(result.response.getInputStream()));
+        assertEquals(3, requests.get());
+        assertEquals(2, connections.get());
+    }
+    
+    @Test
+    public void testWrittenPostNotRetried() throws Exception {
+        assertNull(execute("POST", "/first", "data").failure);
+        dropNextRequest.set(true);
+        Result result = execute("POST", "/dropped", "data");
+        assertNull(result.response);
+        assertNotNull(result.failure);
+        // the server may have processed it, so it must not be sent again
+        assertEquals(2, requests.get());
+        assertEquals(1, connections.get());
+    }
+    
+    @Test
+    public void testShutdownFailsPendingRequests() throws Exception {
+        respond = false;
+        client.setMaxTotalConnections(1);
+        List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < 3; i++) {
+            NIOHTTPRequest request = new NIOHTTPRequest("POST", url("/pending"));
+            request.setBody(("body" + i).getBytes());
+            Result result = new Result();
+            client.execute(request, result);
+            results.add(result);
+        }
+        for (int i = 0; i < 100 && client.getPendingRequests() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, client.getPendingRequests());
+        client.shutdown();
+        for (Result result : results) {
+            assertNotNull(result.await().failure);
+        }
+        assertEquals(0, client.getPendingRequests());
+        
+        Result result = new Result();
+        client.execute(new NIOHTTPRequest("GET", url("/late")), result);
+        assertNotNull(result.await().failure);
+    }
+    
+    private URL url(String path) throws Exception {
+        return new URL("http://localhost:" + serverSocket.getLocalPort() + path);
+    }
+    
+    private Result execute(String method, String path, String body) throws Exception {
+        NIOHTTPRequest request = new NIOHTTPRequest(method, url(path));
+        request.getHeaders().put("Content-Type", Collections.singletonList("text/plain"));
+        request.setBody(body.getBytes("UTF-8"));
+        Result result = new Result();
+        client.execute(request, result);
+        return result.await();
+    }
+    
+    private void serve(Socket s) {
+        try {
+            InputStream in = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null) {
+                    break;
+                }
+                int length = 0;
+                for (String line = readLine(in); line != null && line.length() > 0; line = readLine(in)) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        length = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                byte[] body = new byte[length];
+                for (int n = 0; n < length;) {
+                    n += in.read(body, n, length - n);
+                }
+                requests.incrementAndGet();
+                if (dropNextRequest.compareAndSet(true, false)) {
+                    break;
+                }
+                if (!respond) {
+                    continue;
+                }
+                String[] parts = requestLine.split(" ");
+                byte[] data = (parts[0] + " " + parts[1] + ":" + new String(body, "UTF-8")).getBytes("UTF-8");
+                StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n");
+                if (chunked) {
+                    head.append("Transfer-Encoding: chunked\r\n\r\n");
+                    out.write(head.toString().getBytes("ISO-8859-1"));
+                    int half = data.length / 2;
+                    writeChunk(out, data, 0, half);
+                    writeChunk(out, data, half, data.length - half);
+                    out.write("0\r\n\r\n".getBytes("ISO-8859-1"));
+                } else {
+                    head.append("Content-Length: ").append(data.length).append("\r\n\r\n");
+                    out.write(head.toString().getBytes("ISO-8859-1"));
+                    out.write(data);
+                }
+                out.flush();
+                if (closeAfterResponse) {
+                    break;
+                }
+            }
+            s.close();
+        } catch (IOException ex) {
+            // client closed the connection
+        }
+    }
+    
+    private static void writeChunk(OutputStream out, byte[] data, int off, int len) throws IOException {
+        out.write((Integer.toHexString(len) + "\r\n").getBytes("ISO-8859-1"));
+        out.write(data, off, len);
+        out.write("\r\n".getBytes("ISO-8859-1"));
+        out.flush();
+    }
+    
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c == -1) {
+                return null;
+            }
+            if (c != '\r') {
+                b.append((char)c);
+            }
+        }
+        return b.toString();
+    }
+    
+    private static class Result implements NIOHTTPCallback {
+        NIOHTTPResponse response;
+        IOException failure;
+        private final BlockingQueue<Object> done = new LinkedBlockingQueue<Object>();
+        
+        public void responseReceived(NIOHTTPResponse r) {
+            response = r;
+            done.add(r);
+        }
+
+        public void failed(IOException ex) {
+            failure = ex;
+            done.add(ex);
+        }
+        
+        Result await() throws InterruptedException {
+            assertNotNull("No response received", done.poll(10, TimeUnit.SECONDS));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.https;
+
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import org.apache.cxf.configuration.jsse.TLSClientParameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpsURLConnectionFactoryTest extends Assert {
+
+    @Test
+    public void testSocketFactorySharedForSameParameters() throws Exception {
+        URL url = new URL("https://localhost:9000/SoapContext/SoapPort");
+        TLSClientParameters params = new TLSClientParameters();
+        HttpsURLConnection c1 =
+            (HttpsURLConnection)new HttpsURLConnectionFactory(params).createConnection(null, url);
+        HttpsURLConnection c2 =
+            (HttpsURLConnection)new HttpsURLConnectionFactory(params).createConnection(null, url);
+        assertSame(c1.getSSLSocketFactory(), c2.getSSLSocketFactory());
+
+        HttpsURLConnection c3 =
+            (HttpsURLConnection)new HttpsURLConnectionFactory(new TLSClientParameters())
+                .createConnection(null, url);
+        assertNotSame(c1.getSSLSocketFactory(), c3.getSSLSocketFactory());
+    }
+}
@@ -26,6 +26,13 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.logging.Logger;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Document;
+
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.io.AbstractWrappedOutputStream;
 import org.apache.cxf.io.CachedOutputStream;
@@ -33,6 +40,8 @@ import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.ExchangeImpl;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.staxutils.W3CDOMStreamReader;
+import org.apache.cxf.staxutils.W3CDOMStreamWriter;
 import org.apache.cxf.transport.AbstractConduit;
 
 public class LocalConduit extends AbstractConduit {
@@ -41,6 +50,14 @@ public class LocalConduit extends AbstractConduit {
     public static final String RESPONSE_CONDUIT = LocalConduit.class.getName() + ".inConduit";
     public static final String IN_EXCHANGE = LocalConduit.class.getName() + ".inExchange";
     public static final String DIRECT_DISPATCH = LocalConduit.class.getName() + ".directDispatch";
+    /**
+     * Passes the message as a DOM instead of as bytes: the sender writes to a
+     * W3CDOMStreamWriter and the receiver reads the same document through an
+     * XMLStreamReader.  Requests are delivered by the bus work queue, responses
+     * on the thread that sends them.  Only meant for XML payloads without 
+     * attachments, as attachments are not serialized in this mode.
+     */
+    public static final String OBJECT_DISPATCH = LocalConduit.class.getName() + ".objectDispatch";
     public static final String MESSAGE_FILTER_PROPERTIES = LocalTransportFactory.MESSAGE_FILTER_PROPERTIES;
 
     private static final Logger LOG = LogUtils.getL7dLogger(LocalConduit.class);
@@ -55,7 +72,9 @@ public class LocalConduit extends AbstractConduit {
     }
     
     public void prepare(final Message message) throws IOException {
-        if (!Boolean.TRUE.equals(message.get(DIRECT_DISPATCH))) {
+        if (Boolean.TRUE.equals(message.get(OBJECT_DISPATCH))) {
+            prepareObjectContent(message);
+        } else if (!Boolean.TRUE.equals(message.get(DIRECT_DISPATCH))) {
             dispatchViaPipe(message);
         } else {
             // prepare the stream here
@@ -66,7 +85,10 @@ public class LocalConduit extends AbstractConduit {
 
     @Override
     public void close(Message message) throws IOException {
-        if (Boolean.TRUE.equals(message.get(DIRECT_DISPATCH))
+        if (Boolean.TRUE.equals(message.get(OBJECT_DISPATCH))
+            && !Boolean.TRUE.equals(message.get(Message.INBOUND_MESSAGE))) {
+            dispatchObject(message);
+        } else if (Boolean.TRUE.equals(message.get(DIRECT_DISPATCH))
             && !Boolean.TRUE.equals(message.get(Message.INBOUND_MESSAGE))) {
             dispatchDirect(message);
         } 
@@ -101,6 +123,75 @@ public class LocalConduit extends AbstractConduit {
     }
 
 
+    private void dispatchObject(Message message) throws IOException {
+        if (destination.getMessageObserver() == null) {
+            throw new IllegalStateException("Local destination does not have a MessageObserver on address " 
+                                            + destination.getAddress().getAddress().getValue());
+        }
+
+        final MessageImpl copy = new MessageImpl();
+        copy.put(IN_CONDUIT, this);
+        copy.setDestination(destination);
+        
+        transportFactory.copy(message, copy);
+        copyObjectContent(message, copy);
+
+        ExchangeImpl ex = new ExchangeImpl();
+        ex.setInMessage(copy);
+        ex.put(IN_EXCHANGE, message.getExchange());
+        ex.put(LocalConduit.OBJECT_DISPATCH, true);
+        ex.setDestination(destination);
+        
+        transportFactory.dispatch(new Runnable() {
+            public void run() {
+                destination.getMessageObserver().onMessage(copy);
+            }
+        });
+    }
+    
+    /**
+     * Sets up the outgoing message so that the StAX based interceptors write
+     * into a DOM.  Whatever is written to the OutputStream is passed on as well.
+     */
+    static void prepareObjectContent(Message message) throws IOException {
+        try {
+            message.setContent(XMLStreamWriter.class, new W3CDOMStreamWriter());
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage());
+        }
+        message.setContent(OutputStream.class, new CachedOutputStream());
+    }
+    
+    /**
+     * Hands the content written by the sender to the receiving message.
+     */
+    static void copyObjectContent(Message message, Message copy) throws IOException {
+        MessageImpl.copyContent(message, copy);
+        copy.removeContent(XMLStreamWriter.class);
+        copy.removeContent(OutputStream.class);
+        
+        XMLStreamWriter writer = message.getContent(XMLStreamWriter.class);
+        if (writer instanceof W3CDOMStreamWriter) {
+            Document doc = ((W3CDOMStreamWriter)writer).getDocument();
+            if (doc.getDocumentElement() != null) {
+                copy.setContent(XMLStreamReader.class, new W3CDOMStreamReader(doc));
+            }
+        } else if (writer != null) {
+            // an interceptor replaced the DOM writer, so only the stream is passed on
+            try {
+                writer.flush();
+            } catch (XMLStreamException e) {
+                IOException ex = new IOException(e.getMessage());
+                ex.initCause(e);
+                throw ex;
+            }
+        }
+        OutputStream out = message.getContent(OutputStream.class);
+        if (out instanceof CachedOutputStream) {
+            copy.setContent(InputStream.class, ((CachedOutputStream)out).getInputStream());
+        }
+    }
+
     private void dispatchViaPipe(final Message message) throws IOException {
         final LocalConduit conduit = this;
         final Exchange exchange = message.getExchange();
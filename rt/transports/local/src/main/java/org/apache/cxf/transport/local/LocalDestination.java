@@ -76,7 +76,9 @@ public class LocalDestination extends AbstractDestination {
         }
 
         public void prepare(final Message message) throws IOException {            
-            if (!Boolean.TRUE.equals(message.getExchange().get(LocalConduit.DIRECT_DISPATCH))) {
+            if (Boolean.TRUE.equals(message.getExchange().get(LocalConduit.OBJECT_DISPATCH))) {
+                LocalConduit.prepareObjectContent(message);
+            } else if (!Boolean.TRUE.equals(message.getExchange().get(LocalConduit.DIRECT_DISPATCH))) {
                 final Exchange exchange = (Exchange)message.getExchange().get(LocalConduit.IN_EXCHANGE);
 
                 AbstractWrappedOutputStream cout 
@@ -112,6 +114,18 @@ public class LocalDestination extends AbstractDestination {
 
         @Override
         public void close(Message message) throws IOException {
+            if (Boolean.TRUE.equals(message.getExchange().get(LocalConduit.OBJECT_DISPATCH))) {
+                final Exchange exchange = (Exchange)message.getExchange().get(LocalConduit.IN_EXCHANGE);
+                
+                MessageImpl copy = new MessageImpl();
+                copy.putAll(message);
+                LocalConduit.copyObjectContent(message, copy);
+                if (exchange != null && exchange.getInMessage() == null) {
+                    exchange.setInMessage(copy);
+                }                
+                conduit.getMessageObserver().onMessage(copy);
+                return;
+            }
             if (Boolean.TRUE.equals(message.getExchange().get(LocalConduit.DIRECT_DISPATCH))) {
                 final Exchange exchange = (Exchange)message.getExchange().get(LocalConduit.IN_EXCHANGE);
                 
@@ -26,6 +26,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.Resource;
@@ -40,6 +45,8 @@ import org.apache.cxf.transport.Conduit;
 import org.apache.cxf.transport.ConduitInitiator;
 import org.apache.cxf.transport.Destination;
 import org.apache.cxf.transport.DestinationFactory;
+import org.apache.cxf.workqueue.AutomaticWorkQueue;
+import org.apache.cxf.workqueue.WorkQueueManager;
 import org.apache.cxf.ws.addressing.AttributedURIType;
 import org.apache.cxf.ws.addressing.EndpointReferenceType;
 
@@ -54,6 +61,10 @@ public class LocalTransportFactory extends AbstractTransportFactory
 
     private static final Logger LOG = LogUtils.getL7dLogger(LocalTransportFactory.class);
     private static final Set<String> URI_PREFIXES = new HashSet<String>();
+    
+    // set while a dispatcher delivers a message, deliveries made from there
+    // (nested synchronous calls) run inline
+    private static final ThreadLocal<Boolean> DISPATCHING = new ThreadLocal<Boolean>();
 
     static {
         URI_PREFIXES.add("local://");
@@ -65,6 +76,34 @@ public class LocalTransportFactory extends AbstractTransportFactory
     private Set<String> messageFilterProperties;
     private Set<String> messageIncludeProperties;
     
+    // messages sent with LocalConduit.OBJECT_DISPATCH wait here until a 
+    // work queue thread picks them up
+    private BlockingQueue<Runnable> dispatchQueue = new ArrayBlockingQueue<Runnable>(256);
+    private int maxDispatchThreads = 4;
+    private final AtomicInteger dispatchThreads = new AtomicInteger();
+    private final Runnable dispatcher = new Runnable() {
+        public void run() {
+            DISPATCHING.set(Boolean.TRUE);
+            try {
+                Runnable r = dispatchQueue.poll();
+                while (r != null) {
+                    try {
+                        r.run();
+                    } catch (RuntimeException ex) {
+                        LOG.log(Level.WARNING, "Failed to dispatch local message", ex);
+                    }
+                    r = dispatchQueue.poll();
+                }
+            } finally {
+                DISPATCHING.remove();
+                dispatchThreads.decrementAndGet();
+            }
+            if (!dispatchQueue.isEmpty()) {
+                startDispatcher();
+            }
+        }
+    };
+    
     public LocalTransportFactory() {
         super();
         List<String> ids = new ArrayList<String>();
@@ -135,6 +174,66 @@ public class LocalTransportFactory extends AbstractTransportFactory
         return URI_PREFIXES;
     }
 
+    /**
+     * Queues the delivery of an object dispatched message.  The queue is 
+     * drained by at most maxDispatchThreads tasks on the bus work queue; when
+     * it is full the message is delivered on the calling thread instead.  A 
+     * message sent while a dispatcher delivers another one is delivered inline
+     * as well, as a synchronous call waiting there for a queued delivery could
+     * otherwise hold the last dispatcher and never be answered.
+     */
+    void dispatch(Runnable delivery) {
+        if (DISPATCHING.get() != null || !dispatchQueue.offer(delivery)) {
+            delivery.run();
+            return;
+        }
+        startDispatcher();
+    }
+    
+    private void startDispatcher() {
+        int n = dispatchThreads.get();
+        while (n < maxDispatchThreads) {
+            if (dispatchThreads.compareAndSet(n, n + 1)) {
+                execute(dispatcher);
+                return;
+            }
+            n = dispatchThreads.get();
+        }
+    }
+    
+    private void execute(Runnable r) {
+        WorkQueueManager mgr = bus == null ? null : bus.getExtension(WorkQueueManager.class);
+        if (mgr != null) {
+            AutomaticWorkQueue queue = mgr.getNamedWorkQueue("local-transport");
+            if (queue == null) {
+                queue = mgr.getAutomaticWorkQueue();
+            }
+            try {
+                queue.execute(r);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // fall back to a thread of our own
+            }
+        }
+        new Thread(r).start();
+    }
+    
+    public int getDispatchQueueSize() {
+        return dispatchQueue.remainingCapacity() + dispatchQueue.size();
+    }
+    
+    public void setDispatchQueueSize(int size) {
+        dispatchQueue = new ArrayBlockingQueue<Runnable>(size);
+    }
+    
+    public int getMaxDispatchThreads() {
+        return maxDispatchThreads;
+    }
+    
+    public void setMaxDispatchThreads(int max) {
+        maxDispatchThreads = max;
+    }
+
     public Set<String> getMessageFilterProperties() {
         return messageFilterProperties;
     }
@@ -24,10 +24,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.cxf.message.Message;
 import org.apache.cxf.message.MessageImpl;
 import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.staxutils.StaxUtils;
 import org.apache.cxf.transport.Conduit;
 
 import org.apache.cxf.transport.MessageObserver;
@@ -46,6 +52,100 @@ public class LocalTransportFactoryTest extends Assert {
         testInvocation(true);
     }
     
+    @Test
+    public void testLocalTransportWithObjectDispatch() throws Exception {
+        LocalTransportFactory factory = new LocalTransportFactory();
+        
+        EndpointInfo ei = new EndpointInfo(null, "http://schemas.xmlsoap.org/soap/http");
+        AddressType a = new AddressType();
+        a.setLocation("http://localhost/test");
+        ei.addExtensor(a);
+
+        LocalDestination d = (LocalDestination) factory.getDestination(ei);
+        d.setMessageObserver(new XMLEchoObserver());
+        
+        Conduit conduit = factory.getConduit(ei);
+        TestMessageObserver obs = new TestMessageObserver();
+        conduit.setMessageObserver(obs);
+        
+        MessageImpl m = new MessageImpl();
+        m.put(LocalConduit.OBJECT_DISPATCH, Boolean.TRUE);
+        m.setDestination(d);
+        conduit.prepare(m);
+        
+        XMLStreamWriter writer = m.getContent(XMLStreamWriter.class);
+        writer.writeStartElement("greeting");
+        writer.writeCharacters("hello");
+        writer.writeEndElement();
+        conduit.close(m);
+
+        obs.getResponseStream();
+        XMLStreamReader reader = obs.inMessage.getContent(XMLStreamReader.class);
+        assertNotNull(reader);
+        reader.nextTag();
+        assertEquals("greeting", reader.getLocalName());
+        assertEquals("hello", reader.getElementText());
+    }
+    
+    @Test
+    public void testObjectDispatchWithReplacedWriter() throws Exception {
+        LocalTransportFactory factory = new LocalTransportFactory();
+        
+        EndpointInfo ei = new EndpointInfo(null, "http://schemas.xmlsoap.org/soap/http");
+        AddressType a = new AddressType();
+        a.setLocation("http://localhost/test");
+        ei.addExtensor(a);
+
+        LocalDestination d = (LocalDestination) factory.getDestination(ei);
+        d.setMessageObserver(new EchoObserver());
+        
+        Conduit conduit = factory.getConduit(ei);
+        TestMessageObserver obs = new TestMessageObserver();
+        conduit.setMessageObserver(obs);
+        
+        MessageImpl m = new MessageImpl();
+        m.put(LocalConduit.OBJECT_DISPATCH, Boolean.TRUE);
+        m.setDestination(d);
+        conduit.prepare(m);
+        
+        // not a DOM writer any more, the content goes to the stream
+        XMLStreamWriter writer = StaxUtils.createXMLStreamWriter(m.getContent(OutputStream.class));
+        m.setContent(XMLStreamWriter.class, writer);
+        writer.writeStartElement("greeting");
+        writer.writeCharacters("hello");
+        writer.writeEndElement();
+        conduit.close(m);
+
+        assertEquals("<greeting>hello</greeting>", obs.getResponseStream().toString());
+        assertNull(obs.inMessage.getContent(XMLStreamReader.class));
+    }
+    
+    @Test
+    public void testNestedObjectDispatch() throws Exception {
+        final LocalTransportFactory factory = new LocalTransportFactory();
+        factory.setMaxDispatchThreads(1);
+        final CountDownLatch nested = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        // the only dispatcher waits for a message it dispatches itself
+        factory.dispatch(new Runnable() {
+            public void run() {
+                factory.dispatch(new Runnable() {
+                    public void run() {
+                        nested.countDown();
+                    }
+                });
+                try {
+                    if (nested.await(5, TimeUnit.SECONDS)) {
+                        done.countDown();
+                    }
+                } catch (InterruptedException ex) {
+                    // fails below
+                }
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+    
     private void testInvocation(boolean isDirectDispatch) throws Exception {
         LocalTransportFactory factory = new LocalTransportFactory();
         
@@ -104,6 +204,25 @@ public class LocalTransportFactoryTest extends Assert {
         }
     }
 
+    static class XMLEchoObserver implements MessageObserver {
+
+        public void onMessage(Message message) {
+            try {
+                message.getExchange().setInMessage(message);
+                Conduit backChannel = message.getDestination().getBackChannel(message, null, null);
+                
+                XMLStreamReader reader = message.getContent(XMLStreamReader.class);
+                assertNotNull(reader);   
+                backChannel.prepare(message);
+                XMLStreamWriter writer = message.getContent(XMLStreamWriter.class);
+                StaxUtils.copy(reader, writer);
+                backChannel.close(message);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     private static void copy(final InputStream input, final OutputStream output, final int bufferSize)
         throws IOException {
         try {
@@ -67,5 +67,19 @@ public class WSAddressingFeature extends AbstractFeature {
         mapAggregator.setAddressingRequired(required);
     }
     
+    public long getCorrelationTimeout() {
+        return mapCodec.getCorrelationTable().getDefaultTimeout();
+    }
+    public void setCorrelationTimeout(long timeout) {
+        mapCodec.setCorrelationTimeout(timeout);
+    }
+    
+    public int getMaxUncorrelatedExchanges() {
+        return mapCodec.getCorrelationTable().getMaxSize();
+    }
+    public void setMaxUncorrelatedExchanges(int max) {
+        mapCodec.setMaxUncorrelatedExchanges(max);
+    }
+    
     
 }
@@ -0,0 +1,386 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.addressing.soap;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.message.Exchange;
+
+/**
+ * The exchanges awaiting a correlated response, keyed by the MessageID of the 
+ * request.  Each entry carries a deadline; the entries are hashed into the 
+ * buckets of a timer wheel by their deadline tick, and a daemon timer, shared
+ * by all the tables, sweeps one bucket per tick, handing the exchanges that 
+ * are still uncorrelated to the {@link TimeoutHandler}.  An entry removed by a correlated response is 
+ * left in its bucket, without its exchange, until the sweep reaches it.
+ * <p>
+ * The table holds at most {@link #getMaxSize()} entries.  When it is full 
+ * {@link #put(String, Exchange, long)} waits up to {@link #getMaxWait()} 
+ * milliseconds for an entry to be removed, then gives up with an 
+ * {@link IllegalStateException}.  The max size and the wheel geometry are 
+ * fixed once the first entry has been added.
+ */
+public class CorrelationTable extends AbstractMap<String, Exchange> {
+    
+    /**
+     * Called, on the shared timer thread, for each exchange that got no 
+     * correlated response before its deadline.  Lengthy work should be handed
+     * off, as it holds up the expiry of the entries of all the tables.
+     */
+    public interface TimeoutHandler {
+        void timedOut(String messageID, Exchange exchange);
+    }
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(CorrelationTable.class);
+    private static final AtomicInteger TABLE_COUNT = new AtomicInteger();
+    
+    // the timer of all the tables, it runs while one of them is started
+    private static Timer sharedTimer;
+    private static int timerUsers;
+    
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final TimeoutHandler handler;
+    private String name = "wsa-correlation-table-" + TABLE_COUNT.incrementAndGet();
+    private volatile long defaultTimeout = 300000;
+    private volatile long maxWait = 5000;
+    private int maxSize = 10000;
+    private long tickDuration = 1000;
+    private int wheelSize = 512;
+    
+    // created with the first entry
+    private Semaphore permits;
+    private ConcurrentLinkedQueue<Entry>[] wheel;
+    private TimerTask sweeper;
+    private long startTime;
+    private volatile long tick;
+    
+    public CorrelationTable(TimeoutHandler h) {
+        handler = h;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String n) {
+        name = n;
+    }
+    
+    /**
+     * @return the time in milliseconds an exchange waits for a correlated 
+     * response if {@link #put(String, Exchange)} is used
+     */
+    public long getDefaultTimeout() {
+        return defaultTimeout;
+    }
+    
+    public void setDefaultTimeout(long timeout) {
+        defaultTimeout = timeout;
+    }
+    
+    /**
+     * @return the time in milliseconds to wait for room in a full table
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+    
+    public void setMaxWait(long wait) {
+        maxWait = wait;
+    }
+    
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * @param max the maximum number of entries, zero or less for no limit
+     */
+    public synchronized void setMaxSize(int max) {
+        checkNotStarted();
+        maxSize = max;
+    }
+    
+    public synchronized long getTickDuration() {
+        return tickDuration;
+    }
+    
+    /**
+     * @param duration the resolution of the deadlines in milliseconds
+     */
+    public synchronized void setTickDuration(long duration) {
+        checkNotStarted();
+        tickDuration = duration;
+    }
+    
+    public synchronized int getWheelSize() {
+        return wheelSize;
+    }
+    
+    public synchronized void setWheelSize(int size) {
+        checkNotStarted();
+        wheelSize = size;
+    }
+    
+    /**
+     * @return the number of exchanges that timed out
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+    
+    /**
+     * @return the number of exchanges refused because the table was full
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+    
+    public Exchange get(Object key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.exchange;
+    }
+    
+    public Exchange put(String messageID, Exchange exchange) {
+        return put(messageID, exchange, defaultTimeout);
+    }
+    
+    /**
+     * Adds an exchange, waiting for room if the table is full.
+     * 
+     * @param timeout the time in milliseconds to wait for the correlated response 
+     * @return the exchange previously stored for the MessageID
+     * @throws IllegalStateException if the table stayed full for 
+     * {@link #getMaxWait()} milliseconds
+     */
+    public Exchange put(String messageID, Exchange exchange, long timeout) {
+        start();
+        acquire();
+        Entry entry = new Entry(messageID, exchange);
+        Entry previous = entries.put(messageID, entry);
+        schedule(entry, timeout);
+        if (previous == null) {
+            return null;
+        }
+        Exchange previousExchange = previous.exchange;
+        previous.exchange = null;
+        release();
+        return previousExchange;
+    }
+    
+    public Exchange remove(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        Exchange exchange = entry.exchange;
+        entry.exchange = null;
+        release();
+        return exchange;
+    }
+    
+    public void clear() {
+        for (Object key : entries.keySet().toArray()) {
+            remove(key);
+        }
+    }
+    
+    /**
+     * @return a snapshot of the entries
+     */
+    public Set<Map.Entry<String, Exchange>> entrySet() {
+        Map<String, Exchange> snapshot = new HashMap<String, Exchange>();
+        for (Entry entry : entries.values()) {
+            Exchange exchange = entry.exchange;
+            if (exchange != null) {
+                snapshot.put(entry.messageID, exchange);
+            }
+        }
+        return snapshot.entrySet();
+    }
+    
+    /**
+     * Stops sweeping the table, and the shared timer if no other table uses it.
+     * The entries are kept but no longer expire until another one is added.
+     */
+    public synchronized void shutdown() {
+        if (sweeper != null) {
+            sweeper.cancel();
+            sweeper = null;
+            releaseTimer();
+        }
+    }
+    
+    private static synchronized Timer acquireTimer() {
+        if (sharedTimer == null) {
+            sharedTimer = new Timer("wsa-correlation-timer", true);
+        }
+        timerUsers++;
+        return sharedTimer;
+    }
+    
+    private static synchronized void releaseTimer() {
+        if (--timerUsers == 0) {
+            sharedTimer.cancel();
+            sharedTimer = null;
+        } else {
+            sharedTimer.purge();
+        }
+    }
+    
+    private void checkNotStarted() {
+        if (wheel != null) {
+            throw new IllegalStateException("The correlation table is in use");
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private synchronized void start() {
+        if (wheel == null) {
+            if (maxSize > 0) {
+                permits = new Semaphore(maxSize);
+            }
+            wheel = new ConcurrentLinkedQueue[wheelSize];
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new ConcurrentLinkedQueue<Entry>();
+            }
+            startTime = System.currentTimeMillis();
+        }
+        if (sweeper == null) {
+            sweeper = new TimerTask() {
+                public void run() {
+                    try {
+                        sweep();
+                    } catch (RuntimeException ex) {
+                        // would cancel the timer of all the tables
+                        LOG.log(Level.WARNING, "CORRELATION_SWEEP_FAILURE_MSG", ex);
+                    }
+                }
+            };
+            acquireTimer().scheduleAtFixedRate(sweeper, tickDuration, tickDuration);
+        }
+    }
+    
+    private void acquire() {
+        if (permits == null || permits.tryAcquire()) {
+            return;
+        }
+        boolean acquired = false;
+        try {
+            acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            rejections.incrementAndGet();
+            throw new IllegalStateException("The correlation table is full");
+        }
+    }
+    
+    private void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+    
+    private void schedule(Entry entry, long timeout) {
+        long current = tick;
+        long elapsed = System.currentTimeMillis() - startTime;
+        long deadline = (elapsed + timeout + tickDuration - 1) / tickDuration;
+        if (deadline <= current) {
+            deadline = current + 1;
+        }
+        entry.rounds = (deadline - current - 1) / wheel.length;
+        wheel[(int)(deadline % wheel.length)].add(entry);
+    }
+    
+    /**
+     * Processes the bucket of the current tick, removing the entries that were 
+     * correlated and expiring those whose last round has come.
+     */
+    private void sweep() {
+        long current = tick + 1;
+        tick = current;
+        Iterator<Entry> it = wheel[(int)(current % wheel.length)].iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.exchange == null) {
+                it.remove();
+            } else if (entry.rounds > 0) {
+                entry.rounds--;
+            } else {
+                it.remove();
+                expire(entry);
+            }
+        }
+    }
+    
+    private void expire(Entry entry) {
+        Exchange exchange = entry.exchange;
+        if (exchange == null || !entries.remove(entry.messageID, entry)) {
+            return;
+        }
+        entry.exchange = null;
+        release();
+        timeouts.incrementAndGet();
+        try {
+            handler.timedOut(entry.messageID, exchange);
+        } catch (Throwable t) {
+            LOG.log(Level.WARNING, "CORRELATION_TIMEOUT_HANDLER_FAILURE_MSG", t);
+        }
+    }
+    
+    private static class Entry {
+        final String messageID;
+        volatile Exchange exchange;
+        long rounds;
+        
+        Entry(String id, Exchange ex) {
+            messageID = id;
+            exchange = ex;
+        }
+    }
+}
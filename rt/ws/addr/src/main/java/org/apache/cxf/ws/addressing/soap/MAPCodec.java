@@ -19,39 +19,55 @@
 
 package org.apache.cxf.ws.addressing.soap;
 
+import java.lang.ref.WeakReference;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import org.apache.cxf.Bus;
 import org.apache.cxf.binding.soap.SoapFault;
 import org.apache.cxf.binding.soap.SoapMessage;
 import org.apache.cxf.binding.soap.SoapVersion;
 import org.apache.cxf.binding.soap.interceptor.AbstractSoapInterceptor;
+import org.apache.cxf.buslifecycle.BusLifeCycleListener;
+import org.apache.cxf.buslifecycle.BusLifeCycleManager;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.util.StringUtils;
+import org.apache.cxf.endpoint.ClientImpl;
 import org.apache.cxf.headers.Header;
 import org.apache.cxf.helpers.CastUtils;
 import org.apache.cxf.helpers.DOMUtils;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.management.InstrumentationManager;
 import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
 import org.apache.cxf.phase.Phase;
+import org.apache.cxf.staxutils.W3CDOMStreamReader;
+import org.apache.cxf.staxutils.W3CDOMStreamWriter;
+import org.apache.cxf.transport.AbstractObservable;
+import org.apache.cxf.transport.Conduit;
+import org.apache.cxf.transport.MessageObserver;
 import org.apache.cxf.ws.addressing.AddressingProperties;
 import org.apache.cxf.ws.addressing.AddressingPropertiesImpl;
 import org.apache.cxf.ws.addressing.AttributedURIType;
@@ -61,6 +77,7 @@ import org.apache.cxf.ws.addressing.JAXWSAConstants;
 import org.apache.cxf.ws.addressing.Names;
 import org.apache.cxf.ws.addressing.ReferenceParametersType;
 import org.apache.cxf.ws.addressing.RelatesToType;
+import org.apache.cxf.workqueue.WorkQueueManager;
 import org.apache.cxf.wsdl.EndpointReferenceUtils;
 
 
@@ -73,12 +90,29 @@ public class MAPCodec extends AbstractSoapInterceptor {
     private static final Logger LOG = LogUtils.getL7dLogger(MAPCodec.class);
     private static final String IS_REFERENCE_PARAM_ATTR_NAME = "IsReferenceParameter";
 
+    /**
+     * The contextual property overriding, for one request, the time in 
+     * milliseconds to wait for the correlated response.
+     */
+    public static final String CORRELATION_TIMEOUT = 
+        "org.apache.cxf.ws.addressing.correlation.timeout";
+
     /**
      * REVISIT: map usage that the *same* interceptor instance 
      * is used in all chains.
      */
-    protected final Map<String, Exchange> uncorrelatedExchanges 
-        = new ConcurrentHashMap<String, Exchange>();
+    protected final CorrelationTable uncorrelatedExchanges = 
+        new CorrelationTable(new CorrelationTable.TimeoutHandler() {
+            public void timedOut(final String messageID, final Exchange exchange) {
+                execute(exchange.get(Bus.class), new Runnable() {
+                    public void run() {
+                        completeTimedOut(messageID, exchange);
+                    }
+                });
+            }
+        });
+
+    private final Set<String> managedBuses = new HashSet<String>();
 
     private VersionTransformer transformer;
     private HeaderFactory headerFactory;
@@ -92,6 +126,29 @@ public class MAPCodec extends AbstractSoapInterceptor {
         transformer = new VersionTransformer(this);
     } 
 
+    /**
+     * @return the table of the exchanges awaiting a correlated response
+     */
+    public CorrelationTable getCorrelationTable() {
+        return uncorrelatedExchanges;
+    }
+
+    /**
+     * @param timeout the default time in milliseconds to wait for the response 
+     * correlated with a request, see also {@link #CORRELATION_TIMEOUT}
+     */
+    public void setCorrelationTimeout(long timeout) {
+        uncorrelatedExchanges.setDefaultTimeout(timeout);
+    }
+
+    /**
+     * @param max the maximum number of exchanges awaiting a correlated 
+     * response, zero or less for no limit
+     */
+    public void setMaxUncorrelatedExchanges(int max) {
+        uncorrelatedExchanges.setMaxSize(max);
+    }
+
     /**
      * @return the set of SOAP headers understood by this handler 
      */
@@ -155,18 +212,24 @@ public class MAPCodec extends AbstractSoapInterceptor {
                 discardMAPs(header, maps);
 
                 Element hdr = getHeaderFactory().getHeader(message.getVersion());                
-                JAXBContext jaxbContext = 
-                    VersionTransformer.getExposedJAXBContext(
-                                                     maps.getNamespaceURI());
-                Marshaller marshaller = jaxbContext.createMarshaller();
+                XMLStreamWriter writer = MAPStreamCodec.isSupported(maps.getNamespaceURI())
+                    ? new W3CDOMStreamWriter(hdr) : null;
+                Marshaller marshaller = null;
+                if (requiresMarshaller(maps)) {
+                    JAXBContext jaxbContext = 
+                        VersionTransformer.getExposedJAXBContext(
+                                                         maps.getNamespaceURI());
+                    marshaller = jaxbContext.createMarshaller();
+                    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+                }
                 QName duplicate = maps.getDuplicate();
-                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
                 encodeAsExposed(maps,
                                 message,
                                 maps.getAction(), 
                                 Names.WSA_ACTION_QNAME,
                                 AttributedURIType.class, 
-                                hdr, 
+                                hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_ACTION_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -174,7 +237,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     maps.getAction(), 
                                     Names.WSA_ACTION_QNAME,
                                     AttributedURIType.class, 
-                                    hdr, 
+                                    hdr,
+                                    writer,
                                     marshaller);
                 }
                 encodeAsExposed(maps,
@@ -182,7 +246,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                 maps.getMessageID(), 
                                 Names.WSA_MESSAGEID_QNAME,
                                 AttributedURIType.class, 
-                                hdr, 
+                                hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_MESSAGEID_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -190,7 +255,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     maps.getMessageID(), 
                                     Names.WSA_MESSAGEID_QNAME,
                                     AttributedURIType.class, 
-                                    hdr, 
+                                    hdr,
+                                    writer,
                                     marshaller);
                 }
                 encodeAsExposed(maps,
@@ -198,7 +264,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                 maps.getTo(), 
                                 Names.WSA_TO_QNAME,
                                 AttributedURIType.class,  
-                                hdr, 
+                                hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_TO_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -206,7 +273,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     maps.getTo(), 
                                     Names.WSA_TO_QNAME,
                                     AttributedURIType.class,  
-                                    hdr, 
+                                    hdr,
+                                    writer,
                                     marshaller);
                 }
                 encodeAsExposed(maps,
@@ -215,6 +283,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                 Names.WSA_REPLYTO_QNAME, 
                                 EndpointReferenceType.class,
                                 hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_REPLYTO_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -223,6 +292,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     Names.WSA_REPLYTO_QNAME, 
                                     EndpointReferenceType.class,
                                     hdr,
+                                    writer,
                                     marshaller);
                 }
 
@@ -232,6 +302,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                 Names.WSA_RELATESTO_QNAME,
                                 RelatesToType.class,
                                 hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_RELATESTO_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -240,6 +311,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     Names.WSA_RELATESTO_QNAME,
                                     RelatesToType.class,
                                     hdr,
+                                    writer,
                                     marshaller);
                 }
                 encodeAsExposed(maps,
@@ -247,7 +319,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                 maps.getFrom(), 
                                 Names.WSA_FROM_QNAME,
                                 EndpointReferenceType.class,  
-                                hdr, 
+                                hdr,
+                                writer,
                                 marshaller);
                 if (Names.WSA_FROM_QNAME.equals(duplicate)) {
                     encodeAsExposed(maps,
@@ -255,7 +328,8 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     maps.getFrom(), 
                                     Names.WSA_FROM_QNAME,
                                     EndpointReferenceType.class,  
-                                    hdr, 
+                                    hdr,
+                                    writer,
                                     marshaller);
                 }
                 if (maps.getFaultTo() != null
@@ -269,6 +343,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                     Names.WSA_FAULTTO_QNAME, 
                                     EndpointReferenceType.class,
                                     hdr,
+                                    writer,
                                     marshaller);
                     if (Names.WSA_FAULTTO_QNAME.equals(duplicate)) {
                         encodeAsExposed(maps,
@@ -277,6 +352,7 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                         Names.WSA_FAULTTO_QNAME, 
                                         EndpointReferenceType.class,
                                         hdr,
+                                        writer,
                                         marshaller);
                     }
                 }
@@ -298,10 +374,32 @@ public class MAPCodec extends AbstractSoapInterceptor {
                 applyMAPValidation(message);
             } catch (JAXBException je) {
                 LOG.log(Level.WARNING, "SOAP_HEADER_ENCODE_FAILURE_MSG", je);
+            } catch (XMLStreamException xe) {
+                LOG.log(Level.WARNING, "SOAP_HEADER_ENCODE_FAILURE_MSG", xe);
             }
         }
     }
 
+    /**
+     * @param maps the MAPs to encode
+     * @return true if some of the MAPs cannot be streamed and must be marshalled
+     * with JAXB
+     */
+    private boolean requiresMarshaller(AddressingPropertiesImpl maps) {
+        if (!MAPStreamCodec.isSupported(maps.getNamespaceURI())) {
+            return true;
+        }
+        EndpointReferenceType toEpr = maps.getToEndpointReference();
+        if (toEpr != null 
+            && toEpr.getReferenceParameters() != null
+            && !toEpr.getReferenceParameters().getAny().isEmpty()) {
+            return true;
+        }
+        return !(MAPStreamCodec.canWrite(maps.getReplyTo())
+                 && MAPStreamCodec.canWrite(maps.getFrom())
+                 && MAPStreamCodec.canWrite(maps.getFaultTo()));
+    }
+
     private void encodeReferenceParameters(AddressingProperties maps, Element header, 
                                            Marshaller marshaller) throws JAXBException {
         EndpointReferenceType toEpr = maps.getToEndpointReference();
@@ -398,7 +496,10 @@ public class MAPCodec extends AbstractSoapInterceptor {
      * @param name the QName for the header 
      * @param clz the class
      * @param header the SOAP header element
-     * @param marshaller the JAXB marshaller to use
+     * @param writer the writer appending to the SOAP header element, null if
+     *  the exposed version is not streamed
+     * @param marshaller the JAXB marshaller to use, null if all the MAPs are
+     *  streamed
      */
     private <T> void encodeAsExposed(AddressingPropertiesImpl maps,
                                      SoapMessage message,
@@ -406,17 +507,26 @@ public class MAPCodec extends AbstractSoapInterceptor {
                                      QName name,
                                      Class<T> clz,
                                      Element header,
-                                     Marshaller marshaller) throws JAXBException {
+                                     XMLStreamWriter writer,
+                                     Marshaller marshaller) 
+        throws JAXBException, XMLStreamException {
         if (value != null) {
             LOG.log(Level.FINE,
                     "{0} : {1}",
                     new Object[] {name.getLocalPart(), getLogText(value)});
-            transformer.encodeAsExposed(maps.getNamespaceURI(),
-                                        value,
-                                        name.getLocalPart(),
-                                        clz,
-                                        header,
-                                        marshaller);
+            if (writer != null && MAPStreamCodec.canWrite(value)) {
+                MAPStreamCodec.write(maps.getNamespaceURI(),
+                                     value,
+                                     name.getLocalPart(),
+                                     writer);
+            } else {
+                transformer.encodeAsExposed(maps.getNamespaceURI(),
+                                            value,
+                                            name.getLocalPart(),
+                                            clz,
+                                            header,
+                                            marshaller);
+            }
         }
         addMustUnderstandAttribute(header,
                                    name,
@@ -448,15 +558,11 @@ public class MAPCodec extends AbstractSoapInterceptor {
                     if (hdr.getObject() instanceof Element) {
                         Element headerElement = (Element)hdr.getObject();
                         String headerURI = headerElement.getNamespaceURI();
-                        // Need to check the uri before getting unmarshaller else
-                        // would get wrong unmarshaller and fail to process required
-                        // headers.
+                        // Need to check the uri before decoding else would fail
+                        // to process required headers.
                         if (transformer.isSupported(headerURI)) {
-                            if (unmarshaller == null) {
-                                JAXBContext jaxbContext = 
-                                    VersionTransformer.getExposedJAXBContext(headerURI);
-                                unmarshaller = 
-                                    jaxbContext.createUnmarshaller();
+                            if (unmarshaller == null && !MAPStreamCodec.isSupported(headerURI)) {
+                                unmarshaller = createUnmarshaller(headerURI);
                             }
                             if (maps == null) {
                                 maps = new AddressingPropertiesImpl();
@@ -464,48 +570,41 @@ public class MAPCodec extends AbstractSoapInterceptor {
                             }
                             String localName = headerElement.getLocalName();
                             if (Names.WSA_MESSAGEID_NAME.equals(localName)) {
-                                maps.setMessageID(decodeAsNative(
-                                                       headerURI,
-                                                       AttributedURIType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setMessageID(decodeHeader(headerURI,
+                                                               AttributedURIType.class,
+                                                               headerElement,
+                                                               unmarshaller));
                             } else if (Names.WSA_TO_NAME.equals(localName)) {
-                                AttributedURIType addr = decodeAsNative(
-                                                       headerURI,
-                                                       AttributedURIType.class,
-                                                       headerElement, 
-                                                       unmarshaller);
+                                AttributedURIType addr = decodeHeader(headerURI,
+                                                                      AttributedURIType.class,
+                                                                      headerElement,
+                                                                      unmarshaller);
                                 maps.setTo(EndpointReferenceUtils.getEndpointReference(addr));
                             } else if (Names.WSA_FROM_NAME.equals(localName)) {
-                                maps.setFrom(decodeAsNative(
-                                                       headerURI,
-                                                       EndpointReferenceType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setFrom(decodeHeader(headerURI,
+                                                          EndpointReferenceType.class,
+                                                          headerElement,
+                                                          unmarshaller));
                             } else if (Names.WSA_REPLYTO_NAME.equals(localName)) {
-                                maps.setReplyTo(decodeAsNative(
-                                                       headerURI,
-                                                       EndpointReferenceType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setReplyTo(decodeHeader(headerURI,
+                                                             EndpointReferenceType.class,
+                                                             headerElement,
+                                                             unmarshaller));
                             } else if (Names.WSA_FAULTTO_NAME.equals(localName)) {
-                                maps.setFaultTo(decodeAsNative(
-                                                       headerURI,
-                                                       EndpointReferenceType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setFaultTo(decodeHeader(headerURI,
+                                                             EndpointReferenceType.class,
+                                                             headerElement,
+                                                             unmarshaller));
                             } else if (Names.WSA_RELATESTO_NAME.equals(localName)) {
-                                maps.setRelatesTo(decodeAsNative(
-                                                       headerURI,
-                                                       RelatesToType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setRelatesTo(decodeHeader(headerURI,
+                                                               RelatesToType.class,
+                                                               headerElement,
+                                                               unmarshaller));
                             } else if (Names.WSA_ACTION_NAME.equals(localName)) {
-                                maps.setAction(decodeAsNative(
-                                                       headerURI,
-                                                       AttributedURIType.class,
-                                                       headerElement, 
-                                                       unmarshaller));
+                                maps.setAction(decodeHeader(headerURI,
+                                                            AttributedURIType.class,
+                                                            headerElement,
+                                                            unmarshaller));
                             }
                         } else if (null != headerElement.getAttribute(IS_REFERENCE_PARAM_ATTR_NAME)) {
                             if (null == referenceParameterHeaders) {
@@ -520,6 +619,9 @@ public class MAPCodec extends AbstractSoapInterceptor {
                     }
                 }
                 if (null != referenceParameterHeaders && null != maps) {
+                    if (unmarshaller == null) {
+                        unmarshaller = createUnmarshaller(maps.getNamespaceURI());
+                    }
                     decodeReferenceParameters(referenceParameterHeaders, maps, unmarshaller);
                 }
             }
@@ -542,6 +644,46 @@ public class MAPCodec extends AbstractSoapInterceptor {
         }
     }
 
+    /**
+     * Decodes a MAP from a exposed version, streaming it if possible and
+     * unmarshalling it with JAXB otherwise.
+     *
+     * @param encodedAs specifies the encoded version
+     * @param clz the class
+     * @param headerElement the SOAP header element
+     * @param unmarshaller the JAXB unmarshaller to use, null to create one if 
+     *  the header cannot be streamed
+     * @return the decoded value
+     */
+    private <T> T decodeHeader(String encodedAs,
+                               Class<T> clz,
+                               Element headerElement,
+                               Unmarshaller unmarshaller) throws JAXBException {
+        if (MAPStreamCodec.isSupported(encodedAs)) {
+            try {
+                T value = MAPStreamCodec.read(encodedAs, 
+                                              clz, 
+                                              new W3CDOMStreamReader(headerElement));
+                if (value != null) {
+                    LOG.log(Level.FINE,
+                            "{0} : {1}",
+                            new Object[] {headerElement.getLocalName(), getLogText(value)});
+                    return value;
+                }
+            } catch (XMLStreamException xe) {
+                LOG.log(Level.FINE, "SOAP_HEADER_STREAM_DECODE_FAILURE_MSG", xe);
+            }
+        }
+        return decodeAsNative(encodedAs, 
+                              clz, 
+                              headerElement, 
+                              unmarshaller != null ? unmarshaller : createUnmarshaller(encodedAs));
+    }
+    
+    private Unmarshaller createUnmarshaller(String encodedAs) throws JAXBException {
+        return VersionTransformer.getExposedJAXBContext(encodedAs).createUnmarshaller();
+    }
+    
     /**
      * Decodes a MAP from a exposed version.
      *
@@ -720,9 +862,159 @@ public class MAPCodec extends AbstractSoapInterceptor {
      * @param maps the addressing properties
      */
     private void cacheExchange(SoapMessage message, AddressingProperties maps) {
-        if (ContextUtils.isRequestor(message) && !message.getExchange().isOneWay()) {
-            uncorrelatedExchanges.put(maps.getMessageID().getValue(),
-                                      message.getExchange());
+        Exchange exchange = message.getExchange();
+        if (ContextUtils.isRequestor(message) && !exchange.isOneWay()) {
+            manage(exchange.get(Bus.class));
+            try {
+                uncorrelatedExchanges.put(maps.getMessageID().getValue(),
+                                          exchange,
+                                          getCorrelationTimeout(message));
+            } catch (IllegalStateException ex) {
+                throw new Fault(new org.apache.cxf.common.i18n.Message(
+                    "CORRELATION_TABLE_FULL_MSG", LOG, uncorrelatedExchanges.getMaxSize()));
+            }
+        }
+    }
+    
+    /**
+     * @param message the current message
+     * @return the time in milliseconds to wait for the correlated response
+     */
+    private long getCorrelationTimeout(SoapMessage message) {
+        Object timeout = message.getContextualProperty(CORRELATION_TIMEOUT);
+        if (timeout instanceof Number) {
+            return ((Number)timeout).longValue();
+        } else if (timeout instanceof String) {
+            return Long.parseLong((String)timeout);
+        }
+        return uncorrelatedExchanges.getDefaultTimeout();
+    }
+    
+    /**
+     * Completes an exchange that got no correlated response in time with a 
+     * fault, delivered like a transport failure to the observer of the 
+     * conduit, or else directly to the waiting client.
+     * 
+     * @param messageID the MessageID of the request
+     * @param exchange the exchange
+     */
+    private void completeTimedOut(String messageID, Exchange exchange) {
+        LOG.log(Level.WARNING, "CORRELATION_TIMEOUT_MSG", messageID);
+        Message faultMessage = new MessageImpl();
+        faultMessage.setExchange(exchange);
+        faultMessage.setContent(Exception.class, new Fault(
+            new org.apache.cxf.common.i18n.Message("CORRELATION_TIMEOUT_MSG", LOG, messageID)));
+        exchange.setInFaultMessage(faultMessage);
+        
+        Conduit conduit = exchange.getConduit(exchange.getOutMessage());
+        MessageObserver observer = conduit instanceof AbstractObservable
+            ? ((AbstractObservable)conduit).getMessageObserver() : null;
+        if (observer != null) {
+            observer.onMessage(faultMessage);
+        } else {
+            synchronized (exchange) {
+                exchange.put(ClientImpl.FINISHED, Boolean.TRUE);
+                exchange.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Runs the completion of a timed out exchange on the work queue of the 
+     * bus, so that it does not hold up the timer of the correlation tables.
+     */
+    private void execute(Bus bus, Runnable r) {
+        WorkQueueManager mgr = bus == null ? null : bus.getExtension(WorkQueueManager.class);
+        if (mgr != null) {
+            try {
+                mgr.getAutomaticWorkQueue().execute(r);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // run it here then
+            }
+        }
+        r.run();
+    }
+    
+    /**
+     * Exposes the correlation table with JMX and ties it to the life cycle of 
+     * the bus, once per bus.
+     * 
+     * @param bus the bus of the current exchange
+     */
+    private void manage(Bus bus) {
+        if (bus == null) {
+            return;
+        }
+        synchronized (managedBuses) {
+            if (!managedBuses.add(bus.getId())) {
+                return;
+            }
+        }
+        ManagedCorrelationTable managed = null;
+        InstrumentationManager manager = bus.getExtension(InstrumentationManager.class);
+        if (manager != null) {
+            try {
+                managed = new ManagedCorrelationTable(uncorrelatedExchanges, bus);
+                manager.register(managed);
+            } catch (JMException jmex) {
+                managed = null;
+                LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+            }
+        }
+        BusLifeCycleManager lifeCycle = bus.getExtension(BusLifeCycleManager.class);
+        if (lifeCycle != null) {
+            lifeCycle.registerLifeCycleListener(new CorrelationTableLifeCycleListener(this, bus, managed));
+        }
+    }
+    
+    /**
+     * Called when a bus the correlation table is used with shuts down.  The 
+     * table stops expiring entries once no such bus is left.
+     * 
+     * @param bus the bus
+     * @param managed the JMX view registered for the bus, or null
+     */
+    private void busShutdown(Bus bus, ManagedCorrelationTable managed) {
+        InstrumentationManager manager = bus.getExtension(InstrumentationManager.class);
+        if (managed != null && manager != null) {
+            try {
+                manager.unregister(managed);
+            } catch (JMException jmex) {
+                LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+            }
+        }
+        synchronized (managedBuses) {
+            managedBuses.remove(bus.getId());
+            if (!managedBuses.isEmpty()) {
+                return;
+            }
+        }
+        uncorrelatedExchanges.shutdown();
+    }
+    
+    static class CorrelationTableLifeCycleListener implements BusLifeCycleListener {
+        final WeakReference<MAPCodec> ref;
+        final Bus bus;
+        final ManagedCorrelationTable managed;
+        
+        CorrelationTableLifeCycleListener(MAPCodec c, Bus b, ManagedCorrelationTable m) {
+            ref = new WeakReference<MAPCodec>(c);
+            bus = b;
+            managed = m;
+        }
+        
+        public void initComplete() {
+        }
+        
+        public void preShutdown() {
+            MAPCodec c = ref.get();
+            if (c != null) {
+                c.busShutdown(bus, managed);
+            }
+        }
+        
+        public void postShutdown() {
         }
     }
     
@@ -0,0 +1,355 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.addressing.soap;
+
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.cxf.staxutils.StaxUtils;
+import org.apache.cxf.ws.addressing.AttributedURIType;
+import org.apache.cxf.ws.addressing.ContextUtils;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+import org.apache.cxf.ws.addressing.JAXWSAConstants;
+import org.apache.cxf.ws.addressing.MetadataType;
+import org.apache.cxf.ws.addressing.Names;
+import org.apache.cxf.ws.addressing.RelatesToType;
+import org.apache.cxf.ws.addressing.VersionTransformer.Names200408;
+
+/**
+ * Reads and writes the Message Addressing Properties headers of the 2005/08 
+ * and 2004/08 versions directly with StAX, without going through JAXB.  The 
+ * structure of these headers is fixed, except for the endpoint references which
+ * may carry reference parameters, metadata and extensibility elements.  Such
+ * endpoint references are left to JAXB: canWrite returns false for them and
+ * read returns null.
+ * <p>
+ * The 2004/08 headers are mapped to and from the native 2005/08 types as they
+ * are read and written, as the VersionTransformer does.
+ */
+final class MAPStreamCodec {
+
+    private static final String RELATIONSHIP_TYPE = Names.WSA_RELATIONSHIPTYPE_NAME;
+
+    private MAPStreamCodec() {
+    }
+
+    /**
+     * @param namespace the WS-Addressing namespace
+     * @return true if the headers of this version may be streamed
+     */
+    static boolean isSupported(String namespace) {
+        return Names.WSA_NAMESPACE_NAME.equals(namespace) 
+               || Names200408.WSA_NAMESPACE_NAME.equals(namespace);
+    }
+
+    /**
+     * @param value the MAP value
+     * @return true if the value may be streamed, false if it must be 
+     * marshalled with JAXB
+     */
+    static boolean canWrite(Object value) {
+        if (value instanceof AttributedURIType || value instanceof RelatesToType) {
+            return true;
+        }
+        if (value instanceof EndpointReferenceType) {
+            EndpointReferenceType epr = (EndpointReferenceType)value;
+            MetadataType metadata = epr.getMetadata();
+            return epr.getAddress() != null
+                   && epr.getReferenceParameters() == null
+                   && (metadata == null 
+                       || (metadata.getAny().isEmpty() && metadata.getOtherAttributes().isEmpty()))
+                   && epr.getAny().isEmpty();
+        }
+        return value == null;
+    }
+
+    /**
+     * Writes a MAP header.
+     * 
+     * @param exposeAs the WS-Addressing namespace to expose
+     * @param value the value, for which canWrite must be true
+     * @param localName the local name of the header
+     * @param writer the writer
+     */
+    static void write(String exposeAs, Object value, String localName, XMLStreamWriter writer) 
+        throws XMLStreamException {
+        writeStartElement(writer, exposeAs, localName);
+        writer.writeNamespace(JAXWSAConstants.WSA_PREFIX, exposeAs);
+        if (value instanceof AttributedURIType) {
+            writeURI(writer, exposeAs, (AttributedURIType)value);
+        } else if (value instanceof RelatesToType) {
+            writeRelatesTo(writer, exposeAs, (RelatesToType)value);
+        } else if (value instanceof EndpointReferenceType) {
+            writeEPR(writer, exposeAs, (EndpointReferenceType)value);
+        }
+        writer.writeEndElement();
+    }
+    
+    /**
+     * Reads a MAP header.
+     * 
+     * @param encodedAs the WS-Addressing namespace of the header
+     * @param clz the native type of the value
+     * @param reader the reader, positioned before or on the header element
+     * @return the value, or null if the header must be unmarshalled with JAXB
+     */
+    static <T> T read(String encodedAs, Class<T> clz, XMLStreamReader reader) 
+        throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamReader.START_ELEMENT) {
+            reader.next();
+        }
+        Object value = null;
+        if (AttributedURIType.class.equals(clz)) {
+            value = readURI(reader, encodedAs);
+        } else if (RelatesToType.class.equals(clz)) {
+            value = readRelatesTo(reader, encodedAs);
+        } else if (EndpointReferenceType.class.equals(clz)) {
+            value = readEPR(reader, encodedAs);
+        }
+        return clz.cast(value);
+    }
+
+    private static void writeURI(XMLStreamWriter writer, String exposeAs, AttributedURIType uri) 
+        throws XMLStreamException {
+        writeAttributes(writer, uri.getOtherAttributes());
+        if (uri.getValue() != null) {
+            writer.writeCharacters(toExposed(exposeAs, uri.getValue()));
+        }
+    }
+    
+    private static void writeRelatesTo(XMLStreamWriter writer, String exposeAs, RelatesToType relatesTo)
+        throws XMLStreamException {
+        // the reply relationship is the default, in 2004/08 it is written as no relationship
+        String type = relatesTo.getRelationshipType();
+        if (type != null && !Names.WSA_RELATIONSHIP_REPLY.equals(type)) {
+            writer.writeAttribute(RELATIONSHIP_TYPE, type);
+        }
+        writeAttributes(writer, relatesTo.getOtherAttributes());
+        if (relatesTo.getValue() != null) {
+            writer.writeCharacters(relatesTo.getValue());
+        }
+    }
+
+    private static void writeEPR(XMLStreamWriter writer, String exposeAs, EndpointReferenceType epr)
+        throws XMLStreamException {
+        writeAttributes(writer, epr.getOtherAttributes());
+        writeStartElement(writer, exposeAs, Names.WSA_ADDRESS_NAME);
+        writeURI(writer, exposeAs, epr.getAddress());
+        writer.writeEndElement();
+        if (epr.getMetadata() != null && Names.WSA_NAMESPACE_NAME.equals(exposeAs)) {
+            // 2004/08 has no direct analogue for Metadata
+            writeStartElement(writer, exposeAs, Names.WSA_METADATA_NAME);
+            writer.writeEndElement();
+        }
+    }
+    
+    private static void writeStartElement(XMLStreamWriter writer, String namespace, String localName) 
+        throws XMLStreamException {
+        writer.writeStartElement(JAXWSAConstants.WSA_PREFIX, localName, namespace);
+    }
+
+    private static void writeAttributes(XMLStreamWriter writer, Map<QName, String> attributes)
+        throws XMLStreamException {
+        for (Map.Entry<QName, String> entry : attributes.entrySet()) {
+            QName name = entry.getKey();
+            String namespace = name.getNamespaceURI();
+            if (namespace == null || namespace.length() == 0) {
+                writer.writeAttribute(name.getLocalPart(), entry.getValue());
+            } else {
+                String prefix = writer.getPrefix(namespace);
+                if (prefix == null || prefix.length() == 0) {
+                    prefix = name.getPrefix();
+                    if (prefix.length() == 0
+                        || writer.getNamespaceContext().getNamespaceURI(prefix) != null) {
+                        prefix = StaxUtils.getUniquePrefix(writer);
+                    }
+                    writer.writeNamespace(prefix, namespace);
+                }
+                writer.writeAttribute(prefix, namespace, name.getLocalPart(), entry.getValue());
+            }
+        }
+    }
+
+    private static AttributedURIType readURI(XMLStreamReader reader, String encodedAs)
+        throws XMLStreamException {
+        AttributedURIType uri = ContextUtils.WSA_OBJECT_FACTORY.createAttributedURIType();
+        readAttributes(reader, uri.getOtherAttributes(), null);
+        String value = readText(reader);
+        if (value == null) {
+            return null;
+        }
+        uri.setValue(toNative(encodedAs, value));
+        return uri;
+    }
+
+    private static RelatesToType readRelatesTo(XMLStreamReader reader, String encodedAs)
+        throws XMLStreamException {
+        RelatesToType relatesTo = ContextUtils.WSA_OBJECT_FACTORY.createRelatesToType();
+        String type = readAttributes(reader, relatesTo.getOtherAttributes(), RELATIONSHIP_TYPE);
+        if (type != null && Names200408.WSA_NAMESPACE_NAME.equals(encodedAs)) {
+            type = toNativeRelationship(reader, type);
+        }
+        relatesTo.setRelationshipType(type);
+        String value = readText(reader);
+        if (value == null) {
+            return null;
+        }
+        relatesTo.setValue(value);
+        return relatesTo;
+    }
+
+    private static EndpointReferenceType readEPR(XMLStreamReader reader, String encodedAs)
+        throws XMLStreamException {
+        EndpointReferenceType epr = ContextUtils.WSA_OBJECT_FACTORY.createEndpointReferenceType();
+        readAttributes(reader, epr.getOtherAttributes(), null);
+        while (true) {
+            switch (reader.next()) {
+            case XMLStreamReader.START_ELEMENT:
+                if (epr.getAddress() != null
+                    || !encodedAs.equals(reader.getNamespaceURI())
+                    || !Names.WSA_ADDRESS_NAME.equals(reader.getLocalName())) {
+                    // reference parameters, metadata or extensibility elements
+                    return null;
+                }
+                AttributedURIType address = readURI(reader, encodedAs);
+                if (address == null) {
+                    return null;
+                }
+                epr.setAddress(address);
+                break;
+            case XMLStreamReader.END_ELEMENT:
+            case XMLStreamReader.END_DOCUMENT:
+                return epr.getAddress() == null ? null : epr;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads the attributes of the current element other than the namespace
+     * declarations.
+     * 
+     * @param reader the reader
+     * @param others the map to store the attributes in
+     * @param known the name of the unqualified attribute to return rather than 
+     * store, or null
+     * @return the value of the known attribute
+     */
+    private static String readAttributes(XMLStreamReader reader, Map<QName, String> others, 
+                                         String known) {
+        String value = null;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            QName name = reader.getAttributeName(i);
+            String namespace = name.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespace)) {
+                continue;
+            }
+            boolean unqualified = namespace == null || namespace.length() == 0;
+            if (unqualified && name.getLocalPart().equals(known)) {
+                value = reader.getAttributeValue(i);
+            } else {
+                others.put(name, reader.getAttributeValue(i));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads the text content of the current element and moves to its end.
+     * 
+     * @return the text, or null if the element has child elements
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        String text = null;
+        StringBuilder buffer = null;
+        while (true) {
+            switch (reader.next()) {
+            case XMLStreamReader.CHARACTERS:
+            case XMLStreamReader.CDATA:
+            case XMLStreamReader.SPACE:
+            case XMLStreamReader.ENTITY_REFERENCE:
+                if (text == null) {
+                    text = reader.getText();
+                } else {
+                    if (buffer == null) {
+                        buffer = new StringBuilder(text);
+                    }
+                    buffer.append(reader.getText());
+                }
+                break;
+            case XMLStreamReader.START_ELEMENT:
+                return null;
+            case XMLStreamReader.END_ELEMENT:
+            case XMLStreamReader.END_DOCUMENT:
+                if (buffer != null) {
+                    return buffer.toString();
+                }
+                return text == null ? "" : text;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static String toExposed(String exposeAs, String value) {
+        if (Names200408.WSA_NAMESPACE_NAME.equals(exposeAs)) {
+            if (Names.WSA_ANONYMOUS_ADDRESS.equals(value)) {
+                return Names200408.WSA_ANONYMOUS_ADDRESS;
+            } else if (Names.WSA_NONE_ADDRESS.equals(value)) {
+                return Names200408.WSA_NONE_ADDRESS;
+            }
+        }
+        return value;
+    }
+
+    private static String toNative(String encodedAs, String value) {
+        if (Names200408.WSA_NAMESPACE_NAME.equals(encodedAs)) {
+            if (Names200408.WSA_ANONYMOUS_ADDRESS.equals(value)) {
+                return Names.WSA_ANONYMOUS_ADDRESS;
+            } else if (Names200408.WSA_NONE_ADDRESS.equals(value)) {
+                return Names.WSA_NONE_ADDRESS;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Maps a 2004/08 relationship type, a QName, to the native relationship
+     * type URI.
+     */
+    private static String toNativeRelationship(XMLStreamReader reader, String type) {
+        int colon = type.indexOf(':');
+        String localName = colon == -1 ? type : type.substring(colon + 1);
+        if (Names.WSA_REPLY_NAME.equalsIgnoreCase(localName)) {
+            return Names.WSA_RELATIONSHIP_REPLY;
+        }
+        String namespace = reader.getNamespaceURI(colon == -1 ? "" : type.substring(0, colon));
+        if (namespace == null || namespace.length() == 0) {
+            return type;
+        }
+        return new QName(namespace, localName).toString();
+    }
+}
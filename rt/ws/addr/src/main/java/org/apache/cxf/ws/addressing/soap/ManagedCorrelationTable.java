@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.addressing.soap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.management.ManagedComponent;
+import org.apache.cxf.management.ManagementConstants;
+import org.apache.cxf.management.annotation.ManagedAttribute;
+import org.apache.cxf.management.annotation.ManagedResource;
+
+@ManagedResource(componentName = "WSAddressingCorrelationTable", 
+                 description = "The exchanges awaiting a WS-Addressing correlated response", 
+                 currencyTimeLimit = 15, persistPolicy = "OnUpdate", persistPeriod = 200)
+                 
+public class ManagedCorrelationTable implements ManagedComponent {
+    private static final String TYPE_VALUE = "WSAddressingCorrelationTable";
+    
+    private final CorrelationTable table;
+    private final Bus bus;
+    
+    public ManagedCorrelationTable(CorrelationTable t, Bus b) {
+        table = t;
+        bus = b;
+    }
+    
+    @ManagedAttribute(description = "The number of exchanges awaiting a response")
+    public int getSize() {
+        return table.size();
+    }
+    
+    @ManagedAttribute(description = "The maximum number of exchanges awaiting a response")
+    public int getMaxSize() {
+        return table.getMaxSize();
+    }
+    
+    @ManagedAttribute(description = "The number of exchanges that got no response in time")
+    public long getTimeouts() {
+        return table.getTimeouts();
+    }
+    
+    @ManagedAttribute(description = "The number of requests refused because the table was full")
+    public long getRejections() {
+        return table.getRejections();
+    }
+    
+    @ManagedAttribute(description = "The default time in milliseconds to wait for a response",
+                      persistPolicy = "OnUpdate")
+    public long getDefaultTimeout() {
+        return table.getDefaultTimeout();
+    }
+    
+    public void setDefaultTimeout(long timeout) {
+        table.setDefaultTimeout(timeout);
+    }
+    
+    @ManagedAttribute(description = "The time in milliseconds to wait for room in a full table",
+                      persistPolicy = "OnUpdate")
+    public long getMaxWait() {
+        return table.getMaxWait();
+    }
+    
+    public void setMaxWait(long wait) {
+        table.setMaxWait(wait);
+    }
+    
+    public ObjectName getObjectName() throws JMException {
+        StringBuffer buffer = new StringBuffer(ManagementConstants.DEFAULT_DOMAIN_NAME + ":");
+        buffer.append(ManagementConstants.BUS_ID_PROP + "=" + bus.getId() + ",");
+        buffer.append(ManagementConstants.TYPE_PROP + "=" + TYPE_VALUE + ",");
+        buffer.append(ManagementConstants.NAME_PROP + "=" + ObjectName.quote(table.getName()));
+        return new ObjectName(buffer.toString());
+    }
+}
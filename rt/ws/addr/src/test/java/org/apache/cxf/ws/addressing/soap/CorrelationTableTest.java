@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.addressing.soap;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CorrelationTableTest extends Assert {
+
+    private final List<String> timedOut = new CopyOnWriteArrayList<String>();
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private CorrelationTable table;
+
+    @Before
+    public void setUp() {
+        table = new CorrelationTable(new CorrelationTable.TimeoutHandler() {
+            public void timedOut(String messageID, Exchange exchange) {
+                timedOut.add(messageID);
+                latch.countDown();
+            }
+        });
+        table.setTickDuration(10);
+        table.setWheelSize(8);
+    }
+
+    @After
+    public void tearDown() {
+        table.shutdown();
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        Exchange exchange = new ExchangeImpl();
+        assertNull(table.put("urn:uuid:1", exchange));
+        assertEquals(1, table.size());
+        assertSame(exchange, table.get("urn:uuid:1"));
+        assertSame(exchange, table.put("urn:uuid:1", exchange));
+        assertEquals(1, table.size());
+        assertSame(exchange, table.remove("urn:uuid:1"));
+        assertNull(table.remove("urn:uuid:1"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        table.put("urn:uuid:1", new ExchangeImpl(), 50);
+        table.put("urn:uuid:2", new ExchangeImpl(), 60000);
+        table.put("urn:uuid:3", new ExchangeImpl(), 50);
+        table.remove("urn:uuid:3");
+        
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, timedOut.size());
+        assertEquals("urn:uuid:1", timedOut.get(0));
+        assertEquals(1, table.getTimeouts());
+        assertEquals(1, table.size());
+        assertNotNull(table.get("urn:uuid:2"));
+    }
+
+    @Test
+    public void testTimeoutBeyondOneRound() throws Exception {
+        // the wheel spans 80ms
+        long start = System.currentTimeMillis();
+        table.put("urn:uuid:1", new ExchangeImpl(), 200);
+        
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        table.setMaxSize(1);
+        table.setMaxWait(50);
+        table.put("urn:uuid:1", new ExchangeImpl(), 60000);
+        try {
+            table.put("urn:uuid:2", new ExchangeImpl(), 60000);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(1, table.getRejections());
+        assertNull(table.get("urn:uuid:2"));
+        
+        table.setMaxWait(5000);
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+                table.remove("urn:uuid:1");
+            }
+        } .start();
+        table.put("urn:uuid:2", new ExchangeImpl(), 60000);
+        assertEquals(1, table.size());
+        assertNotNull(table.get("urn:uuid:2"));
+    }
+    
+    @Test
+    public void testTablesShareTimer() throws Exception {
+        final CountDownLatch otherLatch = new CountDownLatch(1);
+        CorrelationTable other = new CorrelationTable(new CorrelationTable.TimeoutHandler() {
+            public void timedOut(String messageID, Exchange exchange) {
+                otherLatch.countDown();
+            }
+        });
+        other.setTickDuration(10);
+        try {
+            table.put("urn:uuid:1", new ExchangeImpl(), 60000);
+            other.put("urn:uuid:2", new ExchangeImpl(), 60000);
+            assertEquals(1, countTimerThreads());
+            
+            // the other table keeps expiring its entries
+            table.shutdown();
+            other.put("urn:uuid:3", new ExchangeImpl(), 50);
+            assertTrue(otherLatch.await(5, TimeUnit.SECONDS));
+        } finally {
+            other.shutdown();
+        }
+    }
+    
+    private static int countTimerThreads() {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = 0;
+        for (int i = Thread.enumerate(threads) - 1; i >= 0; i--) {
+            if ("wsa-correlation-timer".equals(threads[i].getName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
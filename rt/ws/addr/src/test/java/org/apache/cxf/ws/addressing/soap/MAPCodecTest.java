@@ -31,6 +31,7 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
@@ -39,6 +40,7 @@ import org.apache.cxf.binding.soap.SoapFault;
 import org.apache.cxf.binding.soap.SoapMessage;
 import org.apache.cxf.binding.soap.SoapVersion;
 import org.apache.cxf.headers.Header;
+import org.apache.cxf.helpers.DOMUtils;
 import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.ExchangeImpl;
 import org.apache.cxf.message.Message;
@@ -265,6 +267,71 @@ public class MAPCodecTest extends Assert {
         verifyMessage(message, true, false, false);
     }
 
+    @Test
+    public void testStreamedRoundTrip() throws Exception {
+        verifyStreamedRoundTrip(Names.WSA_NAMESPACE_NAME);
+    }
+
+    @Test
+    public void testStreamedRoundTripNonNative() throws Exception {
+        verifyStreamedRoundTrip(VersionTransformer.Names200408.WSA_NAMESPACE_NAME);
+    }
+
+    private void verifyStreamedRoundTrip(String uri) throws Exception {
+        AddressingPropertiesImpl maps = new AddressingPropertiesImpl();
+        AttributedURIType id = ContextUtils.getAttributedURI("urn:uuid:12345");
+        QName extension = new QName("urn:test", "extension", "test");
+        id.getOtherAttributes().put(extension, "value");
+        maps.setMessageID(id);
+        maps.setTo(EndpointReferenceUtils.getEndpointReference("http://localhost:9000/to"));
+        maps.setReplyTo(EndpointReferenceUtils.getAnonymousEndpointReference());
+        maps.setFaultTo(EndpointReferenceUtils.getEndpointReference("http://localhost:9000/faultTo"));
+        maps.setFrom(EndpointReferenceUtils.getEndpointReference("http://localhost:9000/from"));
+        RelatesToType relatesTo = new RelatesToType();
+        relatesTo.setValue("urn:uuid:67890");
+        relatesTo.setRelationshipType("http://foo/bar/relationship");
+        maps.setRelatesTo(relatesTo);
+        maps.setAction(ContextUtils.getAttributedURI("http://foo/bar/SEI/opRequest"));
+        maps.getMustUnderstand().add(Names.WSA_ACTION_QNAME);
+        maps.exposeAs(uri);
+
+        SoapMessage outMessage = new SoapMessage(new MessageImpl());
+        setUpOutbound(outMessage, true);
+        outMessage.put(REQUESTOR_ROLE, Boolean.TRUE);
+        outMessage.put(CLIENT_ADDRESSING_PROPERTIES_OUTBOUND, maps);
+        codec.handleMessage(outMessage);
+
+        SoapMessage inMessage = new SoapMessage(new MessageImpl());
+        for (Header header : outMessage.getHeaders()) {
+            Element element = (Element)header.getObject();
+            assertEquals("unexpected namespace", uri, element.getNamespaceURI());
+            if (Names.WSA_ACTION_NAME.equals(element.getLocalName())) {
+                assertEquals("expected mustUnderstand", "1", 
+                             element.getAttributeNS(outMessage.getVersion().getNamespace(), 
+                                                    "mustUnderstand"));
+            } else if (Names.WSA_REPLYTO_NAME.equals(element.getLocalName())) {
+                String anonymous = Names.WSA_NAMESPACE_NAME.equals(uri) 
+                    ? Names.WSA_ANONYMOUS_ADDRESS
+                    : VersionTransformer.Names200408.WSA_ANONYMOUS_ADDRESS;
+                assertEquals("unexpected exposed address", anonymous, element.getTextContent());
+            }
+            inMessage.getHeaders().add(header);
+        }
+        assertEquals("unexpected header count", 7, inMessage.getHeaders().size());
+
+        AddressingPropertiesImpl decoded = (AddressingPropertiesImpl)codec.unmarshalMAPs(inMessage);
+        assertEquals(uri, decoded.getNamespaceURI());
+        assertEquals("urn:uuid:12345", decoded.getMessageID().getValue());
+        assertEquals("value", decoded.getMessageID().getOtherAttributes().get(extension));
+        assertEquals("http://localhost:9000/to", decoded.getTo().getValue());
+        assertEquals(Names.WSA_ANONYMOUS_ADDRESS, decoded.getReplyTo().getAddress().getValue());
+        assertEquals("http://localhost:9000/faultTo", decoded.getFaultTo().getAddress().getValue());
+        assertEquals("http://localhost:9000/from", decoded.getFrom().getAddress().getValue());
+        assertEquals("urn:uuid:67890", decoded.getRelatesTo().getValue());
+        assertEquals("http://foo/bar/relationship", decoded.getRelatesTo().getRelationshipType());
+        assertEquals("http://foo/bar/SEI/opRequest", decoded.getAction().getValue());
+    }
+
     private SoapMessage setUpMessage(boolean requestor, boolean outbound) throws Exception {
         return setUpMessage(requestor, outbound, false);
     }
@@ -287,7 +354,9 @@ public class MAPCodecTest extends Assert {
         message.put(REQUESTOR_ROLE, Boolean.valueOf(requestor));
         String mapProperty = getMAPProperty(requestor, outbound);
         AddressingPropertiesImpl maps = getMAPs(requestor, outbound, exposeAs);
-        final Element header = control.createMock(Element.class);
+        final Element header = outbound && MAPStreamCodec.isSupported(exposeAs)
+            ? DOMUtils.createDocument().createElementNS(message.getVersion().getNamespace(), "Header")
+            : control.createMock(Element.class);
         codec.setHeaderFactory(new MAPCodec.HeaderFactory() {
             public Element getHeader(SoapVersion version) {
                 return header;
@@ -311,42 +380,44 @@ public class MAPCodecTest extends Assert {
                              AddressingPropertiesImpl maps, String mapProperty, boolean invalidMAP,
                              boolean preExistingSOAPAction) throws Exception {
         message.put(mapProperty, maps);
-        Marshaller marshaller = control.createMock(Marshaller.class);
-        ContextUtils.getJAXBContext().createMarshaller();
-        EasyMock.expectLastCall().andReturn(marshaller);
-        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-        EasyMock.expectLastCall();
-        IArgumentMatcher matcher = new JAXBEltMatcher();
-        int len = expectFaultTo ? expectedValues.length : expectedValues.length - 1;
-        for (int i = 0; i < len; i++) {
-            if (!requestor || i != 4) {
-                EasyMock.reportMatcher(matcher);
-                EasyMock.eq(header);
-                marshaller.marshal(null, header);
-                EasyMock.expectLastCall();
+        if (!MAPStreamCodec.isSupported(expectedNamespaceURI)) {
+            Marshaller marshaller = control.createMock(Marshaller.class);
+            ContextUtils.getJAXBContext().createMarshaller();
+            EasyMock.expectLastCall().andReturn(marshaller);
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            EasyMock.expectLastCall();
+            IArgumentMatcher matcher = new JAXBEltMatcher();
+            int len = expectFaultTo ? expectedValues.length : expectedValues.length - 1;
+            for (int i = 0; i < len; i++) {
+                if (!requestor || i != 4) {
+                    EasyMock.reportMatcher(matcher);
+                    EasyMock.eq(header);
+                    marshaller.marshal(null, header);
+                    EasyMock.expectLastCall();
+                }
             }
-        }
         
-        Node child = control.createMock(Node.class);
-        header.getFirstChild();
-        EasyMock.expectLastCall().andReturn(child);
+            Node child = control.createMock(Node.class);
+            header.getFirstChild();
+            EasyMock.expectLastCall().andReturn(child);
         
-        int i = 0;
-        while (child != null) {
-            if (requestor && i == 4) {
-                i++;
+            int i = 0;
+            while (child != null) {
+                if (requestor && i == 4) {
+                    i++;
+                }
+                child.getNamespaceURI();
+                EasyMock.expectLastCall().andReturn(expectedNames[i].getNamespaceURI());
+                child.getLocalName();
+                EasyMock.expectLastCall().andReturn(expectedNames[i].getLocalPart());
+
+                Node nextChild = ++i < len
+                                 ? control.createMock(Node.class)
+                                 : null;
+                child.getNextSibling();
+                EasyMock.expectLastCall().andReturn(nextChild);
+                child = nextChild;
             }
-            child.getNamespaceURI();
-            EasyMock.expectLastCall().andReturn(expectedNames[i].getNamespaceURI());
-            child.getLocalName();
-            EasyMock.expectLastCall().andReturn(expectedNames[i].getLocalPart());
-
-            Node nextChild = ++i < len
-                             ? control.createMock(Node.class)
-                             : null;
-            child.getNextSibling();
-            EasyMock.expectLastCall().andReturn(nextChild);
-            child = nextChild;
         }
 
         mimeHeaders = new HashMap<String, List<String>>();
@@ -365,6 +436,10 @@ public class MAPCodecTest extends Assert {
 
     private void setUpDecode(SoapMessage message, List<Header> headers, AddressingPropertiesImpl maps,
                              String mapProperty, boolean requestor) throws Exception {
+        if (MAPStreamCodec.isSupported(maps.getNamespaceURI())) {
+            setUpStreamedDecode(headers, maps);
+            return;
+        }
         Unmarshaller unmarshaller = control.createMock(Unmarshaller.class);
         ContextUtils.getJAXBContext().createUnmarshaller();
         EasyMock.expectLastCall().andReturn(unmarshaller);
@@ -413,6 +488,44 @@ public class MAPCodecTest extends Assert {
         EasyMock.expectLastCall().andReturn(jaxbElement);
     }
 
+    private void setUpStreamedDecode(List<Header> headers, AddressingPropertiesImpl maps) {
+        String uri = maps.getNamespaceURI();
+        Object[] values = new Object[] {
+            maps.getAction(), maps.getMessageID(), maps.getTo(), maps.getReplyTo(),
+            maps.getRelatesTo(), maps.getFaultTo(), maps.getFrom()
+        };
+        String[] names = new String[] {
+            Names.WSA_ACTION_NAME, Names.WSA_MESSAGEID_NAME, Names.WSA_TO_NAME, Names.WSA_REPLYTO_NAME,
+            Names.WSA_RELATESTO_NAME, Names.WSA_FAULTTO_NAME, Names.WSA_FROM_NAME
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                headers.add(new Header(new QName(uri, names[i]), createHeader(uri, names[i], values[i])));
+            }
+        }
+    }
+
+    private Element createHeader(String uri, String name, Object value) {
+        Document doc = DOMUtils.createDocument();
+        Element header = doc.createElementNS(uri, "wsa:" + name);
+        header.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:wsa", uri);
+        doc.appendChild(header);
+        if (value instanceof AttributedURIType) {
+            header.appendChild(doc.createTextNode(((AttributedURIType)value).getValue()));
+        } else if (value instanceof EndpointReferenceType) {
+            Element address = doc.createElementNS(uri, "wsa:" + Names.WSA_ADDRESS_NAME);
+            address.appendChild(doc.createTextNode(((EndpointReferenceType)value).getAddress().getValue()));
+            header.appendChild(address);
+        } else if (value instanceof RelatesToType) {
+            RelatesToType relatesTo = (RelatesToType)value;
+            if (!Names.WSA_RELATIONSHIP_REPLY.equals(relatesTo.getRelationshipType())) {
+                header.setAttributeNS(null, Names.WSA_RELATIONSHIPTYPE_NAME, relatesTo.getRelationshipType());
+            }
+            header.appendChild(doc.createTextNode(relatesTo.getValue()));
+        }
+        return header;
+    }
+
     private void setUpOutbound(Message message, boolean outbound) {
         Exchange exchange = new ExchangeImpl();
         exchange.setOutMessage(outbound ? message : new MessageImpl());
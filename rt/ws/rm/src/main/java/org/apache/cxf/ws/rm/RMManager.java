@@ -365,6 +365,10 @@ public class RMManager implements ServerLifeCycleListener, ClientLifeCycleListen
             t.purge();
             t.cancel();
         }
+        
+        if (retransmissionQueue instanceof RetransmissionQueueImpl) {
+            ((RetransmissionQueueImpl)retransmissionQueue).shutdown();
+        }
     }
     
     synchronized void shutdownReliableEndpoint(Endpoint e) {
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.rm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.logging.LogUtils;
+
+/**
+ * Hashed timing wheel for large numbers of timeouts that are mostly cancelled 
+ * before they expire, such as retransmissions of messages awaiting an acknowledgement.
+ * <p>
+ * Scheduling and cancelling a timeout are O(1) and do not block: new and cancelled
+ * timeouts are queued and only applied to the wheel by its worker thread.  On every
+ * tick the worker hands all timeouts that expired in the current bucket to the
+ * {@link Handler} in a single call, so related work can be batched.  Timeouts 
+ * further away than one revolution of the wheel are kept in their bucket with a 
+ * count of remaining rounds.  Timeouts fire with a resolution of one tick.
+ */
+public class TimingWheel<T> {
+    
+    public static final long DEFAULT_TICK_DURATION = 100L;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(TimingWheel.class);
+    
+    private final Handler<T> handler;
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick;
+    
+    /**
+     * @param name the name of the worker thread
+     * @param tickDuration the duration of a tick in milliseconds
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     * @param h the handler for expired timeouts
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(String name, long tickDuration, int wheelSize, Handler<T> h) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize out of range: " + wheelSize);
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        handler = h;
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        wheel = (Bucket[])new TimingWheel.Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        startTime = System.nanoTime();
+        worker = new Thread(new Worker(), name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Schedules a timeout.
+     * 
+     * @param item the item handed to the handler on expiry
+     * @param delay the delay in milliseconds
+     * @return the timeout, which may be used to cancel it
+     */
+    public Timeout schedule(T item, long delay) {
+        if (!running) {
+            throw new IllegalStateException("TimingWheel has been stopped");
+        }
+        Timeout timeout = new Timeout(item, 
+            System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay)));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+    
+    /**
+     * Stops the worker thread, discarding all timeouts that have not expired.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Receives the timeouts expired during a tick.
+     */
+    public interface Handler<T> {
+        void expired(List<T> items);
+    }
+    
+    public final class Timeout {
+        private final T item;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        
+        Timeout(T i, long d) {
+            item = i;
+            deadline = d;
+        }
+        
+        public T getItem() {
+            return item;
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        /**
+         * Cancels the timeout, unless it has already expired.
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancelledTimeouts.add(this);
+            }
+        }
+    }
+    
+    /**
+     * Doubly linked list of timeouts, only accessed by the worker thread.
+     */
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+        
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (null == head) {
+                head = timeout;
+                tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+        
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (null != timeout.prev) {
+                timeout.prev.next = next;
+            }
+            if (null != next) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+        
+        void expire(List<T> expired) {
+            Timeout timeout = head;
+            while (null != timeout) {
+                if (timeout.remainingRounds <= 0) {
+                    Timeout next = remove(timeout);
+                    if (!timeout.cancelled) {
+                        expired.add(timeout.item);
+                    }
+                    timeout = next;
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+    
+    private final class Worker implements Runnable {
+        
+        public void run() {
+            List<T> expired = new ArrayList<T>();
+            while (running) {
+                if (!waitForNextTick()) {
+                    break;
+                }
+                removeCancelled();
+                transferPending();
+                wheel[(int)(tick & mask)].expire(expired);
+                tick++;
+                if (!expired.isEmpty()) {
+                    try {
+                        handler.expired(expired);
+                    } catch (Throwable t) {
+                        LOG.log(Level.WARNING, "EXPIRED_TIMEOUTS_EXC", t);
+                    }
+                    expired = new ArrayList<T>();
+                }
+            }
+            pendingTimeouts.clear();
+            cancelledTimeouts.clear();
+        }
+        
+        private boolean waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            while (true) {
+                long sleep = deadline - (System.nanoTime() - startTime);
+                if (sleep <= 0) {
+                    return true;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException ex) {
+                    if (!running) {
+                        return false;
+                    }
+                }
+            }
+        }
+        
+        private void removeCancelled() {
+            for (Timeout timeout = cancelledTimeouts.poll(); null != timeout; 
+                timeout = cancelledTimeouts.poll()) {
+                if (null != timeout.bucket) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+        
+        private void transferPending() {
+            for (Timeout timeout = pendingTimeouts.poll(); null != timeout; 
+                timeout = pendingTimeouts.poll()) {
+                if (timeout.cancelled) {
+                    continue;
+                }
+                long expiryTick = timeout.deadline / tickDuration;
+                timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+                // timeouts already due go into the current bucket
+                long t = Math.max(expiryTick, tick);
+                wheel[(int)(t & mask)].add(timeout);
+            }
+        }
+    }
+}
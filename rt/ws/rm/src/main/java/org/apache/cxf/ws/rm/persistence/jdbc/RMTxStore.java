@@ -36,13 +36,23 @@ import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
 
 import org.apache.cxf.common.i18n.Message;
 import org.apache.cxf.common.logging.LogUtils;
@@ -58,7 +68,21 @@ import org.apache.cxf.ws.rm.persistence.RMMessage;
 import org.apache.cxf.ws.rm.persistence.RMStore;
 import org.apache.cxf.ws.rm.persistence.RMStoreException;
 
-
+/**
+ * JDBC based implementation of the RMStore.
+ * <p>
+ * By default the store uses a single connection, created from the configured
+ * driver class and url, and serializes all transactions on it.  Alternatively
+ * a (pooling) DataSource can be supplied, in which case each transaction uses
+ * its own connection taken from the DataSource.
+ * <p>
+ * If groupCommit is enabled, the writes done by persistIncoming,
+ * persistOutgoing and removeMessages are handed to a single committer thread
+ * which executes all writes pending at that time (up to groupCommitBatchSize,
+ * waiting at most groupCommitDelay milliseconds for more to arrive) in one
+ * transaction.  The calling threads still only return once their write has
+ * been committed.
+ */
 public class RMTxStore implements RMStore {
     
     public static final String DEFAULT_DATABASE_NAME = "rmdb";
@@ -118,23 +142,20 @@ public class RMTxStore implements RMStore {
     
     private static final Logger LOG = LogUtils.getL7dLogger(RMTxStore.class);
     
+    public static final int DEFAULT_GROUP_COMMIT_BATCH_SIZE = 100;
+    
     private Connection connection;
+    private DataSource dataSource;
     private Lock writeLock = new ReentrantLock();
-
-    private PreparedStatement createDestSequenceStmt;
-    private PreparedStatement createSrcSequenceStmt;
-    private PreparedStatement deleteDestSequenceStmt;
-    private PreparedStatement deleteSrcSequenceStmt;
-    private PreparedStatement updateDestSequenceStmt;
-    private PreparedStatement updateSrcSequenceStmt;
-    private PreparedStatement selectDestSequencesStmt;
-    private PreparedStatement selectSrcSequencesStmt;
-    private PreparedStatement createInboundMessageStmt;
-    private PreparedStatement createOutboundMessageStmt;
-    private PreparedStatement deleteInboundMessageStmt;
-    private PreparedStatement deleteOutboundMessageStmt;
-    private PreparedStatement selectInboundMessagesStmt;
-    private PreparedStatement selectOutboundMessagesStmt;
+    
+    // statements prepared on the single connection, only used under the writeLock
+    private final Map<String, PreparedStatement> cachedStatements = new HashMap<String, PreparedStatement>();
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<Transaction>();
+    
+    private boolean groupCommit;
+    private int groupCommitBatchSize = DEFAULT_GROUP_COMMIT_BATCH_SIZE;
+    private long groupCommitDelay;
+    private volatile GroupCommitter committer;
     
     private String driverClassName = "org.apache.derby.jdbc.EmbeddedDriver";
     private String url = MessageFormat.format("jdbc:derby:{0};create=true", DEFAULT_DATABASE_NAME);
@@ -179,6 +200,43 @@ public class RMTxStore implements RMStore {
         connection = c;
     }
     
+    public void setDataSource(DataSource ds) {
+        dataSource = ds;
+    }
+    
+    DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    public void setGroupCommit(boolean gc) {
+        groupCommit = gc;
+    }
+    
+    boolean isGroupCommit() {
+        return groupCommit;
+    }
+    
+    public void setGroupCommitBatchSize(int size) {
+        groupCommitBatchSize = size;
+    }
+    
+    int getGroupCommitBatchSize() {
+        return groupCommitBatchSize;
+    }
+    
+    /**
+     * Sets the time in milliseconds the committer thread waits for further
+     * writes once it has picked up a write, 0 (the default) meaning that only
+     * the writes already pending are committed together.
+     */
+    public void setGroupCommitDelay(long delay) {
+        groupCommitDelay = delay;
+    }
+    
+    long getGroupCommitDelay() {
+        return groupCommitDelay;
+    }
+    
     // RMStore interface  
     
     public void createDestinationSequence(DestinationSequence seq) {
@@ -191,15 +249,13 @@ public class RMTxStore implements RMStore {
         try {
             beginTransaction();
             
-            if (null == createDestSequenceStmt) {
-                createDestSequenceStmt = connection.prepareStatement(CREATE_DEST_SEQUENCE_STMT_STR);
-            }
-            createDestSequenceStmt.setString(1, sequenceIdentifier);
+            PreparedStatement stmt = getStatement(CREATE_DEST_SEQUENCE_STMT_STR);
+            stmt.setString(1, sequenceIdentifier);
             String addr = seq.getAcksTo().getAddress().getValue();
-            createDestSequenceStmt.setString(2, addr);
-            createDestSequenceStmt.setString(3, endpointIdentifier);
+            stmt.setString(2, addr);
+            stmt.setString(3, endpointIdentifier);
             
-            createDestSequenceStmt.execute();
+            stmt.execute();
             
             commit();
             
@@ -220,17 +276,14 @@ public class RMTxStore implements RMStore {
         try {
             beginTransaction();
             
-            if (null == createSrcSequenceStmt) {
-                createSrcSequenceStmt = connection.prepareStatement(CREATE_SRC_SEQUENCE_STMT_STR);
-            }
-            assert null != createSrcSequenceStmt;
-            createSrcSequenceStmt.setString(1, sequenceIdentifier);
+            PreparedStatement stmt = getStatement(CREATE_SRC_SEQUENCE_STMT_STR);
+            stmt.setString(1, sequenceIdentifier);
             Date expiry = seq.getExpires();
-            createSrcSequenceStmt.setLong(2, expiry == null ? 0 : expiry.getTime());
+            stmt.setLong(2, expiry == null ? 0 : expiry.getTime());
             Identifier osid = seq.getOfferingSequenceIdentifier();
-            createSrcSequenceStmt.setString(3, osid == null ? null : osid.getValue());
-            createSrcSequenceStmt.setString(4, endpointIdentifier);
-            createSrcSequenceStmt.execute();    
+            stmt.setString(3, osid == null ? null : osid.getValue());
+            stmt.setString(4, endpointIdentifier);
+            stmt.execute();    
             
             commit();
             
@@ -244,11 +297,9 @@ public class RMTxStore implements RMStore {
         try {
             beginTransaction();
             
-            if (null == deleteDestSequenceStmt) {
-                deleteDestSequenceStmt = connection.prepareStatement(DELETE_DEST_SEQUENCE_STMT_STR);
-            }
-            deleteDestSequenceStmt.setString(1, sid.getValue());
-            deleteDestSequenceStmt.execute();
+            PreparedStatement stmt = getStatement(DELETE_DEST_SEQUENCE_STMT_STR);
+            stmt.setString(1, sid.getValue());
+            stmt.execute();
             
             commit();
             
@@ -263,11 +314,9 @@ public class RMTxStore implements RMStore {
         try {
             beginTransaction();
             
-            if (null == deleteSrcSequenceStmt) {
-                deleteSrcSequenceStmt = connection.prepareStatement(DELETE_SRC_SEQUENCE_STMT_STR);
-            }
-            deleteSrcSequenceStmt.setString(1, sid.getValue());
-            deleteSrcSequenceStmt.execute();
+            PreparedStatement stmt = getStatement(DELETE_SRC_SEQUENCE_STMT_STR);
+            stmt.setString(1, sid.getValue());
+            stmt.execute();
             
             commit();
             
@@ -283,13 +332,11 @@ public class RMTxStore implements RMStore {
         }
         Collection<DestinationSequence> seqs = new ArrayList<DestinationSequence>();
         try {
-            if (null == selectDestSequencesStmt) {
-                selectDestSequencesStmt = 
-                    connection.prepareStatement(SELECT_DEST_SEQUENCES_STMT_STR);               
-            }
-            selectDestSequencesStmt.setString(1, endpointIdentifier);
+            beginTransaction();
+            PreparedStatement stmt = getStatement(SELECT_DEST_SEQUENCES_STMT_STR);
+            stmt.setString(1, endpointIdentifier);
             
-            ResultSet res = selectDestSequencesStmt.executeQuery(); 
+            ResultSet res = stmt.executeQuery(); 
             while (res.next()) {
                 Identifier sid = RMUtils.getWSRMFactory().createIdentifier();                
                 sid.setValue(res.getString(1));
@@ -305,7 +352,9 @@ public class RMTxStore implements RMStore {
                                                                   lm == null ? null : lm.toBigInteger(), ack);
                 seqs.add(seq);                                                 
             }
+            commit();
         } catch (SQLException ex) {
+            abort();
             LOG.log(Level.WARNING, new Message("SELECT_DEST_SEQ_FAILED_MSG", LOG).toString(), ex);
         }
         return seqs;
@@ -317,12 +366,10 @@ public class RMTxStore implements RMStore {
         }
         Collection<SourceSequence> seqs = new ArrayList<SourceSequence>();
         try {
-            if (null == selectSrcSequencesStmt) {
-                selectSrcSequencesStmt = 
-                    connection.prepareStatement(SELECT_SRC_SEQUENCES_STMT_STR);     
-            }
-            selectSrcSequencesStmt.setString(1, endpointIdentifier);
-            ResultSet res = selectSrcSequencesStmt.executeQuery();
+            beginTransaction();
+            PreparedStatement stmt = getStatement(SELECT_SRC_SEQUENCES_STMT_STR);
+            stmt.setString(1, endpointIdentifier);
+            ResultSet res = stmt.executeQuery();
             
             while (res.next()) {
                 Identifier sid = RMUtils.getWSRMFactory().createIdentifier();
@@ -340,8 +387,9 @@ public class RMTxStore implements RMStore {
                 SourceSequence seq = new SourceSequence(sid, expiry, oi, cmn, lm);
                 seqs.add(seq);                          
             }
+            commit();
         } catch (SQLException ex) {
-            // ignore
+            abort();
             LOG.log(Level.WARNING, new Message("SELECT_SRC_SEQ_FAILED_MSG", LOG).toString(), ex);
         }
         return seqs;
@@ -350,16 +398,9 @@ public class RMTxStore implements RMStore {
     public Collection<RMMessage> getMessages(Identifier sid, boolean outbound) {
         Collection<RMMessage> msgs = new ArrayList<RMMessage>();
         try {
-            PreparedStatement stmt = outbound ? selectOutboundMessagesStmt : selectInboundMessagesStmt;
-            if (null == stmt) {
-                stmt = connection.prepareStatement(MessageFormat.format(SELECT_MESSAGES_STMT_STR,
-                    outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
-                if (outbound) {
-                    selectOutboundMessagesStmt = stmt;                    
-                } else {
-                    selectInboundMessagesStmt = stmt;
-                }
-            }
+            beginTransaction();
+            PreparedStatement stmt = getStatement(MessageFormat.format(SELECT_MESSAGES_STMT_STR,
+                outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
             stmt.setString(1, sid.getValue());
             ResultSet res = stmt.executeQuery();
             while (res.next()) {
@@ -373,14 +414,24 @@ public class RMTxStore implements RMStore {
                 msg.setContent(bytes);
                 msgs.add(msg);                
             }            
+            commit();
         } catch (SQLException ex) {
+            abort();
             LOG.log(Level.WARNING, new Message(outbound ? "SELECT_OUTBOUND_MSGS_FAILED_MSG"
                 : "SELECT_INBOUND_MSGS_FAILED_MSG", LOG).toString(), ex);
         }        
         return msgs;
     }
 
-    public void persistIncoming(DestinationSequence seq, RMMessage msg) {        
+    public void persistIncoming(final DestinationSequence seq, final RMMessage msg) {        
+        if (submit(new PendingWrite() {
+                void write() throws SQLException, IOException {
+                    updateDestinationSequence(seq);
+                    storeMessage(seq.getIdentifier(), msg, false);
+                }
+            })) {
+            return;
+        }
         try {
             beginTransaction();
             
@@ -398,7 +449,15 @@ public class RMTxStore implements RMStore {
             throw new RMStoreException(ex);        
         }        
     }
-    public void persistOutgoing(SourceSequence seq, RMMessage msg) {
+    public void persistOutgoing(final SourceSequence seq, final RMMessage msg) {
+        if (submit(new PendingWrite() {
+                void write() throws SQLException, IOException {
+                    updateSourceSequence(seq);
+                    storeMessage(seq.getIdentifier(), msg, true);
+                }
+            })) {
+            return;
+        }
         try {
             beginTransaction();
             
@@ -417,26 +476,19 @@ public class RMTxStore implements RMStore {
         }        
     }
 
-    public void removeMessages(Identifier sid, Collection<BigInteger> messageNrs, boolean outbound) {
+    public void removeMessages(final Identifier sid, final Collection<BigInteger> messageNrs, 
+                               final boolean outbound) {
+        if (submit(new PendingWrite() {
+                void write() throws SQLException {
+                    deleteMessages(sid, messageNrs, outbound);
+                }
+            })) {
+            return;
+        }
         try {
             beginTransaction();
-            PreparedStatement stmt = outbound ? deleteOutboundMessageStmt : deleteInboundMessageStmt;
-            if (null == stmt) {
-                stmt = connection.prepareStatement(MessageFormat.format(DELETE_MESSAGE_STMT_STR,
-                    outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
-                if (outbound) {
-                    deleteOutboundMessageStmt = stmt;                    
-                } else {
-                    deleteInboundMessageStmt = stmt;
-                }
-            }
-
-            stmt.setString(1, sid.getValue());
-                        
-            for (BigInteger messageNr : messageNrs) {
-                stmt.setBigDecimal(2, new BigDecimal(messageNr));
-                stmt.execute();
-            }
+            
+            deleteMessages(sid, messageNrs, outbound);
             
             commit();
             
@@ -450,25 +502,217 @@ public class RMTxStore implements RMStore {
     // 
     
     protected void beginTransaction() {
-        // avoid sharing of statements and result sets
-        writeLock.lock();
+        Transaction tx = null;
+        if (null == dataSource) {
+            // avoid sharing of statements and result sets
+            writeLock.lock();
+            tx = new Transaction(connection, cachedStatements);
+        } else {
+            try {
+                Connection con = dataSource.getConnection();
+                con.setAutoCommit(false);
+                tx = new Transaction(con, new HashMap<String, PreparedStatement>());
+            } catch (SQLException ex) {
+                throw new RMStoreException(ex);
+            }
+        }
+        currentTransaction.set(tx);
     }
     
     protected void commit() throws SQLException {
+        Transaction tx = currentTransaction.get();
         try {
-            connection.commit();
+            tx.connection.commit();
         } finally {
-            writeLock.unlock();
+            endTransaction(tx);
         }
     }
     
     protected void abort() {
+        Transaction tx = currentTransaction.get();
+        if (null == tx) {
+            // commit failed and has already ended the transaction
+            return;
+        }
         try {
-            connection.rollback(); 
+            tx.connection.rollback(); 
         } catch (SQLException ex) {
             LogUtils.log(LOG, Level.SEVERE, "ABORT_FAILED_MSG", ex);
         } finally {
+            endTransaction(tx);
+        }
+    }
+    
+    private void endTransaction(Transaction tx) {
+        currentTransaction.remove();
+        if (null == dataSource) {
             writeLock.unlock();
+            return;
+        }
+        // return the connection to the pool
+        for (PreparedStatement stmt : tx.statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ex) {
+                LOG.log(Level.FINE, "Failed to close statement", ex);
+            }
+        }
+        try {
+            tx.connection.close();
+        } catch (SQLException ex) {
+            LOG.log(Level.FINE, "Failed to close connection", ex);
+        }
+    }
+    
+    /**
+     * Returns the statement for the given SQL on the connection of the current transaction.
+     */
+    protected PreparedStatement getStatement(String sql) throws SQLException {
+        Transaction tx = currentTransaction.get();
+        PreparedStatement stmt = tx.statements.get(sql);
+        if (null == stmt) {
+            stmt = tx.connection.prepareStatement(sql);
+            tx.statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+    
+    // group commit
+    
+    /**
+     * Hands the write over to the committer thread, if group commit is enabled,
+     * and waits until it has been committed.
+     * @return false if group commit is not enabled and the caller needs to 
+     * do the write itself 
+     */
+    private boolean submit(PendingWrite w) {
+        GroupCommitter gc = committer;
+        if (null == gc) {
+            return false;
+        }
+        gc.queue.add(w);
+        if (gc.stopped && gc.queue.remove(w)) {
+            // store is being shut down, the committer may not pick up the write anymore
+            return false;
+        }
+        w.await();
+        return true;
+    }
+    
+    private void write(List<PendingWrite> batch) {
+        try {
+            beginTransaction();
+            for (PendingWrite w : batch) {
+                w.write();
+            }
+            commit();
+        } catch (Exception ex) {
+            abort();
+            if (batch.size() == 1) {
+                batch.get(0).done(ex);
+            } else {
+                // retry one by one so a single failing write does not fail the others
+                for (PendingWrite w : batch) {
+                    write(Collections.singletonList(w));
+                }
+            }
+            return;
+        }
+        for (PendingWrite w : batch) {
+            w.done(null);
+        }
+    }
+    
+    private abstract static class PendingWrite {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Exception failure;
+        
+        abstract void write() throws SQLException, IOException;
+        
+        void done(Exception ex) {
+            failure = ex;
+            latch.countDown();
+        }
+        
+        void await() {
+            boolean interrupted = false;
+            while (latch.getCount() > 0) {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    // the write cannot be withdrawn, wait for its outcome
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RMStoreException) {
+                throw (RMStoreException)failure;
+            } else if (failure != null) {
+                throw new RMStoreException(failure);
+            }
+        }
+    }
+    
+    private class GroupCommitter implements Runnable {
+        final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<PendingWrite>();
+        private volatile boolean stopped;
+        private Thread thread;
+        
+        void start() {
+            thread = new Thread(this, "RMTxStore group commit");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        void stop() {
+            stopped = true;
+            thread.interrupt();
+        }
+        
+        public void run() {
+            List<PendingWrite> batch = new ArrayList<PendingWrite>();
+            while (!stopped || !queue.isEmpty()) {
+                try {
+                    PendingWrite w = stopped ? queue.poll() : queue.take();
+                    if (null == w) {
+                        continue;
+                    }
+                    batch.add(w);
+                    queue.drainTo(batch, groupCommitBatchSize - 1);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitDelay);
+                    while (batch.size() < groupCommitBatchSize && !stopped) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        w = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (null == w) {
+                            break;
+                        }
+                        batch.add(w);
+                        queue.drainTo(batch, groupCommitBatchSize - batch.size());
+                    }
+                } catch (InterruptedException ex) {
+                    // stopped, write what has been collected so far
+                }
+                if (!batch.isEmpty()) {
+                    LOG.log(Level.FINE, "Committing {0} writes", batch.size());
+                    write(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+    
+    private static class Transaction {
+        final Connection connection;
+        final Map<String, PreparedStatement> statements;
+        
+        Transaction(Connection c, Map<String, PreparedStatement> s) {
+            connection = c;
+            statements = s;
         }
     }
     
@@ -481,16 +725,8 @@ public class RMTxStore implements RMStore {
         String to = msg.getTo();
         LOG.log(Level.FINE, "Storing {0} message number {1} for sequence {2}, to = {3}",
             new Object[] {outbound ? "outbound" : "inbound", nr, id, to});
-        PreparedStatement stmt = outbound ? createOutboundMessageStmt : createInboundMessageStmt;
-        if (null == stmt) {
-            stmt = connection.prepareStatement(MessageFormat.format(CREATE_MESSAGE_STMT_STR,
-                outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
-            if (outbound) {
-                createOutboundMessageStmt = stmt;                    
-            } else {
-                createInboundMessageStmt = stmt;
-            }
-        }
+        PreparedStatement stmt = getStatement(MessageFormat.format(CREATE_MESSAGE_STMT_STR,
+            outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
         int i = 1;
         stmt.setString(i++, id);  
         stmt.setBigDecimal(i++, new BigDecimal(nr));
@@ -507,36 +743,56 @@ public class RMTxStore implements RMStore {
         
     }
     
-    protected void updateSourceSequence(SourceSequence seq) 
+    protected void deleteMessages(Identifier sid, Collection<BigInteger> messageNrs, boolean outbound) 
         throws SQLException {
-        if (null == updateSrcSequenceStmt) {
-            updateSrcSequenceStmt = connection.prepareStatement(UPDATE_SRC_SEQUENCE_STMT_STR);
+        PreparedStatement stmt = getStatement(MessageFormat.format(DELETE_MESSAGE_STMT_STR,
+            outbound ? OUTBOUND_MSGS_TABLE_NAME : INBOUND_MSGS_TABLE_NAME));
+
+        stmt.setString(1, sid.getValue());
+                    
+        for (BigInteger messageNr : messageNrs) {
+            stmt.setBigDecimal(2, new BigDecimal(messageNr));
+            stmt.execute();
         }
-        updateSrcSequenceStmt.setBigDecimal(1, new BigDecimal(seq.getCurrentMessageNr())); 
-        updateSrcSequenceStmt.setBoolean(2, seq.isLastMessage()); 
-        updateSrcSequenceStmt.setString(3, seq.getIdentifier().getValue());
-        updateSrcSequenceStmt.execute();
+    }
+    
+    protected void updateSourceSequence(SourceSequence seq) 
+        throws SQLException {
+        PreparedStatement stmt = getStatement(UPDATE_SRC_SEQUENCE_STMT_STR);
+        stmt.setBigDecimal(1, new BigDecimal(seq.getCurrentMessageNr())); 
+        stmt.setBoolean(2, seq.isLastMessage()); 
+        stmt.setString(3, seq.getIdentifier().getValue());
+        stmt.execute();
     }
     
     protected void updateDestinationSequence(DestinationSequence seq) 
         throws SQLException, IOException {
-        if (null == updateDestSequenceStmt) {
-            updateDestSequenceStmt = connection.prepareStatement(UPDATE_DEST_SEQUENCE_STMT_STR);
-        }
+        PreparedStatement stmt = getStatement(UPDATE_DEST_SEQUENCE_STMT_STR);
         BigInteger lastMessageNr = seq.getLastMessageNumber();
-        updateDestSequenceStmt.setBigDecimal(1, lastMessageNr == null ? null
+        stmt.setBigDecimal(1, lastMessageNr == null ? null
             : new BigDecimal(lastMessageNr)); 
         InputStream is = PersistenceUtils.getInstance()
             .serialiseAcknowledgment(seq.getAcknowledgment());
-        updateDestSequenceStmt.setBinaryStream(2, is, is.available()); 
-        updateDestSequenceStmt.setString(3, seq.getIdentifier() .getValue());
-        updateDestSequenceStmt.execute();
+        stmt.setBinaryStream(2, is, is.available()); 
+        stmt.setString(3, seq.getIdentifier() .getValue());
+        stmt.execute();
     }
     
     protected void createTables() throws SQLException {
+        beginTransaction();
+        try {
+            createTables(currentTransaction.get().connection);
+            commit();
+        } catch (SQLException ex) {
+            abort();
+            throw ex;
+        }
+    }
+    
+    private void createTables(Connection con) throws SQLException {
         
         Statement stmt = null;
-        stmt = connection.createStatement();
+        stmt = con.createStatement();
         try {
             stmt.executeUpdate(CREATE_SRC_SEQUENCES_TABLE_STMT);
         } catch (SQLException ex) {
@@ -548,7 +804,7 @@ public class RMTxStore implements RMStore {
         }
         stmt.close();
         
-        stmt = connection.createStatement();
+        stmt = con.createStatement();
         try {
             stmt.executeUpdate(CREATE_DEST_SEQUENCES_TABLE_STMT);
         } catch (SQLException ex) {
@@ -561,7 +817,7 @@ public class RMTxStore implements RMStore {
         stmt.close();
         
         for (String tableName : new String[] {OUTBOUND_MSGS_TABLE_NAME, INBOUND_MSGS_TABLE_NAME}) {
-            stmt = connection.createStatement();
+            stmt = con.createStatement();
             try {
                 stmt.executeUpdate(MessageFormat.format(CREATE_MESSAGES_TABLE_STMT, tableName));
             } catch (SQLException ex) {
@@ -580,7 +836,7 @@ public class RMTxStore implements RMStore {
     @PostConstruct     
     synchronized void init() {
         
-        if (null == connection) {
+        if (null == connection && null == dataSource) {
             LOG.log(Level.FINE, "Using derby.system.home: {0}", System.getProperty("derby.system.home"));
             assert null != url;
             assert null != driverClassName;
@@ -601,7 +857,9 @@ public class RMTxStore implements RMStore {
         }
         
         try {
-            connection.setAutoCommit(false);
+            if (null == dataSource) {
+                connection.setAutoCommit(false);
+            }
             createTables();
         } catch (SQLException ex) {
             LogUtils.log(LOG, Level.SEVERE, "CONNECT_EXC", ex);
@@ -612,8 +870,22 @@ public class RMTxStore implements RMStore {
             }
             throw new RMStoreException(ex);
         }   
+        
+        if (groupCommit && null == committer) {
+            committer = new GroupCommitter();
+            committer.start();
+        }
     }   
     
+    @PreDestroy
+    synchronized void destroy() {
+        if (null != committer) {
+            GroupCommitter gc = committer;
+            committer = null;
+            gc.stop();
+        }
+    }
+    
     Connection getConnection() {
         return connection;
     }
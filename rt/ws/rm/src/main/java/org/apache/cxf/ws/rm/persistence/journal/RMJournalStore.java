@@ -0,0 +1,1001 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.rm.persistence.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.ws.rm.DestinationSequence;
+import org.apache.cxf.ws.rm.Identifier;
+import org.apache.cxf.ws.rm.RMUtils;
+import org.apache.cxf.ws.rm.SequenceAcknowledgement;
+import org.apache.cxf.ws.rm.SourceSequence;
+import org.apache.cxf.ws.rm.persistence.PersistenceUtils;
+import org.apache.cxf.ws.rm.persistence.RMMessage;
+import org.apache.cxf.ws.rm.persistence.RMStore;
+import org.apache.cxf.ws.rm.persistence.RMStoreException;
+
+/**
+ * RMStore keeping sequences and messages in an append-only journal of 
+ * memory-mapped segment files, without the need for a database.
+ * <p>
+ * Every change is appended as a checksummed record to the current segment.
+ * Sequence records always contain the complete sequence state, so only the 
+ * latest record per sequence and the records of messages that have not been
+ * removed are live.  Their locations are kept in memory, and the journal is
+ * replayed sequentially on startup to rebuild this index.  A background task
+ * periodically copies the live records of the segments most of whose records 
+ * are dead to the current one and deletes them.
+ */
+public class RMJournalStore implements RMStore {
+    
+    public static final String DEFAULT_DIRECTORY = "rmjournal";
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_COMPACTION_INTERVAL = 10000L;
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(RMJournalStore.class);
+    
+    private static final String SEGMENT_PREFIX = "rm-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_LENGTH = 8;
+    
+    private static final byte SOURCE_SEQUENCE = 1;
+    private static final byte DESTINATION_SEQUENCE = 2;
+    private static final byte REMOVE_SOURCE_SEQUENCE = 3;
+    private static final byte REMOVE_DESTINATION_SEQUENCE = 4;
+    private static final byte MESSAGE = 5;
+    private static final byte REMOVE_MESSAGES = 6;
+    
+    private String directory = DEFAULT_DIRECTORY;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private boolean syncWrites = true;
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+    private double compactionThreshold = 0.5;
+    
+    private final Lock lock = new ReentrantLock();
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    // the segments written to since the last sync
+    private final Set<Segment> unsynced = new LinkedHashSet<Segment>();
+    private final Map<String, SequenceEntry> sourceSequences = new HashMap<String, SequenceEntry>();
+    private final Map<String, SequenceEntry> destinationSequences = new HashMap<String, SequenceEntry>();
+    private final Map<String, SortedMap<BigInteger, Location>> outboundMessages 
+        = new HashMap<String, SortedMap<BigInteger, Location>>();
+    private final Map<String, SortedMap<BigInteger, Location>> inboundMessages 
+        = new HashMap<String, SortedMap<BigInteger, Location>>();
+    private Timer timer;
+    
+    // configuration
+    
+    public void setDirectory(String d) {
+        directory = d;
+    }
+    
+    String getDirectory() {
+        return directory;
+    }
+    
+    public void setSegmentSize(int s) {
+        segmentSize = s;
+    }
+    
+    int getSegmentSize() {
+        return segmentSize;
+    }
+    
+    /**
+     * Sets whether each write is forced to disk before returning, true by default.
+     */
+    public void setSyncWrites(boolean s) {
+        syncWrites = s;
+    }
+    
+    boolean isSyncWrites() {
+        return syncWrites;
+    }
+    
+    /**
+     * Sets the interval in milliseconds at which compaction is attempted, 0 disables
+     * background compaction.
+     */
+    public void setCompactionInterval(long i) {
+        compactionInterval = i;
+    }
+    
+    long getCompactionInterval() {
+        return compactionInterval;
+    }
+    
+    /**
+     * Sets the fraction of live bytes below which a segment is compacted.
+     */
+    public void setCompactionThreshold(double t) {
+        compactionThreshold = t;
+    }
+    
+    double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+    
+    // RMStore interface
+    
+    public void createSourceSequence(SourceSequence seq) {
+        String sid = seq.getIdentifier().getValue();
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Creating source sequence: " + sid + ", (endpoint: "
+                     + seq.getEndpointIdentifier() + ")"); 
+        }
+        lock.lock();
+        try {
+            if (sourceSequences.containsKey(sid)) {
+                throw new RMStoreException(new IllegalStateException("Duplicate source sequence " + sid));
+            }
+            writeSourceSequence(seq, seq.getEndpointIdentifier());
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void createDestinationSequence(DestinationSequence seq) {
+        String sid = seq.getIdentifier().getValue();
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Creating destination sequence: " + sid + ", (endpoint: "
+                     + seq.getEndpointIdentifier() + ")"); 
+        }
+        lock.lock();
+        try {
+            if (destinationSequences.containsKey(sid)) {
+                throw new RMStoreException(new IllegalStateException("Duplicate destination sequence " 
+                                                                     + sid));
+            }
+            writeDestinationSequence(seq, seq.getEndpointIdentifier());
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void removeSourceSequence(Identifier sid) {
+        removeSequence(sid.getValue(), sourceSequences, REMOVE_SOURCE_SEQUENCE);
+    }
+    
+    public void removeDestinationSequence(Identifier sid) {
+        removeSequence(sid.getValue(), destinationSequences, REMOVE_DESTINATION_SEQUENCE);
+    }
+    
+    public Collection<SourceSequence> getSourceSequences(String endpointIdentifier) {
+        Collection<SourceSequence> seqs = new ArrayList<SourceSequence>();
+        lock.lock();
+        try {
+            for (SequenceEntry entry : sourceSequences.values()) {
+                if (equals(endpointIdentifier, entry.endpointIdentifier)) {
+                    RecordReader r = entry.location.read();
+                    r.getByte();
+                    Identifier sid = createIdentifier(r.getString());
+                    r.getString();
+                    long expiry = r.getLong();
+                    String oid = r.getString();
+                    BigInteger cmn = r.getBigInteger();
+                    boolean lm = r.getBoolean();
+                    seqs.add(new SourceSequence(sid, expiry == 0 ? null : new Date(expiry), 
+                                                oid == null ? null : createIdentifier(oid), cmn, lm));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return seqs;
+    }
+    
+    public Collection<DestinationSequence> getDestinationSequences(String endpointIdentifier) {
+        Collection<DestinationSequence> seqs = new ArrayList<DestinationSequence>();
+        lock.lock();
+        try {
+            for (SequenceEntry entry : destinationSequences.values()) {
+                if (equals(endpointIdentifier, entry.endpointIdentifier)) {
+                    RecordReader r = entry.location.read();
+                    r.getByte();
+                    Identifier sid = createIdentifier(r.getString());
+                    r.getString();
+                    String acksTo = r.getString();
+                    BigInteger lmn = r.getBigInteger();
+                    byte[] ackBytes = r.getBytes();
+                    SequenceAcknowledgement ack = null;
+                    if (null != ackBytes) {
+                        ack = PersistenceUtils.getInstance()
+                            .deserialiseAcknowledgment(new ByteArrayInputStream(ackBytes));
+                    }
+                    seqs.add(new DestinationSequence(sid, RMUtils.createReference2004(acksTo), lmn, ack));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return seqs;
+    }
+    
+    public Collection<RMMessage> getMessages(Identifier sid, boolean outbound) {
+        Collection<RMMessage> msgs = new ArrayList<RMMessage>();
+        lock.lock();
+        try {
+            SortedMap<BigInteger, Location> locations = getMessageMap(outbound).get(sid.getValue());
+            if (null != locations) {
+                for (Location location : locations.values()) {
+                    RecordReader r = location.read();
+                    r.getByte();
+                    r.getBoolean();
+                    r.getString();
+                    RMMessage msg = new RMMessage();
+                    msg.setMessageNumber(r.getBigInteger());
+                    msg.setTo(r.getString());
+                    msg.setContent(r.getBytes());
+                    msgs.add(msg);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return msgs;
+    }
+    
+    public void persistIncoming(DestinationSequence seq, RMMessage msg) {
+        lock.lock();
+        try {
+            if (null != msg) {
+                checkDuplicate(seq.getIdentifier().getValue(), msg, false);
+            }
+            SequenceEntry entry = destinationSequences.get(seq.getIdentifier().getValue());
+            writeDestinationSequence(seq, entry == null ? seq.getEndpointIdentifier() 
+                : entry.endpointIdentifier);
+            if (null != msg) {
+                writeMessage(seq.getIdentifier().getValue(), msg, false);
+            }
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void persistOutgoing(SourceSequence seq, RMMessage msg) {
+        lock.lock();
+        try {
+            if (null != msg) {
+                checkDuplicate(seq.getIdentifier().getValue(), msg, true);
+            }
+            SequenceEntry entry = sourceSequences.get(seq.getIdentifier().getValue());
+            writeSourceSequence(seq, entry == null ? seq.getEndpointIdentifier() 
+                : entry.endpointIdentifier);
+            if (null != msg) {
+                writeMessage(seq.getIdentifier().getValue(), msg, true);
+            }
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void removeMessages(Identifier sid, Collection<BigInteger> messageNrs, boolean outbound) {
+        lock.lock();
+        try {
+            SortedMap<BigInteger, Location> locations = getMessageMap(outbound).get(sid.getValue());
+            if (null == locations) {
+                return;
+            }
+            Collection<BigInteger> removed = new ArrayList<BigInteger>();
+            for (BigInteger nr : messageNrs) {
+                if (locations.containsKey(nr) && !removed.contains(nr)) {
+                    removed.add(nr);
+                }
+            }
+            if (removed.isEmpty()) {
+                return;
+            }
+            RecordWriter w = new RecordWriter(REMOVE_MESSAGES);
+            w.putBoolean(outbound);
+            w.putString(sid.getValue());
+            w.putInt(removed.size());
+            for (BigInteger nr : removed) {
+                w.putBigInteger(nr);
+            }
+            Location removal = append(w.toByteArray(), false);
+            for (BigInteger nr : removed) {
+                removed(locations.remove(nr), removal);
+            }
+            if (locations.isEmpty()) {
+                getMessageMap(outbound).remove(sid.getValue());
+            }
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // lifecycle
+    
+    @PostConstruct
+    public void init() {
+        lock.lock();
+        try {
+            File dir = new File(directory);
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            File[] files = dir.listFiles(new FilenameFilter() {
+                public boolean accept(File d, String name) {
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                }
+            });
+            long[] ids = new long[files.length];
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+                ids[i] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), 
+                                                       name.length() - SEGMENT_SUFFIX.length()));
+            }
+            Arrays.sort(ids);
+            for (long id : ids) {
+                Segment segment = new Segment(id, segmentFile(id), 0);
+                segments.add(segment);
+                recover(segment);
+            }
+        } catch (IOException ex) {
+            LogUtils.log(LOG, Level.SEVERE, "JOURNAL_OPEN_EXC", ex, directory);
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+        
+        if (compactionInterval > 0) {
+            timer = new Timer("RMJournalStore compaction", true);
+            timer.schedule(new TimerTask() {
+                public void run() {
+                    try {
+                        compact();
+                    } catch (Throwable t) {
+                        LogUtils.log(LOG, Level.WARNING, "JOURNAL_COMPACT_EXC", t);
+                    }
+                }
+            }, compactionInterval, compactionInterval);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (null != timer) {
+            timer.cancel();
+            timer = null;
+        }
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            unsynced.clear();
+            sourceSequences.clear();
+            destinationSequences.clear();
+            outboundMessages.clear();
+            inboundMessages.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Copies the live records of the segments whose live records take up less
+     * than the compaction threshold to the current segment and deletes them, 
+     * starting with the segment with the fewest live records.  The removal 
+     * records of a segment are dropped with it, unless records they remove are
+     * in an older segment that is still there: those removal records are copied
+     * as well, so the removed records are not restored on startup.
+     */
+    void compact() throws IOException {
+        lock.lock();
+        try {
+            if (segments.size() < 2) {
+                return;
+            }
+            // neither the current segment nor the ones written to here are compacted
+            List<Segment> candidates = new ArrayList<Segment>(segments.subList(0, segments.size() - 1));
+            for (Segment segment = selectSegment(candidates); null != segment; 
+                segment = selectSegment(candidates)) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Compacting journal segment " + segment.file + ", " + segment.liveBytes 
+                             + " of " + segment.position + " bytes live");
+                }
+                for (SequenceEntry entry : sourceSequences.values()) {
+                    entry.location = move(entry.location, segment);
+                }
+                for (SequenceEntry entry : destinationSequences.values()) {
+                    entry.location = move(entry.location, segment);
+                }
+                moveMessages(outboundMessages, segment);
+                moveMessages(inboundMessages, segment);
+                if (removesOlderRecords(segment)) {
+                    copyRemovals(segment);
+                }
+                // the copies must be on disk before the originals go
+                force();
+                segments.remove(segment);
+                candidates.remove(segment);
+                segment.close();
+                if (!segment.file.delete()) {
+                    segment.file.deleteOnExit();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // helpers
+    
+    private Segment selectSegment(List<Segment> candidates) {
+        Segment selected = null;
+        double lowest = 0;
+        for (Segment segment : candidates) {
+            double live = segment.position == 0 ? 0 : (double)segment.liveBytes / segment.position;
+            if (live <= compactionThreshold && (null == selected || live < lowest)) {
+                selected = segment;
+                lowest = live;
+            }
+        }
+        return selected;
+    }
+    
+    private boolean removesOlderRecords(Segment segment) {
+        for (Segment s : segments) {
+            if (s.id >= segment.oldestRemoved && s.id < segment.id) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Copies the removal records of a segment to the current segment, leaving 
+     * out the sequences and messages that have been written again since.
+     */
+    private void copyRemovals(Segment from) throws IOException {
+        int offset = 0;
+        while (offset < from.position) {
+            int length = from.buffer.getInt(offset);
+            byte[] record = new byte[length];
+            ByteBuffer buf = from.buffer.duplicate();
+            buf.position(offset + HEADER_LENGTH);
+            buf.get(record);
+            offset += HEADER_LENGTH + length;
+            
+            RecordReader r = new RecordReader(ByteBuffer.wrap(record));
+            byte type = r.getByte();
+            if (type == REMOVE_SOURCE_SEQUENCE || type == REMOVE_DESTINATION_SEQUENCE) {
+                String sid = r.getString();
+                if (!(type == REMOVE_SOURCE_SEQUENCE ? sourceSequences : destinationSequences)
+                    .containsKey(sid)) {
+                    copyRemoval(record, from);
+                }
+            } else if (type == REMOVE_MESSAGES) {
+                boolean outbound = r.getBoolean();
+                String sid = r.getString();
+                SortedMap<BigInteger, Location> locations = getMessageMap(outbound).get(sid);
+                List<BigInteger> removed = new ArrayList<BigInteger>();
+                int count = r.getInt();
+                for (int i = 0; i < count; i++) {
+                    BigInteger nr = r.getBigInteger();
+                    if (null == locations || !locations.containsKey(nr)) {
+                        removed.add(nr);
+                    }
+                }
+                if (!removed.isEmpty()) {
+                    RecordWriter w = new RecordWriter(REMOVE_MESSAGES);
+                    w.putBoolean(outbound);
+                    w.putString(sid);
+                    w.putInt(removed.size());
+                    for (BigInteger nr : removed) {
+                        w.putBigInteger(nr);
+                    }
+                    copyRemoval(w.toByteArray(), from);
+                }
+            }
+        }
+    }
+    
+    private void copyRemoval(byte[] record, Segment from) throws IOException {
+        Segment to = append(record, false).segment;
+        to.oldestRemoved = Math.min(to.oldestRemoved, from.oldestRemoved);
+    }
+    
+    private static void removed(Location location, Location removal) {
+        location.release();
+        if (location.segment != removal.segment) {
+            removal.segment.oldestRemoved = Math.min(removal.segment.oldestRemoved, location.segment.id);
+        }
+    }
+    
+    private void moveMessages(Map<String, SortedMap<BigInteger, Location>> messages, Segment from) 
+        throws IOException {
+        for (SortedMap<BigInteger, Location> locations : messages.values()) {
+            for (Map.Entry<BigInteger, Location> e : locations.entrySet()) {
+                e.setValue(move(e.getValue(), from));
+            }
+        }
+    }
+    
+    private Location move(Location location, Segment from) throws IOException {
+        if (location.segment != from) {
+            return location;
+        }
+        byte[] record = new byte[location.length - HEADER_LENGTH];
+        ByteBuffer buf = from.buffer.duplicate();
+        buf.position(location.offset + HEADER_LENGTH);
+        buf.get(record);
+        location.release();
+        return append(record, true);
+    }
+    
+    private void removeSequence(String sid, Map<String, SequenceEntry> sequences, byte type) {
+        lock.lock();
+        try {
+            SequenceEntry entry = sequences.remove(sid);
+            if (null == entry) {
+                return;
+            }
+            RecordWriter w = new RecordWriter(type);
+            w.putString(sid);
+            removed(entry.location, append(w.toByteArray(), false));
+            sync();
+        } catch (IOException ex) {
+            throw new RMStoreException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void writeSourceSequence(SourceSequence seq, String endpointIdentifier) throws IOException {
+        String sid = seq.getIdentifier().getValue();
+        RecordWriter w = new RecordWriter(SOURCE_SEQUENCE);
+        w.putString(sid);
+        w.putString(endpointIdentifier);
+        Date expiry = seq.getExpires();
+        w.putLong(expiry == null ? 0 : expiry.getTime());
+        Identifier osid = seq.getOfferingSequenceIdentifier();
+        w.putString(osid == null ? null : osid.getValue());
+        w.putBigInteger(seq.getCurrentMessageNr());
+        w.putBoolean(seq.isLastMessage());
+        Location location = append(w.toByteArray(), true);
+        putSequence(sourceSequences, sid, endpointIdentifier, location);
+    }
+    
+    private void writeDestinationSequence(DestinationSequence seq, String endpointIdentifier) 
+        throws IOException {
+        String sid = seq.getIdentifier().getValue();
+        RecordWriter w = new RecordWriter(DESTINATION_SEQUENCE);
+        w.putString(sid);
+        w.putString(endpointIdentifier);
+        w.putString(seq.getAcksTo().getAddress().getValue());
+        w.putBigInteger(seq.getLastMessageNumber());
+        SequenceAcknowledgement ack = seq.getAcknowledgment();
+        w.putBytes(ack == null ? null 
+            : IOUtils.readBytesFromStream(PersistenceUtils.getInstance().serialiseAcknowledgment(ack)));
+        Location location = append(w.toByteArray(), true);
+        putSequence(destinationSequences, sid, endpointIdentifier, location);
+    }
+    
+    private void checkDuplicate(String sid, RMMessage msg, boolean outbound) {
+        BigInteger nr = msg.getMessageNumber();
+        SortedMap<BigInteger, Location> locations = getMessageMap(outbound).get(sid);
+        if (null != locations && locations.containsKey(nr)) {
+            throw new RMStoreException(new IllegalStateException("Duplicate " 
+                + (outbound ? "outbound" : "inbound") + " message " + nr + " for sequence " + sid));
+        }
+    }
+    
+    private void writeMessage(String sid, RMMessage msg, boolean outbound) throws IOException {
+        BigInteger nr = msg.getMessageNumber();
+        RecordWriter w = new RecordWriter(MESSAGE);
+        w.putBoolean(outbound);
+        w.putString(sid);
+        w.putBigInteger(nr);
+        w.putString(msg.getTo());
+        w.putBytes(msg.getContent());
+        putMessage(outbound, sid, nr, append(w.toByteArray(), true));
+    }
+    
+    private void putSequence(Map<String, SequenceEntry> sequences, String sid, 
+                             String endpointIdentifier, Location location) {
+        SequenceEntry old = sequences.put(sid, new SequenceEntry(endpointIdentifier, location));
+        if (null != old) {
+            old.location.release();
+        }
+    }
+    
+    private void putMessage(boolean outbound, String sid, BigInteger nr, Location location) {
+        Map<String, SortedMap<BigInteger, Location>> messages = getMessageMap(outbound);
+        SortedMap<BigInteger, Location> locations = messages.get(sid);
+        if (null == locations) {
+            locations = new TreeMap<BigInteger, Location>();
+            messages.put(sid, locations);
+        }
+        Location old = locations.put(nr, location);
+        if (null != old) {
+            old.release();
+        }
+    }
+    
+    private Map<String, SortedMap<BigInteger, Location>> getMessageMap(boolean outbound) {
+        return outbound ? outboundMessages : inboundMessages;
+    }
+    
+    private Location append(byte[] record, boolean live) throws IOException {
+        int length = HEADER_LENGTH + record.length;
+        Segment head = segments.isEmpty() ? null : segments.getLast();
+        // keep room for the zero length terminating the segment
+        if (null == head || head.position + length + 4 > head.size) {
+            long id = null == head ? 1 : head.id + 1;
+            head = new Segment(id, segmentFile(id), Math.max(segmentSize, length + 4));
+            segments.add(head);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        
+        int offset = head.position;
+        ByteBuffer buf = head.buffer.duplicate();
+        buf.position(offset + HEADER_LENGTH);
+        buf.put(record);
+        head.buffer.putInt(offset + 4, (int)crc.getValue());
+        head.buffer.putInt(offset, record.length);
+        head.position += length;
+        unsynced.add(head);
+        
+        Location location = new Location(head, offset, length);
+        if (live) {
+            head.liveBytes += length;
+        }
+        return location;
+    }
+    
+    /**
+     * Forces the segments written to by the current operation if writes are
+     * synchronous.  An operation may have rolled over to a new segment half way
+     * through, so this is not necessarily just the last one.
+     */
+    private void sync() {
+        if (syncWrites) {
+            force();
+        } else {
+            unsynced.clear();
+        }
+    }
+    
+    private void force() {
+        for (Segment segment : unsynced) {
+            segment.buffer.force();
+        }
+        unsynced.clear();
+    }
+    
+    private void recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_LENGTH <= segment.size) {
+            int length = buffer.getInt(offset);
+            if (length <= 0) {
+                break;
+            }
+            if (offset + HEADER_LENGTH + length > segment.size) {
+                LogUtils.log(LOG, Level.WARNING, "JOURNAL_CORRUPT_MSG", 
+                             new Object[] {segment.file, offset});
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer buf = buffer.duplicate();
+            buf.position(offset + HEADER_LENGTH);
+            buf.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int)crc.getValue() != buffer.getInt(offset + 4)) {
+                LogUtils.log(LOG, Level.WARNING, "JOURNAL_CORRUPT_MSG", 
+                             new Object[] {segment.file, offset});
+                break;
+            }
+            Location location = new Location(segment, offset, HEADER_LENGTH + length);
+            replay(new RecordReader(ByteBuffer.wrap(record)), location);
+            offset += HEADER_LENGTH + length;
+        }
+        segment.position = offset;
+    }
+    
+    private void replay(RecordReader r, Location location) {
+        byte type = r.getByte();
+        switch (type) {
+        case SOURCE_SEQUENCE:
+        case DESTINATION_SEQUENCE: {
+            String sid = r.getString();
+            String endpointIdentifier = r.getString();
+            location.segment.liveBytes += location.length;
+            putSequence(type == SOURCE_SEQUENCE ? sourceSequences : destinationSequences,
+                        sid, endpointIdentifier, location);
+            break;
+        }
+        case REMOVE_SOURCE_SEQUENCE:
+        case REMOVE_DESTINATION_SEQUENCE: {
+            SequenceEntry entry = (type == REMOVE_SOURCE_SEQUENCE ? sourceSequences : destinationSequences)
+                .remove(r.getString());
+            if (null != entry) {
+                removed(entry.location, location);
+            }
+            break;
+        }
+        case MESSAGE: {
+            boolean outbound = r.getBoolean();
+            String sid = r.getString();
+            BigInteger nr = r.getBigInteger();
+            location.segment.liveBytes += location.length;
+            putMessage(outbound, sid, nr, location);
+            break;
+        }
+        case REMOVE_MESSAGES: {
+            boolean outbound = r.getBoolean();
+            String sid = r.getString();
+            SortedMap<BigInteger, Location> locations = getMessageMap(outbound).get(sid);
+            int count = r.getInt();
+            for (int i = 0; i < count; i++) {
+                BigInteger nr = r.getBigInteger();
+                Location old = null == locations ? null : locations.remove(nr);
+                if (null != old) {
+                    removed(old, location);
+                }
+            }
+            if (null != locations && locations.isEmpty()) {
+                getMessageMap(outbound).remove(sid);
+            }
+            break;
+        }
+        default:
+            throw new RMStoreException(new IOException("Unknown journal record type " + type));
+        }
+    }
+    
+    private File segmentFile(long id) {
+        return new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+    
+    private static Identifier createIdentifier(String value) {
+        Identifier id = RMUtils.getWSRMFactory().createIdentifier();
+        id.setValue(value);
+        return id;
+    }
+    
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+    
+    public static void deleteJournalFiles(String dir) {
+        File root = new File(dir);
+        if (root.exists()) {
+            for (File f : root.listFiles()) {
+                f.delete();
+            }
+            root.delete();
+        }
+    }
+    
+    private static final class Segment {
+        final long id;
+        final File file;
+        final int size;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+        long liveBytes;
+        // the oldest other segment with records removed by the removal records in this one
+        long oldestRemoved = Long.MAX_VALUE;
+        
+        Segment(long i, File f, int initialSize) throws IOException {
+            id = i;
+            file = f;
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            if (initialSize > 0) {
+                raf.setLength(initialSize);
+            }
+            size = (int)raf.length();
+            channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException ex) {
+                LogUtils.log(LOG, Level.WARNING, "JOURNAL_CLOSE_EXC", ex, file);
+            }
+        }
+    }
+    
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+        
+        Location(Segment s, int o, int l) {
+            segment = s;
+            offset = o;
+            length = l;
+        }
+        
+        void release() {
+            segment.liveBytes -= length;
+        }
+        
+        RecordReader read() {
+            ByteBuffer buf = segment.buffer.duplicate();
+            buf.position(offset + HEADER_LENGTH);
+            buf.limit(offset + length);
+            return new RecordReader(buf.slice());
+        }
+    }
+    
+    private static final class SequenceEntry {
+        final String endpointIdentifier;
+        Location location;
+        
+        SequenceEntry(String e, Location l) {
+            endpointIdentifier = e;
+            location = l;
+        }
+    }
+    
+    private static final class RecordWriter {
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(bos);
+        
+        RecordWriter(byte type) throws IOException {
+            out.writeByte(type);
+        }
+        
+        void putBoolean(boolean b) throws IOException {
+            out.writeBoolean(b);
+        }
+        
+        void putInt(int i) throws IOException {
+            out.writeInt(i);
+        }
+        
+        void putLong(long l) throws IOException {
+            out.writeLong(l);
+        }
+        
+        void putBytes(byte[] b) throws IOException {
+            if (null == b) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+        
+        void putString(String s) throws IOException {
+            putBytes(null == s ? null : s.getBytes("UTF-8"));
+        }
+        
+        void putBigInteger(BigInteger i) throws IOException {
+            putBytes(null == i ? null : i.toByteArray());
+        }
+        
+        byte[] toByteArray() throws IOException {
+            out.flush();
+            return bos.toByteArray();
+        }
+    }
+    
+    private static final class RecordReader {
+        private final ByteBuffer buf;
+        
+        RecordReader(ByteBuffer b) {
+            buf = b;
+        }
+        
+        byte getByte() {
+            return buf.get();
+        }
+        
+        boolean getBoolean() {
+            return buf.get() != 0;
+        }
+        
+        int getInt() {
+            return buf.getInt();
+        }
+        
+        long getLong() {
+            return buf.getLong();
+        }
+        
+        byte[] getBytes() {
+            int length = buf.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] b = new byte[length];
+            buf.get(b);
+            return b;
+        }
+        
+        String getString() {
+            byte[] b = getBytes();
+            if (null == b) {
+                return null;
+            }
+            try {
+                return new String(b, "UTF-8");
+            } catch (IOException ex) {
+                throw new RMStoreException(ex);
+            }
+        }
+        
+        BigInteger getBigInteger() {
+            byte[] b = getBytes();
+            return null == b ? null : new BigInteger(b);
+        }
+    }
+}
@@ -26,10 +26,12 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TimerTask;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
@@ -61,20 +63,37 @@ import org.apache.cxf.ws.rm.RetransmissionCallback;
 import org.apache.cxf.ws.rm.RetransmissionQueue;
 import org.apache.cxf.ws.rm.SequenceType;
 import org.apache.cxf.ws.rm.SourceSequence;
+import org.apache.cxf.ws.rm.TimingWheel;
 import org.apache.cxf.ws.rm.persistence.RMStore;
 import org.apache.cxf.ws.rm.policy.PolicyUtils;
 import org.apache.cxf.ws.rm.policy.RMAssertion;
 
 /**
- * 
+ * Keeps unacknowledged messages and resends them until they are acknowledged.
+ * <p>
+ * Resends are scheduled on a {@link TimingWheel} rather than as individual timer
+ * tasks, and the candidates of each sequence are guarded by the lock of their 
+ * own list, so that sequences do not contend with each other.  The resends falling
+ * due for the same destination in one tick of the wheel are handed to the executor
+ * as a single task.  Resend intervals grow by the exponential backoff of the 
+ * RM assertion, and each resend is delayed by a random fraction of its interval 
+ * of up to <code>jitter</code> to avoid resends of many messages going out in lockstep.
  */
 public class RetransmissionQueueImpl implements RetransmissionQueue {
 
+    public static final double DEFAULT_JITTER = 0.1;
+    
     private static final Logger LOG = LogUtils.getL7dLogger(RetransmissionQueueImpl.class);
 
-    private Map<String, List<ResendCandidate>> candidates = new HashMap<String, List<ResendCandidate>>();
+    private ConcurrentMap<String, List<ResendCandidate>> candidates = 
+        new ConcurrentHashMap<String, List<ResendCandidate>>();
     private Resender resender;
     private RMManager manager;
+    private volatile TimingWheel<ResendCandidate> wheel;
+    private long tickDuration = TimingWheel.DEFAULT_TICK_DURATION;
+    private int wheelSize = TimingWheel.DEFAULT_WHEEL_SIZE;
+    private double jitter = DEFAULT_JITTER;
+    private final Random random = new Random();
 
     public RetransmissionQueueImpl(RMManager m) {
         manager = m;
@@ -88,6 +107,28 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
         manager = m;
     }
 
+    /**
+     * @param d the resolution of resend scheduling in milliseconds
+     */
+    public void setTickDuration(long d) {
+        tickDuration = d;
+    }
+
+    /**
+     * @param s the number of buckets of the timing wheel used to schedule resends
+     */
+    public void setWheelSize(int s) {
+        wheelSize = s;
+    }
+
+    /**
+     * @param j the maximum fraction of the resend interval by which a resend is 
+     * randomly delayed, 0 to disable jitter
+     */
+    public void setJitter(double j) {
+        jitter = j;
+    }
+
     public void addUnacknowledged(Message message) {
         cacheUnacknowledged(message);
     }
@@ -96,16 +137,21 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
      * @param seq the sequence under consideration
      * @return the number of unacknowledged messages for that sequence
      */
-    public synchronized int countUnacknowledged(SourceSequence seq) {
+    public int countUnacknowledged(SourceSequence seq) {
         List<ResendCandidate> sequenceCandidates = getSequenceCandidates(seq);
-        return sequenceCandidates == null ? 0 : sequenceCandidates.size();
+        if (null == sequenceCandidates) {
+            return 0;
+        }
+        synchronized (sequenceCandidates) {
+            return sequenceCandidates.size();
+        }
     }
 
     /**
      * @return true if there are no unacknowledged messages in the queue
      */
     public boolean isEmpty() {
-        return 0 == getUnacknowledged().size();
+        return getUnacknowledged().isEmpty();
     }
 
     /**
@@ -115,10 +161,10 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
      */
     public void purgeAcknowledged(SourceSequence seq) {
         Collection<BigInteger> purged = new ArrayList<BigInteger>();
-        synchronized (this) {
-            LOG.fine("Start purging resend candidates.");
-            List<ResendCandidate> sequenceCandidates = getSequenceCandidates(seq);
-            if (null != sequenceCandidates) {
+        List<ResendCandidate> sequenceCandidates = getSequenceCandidates(seq);
+        if (null != sequenceCandidates) {
+            synchronized (sequenceCandidates) {
+                LOG.fine("Start purging resend candidates.");
                 for (int i = sequenceCandidates.size() - 1; i >= 0; i--) {
                     ResendCandidate candidate = sequenceCandidates.get(i);
                     RMProperties properties = RMContextUtils.retrieveRMProperties(candidate.getMessage(),
@@ -131,11 +177,11 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
                         purged.add(m);
                     }
                 }
+                if (sequenceCandidates.isEmpty()) {
+                    candidates.remove(seq.getIdentifier().getValue(), sequenceCandidates);
+                }
+                LOG.fine("Completed purging resend candidates.");
             }
-            if (sequenceCandidates.isEmpty()) {
-                candidates.remove(seq.getIdentifier().getValue());
-            }
-            LOG.fine("Completed purging resend candidates.");
         }
         if (purged.size() > 0) {
             RMStore store = manager.getStore();
@@ -149,6 +195,9 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
      * Initiate resends.
      */
     public void start() {
+        if (null == wheel) {
+            startWheel();
+        }
         if (null != resender) {
             return;
         }
@@ -163,9 +212,9 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
      * Stops resending messages for the specified source sequence.
      */
     public void stop(SourceSequence seq) {
-        synchronized (this) {
-            List<ResendCandidate> sequenceCandidates = getSequenceCandidates(seq);
-            if (null != sequenceCandidates) {
+        List<ResendCandidate> sequenceCandidates = getSequenceCandidates(seq);
+        if (null != sequenceCandidates) {
+            synchronized (sequenceCandidates) {
                 for (int i = sequenceCandidates.size() - 1; i >= 0; i--) {
                     ResendCandidate candidate = sequenceCandidates.get(i);
                     candidate.cancel();
@@ -175,8 +224,68 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
         }
     }
     
-    void stop() {
-        
+    /**
+     * Stops resending messages for all sequences.
+     */
+    public void shutdown() {
+        TimingWheel<ResendCandidate> w = wheel;
+        if (null != w) {
+            w.stop();
+        }
+    }
+
+    private synchronized void startWheel() {
+        if (null != wheel) {
+            return;
+        }
+        wheel = new TimingWheel<ResendCandidate>("RetransmissionQueue-" + System.identityHashCode(this),
+                                                 tickDuration, wheelSize, 
+                                                 new TimingWheel.Handler<ResendCandidate>() {
+                public void expired(List<ResendCandidate> due) {
+                    initiate(due);
+                }
+            });
+        // schedule candidates cached before the queue was started, e.g. on recovery
+        for (List<ResendCandidate> sequenceCandidates : candidates.values()) {
+            synchronized (sequenceCandidates) {
+                for (ResendCandidate candidate : sequenceCandidates) {
+                    candidate.ensureScheduled();
+                }
+            }
+        }
+    }
+
+    /**
+     * Initiates the resends that have fallen due in the same tick, batching the 
+     * resends to the same address into a single executor task.
+     */
+    private void initiate(List<ResendCandidate> due) {
+        Map<String, List<ResendCandidate>> batches = new LinkedHashMap<String, List<ResendCandidate>>();
+        for (ResendCandidate candidate : due) {
+            if (!candidate.prepare()) {
+                continue;
+            }
+            String key = candidate.getDestinationKey();
+            List<ResendCandidate> batch = batches.get(key);
+            if (null == batch) {
+                batch = new ArrayList<ResendCandidate>();
+                batches.put(key, batch);
+            }
+            batch.add(candidate);
+        }
+        for (final List<ResendCandidate> batch : batches.values()) {
+            if (batch.size() == 1) {
+                batch.get(0).execute(batch.get(0));
+            } else {
+                batch.get(0).execute(new Runnable() {
+                    public void run() {
+                        for (ResendCandidate candidate : batch) {
+                            candidate.run();
+                        }
+                    }
+                });
+            }
+        }
     }
 
     /**
@@ -206,16 +315,26 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
         Identifier sid = st.getIdentifier();
         String key = sid.getValue();
         
-        ResendCandidate candidate = null;
+        ResendCandidate candidate = new ResendCandidate(message);
         
-        synchronized (this) {
+        while (true) {
             List<ResendCandidate> sequenceCandidates = getSequenceCandidates(key);
             if (null == sequenceCandidates) {
                 sequenceCandidates = new ArrayList<ResendCandidate>();
-                candidates.put(key, sequenceCandidates);
+                List<ResendCandidate> existing = candidates.putIfAbsent(key, sequenceCandidates);
+                if (null != existing) {
+                    sequenceCandidates = existing;
+                }
+            }
+            synchronized (sequenceCandidates) {
+                // the list may have been dropped by a concurrent purge
+                if (candidates.get(key) == sequenceCandidates) {
+                    sequenceCandidates.add(candidate);
+                    // in case the queue was started while the candidate was created
+                    candidate.ensureScheduled();
+                    break;
+                }
             }
-            candidate = new ResendCandidate(message);
-            sequenceCandidates.add(candidate);
         }
         LOG.fine("Cached unacknowledged message.");
         return candidate;
@@ -231,8 +350,8 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
 
     /**
      * @param seq the sequence under consideration
-     * @return the list of resend candidates for that sequence
-     * @pre called with mutex held
+     * @return the list of resend candidates for that sequence, to be accessed 
+     * with the list's monitor held
      */
     protected List<ResendCandidate> getSequenceCandidates(SourceSequence seq) {
         return getSequenceCandidates(seq.getIdentifier().getValue());
@@ -240,8 +359,8 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
 
     /**
      * @param key the sequence identifier under consideration
-     * @return the list of resend candidates for that sequence
-     * @pre called with mutex held
+     * @return the list of resend candidates for that sequence, to be accessed 
+     * with the list's monitor held
      */
     protected List<ResendCandidate> getSequenceCandidates(String key) {
         return candidates.get(key);
@@ -359,7 +478,7 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
     protected class ResendCandidate implements Runnable {
         private Message message;
         private Date next;
-        private TimerTask nextTask;
+        private TimingWheel<ResendCandidate>.Timeout nextTask;
         private int resends;
         private long nextInterval;
         private long backoff;
@@ -379,9 +498,7 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
                 ? RetransmissionQueue.DEFAULT_EXPONENTIAL_BACKOFF : 1;
             next = new Date(System.currentTimeMillis() + baseRetransmissionInterval);
             nextInterval = baseRetransmissionInterval * backoff;
-            if (null != manager.getTimer()) {
-                schedule();
-            }
+            schedule();
         }
 
         /**
@@ -391,8 +508,43 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
          *            with resend
          */
         protected void initiate(boolean requestAcknowledge) {
-            includeAckRequested = requestAcknowledge;
+            synchronized (this) {
+                includeAckRequested = requestAcknowledge;
+                pending = true;
+            }
+            execute(this);
+        }
+
+        /**
+         * Marks the candidate as pending resend, unless it already is.
+         * 
+         * @return true if the candidate should be resent 
+         */
+        synchronized boolean prepare() {
+            if (pending) {
+                return false;
+            }
             pending = true;
+            return true;
+        }
+
+        /**
+         * @return the address the message is sent to, or the sequence identifier
+         * if it is not known
+         */
+        String getDestinationKey() {
+            AddressingProperties maps = RMContextUtils.retrieveMAPs(message, false, true);
+            if (null != maps && null != maps.getTo() && null != maps.getTo().getValue()) {
+                return maps.getTo().getValue();
+            }
+            RMProperties rmps = RMContextUtils.retrieveRMProperties(message, true);
+            return rmps.getSequence().getIdentifier().getValue();
+        }
+
+        /**
+         * Runs the resend task on the executor of the message's endpoint.
+         */
+        void execute(Runnable task) {
             Endpoint ep = message.getExchange().get(Endpoint.class);
             Executor executor = ep.getExecutor();
             if (null == executor) {
@@ -403,7 +555,7 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
             }
             
             try {
-                executor.execute(this);
+                executor.execute(task);
             } catch (RejectedExecutionException ex) {
                 LOG.log(Level.SEVERE, "RESEND_INITIATION_FAILED_MSG", ex);
             }
@@ -457,7 +609,7 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
         /**
          * Cancel further resend (although no ACK has been received).
          */
-        protected void cancel() {
+        protected synchronized void cancel() {
             if (null != nextTask) {
                 nextTask.cancel();
             }
@@ -483,27 +635,23 @@ public class RetransmissionQueueImpl implements RetransmissionQueue {
             }
         }
 
+        synchronized void ensureScheduled() {
+            if (null == nextTask) {
+                schedule();
+            }
+        }
+
         protected final synchronized void schedule() {
-            if (null == manager.getTimer()) {
+            TimingWheel<ResendCandidate> w = wheel;
+            if (null == w || null == next) {
                 return;
             }
-            class ResendTask extends TimerTask {
-                ResendCandidate candidate;
-
-                ResendTask(ResendCandidate c) {
-                    candidate = c;
-                }
-
-                @Override
-                public void run() {
-                    if (!candidate.isPending()) {
-                        candidate.initiate(includeAckRequested);
-                    }
-                }
+            long delay = next.getTime() - System.currentTimeMillis();
+            if (jitter > 0 && delay > 0) {
+                delay += (long)(delay * jitter * random.nextDouble());
             }
-            nextTask = new ResendTask(this);
             try {
-                manager.getTimer().schedule(nextTask, next);
+                nextTask = w.schedule(this, delay);
             } catch (IllegalStateException ex) {
                 LOG.log(Level.WARNING, "SCHEDULE_RESEND_FAILED_MSG", ex);
             }
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.rm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest extends Assert {
+    
+    private BlockingQueue<List<String>> batches;
+    private TimingWheel<String> wheel;
+    
+    @Before
+    public void setUp() {
+        batches = new LinkedBlockingQueue<List<String>>();
+        // 8 buckets of 10ms, so that a revolution takes 80ms
+        wheel = new TimingWheel<String>("test", 10, 8, new TimingWheel.Handler<String>() {
+            public void expired(List<String> items) {
+                batches.add(items);
+            }
+        });
+    }
+    
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+    
+    @Test
+    public void testExpiry() throws Exception {
+        long start = System.currentTimeMillis();
+        wheel.schedule("a", 50);
+        List<String> batch = batches.poll(1, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("a"), batch);
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+    
+    @Test
+    public void testExpiryAfterSeveralRounds() throws Exception {
+        long start = System.currentTimeMillis();
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 30);
+        assertEquals(Collections.singletonList("b"), batches.poll(1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("a"), batches.poll(1, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+    
+    @Test
+    public void testBatch() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            wheel.schedule("item" + i, 0);
+        }
+        List<String> expired = new ArrayList<String>();
+        while (expired.size() < 10) {
+            List<String> batch = batches.poll(1, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            expired.addAll(batch);
+        }
+        assertEquals("item0", expired.get(0));
+        assertEquals("item9", expired.get(9));
+    }
+    
+    @Test
+    public void testCancel() throws Exception {
+        TimingWheel<String>.Timeout timeout = wheel.schedule("a", 30);
+        wheel.schedule("b", 60);
+        timeout.cancel();
+        assertTrue(timeout.isCancelled());
+        assertEquals(Collections.singletonList("b"), batches.poll(1, TimeUnit.SECONDS));
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testStop() {
+        wheel.stop();
+        assertFalse(wheel.isRunning());
+        try {
+            wheel.schedule("a", 10);
+            fail("Expected IllegalStateException was not thrown.");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+}
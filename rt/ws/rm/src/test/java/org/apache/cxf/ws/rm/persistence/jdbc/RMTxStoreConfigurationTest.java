@@ -44,6 +44,8 @@ public class RMTxStoreConfigurationTest extends Assert {
         assertEquals("scott", store.getUserName());
         assertEquals("tiger", store.getPassword());
         assertEquals("jdbc:derby://localhost:1527/rmdb;create=true", store.getUrl());
+        assertFalse(store.isGroupCommit());
+        assertNull(store.getDataSource());
     }
    
 }
@@ -519,6 +519,64 @@ public class RMTxStoreTest extends Assert {
         return sid;
     }
     
+    @Test
+    public void testGroupCommit() throws Exception {
+        RMTxStore gcStore = new RMTxStore();
+        gcStore.setDriverClassName("org.apache.derby.jdbc.EmbeddedDriver");
+        gcStore.setGroupCommit(true);
+        gcStore.setGroupCommitDelay(5);
+        gcStore.init();
+        
+        final Identifier sid = RMUtils.getWSRMFactory().createIdentifier();
+        sid.setValue("groupcommit");
+        final SourceSequence seq = new SourceSequence(sid);
+        try {
+            gcStore.createSourceSequence(seq);
+            final RMTxStore s = gcStore;
+            Thread[] threads = new Thread[10];
+            for (int i = 0; i < threads.length; i++) {
+                final int n = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        for (int j = 1; j <= 5; j++) {
+                            RMMessage msg = new RMMessage();
+                            msg.setMessageNumber(BigInteger.valueOf(n * 5 + j));
+                            msg.setContent(new byte[89]);
+                            s.persistOutgoing(seq, msg);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertEquals(50, gcStore.getMessages(sid, true).size());
+            
+            // failures are reported to the thread that submitted the write
+            RMMessage dup = new RMMessage();
+            dup.setMessageNumber(BigInteger.ONE);
+            dup.setContent(new byte[89]);
+            try {
+                gcStore.persistOutgoing(seq, dup);
+                fail("Expected RMStoreException was not thrown.");
+            } catch (RMStoreException ex) {
+                SQLException se = (SQLException)ex.getCause();
+                assertEquals("23505", se.getSQLState());
+            }
+            
+            Collection<BigInteger> messageNrs = new ArrayList<BigInteger>();
+            for (int i = 1; i <= 50; i++) {
+                messageNrs.add(BigInteger.valueOf(i));
+            }
+            gcStore.removeMessages(sid, messageNrs, true);
+            assertEquals(0, gcStore.getMessages(sid, true).size());
+        } finally {
+            gcStore.removeSourceSequence(sid);
+            gcStore.destroy();
+        }
+    }
+    
     private void setupMessage(Identifier sid, BigInteger mn, String to, boolean outbound) 
         throws IOException, SQLException  {
         RMMessage msg = control.createMock(RMMessage.class);
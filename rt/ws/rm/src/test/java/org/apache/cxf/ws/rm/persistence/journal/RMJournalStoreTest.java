@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.rm.persistence.journal;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import org.apache.cxf.ws.rm.DestinationSequence;
+import org.apache.cxf.ws.rm.Identifier;
+import org.apache.cxf.ws.rm.RMUtils;
+import org.apache.cxf.ws.rm.SequenceAcknowledgement;
+import org.apache.cxf.ws.rm.SourceSequence;
+import org.apache.cxf.ws.rm.persistence.RMMessage;
+import org.apache.cxf.ws.rm.persistence.RMStoreException;
+import org.easymock.classextension.EasyMock;
+import org.easymock.classextension.IMocksControl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RMJournalStoreTest extends Assert {
+    
+    private static final String DIRECTORY = "target/rmjournal-test";
+    private static final String CLIENT_ENDPOINT_ID = 
+        "celtix.{http://celtix.objectweb.org/greeter_control}GreeterService/GreeterPort";
+    private static final String SERVER_ENDPOINT_ID = 
+        "celtix.{http://celtix.objectweb.org/greeter_control}GreeterService";
+    private static final String NON_ANON_ACKS_TO = 
+        "http://localhost:9999/decoupled_endpoint";
+    
+    private IMocksControl control;
+    private RMJournalStore store;
+    
+    @Before
+    public void setUp() {
+        control = EasyMock.createNiceControl();
+        RMJournalStore.deleteJournalFiles(DIRECTORY);
+        store = createStore(RMJournalStore.DEFAULT_SEGMENT_SIZE);
+    }
+    
+    @After
+    public void tearDown() {
+        store.close();
+        RMJournalStore.deleteJournalFiles(DIRECTORY);
+    }
+    
+    @Test
+    public void testCreateDuplicateSequence() {
+        SourceSequence seq = createSourceSequence("sequence1", BigInteger.ONE, null);
+        store.createSourceSequence(seq);
+        try {
+            store.createSourceSequence(seq);
+            fail("Expected RMStoreException was not thrown.");
+        } catch (RMStoreException ex) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testPersistAndRecover() {
+        Date expiry = new Date(System.currentTimeMillis() + 3600 * 1000);
+        SourceSequence sseq = createSourceSequence("sequence1", BigInteger.ONE, expiry);
+        store.createSourceSequence(sseq);
+        store.persistOutgoing(sseq, createMessage(1, "hello"));
+        sseq = createSourceSequence("sequence1", new BigInteger("2"), expiry);
+        store.persistOutgoing(sseq, createMessage(2, "world"));
+        
+        SequenceAcknowledgement ack = new SequenceAcknowledgement();
+        SequenceAcknowledgement.AcknowledgementRange range = 
+            new SequenceAcknowledgement.AcknowledgementRange();
+        range.setLower(BigInteger.ONE);
+        range.setUpper(BigInteger.TEN);
+        ack.getAcknowledgementRange().add(range);
+        DestinationSequence dseq = createDestinationSequence("sequence2", null, null);
+        store.createDestinationSequence(dseq);
+        dseq = createDestinationSequence("sequence2", BigInteger.TEN, ack);
+        store.persistIncoming(dseq, createMessage(10, "last"));
+        
+        for (int i = 0; i < 2; i++) {
+            Collection<SourceSequence> sseqs = store.getSourceSequences(CLIENT_ENDPOINT_ID);
+            assertEquals(1, sseqs.size());
+            SourceSequence s = sseqs.iterator().next();
+            assertEquals("sequence1", s.getIdentifier().getValue());
+            assertEquals(new BigInteger("2"), s.getCurrentMessageNr());
+            assertEquals(expiry, s.getExpires());
+            assertNull(s.getOfferingSequenceIdentifier());
+            assertEquals(0, store.getSourceSequences(SERVER_ENDPOINT_ID).size());
+            
+            Collection<DestinationSequence> dseqs = store.getDestinationSequences(SERVER_ENDPOINT_ID);
+            assertEquals(1, dseqs.size());
+            DestinationSequence d = dseqs.iterator().next();
+            assertEquals("sequence2", d.getIdentifier().getValue());
+            assertEquals(BigInteger.TEN, d.getLastMessageNumber());
+            assertEquals(NON_ANON_ACKS_TO, d.getAcksTo().getAddress().getValue());
+            assertEquals(1, d.getAcknowledgment().getAcknowledgementRange().size());
+            
+            Collection<RMMessage> msgs = store.getMessages(s.getIdentifier(), true);
+            assertEquals(2, msgs.size());
+            RMMessage msg = msgs.iterator().next();
+            assertEquals(BigInteger.ONE, msg.getMessageNumber());
+            assertEquals("hello", new String(msg.getContent()));
+            assertEquals(1, store.getMessages(d.getIdentifier(), false).size());
+            assertEquals(0, store.getMessages(d.getIdentifier(), true).size());
+            
+            // recover from the journal files
+            store.close();
+            store = createStore(RMJournalStore.DEFAULT_SEGMENT_SIZE);
+        }
+    }
+    
+    @Test
+    public void testRemove() {
+        SourceSequence sseq = createSourceSequence("sequence1", BigInteger.ONE, null);
+        store.createSourceSequence(sseq);
+        for (int i = 1; i <= 3; i++) {
+            store.persistOutgoing(sseq, createMessage(i, "message" + i));
+        }
+        DestinationSequence dseq = createDestinationSequence("sequence2", null, null);
+        store.createDestinationSequence(dseq);
+        
+        Collection<BigInteger> nrs = new ArrayList<BigInteger>();
+        nrs.add(BigInteger.ONE);
+        nrs.add(new BigInteger("3"));
+        store.removeMessages(sseq.getIdentifier(), nrs, true);
+        store.removeDestinationSequence(dseq.getIdentifier());
+        
+        for (int i = 0; i < 2; i++) {
+            Collection<RMMessage> msgs = store.getMessages(sseq.getIdentifier(), true);
+            assertEquals(1, msgs.size());
+            assertEquals(new BigInteger("2"), msgs.iterator().next().getMessageNumber());
+            assertEquals(1, store.getSourceSequences(CLIENT_ENDPOINT_ID).size());
+            assertEquals(0, store.getDestinationSequences(SERVER_ENDPOINT_ID).size());
+            
+            store.close();
+            store = createStore(RMJournalStore.DEFAULT_SEGMENT_SIZE);
+        }
+        
+        store.removeSourceSequence(sseq.getIdentifier());
+        assertEquals(0, store.getSourceSequences(CLIENT_ENDPOINT_ID).size());
+    }
+    
+    @Test
+    public void testCompaction() throws Exception {
+        store.close();
+        store = createStore(1024);
+        
+        SourceSequence sseq = createSourceSequence("sequence1", BigInteger.ONE, null);
+        store.createSourceSequence(sseq);
+        char[] chars = new char[200];
+        Arrays.fill(chars, 'x');
+        String content = new String(chars);
+        Collection<BigInteger> nrs = new ArrayList<BigInteger>();
+        for (int i = 1; i <= 20; i++) {
+            store.persistOutgoing(sseq, createMessage(i, content));
+            if (i % 5 != 0) {
+                nrs.add(BigInteger.valueOf(i));
+            }
+        }
+        store.removeMessages(sseq.getIdentifier(), nrs, true);
+        
+        int before = countSegments();
+        assertTrue(before > 2);
+        store.compact();
+        assertTrue(countSegments() < before);
+        
+        store.close();
+        store = createStore(1024);
+        Collection<RMMessage> msgs = store.getMessages(sseq.getIdentifier(), true);
+        assertEquals(4, msgs.size());
+        for (RMMessage msg : msgs) {
+            assertEquals(0, msg.getMessageNumber().intValue() % 5);
+            assertEquals(content, new String(msg.getContent()));
+        }
+        assertEquals(1, store.getSourceSequences(CLIENT_ENDPOINT_ID).size());
+    }
+    
+    @Test
+    public void testCompactionOfNewerSegment() throws Exception {
+        store.close();
+        store = createStore(2048);
+        store.setCompactionThreshold(0.3);
+        
+        SourceSequence sseq = createSourceSequence("sequence1", BigInteger.ONE, null);
+        store.createSourceSequence(sseq);
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'x');
+        String content = new String(chars);
+        for (int i = 1; i <= 4; i++) {
+            store.persistOutgoing(sseq, createMessage(i, content));
+        }
+        // removes a message in the oldest segment, which stays mostly live
+        store.removeMessages(sseq.getIdentifier(), Arrays.asList(BigInteger.ONE), true);
+        for (int i = 5; i <= 7; i++) {
+            store.persistOutgoing(sseq, createMessage(i, content));
+        }
+        store.removeMessages(sseq.getIdentifier(), 
+                             Arrays.asList(BigInteger.valueOf(4), BigInteger.valueOf(5), 
+                                           BigInteger.valueOf(6)), true);
+        store.persistOutgoing(sseq, createMessage(8, content));
+        
+        int before = countSegments();
+        store.compact();
+        assertTrue(countSegments() < before);
+        
+        // the removal of the first message has been kept
+        store.close();
+        store = createStore(2048);
+        Collection<RMMessage> msgs = store.getMessages(sseq.getIdentifier(), true);
+        Collection<BigInteger> nrs = new ArrayList<BigInteger>();
+        for (RMMessage msg : msgs) {
+            nrs.add(msg.getMessageNumber());
+        }
+        assertEquals(Arrays.asList(BigInteger.valueOf(2), BigInteger.valueOf(3), 
+                                   BigInteger.valueOf(7), BigInteger.valueOf(8)), nrs);
+    }
+    
+    private RMJournalStore createStore(int segmentSize) {
+        RMJournalStore s = new RMJournalStore();
+        s.setDirectory(DIRECTORY);
+        s.setSegmentSize(segmentSize);
+        s.setCompactionInterval(0);
+        s.init();
+        return s;
+    }
+    
+    private int countSegments() {
+        return new File(DIRECTORY).list().length;
+    }
+    
+    private SourceSequence createSourceSequence(String s, BigInteger cmn, Date expiry) {
+        SourceSequence seq = control.createMock(SourceSequence.class);
+        EasyMock.expect(seq.getIdentifier()).andReturn(createIdentifier(s)).anyTimes();
+        EasyMock.expect(seq.getEndpointIdentifier()).andReturn(CLIENT_ENDPOINT_ID).anyTimes();
+        EasyMock.expect(seq.getCurrentMessageNr()).andReturn(cmn).anyTimes();
+        EasyMock.expect(seq.getExpires()).andReturn(expiry).anyTimes();
+        EasyMock.replay(seq);
+        return seq;
+    }
+    
+    private DestinationSequence createDestinationSequence(String s, BigInteger lmn, 
+                                                          SequenceAcknowledgement ack) {
+        DestinationSequence seq = control.createMock(DestinationSequence.class);
+        EasyMock.expect(seq.getIdentifier()).andReturn(createIdentifier(s)).anyTimes();
+        EasyMock.expect(seq.getEndpointIdentifier()).andReturn(SERVER_ENDPOINT_ID).anyTimes();
+        EasyMock.expect(seq.getAcksTo()).andReturn(RMUtils.createReference2004(NON_ANON_ACKS_TO))
+            .anyTimes();
+        EasyMock.expect(seq.getLastMessageNumber()).andReturn(lmn).anyTimes();
+        EasyMock.expect(seq.getAcknowledgment()).andReturn(ack).anyTimes();
+        EasyMock.replay(seq);
+        return seq;
+    }
+    
+    private static RMMessage createMessage(int nr, String content) {
+        RMMessage msg = new RMMessage();
+        msg.setMessageNumber(BigInteger.valueOf(nr));
+        msg.setTo(NON_ANON_ACKS_TO);
+        msg.setContent(content.getBytes());
+        return msg;
+    }
+    
+    private static Identifier createIdentifier(String s) {
+        Identifier sid = RMUtils.getWSRMFactory().createIdentifier();
+        sid.setValue(s);
+        return sid;
+    }
+}
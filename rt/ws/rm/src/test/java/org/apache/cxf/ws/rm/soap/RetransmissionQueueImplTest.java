@@ -80,6 +80,8 @@ public class RetransmissionQueueImplTest extends Assert {
     
     @After
     public void tearDown() {
+        // stops the timing wheel thread of queues that have been started
+        queue.shutdown();
         control.verify();
         messages.clear();
         properties.clear();
@@ -319,6 +321,7 @@ public class RetransmissionQueueImplTest extends Assert {
     public void testStartStop() {
         control.replay();
         queue.start();
+        queue.shutdown();
     }
     
     private Message setUpMessage(String sid) {
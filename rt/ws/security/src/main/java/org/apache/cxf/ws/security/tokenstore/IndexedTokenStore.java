@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.security.tokenstore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.cxf.common.util.StringUtils;
+import org.apache.cxf.ws.security.tokenstore.SecurityToken.State;
+
+/**
+ * A {@link TokenStore} for large numbers of tokens.  Unlike {@link MemoryTokenStore},
+ * lookups do not scan all tokens: tokens are also indexed by their wsu:Id, and
+ * expiry is processed incrementally from a queue ordered by expiry time, so a 
+ * lookup only touches the tokens that have expired since the previous call.  
+ * Lookups do not lock the store unless a token has to be removed.
+ * <p>
+ * The number of tokens may be bounded with {@link #setMaxTokens(int)}, in which 
+ * case tokens that have not been looked up recently are evicted, the tokens looked
+ * up since they were last considered getting a second chance.  The wsu:Id of a
+ * token is taken when it is added, so {@link #update(SecurityToken)} must be called
+ * after changing the references of a stored token.
+ */
+public class IndexedTokenStore implements TokenStore {
+    
+    private volatile boolean autoRemove = true;
+    private volatile int maxTokens;
+    private volatile long nextExpiry = Long.MAX_VALUE;
+    private long sequence;
+    
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<String, Entry>();
+    private final Map<String, String> wsuIds = new ConcurrentHashMap<String, String>();
+    
+    // guarded by this, like all changes to the maps
+    private final SortedSet<Entry> expiryQueue = new TreeSet<Entry>();
+    private final LinkedList<Entry> evictionQueue = new LinkedList<Entry>();
+    
+    /** {@inheritDoc}*/
+    public synchronized void add(SecurityToken token) {
+        if (token == null || StringUtils.isEmpty(token.getId())) {
+            return;
+        }
+        remove(token.getId());
+        Entry entry = new Entry(token, sequence++);
+        tokens.put(entry.id, entry);
+        if (entry.wsuId != null) {
+            wsuIds.put(entry.wsuId, entry.id);
+        }
+        if (entry.expires != Long.MAX_VALUE) {
+            expiryQueue.add(entry);
+            updateNextExpiry();
+        }
+        evictionQueue.add(entry);
+        evict();
+    }
+
+    /** {@inheritDoc}*/
+    public void update(SecurityToken token) {
+        if (autoRemove 
+            && (token.getState() == State.EXPIRED
+                || token.getState() == State.CANCELLED)) {
+            remove(token);
+        } else {
+            add(token);
+        }
+    }
+    
+    public synchronized void remove(SecurityToken token) {
+        if (token != null && !StringUtils.isEmpty(token.getId())) {
+            remove(token.getId());
+        }
+    }
+
+    public Collection<SecurityToken> getCancelledTokens() {
+        return getTokens(SecurityToken.State.CANCELLED);
+    }
+    public Collection<SecurityToken> getExpiredTokens() {
+        return getTokens(SecurityToken.State.EXPIRED);
+    }
+    public Collection<SecurityToken> getRenewedTokens() {
+        return getTokens(SecurityToken.State.RENEWED);
+    }
+    
+    public Collection<String> getTokenIdentifiers() {
+        processTokenExpiry();        
+        return new ArrayList<String>(tokens.keySet());
+    }
+
+    public Collection<SecurityToken> getValidTokens() {
+        Collection<SecurityToken> toks = getTokens(SecurityToken.State.ISSUED);
+        toks.addAll(getTokens(SecurityToken.State.RENEWED));
+        toks.addAll(getTokens(SecurityToken.State.UNKNOWN));
+        return toks;
+    }
+
+    public SecurityToken getToken(String id) {
+        processTokenExpiry();
+        
+        Entry entry = tokens.get(id);
+        if (entry == null) {
+            String tokenId = wsuIds.get(id);
+            if (tokenId != null) {
+                entry = tokens.get(tokenId);
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (autoRemove 
+            && (entry.token.getState() == State.EXPIRED 
+                || entry.token.getState() == State.CANCELLED)) {
+            remove(entry);
+            return null;
+        }
+        entry.used = true;
+        return entry.token;
+    }
+    
+    public int size() {
+        return tokens.size();
+    }
+
+    public synchronized void removeCancelledTokens() {
+        removeTokens(State.CANCELLED);
+    }
+
+    public synchronized void removeExpiredTokens() {
+        processTokenExpiry();
+        removeTokens(State.EXPIRED);
+    }
+
+    public void setAutoRemoveTokens(boolean auto) {
+        autoRemove = auto;
+    }
+    
+    /**
+     * Sets the maximum number of tokens kept, beyond which the tokens not looked up
+     * recently are evicted.  0, the default, means no limit.
+     */
+    public synchronized void setMaxTokens(int max) {
+        maxTokens = max;
+        evict();
+    }
+    
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+    
+    protected Collection<SecurityToken> getTokens(SecurityToken.State state) {
+        processTokenExpiry();
+        List<SecurityToken> t = new ArrayList<SecurityToken>();
+        List<Entry> removed = null;
+        for (Entry entry : tokens.values()) {
+            State s = entry.token.getState();
+            if (autoRemove && (s == State.EXPIRED || s == State.CANCELLED)) {
+                if (removed == null) {
+                    removed = new ArrayList<Entry>();
+                }
+                removed.add(entry);
+            } else if (s == state) {
+                t.add(entry.token);
+            }
+        }
+        if (removed != null) {
+            synchronized (this) {
+                for (Entry entry : removed) {
+                    remove(entry);
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Marks the tokens whose expiry time has passed as expired, removing them if 
+     * tokens are removed automatically.  Only the expired tokens are visited, and
+     * the store is only locked once the earliest expiry time has passed.
+     */
+    protected void processTokenExpiry() {
+        long time = System.currentTimeMillis();
+        if (nextExpiry >= time) {
+            return;
+        }
+        synchronized (this) {
+            while (!expiryQueue.isEmpty()) {
+                Entry entry = expiryQueue.first();
+                if (entry.expires >= time) {
+                    break;
+                }
+                expiryQueue.remove(entry);
+                entry.token.setState(SecurityToken.State.EXPIRED);
+                if (autoRemove) {
+                    remove(entry.id);
+                }
+            }
+            updateNextExpiry();
+        }
+    }
+    
+    private void removeTokens(State state) {
+        for (Iterator<Entry> it = tokens.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.token.getState() == state) {
+                it.remove();
+                unindex(entry);
+            }
+        }
+    }
+    
+    private synchronized void remove(Entry entry) {
+        if (tokens.get(entry.id) == entry) {
+            remove(entry.id);
+        }
+    }
+    
+    private void remove(String id) {
+        Entry entry = tokens.remove(id);
+        if (entry != null) {
+            unindex(entry);
+        }
+    }
+    
+    private void unindex(Entry entry) {
+        if (entry.wsuId != null && entry.id.equals(wsuIds.get(entry.wsuId))) {
+            wsuIds.remove(entry.wsuId);
+        }
+        if (expiryQueue.remove(entry)) {
+            updateNextExpiry();
+        }
+        // removed entries are dropped from the eviction queue when they reach its head,
+        // or all at once when they make up most of it
+        if (evictionQueue.size() > 2 * tokens.size() + 16) {
+            for (Iterator<Entry> it = evictionQueue.iterator(); it.hasNext();) {
+                Entry e = it.next();
+                if (tokens.get(e.id) != e) {
+                    it.remove();
+                }
+            }
+        }
+    }
+    
+    private void updateNextExpiry() {
+        nextExpiry = expiryQueue.isEmpty() ? Long.MAX_VALUE : expiryQueue.first().expires;
+    }
+    
+    private void evict() {
+        while (maxTokens > 0 && tokens.size() > maxTokens) {
+            Entry entry = evictionQueue.removeFirst();
+            if (tokens.get(entry.id) != entry) {
+                continue;
+            }
+            if (entry.used) {
+                entry.used = false;
+                evictionQueue.add(entry);
+            } else {
+                remove(entry.id);
+            }
+        }
+    }
+    
+    private static final class Entry implements Comparable<Entry> {
+        final SecurityToken token;
+        final String id;
+        final String wsuId;
+        final long expires;
+        final long seq;
+        volatile boolean used;
+        
+        Entry(SecurityToken t, long s) {
+            token = t;
+            id = t.getId();
+            wsuId = t.getWsuId();
+            expires = t.getExpires() == null ? Long.MAX_VALUE : t.getExpires().getTimeInMillis();
+            seq = s;
+        }
+
+        public int compareTo(Entry o) {
+            if (expires != o.expires) {
+                return expires < o.expires ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.ws.security.tokenstore;
+
+import java.util.Calendar;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import org.apache.cxf.helpers.DOMUtils;
+import org.apache.ws.security.message.token.Reference;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexedTokenStoreTest extends Assert {
+    
+    private IndexedTokenStore store;
+    
+    @Before
+    public void setUp() {
+        store = new IndexedTokenStore();
+    }
+    
+    @Test
+    public void testGetTokenByWsuId() throws Exception {
+        SecurityToken token = new SecurityToken("id1", null, (Calendar)null);
+        token.setAttachedReference(createReference("wsuId1"));
+        store.add(token);
+        
+        assertSame(token, store.getToken("id1"));
+        assertSame(token, store.getToken("wsuId1"));
+        assertNull(store.getToken("id2"));
+        
+        store.remove(token);
+        assertNull(store.getToken("wsuId1"));
+        assertEquals(0, store.size());
+    }
+    
+    @Test
+    public void testExpiry() throws Exception {
+        SecurityToken expired = new SecurityToken("expired", (Calendar)null, future(-1000));
+        SecurityToken valid = new SecurityToken("valid", (Calendar)null, future(60000));
+        SecurityToken unbounded = new SecurityToken("unbounded", null, (Calendar)null);
+        store.add(expired);
+        store.add(valid);
+        store.add(unbounded);
+        
+        assertNull(store.getToken("expired"));
+        assertEquals(SecurityToken.State.EXPIRED, expired.getState());
+        assertSame(valid, store.getToken("valid"));
+        assertEquals(2, store.getTokenIdentifiers().size());
+        assertEquals(2, store.getValidTokens().size());
+        
+        store.setAutoRemoveTokens(false);
+        store.add(expired);
+        assertSame(expired, store.getToken("expired"));
+        assertEquals(1, store.getExpiredTokens().size());
+        store.removeExpiredTokens();
+        assertEquals(0, store.getExpiredTokens().size());
+        assertEquals(2, store.size());
+    }
+    
+    @Test
+    public void testCancel() {
+        SecurityToken token = new SecurityToken("id1", (Calendar)null, future(60000));
+        store.add(token);
+        token.setState(SecurityToken.State.CANCELLED);
+        store.update(token);
+        assertNull(store.getToken("id1"));
+        assertEquals(0, store.size());
+    }
+    
+    @Test
+    public void testLRUEviction() {
+        store.setMaxTokens(2);
+        SecurityToken token1 = new SecurityToken("id1", null, (Calendar)null);
+        SecurityToken token2 = new SecurityToken("id2", null, (Calendar)null);
+        SecurityToken token3 = new SecurityToken("id3", null, (Calendar)null);
+        store.add(token1);
+        store.add(token2);
+        // token1 becomes the most recently used one
+        assertSame(token1, store.getToken("id1"));
+        store.add(token3);
+        
+        assertEquals(2, store.size());
+        assertSame(token1, store.getToken("id1"));
+        assertNull(store.getToken("id2"));
+        assertSame(token3, store.getToken("id3"));
+    }
+    
+    @Test
+    public void testLookupWithoutLock() throws Exception {
+        final SecurityToken token = new SecurityToken("id1", (Calendar)null, future(60000));
+        store.add(token);
+        final SecurityToken[] found = new SecurityToken[1];
+        Thread reader = new Thread() {
+            public void run() {
+                found[0] = store.getToken("id1");
+            }
+        };
+        synchronized (store) {
+            reader.start();
+            reader.join(5000);
+        }
+        assertSame(token, found[0]);
+    }
+    
+    private static Calendar future(long millis) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(System.currentTimeMillis() + millis);
+        return cal;
+    }
+    
+    private static Element createReference(String wsuId) throws Exception {
+        Document doc = DOMUtils.createDocument();
+        Element str = doc.createElementNS("http://docs.oasis-open.org/wss/2004/01/"
+                                          + "oasis-200401-wss-wssecurity-secext-1.0.xsd",
+                                          "wsse:SecurityTokenReference");
+        Element ref = doc.createElementNS(Reference.TOKEN.getNamespaceURI(), 
+                                          "wsse:" + Reference.TOKEN.getLocalPart());
+        ref.setAttribute("URI", "#" + wsuId);
+        str.appendChild(ref);
+        return str;
+    }
+}